@@ -45,6 +45,8 @@ import com.google.gson.reflect.TypeToken;
 import com.microsoft.appcenter.AppCenter;
 import com.microsoft.appcenter.analytics.Analytics;
 import com.microsoft.appcenter.crashes.Crashes;
+import com.microsoft.bot.builder.solutions.directlinespeech.SpeechEvents;
+import com.microsoft.bot.builder.solutions.directlinespeech.json.ActivityJson;
 import com.microsoft.bot.builder.solutions.directlinespeech.model.Configuration;
 import com.microsoft.bot.builder.solutions.virtualassistant.R;
 import com.microsoft.bot.builder.solutions.virtualassistant.activities.BaseActivity;
@@ -57,9 +59,6 @@ import com.microsoft.bot.builder.solutions.virtualassistant.activities.main.chat
 import com.microsoft.bot.builder.solutions.virtualassistant.activities.settings.SettingsActivity;
 import com.microsoft.bot.builder.solutions.virtualassistant.utils.AppConfiguration;
 
-import org.greenrobot.eventbus.EventBus;
-import org.greenrobot.eventbus.Subscribe;
-import org.greenrobot.eventbus.ThreadMode;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -77,7 +76,9 @@ import client.model.CardAction;
 import events.ActivityReceived;
 import events.BotListening;
 import events.Connected;
+import events.ConnectionEvent;
 import events.Disconnected;
+import events.Reconnecting;
 import events.Recognized;
 import events.RecognizedIntermediateResult;
 import events.RequestTimeout;
@@ -86,6 +87,11 @@ import io.adaptivecards.objectmodel.BaseActionElement;
 import io.adaptivecards.objectmodel.BaseCardElement;
 import io.adaptivecards.renderer.RenderedAdaptiveCard;
 import io.adaptivecards.renderer.actionhandler.ICardActionHandler;
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+
+import static com.microsoft.bot.builder.solutions.directlinespeech.async.EventHandlers.guard;
 
 public class MainActivity extends BaseActivity
         implements NavigationView.OnNavigationItemSelectedListener, ICardActionHandler, ActionsViewholder.OnClickListener {
@@ -126,6 +132,7 @@ public class MainActivity extends BaseActivity
     private boolean bargeInSupported;
     private boolean isExpandedTextInput;
     private boolean isCreated;// used to identify when onCreate() is complete, used with SwitchCompat
+    private final CompositeDisposable subscriptions = new CompositeDisposable();// to the SpeechEvents, while started
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -134,7 +141,7 @@ public class MainActivity extends BaseActivity
         ButterKnife.bind(this);
 
         handler = new Handler(Looper.getMainLooper());
-        gson = new Gson();
+        gson = ActivityJson.create();
 
         setupChatRecyclerView();
         setupSuggestedActionsRecyclerView();
@@ -186,11 +193,11 @@ public class MainActivity extends BaseActivity
         isCreated = true;//keep this as last line in onCreate()
     }
 
-    // Register for EventBus messages and SpeechService
+    // Subscribe to the SpeechEvents and bind to the SpeechService
     @Override
     public void onStart() {
         super.onStart();
-        EventBus.getDefault().register(this);
+        subscribeToSpeechEvents();
         if (speechServiceBinder == null) {
             doBindService();
         }
@@ -222,11 +229,11 @@ public class MainActivity extends BaseActivity
         getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON); // to disable keeping screen on
     }
 
-    // Unregister EventBus messages and SpeechService
+    // Unsubscribe from the SpeechEvents and unbind from the SpeechService
     @Override
     public void onStop() {
         super.onStop();
-        EventBus.getDefault().unregister(this);
+        subscriptions.clear();
         if (myConnection != null) {
             unbindService(myConnection);
             speechServiceBinder = null;
@@ -311,6 +318,27 @@ public class MainActivity extends BaseActivity
         } catch (RemoteException e) {
             e.printStackTrace();
         }
+
+        showCachedWelcomeCard();
+    }
+
+    // show the welcome card of the last session right away, the fresh one replaces it when it arrives
+    private void showCachedWelcomeCard() {
+        if (chatAdapter.getItemCount() > 0) return;
+        try {
+            String json = speechServiceBinder.getCachedWelcomeCard();
+            if (json == null) return;
+            BotConnectorActivity botConnectorActivity = gson.fromJson(json, BotConnectorActivity.class);
+            if (botConnectorActivity == null) return;
+            chatAdapter.addCachedWelcomeCard(botConnectorActivity);
+            if (botConnectorActivity.getSuggestedActions() != null && botConnectorActivity.getSuggestedActions().getActions() != null) {
+                suggActionsAdapter.addAll(botConnectorActivity.getSuggestedActions().getActions(), this, this);
+            }
+        } catch (RemoteException exception) {
+            Log.e(LOGTAG, exception.getMessage());
+        } catch (RuntimeException exception) {
+            Log.e(LOGTAG, "cached welcome card: " + exception.getMessage());
+        }
     }
 
     @Override
@@ -521,9 +549,49 @@ public class MainActivity extends BaseActivity
         }
     }
 
-    // EventBus: the connection disconnected
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventDisconnected(Disconnected event) {
+    // on the main thread; the partial results are conflated, the view shows the latest one
+    private void subscribeToSpeechEvents() {
+        SpeechEvents events = SpeechEvents.getDefault();
+        Scheduler main = AndroidSchedulers.mainThread();
+        subscriptions.add(events.getConnectionEvents(main).subscribe(guard(this::onEventConnection, this::onEventError), this::onEventError));
+        subscriptions.add(events.getBotListening(main).subscribe(guard(this::onEventBotListening, this::onEventError), this::onEventError));
+        subscriptions.add(events.getIntermediateResults(main).subscribe(guard(this::onEventRecognizedIntermediateResult, this::onEventError), this::onEventError));
+        subscriptions.add(events.getRecognized(main).subscribe(guard(this::onEventRecognized, this::onEventError), this::onEventError));
+        subscriptions.add(events.getActivities(main).subscribe(guard(this::onEventActivityReceived, this::onEventError), this::onEventError));
+        subscriptions.add(events.getRequestTimeouts(main).subscribe(guard(this::onEventRequestTimeout, this::onEventError), this::onEventError));
+    }
+
+    private void onEventError(Throwable throwable) {
+        Log.e(LOGTAG, "event handler failed", throwable);
+    }
+
+    // SpeechEvents: the connection changed
+    private void onEventConnection(ConnectionEvent event) {
+        if (event instanceof Reconnecting) {
+            onEventReconnecting((Reconnecting) event);
+        } else if (event instanceof Connected) {
+            onEventConnected((Connected) event);
+        } else if (event instanceof Disconnected) {
+            onEventDisconnected((Disconnected) event);
+        }
+    }
+
+    // SpeechEvents: the connection dropped and is being re-established, the conversation is kept
+    private void onEventReconnecting(Reconnecting event) {
+        detectedSpeechToText.setText(event.delayMs < 0 ? R.string.msg_waiting_for_network : R.string.msg_disconnected);
+    }
+
+    // SpeechEvents: the connection is (re-)established
+    private void onEventConnected(Connected event) {
+        CharSequence text = detectedSpeechToText.getText();
+        if (text.toString().equals(getString(R.string.msg_disconnected))
+                || text.toString().equals(getString(R.string.msg_waiting_for_network))) {
+            detectedSpeechToText.setText("");
+        }
+    }
+
+    // SpeechEvents: the connection disconnected
+    private void onEventDisconnected(Disconnected event) {
         try {
             chatAdapter.resetChat();
             suggActionsAdapter.clear();
@@ -555,9 +623,8 @@ public class MainActivity extends BaseActivity
                 .show();
     }
 
-    // EventBus: the Bot is listening
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventBotListening(BotListening event) {
+    // SpeechEvents: the Bot is listening
+    private void onEventBotListening(BotListening event) {
 
         // Note: the SpeechService will trigger the actual listening. Since the app needs to show a
         // visual, the app needs to subscribe to this event and act on it.
@@ -572,15 +639,13 @@ public class MainActivity extends BaseActivity
         }
     }
 
-    // EventBus: the user spoke and the app recognized intermediate speech
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventRecognizedIntermediateResult(RecognizedIntermediateResult event) {
+    // SpeechEvents: the user spoke and the app recognized intermediate speech
+    private void onEventRecognizedIntermediateResult(RecognizedIntermediateResult event) {
         detectedSpeechToText.setText(event.recognized_speech);
     }
 
-    // EventBus: the user spoke and the app recognized the speech. Disconnect mic.
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventRecognized(Recognized event) {
+    // SpeechEvents: the user spoke and the app recognized the speech. Disconnect mic.
+    private void onEventRecognized(Recognized event) {
         hideListeningAnimation();
         if (event.recognized_speech.length()>0) {
             detectedSpeechToText.setText(event.recognized_speech);
@@ -591,14 +656,15 @@ public class MainActivity extends BaseActivity
         }
     }
 
-    // EventBus: received a response from Bot
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventActivityReceived(ActivityReceived activityReceived) throws IOException {
+    // SpeechEvents: received a response from Bot
+    private void onEventActivityReceived(ActivityReceived activityReceived) {
         if (activityReceived.botConnectorActivity != null) {
             BotConnectorActivity botConnectorActivity = activityReceived.botConnectorActivity;
             sfxManager.playEarconResults();
 
-            switch (botConnectorActivity.getType()) {
+            // an activity without type is handled as the default case, not as a NullPointerException
+            String type = botConnectorActivity.getType();
+            switch (type != null ? type : "") {
                 case "message":
 
                     if (botConnectorActivity.getSuggestedActions() != null && botConnectorActivity.getSuggestedActions().getActions() != null) {
@@ -611,13 +677,14 @@ public class MainActivity extends BaseActivity
                         }
                     }
 
-                    chatAdapter.addBotResponse(botConnectorActivity);
+                    if (activityReceived.isWelcomeCard) {
+                        chatAdapter.replaceWelcomeCard(botConnectorActivity);
+                    } else {
+                        chatAdapter.addBotResponse(botConnectorActivity);
+                    }
                     // make the chat list scroll automatically after adding a bot response
                     chatRecyclerView.getLayoutManager().scrollToPosition(chatAdapter.getItemCount() - 1);
 
-                    break;
-                case "dialogState":
-                    Log.i(LOGTAG, "Activity with DialogState");
                     break;
                 case "PlayLocalFile":
                     Log.i(LOGTAG, "Activity with PlayLocalFile");
@@ -629,9 +696,8 @@ public class MainActivity extends BaseActivity
         }
     }
 
-    // EventBus: the previous request has timed-out
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventRequestTimeout(RequestTimeout event) {
+    // SpeechEvents: the previous request has timed-out
+    private void onEventRequestTimeout(RequestTimeout event) {
         // here you can notify the user to repeat the request
         sfxManager.playEarconDisambigError();
     }
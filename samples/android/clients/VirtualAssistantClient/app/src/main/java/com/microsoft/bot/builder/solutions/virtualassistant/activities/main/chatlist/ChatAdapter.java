@@ -191,6 +191,38 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         notifyDataSetChanged();
     }
 
+    /**
+     * Show the welcome card of the last session until the fresh one arrives
+     */
+    public void addCachedWelcomeCard(BotConnectorActivity botConnectorActivity) {
+        addBotResponse(botConnectorActivity);
+        chatHistory.get(chatHistory.size() - 1).isCachedWelcomeCard = true;
+    }
+
+    /**
+     * Replace the cached welcome card in place, or add the card if none is shown
+     */
+    public void replaceWelcomeCard(BotConnectorActivity botConnectorActivity) {
+        ChatModel cached = null;
+        for (ChatModel chatModel : chatHistory) {
+            if (chatModel.isCachedWelcomeCard) cached = chatModel;
+        }
+        if (cached == null) {
+            addBotResponse(botConnectorActivity);
+            return;
+        }
+        ChatModel chatModel = new ChatModel(botConnectorActivity);
+        chatHistory.set(chatHistory.indexOf(cached), chatModel);
+        chatViewModel.setChatHistory(chatHistory);
+        int position = chatList.indexOf(cached);
+        if (position >= 0) {
+            chatList.set(position, chatModel);
+            // cards are rendered when view holders are created: remove and insert for a new view holder
+            notifyItemRemoved(position);
+            notifyItemInserted(position);
+        }
+    }
+
     public void addUserRequest(String request) {
         ChatModel chatModel = new ChatModel(request);
         chatHistory.add(chatModel);
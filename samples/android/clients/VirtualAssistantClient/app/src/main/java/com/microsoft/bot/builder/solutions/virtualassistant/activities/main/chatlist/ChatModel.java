@@ -5,6 +5,7 @@ import client.model.BotConnectorActivity;
 public class ChatModel {
     public BotConnectorActivity botConnectorActivity;
     public String userRequest;
+    public boolean isCachedWelcomeCard;// shown at startup until the fresh welcome card replaces it
 
     public ChatModel(BotConnectorActivity botConnectorActivity) {
         this.botConnectorActivity = botConnectorActivity;
@@ -20,6 +20,7 @@ import android.widget.EditText;
 import android.widget.Spinner;
 
 import com.google.gson.Gson;
+import com.microsoft.bot.builder.solutions.directlinespeech.SpeechEvents;
 import com.microsoft.bot.builder.solutions.directlinespeech.model.Configuration;
 import com.microsoft.bot.builder.solutions.virtualassistant.R;
 import com.microsoft.bot.builder.solutions.virtualassistant.activities.BaseActivity;
@@ -27,10 +28,6 @@ import com.microsoft.bot.builder.solutions.virtualassistant.utils.AppConfigurati
 import com.skydoves.colorpickerview.ColorPickerDialog;
 import com.skydoves.colorpickerview.listeners.ColorEnvelopeListener;
 
-import org.greenrobot.eventbus.EventBus;
-import org.greenrobot.eventbus.Subscribe;
-import org.greenrobot.eventbus.ThreadMode;
-
 import java.io.IOException;
 import java.util.TimeZone;
 
@@ -41,6 +38,10 @@ import butterknife.OnClick;
 import butterknife.OnEditorAction;
 import butterknife.OnTextChanged;
 import events.GpsLocationSent;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+
+import static com.microsoft.bot.builder.solutions.directlinespeech.async.EventHandlers.guard;
 
 /**
  * Bot Configuration Activity - settings to change the connection to the Bot
@@ -82,6 +83,7 @@ public class SettingsActivity extends BaseActivity {
     private Gson gson;
     private Integer colorBubbleBot, colorBubbleUser, colorTextBot, colorTextUser;
     private String[] keywords;
+    private Disposable gpsLocationSentSubscription;
 
     public static Intent getNewIntent(Context context) {
         return new Intent(context, SettingsActivity.class);
@@ -92,7 +94,8 @@ public class SettingsActivity extends BaseActivity {
         super.onCreate(savedInstanceState);
         setContentView(CONTENT_VIEW);
         ButterKnife.bind(this);
-        EventBus.getDefault().register(this);
+        gpsLocationSentSubscription = SpeechEvents.getDefault().getGpsLocationsSent(AndroidSchedulers.mainThread())
+                .subscribe(guard(this::onEventGpsLocationSent, this::onEventError), this::onEventError);
         gson = new Gson();
         initTimezoneAdapter();
 
@@ -125,7 +128,7 @@ public class SettingsActivity extends BaseActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        EventBus.getDefault().unregister(this);
+        gpsLocationSentSubscription.dispose();
     }
 
     @Override
@@ -292,9 +295,12 @@ public class SettingsActivity extends BaseActivity {
         finish();
     }
 
-    // EventBus: the GPS location was sent
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventGpsLocationSent(GpsLocationSent event) {
+    private void onEventError(Throwable throwable) {
+        Log.e(LOGTAG, "event handler failed", throwable);
+    }
+
+    // SpeechEvents: the GPS location was sent
+    private void onEventGpsLocationSent(GpsLocationSent event) {
         showGpsLocationSentDate();
     }
 
@@ -20,7 +20,9 @@ import android.location.Location;
 import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.RemoteException;
 import android.provider.Settings;
 import android.support.v4.app.NotificationCompat;
@@ -32,11 +34,24 @@ import android.widget.RemoteViews;
 import android.widget.Toast;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import com.microsoft.appcenter.analytics.Analytics;
 import com.microsoft.bot.builder.solutions.directlinespeech.ConfigurationManager;
+import com.microsoft.bot.builder.solutions.directlinespeech.ScriptedTurnDriver;
+import com.microsoft.bot.builder.solutions.directlinespeech.SpeechEvents;
 import com.microsoft.bot.builder.solutions.directlinespeech.SpeechSdk;
+import com.microsoft.bot.builder.solutions.directlinespeech.cache.WelcomeCardCache;
+import com.microsoft.bot.builder.solutions.directlinespeech.connector.ConnectorState;
+import com.microsoft.bot.builder.solutions.directlinespeech.diagnostics.DiagnosticsSession;
+import com.microsoft.bot.builder.solutions.directlinespeech.driver.ScriptedUtterance;
+import com.microsoft.bot.builder.solutions.directlinespeech.driver.TurnScript;
+import com.microsoft.bot.builder.solutions.directlinespeech.json.ActivityJson;
+import com.microsoft.bot.builder.solutions.directlinespeech.metrics.ScriptedTurnReport;
+import com.microsoft.bot.builder.solutions.directlinespeech.metrics.TurnMetrics;
 import com.microsoft.bot.builder.solutions.directlinespeech.model.Configuration;
+import com.microsoft.bot.builder.solutions.directlinespeech.transport.FakeDialogTransport;
 import com.microsoft.bot.builder.solutions.virtualassistant.ISpeechService;
 import com.microsoft.bot.builder.solutions.virtualassistant.R;
 import com.microsoft.bot.builder.solutions.virtualassistant.activities.main.SfxManager;
@@ -45,23 +60,28 @@ import com.microsoft.bot.builder.solutions.virtualassistant.utils.PlayStoreUtils
 import com.microsoft.bot.builder.solutions.virtualassistant.widgets.WidgetBotRequest;
 import com.microsoft.bot.builder.solutions.virtualassistant.widgets.WidgetBotResponse;
 
-import org.greenrobot.eventbus.EventBus;
-import org.greenrobot.eventbus.Subscribe;
-import org.greenrobot.eventbus.ThreadMode;
-
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Map;
+import java.io.Writer;
 
-import client.model.ActivityValue;
+import client.model.ActivityTypes;
 import client.model.BotConnectorActivity;
 import client.model.InputHints;
 import events.ActivityReceived;
 import events.Recognized;
 import events.RecognizedIntermediateResult;
 import events.RequestTimeout;
+import events.SynthesizerStarted;
 import events.SynthesizerStopped;
+import events.UtterancePlayed;
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
+
+import static com.microsoft.bot.builder.solutions.directlinespeech.async.EventHandlers.guard;
 
 /**
  * The SpeechService is the connection between bot and activities and widgets
@@ -78,10 +98,17 @@ public class SpeechService extends Service {
     public static final String ACTION_START_FOREGROUND_SERVICE = "ACTION_START_FOREGROUND_SERVICE";
     public static final String ACTION_STOP_FOREGROUND_SERVICE = "ACTION_STOP_FOREGROUND_SERVICE";
     public static final String ACTION_START_LISTENING = "ACTION_START_LISTENING";
+    private static final long DIAGNOSTICS_CHECK_PERIOD_MS = 1000;
+    private static final String METRICSFILENAME = "metrics.csv";
+    private static final String SCRIPTEDTURNSFILENAME = "scripted_turns.json";
+    private static final int SYNTHETIC_UTTERANCES = 5;
+    private static final long SCRIPTED_TURNS_SEED = 1;// same synthetic speech and injected failures on every run
+    private static final long FAKE_ENDPOINTING_MS = 500;// the fake recognizes this long after the end of the speech
 
     // STATE
     private ISpeechService.Stub binder;
     private SpeechSdk speechSdk;
+    private SpeechSdk pendingSpeechSdk;// replacement connecting while speechSdk keeps serving
     private ConfigurationManager configurationManager;
     private LocationProvider locationProvider;
     private Gson gson;
@@ -89,6 +116,15 @@ public class SpeechService extends Service {
     private boolean previousRequestWasTyped;
     private View animationView;
     private SfxManager sfxManager;
+    private Handler handler;
+    private boolean haveRecordAudioPermission = true;
+    private DiagnosticsSession diagnosticsSession;
+    private boolean diagnosticsStartedFromConfiguration;
+    private Runnable diagnosticsCheck;
+    private final TurnMetrics turnMetrics = new TurnMetrics();// kept when the SpeechSdk is reinitialized
+    private ScriptedTurnDriver scriptedTurnDriver;// while scripted turns run, the SpeechSdk reads its audio
+    private FakeDialogTransport scriptedTransport;// the dialog service of the scripted turns, null for the real one
+    private final CompositeDisposable subscriptions = new CompositeDisposable();// to the SpeechEvents
 
     // CONSTRUCTOR
     public SpeechService() {
@@ -143,6 +179,14 @@ public class SpeechService extends Service {
                 if (speechSdk != null) speechSdk.requestWelcomeCard();
             }
 
+            @Override
+            public String getCachedWelcomeCard(){
+                // readable before the SpeechSdk is initialized
+                File file = new File(getExternalFilesDir(null), SpeechSdk.WELCOMECARDFILENAME);
+                WelcomeCardCache cache = new WelcomeCardCache(file, WelcomeCardCache.DEFAULT_TTL_MS);
+                return cache.load(WelcomeCardCache.versionOf(configurationManager.getConfiguration()), System.currentTimeMillis());
+            }
+
             @Override
             public void injectReceivedActivity(String json){
                 if (speechSdk != null) speechSdk.activityReceived(json);
@@ -230,6 +274,53 @@ public class SpeechService extends Service {
                     Toast.makeText(getApplicationContext(), "Location is unknown", Toast.LENGTH_LONG).show();
                 }
             }
+
+            @Override
+            public String startDiagnostics(long durationMs, long maxBytes) {
+                return SpeechService.this.startDiagnostics(durationMs, maxBytes);
+            }
+
+            @Override
+            public void stopDiagnostics() {
+                SpeechService.this.stopDiagnostics();
+            }
+
+            @Override
+            public boolean isDiagnosticsActive() {
+                return diagnosticsSession != null;
+            }
+
+            @Override
+            public String getMetrics() {
+                JsonParser parser = new JsonParser();
+                JsonObject metrics = parser.parse(turnMetrics.toJson()).getAsJsonObject();
+                if (speechSdk != null && speechSdk.getOutboundScheduler() != null) {
+                    metrics.add("outbound", parser.parse(speechSdk.getOutboundScheduler().toJson()));
+                }
+                return metrics.toString();
+            }
+
+            @Override
+            public String exportMetricsCsv() {
+                File file = new File(getExternalFilesDir(null), METRICSFILENAME);
+                try (Writer writer = new FileWriter(file)) {
+                    turnMetrics.writeCsv(writer);
+                } catch (IOException e) {
+                    Log.e(TAG_FOREGROUND_SERVICE, "metrics export failed: " + e.getMessage());
+                    return null;
+                }
+                return file.getAbsolutePath();
+            }
+
+            @Override
+            public String startScriptedTurns(String directory, int turns, int turnsPerMinute, boolean fakeService) {
+                return SpeechService.this.startScriptedTurns(directory, turns, turnsPerMinute, fakeService);
+            }
+
+            @Override
+            public void stopScriptedTurns() {
+                if (scriptedTurnDriver != null) scriptedTurnDriver.stop();
+            }
         };
     }
 
@@ -249,8 +340,9 @@ public class SpeechService extends Service {
     public void onCreate() {
         super.onCreate();
         Log.d(TAG_FOREGROUND_SERVICE, "onCreate()");
-        EventBus.getDefault().register(this);
-        gson = new Gson();
+        subscribeToSpeechEvents();
+        gson = ActivityJson.create();
+        handler = new Handler(Looper.getMainLooper());
 
         configurationManager = new ConfigurationManager(this);
 
@@ -270,8 +362,17 @@ public class SpeechService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        EventBus.getDefault().unregister(this);
+        subscriptions.clear();
         stopListening();
+        if (pendingSpeechSdk != null) {
+            pendingSpeechSdk.close();
+            pendingSpeechSdk = null;
+        }
+        if (diagnosticsSession != null) {
+            handler.removeCallbacks(diagnosticsCheck);
+            diagnosticsSession.close();
+            diagnosticsSession = null;
+        }
     }
 
     @Override
@@ -376,18 +477,73 @@ public class SpeechService extends Service {
         locationProvider.startLocationUpdates();
     }
 
-    private void initializeSpeechSdk(boolean haveRecordAudioPermission){
-        if (speechSdk != null) {
-            Log.d(TAG_FOREGROUND_SERVICE, "resetting SpeechSDK");
+    private synchronized void initializeSpeechSdk(boolean haveRecordAudioPermission){
+        this.haveRecordAudioPermission = haveRecordAudioPermission;
+        Configuration configuration = configurationManager.getConfiguration();
+        if (configuration.speechSdkLogEnabled && !diagnosticsStartedFromConfiguration && diagnosticsSession == null) {
+            // the SDK logging setting captures one diagnostics session with the default budget
+            diagnosticsStartedFromConfiguration = true;
+            openDiagnosticsSession(DiagnosticsSession.DEFAULT_DURATION_MS, DiagnosticsSession.DEFAULT_MAX_BYTES);
+        }
+        if (pendingSpeechSdk != null) {
+            // superseded before it took over
+            pendingSpeechSdk.close();
+            pendingSpeechSdk = null;
+        }
+
+        ScriptedTurnDriver driver = scriptedTurnDriver;
+        if (speechSdk != null && speechSdk.haveRecordAudioPermission() == haveRecordAudioPermission
+                && speechSdk.getDiagnosticsSession() == diagnosticsSession
+                && speechSdk.getAudioInputStream() == (driver != null ? driver.getAudioInput() : null)
+                && !speechSdk.requiresNewConnector(configuration)) {
+            // e.g. rotation or a user name change: keep the connection
+            Log.d(TAG_FOREGROUND_SERVICE, "applying configuration to SpeechSDK");
+            speechSdk.applyConfiguration(configuration);
+            return;
+        }
+
+        SpeechSdk replacement = new SpeechSdk();
+        File directory = getExternalFilesDir(null);
+        if (driver != null) {
+            replacement.initialize(configuration, haveRecordAudioPermission, directory.getPath(), diagnosticsSession, scriptedTransport, driver.getAudioInput());
+        } else {
+            replacement.initialize(configuration, haveRecordAudioPermission, directory.getPath(), diagnosticsSession);
+        }
+        replacement.setTurnMetrics(turnMetrics);
+        replacement.monitorNetwork(this);
+        registerActivityHandlers(replacement);
+
+        final SpeechSdk previous = speechSdk;
+        if (previous != null && (previous.getConnectorState() == ConnectorState.READY || previous.getConnectorState() == ConnectorState.CONNECTING)) {
+            // bring the replacement up while the current connector keeps serving, swap once it is connected (or failed to)
+            Log.d(TAG_FOREGROUND_SERVICE, "warming up a new SpeechSDK");
+            pendingSpeechSdk = replacement;
+            replacement.setOnConnectorStateChangedListener((oldState, newState) -> {
+                if (oldState == ConnectorState.CONNECTING && (newState == ConnectorState.READY || newState == ConnectorState.IDLE)) {
+                    handler.post(() -> swapSpeechSdk(replacement));
+                }
+            });
+            replacement.connectAsync();
+        } else {
+            pendingSpeechSdk = replacement;
+            swapSpeechSdk(replacement);
+        }
+    }
+
+    private synchronized void swapSpeechSdk(SpeechSdk replacement) {
+        if (pendingSpeechSdk != replacement) return;// superseded meanwhile
+        pendingSpeechSdk = null;
+        replacement.setOnConnectorStateChangedListener(null);
+        SpeechSdk previous = speechSdk;
+        speechSdk = replacement;
+        if (previous != null) {
+            Log.d(TAG_FOREGROUND_SERVICE, "swapped SpeechSDK, draining the previous one");
             shouldListenAgain = false;
             previousRequestWasTyped = false;
-            speechSdk.disconnectAsync();
+            previous.drainAndClose();
         }
-        speechSdk = new SpeechSdk();
-        File directory = getExternalFilesDir(null);
         Configuration configuration = configurationManager.getConfiguration();
-        speechSdk.initialize(configuration, haveRecordAudioPermission, directory.getPath());
-        if (configuration.enableKWS) {
+        if (configuration.enableKWS && scriptedTurnDriver == null) {
             try {
                 binder.startKeywordListeningAsync(configuration.keyword);
             } catch (RemoteException e) {
@@ -396,6 +552,130 @@ public class SpeechService extends Service {
         }
     }
 
+    /**
+     * Capture the Speech SDK log, audio dumps and a transcript until the duration passes or the files reach maxBytes.
+     * The Speech SDK reads these settings when it is created, so it is replaced (connected if it was connected).
+     * @return directory of the captured files
+     */
+    private String startDiagnostics(long durationMs, long maxBytes) {
+        if (diagnosticsSession != null) {
+            handler.removeCallbacks(diagnosticsCheck);
+            diagnosticsSession.close();
+        }
+        DiagnosticsSession session = openDiagnosticsSession(durationMs, maxBytes);
+        restartSpeechSdk();
+        return session.getDirectory().getAbsolutePath();
+    }
+
+    private void stopDiagnostics() {
+        if (diagnosticsSession == null) return;
+        DiagnosticsSession session = diagnosticsSession;
+        diagnosticsSession = null;
+        handler.removeCallbacks(diagnosticsCheck);
+        restartSpeechSdk();// without the session, so the Speech SDK stops writing
+        session.close();
+        Log.i(TAG_FOREGROUND_SERVICE, "diagnostics stopped, " + session.getBytesUsed() + " bytes in " + session.getDirectory());
+    }
+
+    private DiagnosticsSession openDiagnosticsSession(long durationMs, long maxBytes) {
+        diagnosticsSession = new DiagnosticsSession(getExternalFilesDir(null), durationMs, maxBytes, DiagnosticsSession.DEFAULT_MAX_SESSIONS);
+        if (diagnosticsCheck == null) {
+            diagnosticsCheck = () -> {
+                if (diagnosticsSession == null) return;
+                if (diagnosticsSession.isExpired()) {
+                    stopDiagnostics();
+                } else {
+                    handler.postDelayed(diagnosticsCheck, DIAGNOSTICS_CHECK_PERIOD_MS);
+                }
+            };
+        }
+        handler.postDelayed(diagnosticsCheck, DIAGNOSTICS_CHECK_PERIOD_MS);
+        Log.i(TAG_FOREGROUND_SERVICE, "diagnostics started in " + diagnosticsSession.getDirectory());
+        return diagnosticsSession;
+    }
+
+    /**
+     * Replace the SpeechSdk by one that reads the audio of scripted turns instead of the microphone, run the turns,
+     * then go back to the microphone
+     * @param directory .wav files of 16 kHz, 16 bit, mono PCM, each with an optional .txt transcript; null for synthetic speech
+     * @param fakeService true for a FakeDialogTransport, which recognizes the transcripts; false for the configured endpoint
+     * @return path of the JSON report, written after each turn; null if the script cannot be read
+     */
+    private synchronized String startScriptedTurns(String directory, int turns, int turnsPerMinute, boolean fakeService) {
+        TurnScript script;
+        try {
+            script = directory != null ? TurnScript.fromDirectory(new File(directory)) : TurnScript.synthetic(SYNTHETIC_UTTERANCES, SCRIPTED_TURNS_SEED);
+        } catch (IOException e) {
+            Log.e(TAG_FOREGROUND_SERVICE, "scripted turns: " + e.getMessage());
+            return null;
+        }
+        if (scriptedTurnDriver != null) scriptedTurnDriver.stop();
+
+        final File reportFile = new File(getExternalFilesDir(null), SCRIPTEDTURNSFILENAME);
+        final FakeDialogTransport fake = fakeService ? new FakeDialogTransport(SCRIPTED_TURNS_SEED) : null;
+        final ScriptedTurnDriver driver = new ScriptedTurnDriver(script, turns, turnsPerMinute);
+        driver.setListener(new ScriptedTurnDriver.Listener() {
+            @Override
+            public void onTurnStarting(ScriptedUtterance utterance) {
+                if (fake == null) return;
+                fake.setRecognizedText(utterance.getTranscript() != null ? utterance.getTranscript() : utterance.getName());
+                fake.setLatencies(FakeDialogTransport.DEFAULT_CONNECT_LATENCY_MS, FakeDialogTransport.DEFAULT_SEND_LATENCY_MS,
+                        FakeDialogTransport.DEFAULT_REPLY_LATENCY_MS, utterance.getDurationMs() + FAKE_ENDPOINTING_MS);
+            }
+
+            @Override
+            public void onTurnCompleted(ScriptedTurnReport report) {
+                writeScriptedTurnReport(reportFile, report);
+            }
+
+            @Override
+            public void onCompleted(ScriptedTurnReport report) {
+                writeScriptedTurnReport(reportFile, report);
+                handler.post(() -> finishScriptedTurns(driver));
+            }
+        });
+        scriptedTurnDriver = driver;
+        scriptedTransport = fake;
+        shouldListenAgain = false;
+        initializeSpeechSdk(haveRecordAudioPermission);
+        driver.start(pendingSpeechSdk != null ? pendingSpeechSdk : speechSdk);
+        Log.i(TAG_FOREGROUND_SERVICE, "scripted turns started, report in " + reportFile);
+        return reportFile.getAbsolutePath();
+    }
+
+    private synchronized void finishScriptedTurns(ScriptedTurnDriver driver) {
+        if (scriptedTurnDriver != driver) return;// a new run replaced it
+        scriptedTurnDriver = null;
+        scriptedTransport = null;
+        Log.i(TAG_FOREGROUND_SERVICE, "scripted turns done: " + driver.getReport().getTurnCount() + " turns");
+        restartSpeechSdk();// back to the microphone
+    }
+
+    private void writeScriptedTurnReport(File file, ScriptedTurnReport report) {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(report.toJson());
+        } catch (IOException e) {
+            Log.e(TAG_FOREGROUND_SERVICE, "scripted turns report failed: " + e.getMessage());
+        }
+    }
+
+    private void restartSpeechSdk() {
+        if (speechSdk == null) return;// the next initialization picks up the session
+        initializeSpeechSdk(haveRecordAudioPermission);// a connected SpeechSDK is replaced by a connected one
+    }
+
+    // handle specific activities as soon as they arrive, decoding only their payload
+    private void registerActivityHandlers(SpeechSdk speechSdk) {
+        speechSdk.getActivityRouter().register(ActivityTypes.EVENT.toString(), "OpenDefaultApp", OpenDefaultApp.class, (activity, openDefaultApp) -> {
+            final String inputHint = activity.getHeader().getInputHint();
+            handler.post(() -> {
+                Log.i(TAG_FOREGROUND_SERVICE, "OpenDefaultApp");
+                openDefaultApp(openDefaultApp);
+                updateShouldListenAgain(inputHint);
+            });
+        });
+    }
+
     // Initialize listening animation view
     private void initializeAnimation() {
         if (Settings.canDrawOverlays(this)) {
@@ -416,84 +696,121 @@ public class SpeechService extends Service {
         }
     }
 
-    // EventBus: the synthesizer has stopped playing
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventSynthesizerStopped(SynthesizerStopped event) {
+    // the events of the current SpeechSdk and of its replacement, the playback logs off the main thread
+    private void subscribeToSpeechEvents() {
+        SpeechEvents events = SpeechEvents.getDefault();
+        Scheduler main = AndroidSchedulers.mainThread();
+        subscriptions.add(events.getPlaybackEvents(Schedulers.single()).ofType(SynthesizerStarted.class)
+                .subscribe(guard(this::onEventSynthesizerStarted, this::onEventError), this::onEventError));
+        subscriptions.add(events.getPlaybackEvents(Schedulers.single()).ofType(UtterancePlayed.class)
+                .subscribe(guard(this::onEventUtterancePlayed, this::onEventError), this::onEventError));
+        subscriptions.add(events.getPlaybackEvents(main).ofType(SynthesizerStopped.class)
+                .subscribe(guard(this::onEventSynthesizerStopped, this::onEventError), this::onEventError));
+        subscriptions.add(events.getRequestTimeouts(main).subscribe(guard(this::onEventRequestTimeout, this::onEventError), this::onEventError));
+        subscriptions.add(events.getIntermediateResults(main).subscribe(guard(this::onEventRecognizedIntermediateResult, this::onEventError), this::onEventError));
+        subscriptions.add(events.getRecognized(main).subscribe(guard(this::onEventRecognized, this::onEventError), this::onEventError));
+        subscriptions.add(events.getActivities(main).subscribe(guard(this::onEventActivityReceived, this::onEventError), this::onEventError));
+    }
+
+    private void onEventError(Throwable throwable) {
+        Log.e(TAG_FOREGROUND_SERVICE, "event handler failed", throwable);
+    }
+
+    // SpeechEvents: the synthesizer has started playing
+    private void onEventSynthesizerStarted(SynthesizerStarted event) {
+        Log.i(TAG_FOREGROUND_SERVICE, "First audio latency (ms): " + event.firstAudioLatencyMs);
+        turnMetrics.mark(TurnMetrics.Mark.FIRST_TTS_BYTE, event.firstByteAtNanos);
+        turnMetrics.mark(TurnMetrics.Mark.PLAYBACK_START, event.startedAtNanos);
+    }
+
+    // SpeechEvents: the synthesizer has played the audio of an activity
+    private void onEventUtterancePlayed(UtterancePlayed event) {
+        long kbps = event.durationMs > 0 ? event.bytesReceived * 8 / event.durationMs : 0;
+        Log.i(TAG_FOREGROUND_SERVICE, "TTS (" + (event.cached ? "cached" : event.outputFormat) + "): " + event.bytesReceived + " bytes for " + event.durationMs
+                + " ms of audio (" + kbps + " kbps), first audio after " + event.firstAudioLatencyMs + " ms");
+        if (speechSdk != null && speechSdk.getSynthesizer().getCache() != null) {
+            Log.i(TAG_FOREGROUND_SERVICE, speechSdk.getSynthesizer().getCache().toString());
+        }
+    }
+
+    // SpeechEvents: the synthesizer has stopped playing
+    private void onEventSynthesizerStopped(SynthesizerStopped event) {
+        turnMetrics.endTurnAfterPlayback(event.stoppedAtNanos);
+
         if (previousRequestWasTyped){
             previousRequestWasTyped = false;
             shouldListenAgain = false;
         }
 
-        if(shouldListenAgain){
+        if (speechSdk == null) {
+            shouldListenAgain = false;
+        } else if(shouldListenAgain){
             shouldListenAgain = false;
             Log.i(TAG_FOREGROUND_SERVICE, "Listening again");
-            speechSdk.listenOnceAsync();
+            speechSdk.listenForFollowUpAsync(event.stoppedAtNanos);
+        } else {
+            // no answer expected, or the playback was stopped
+            speechSdk.endConversation();
         }
 
     }
 
-    // EventBus: the previous request timed out
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventRequestTimeout(RequestTimeout event) {
+    // SpeechEvents: the previous request timed out
+    private void onEventRequestTimeout(RequestTimeout event) {
+        turnMetrics.endTurn(true);
         broadcastTimeout(event);
         stopListening();
     }
 
-    // EventBus: the user spoke and the app recognized intermediate speech
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventRecognizedIntermediateResult(RecognizedIntermediateResult event) {
+    // SpeechEvents: the user spoke and the app recognized intermediate speech
+    private void onEventRecognizedIntermediateResult(RecognizedIntermediateResult event) {
         updateBotRequestWidget(event.recognized_speech);
     }
 
-    // EventBus: the user spoke and the app recognized the speech. Disconnect mic.
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventRecognized(Recognized event) {
+    // SpeechEvents: the user spoke and the app recognized the speech. Disconnect mic.
+    private void onEventRecognized(Recognized event) {
         updateBotRequestWidget(event.recognized_speech);
         stopListening();
     }
 
-    // EventBus: received a response from Bot
-    @Subscribe(threadMode = ThreadMode.MAIN)
-    public void onEventActivityReceived(ActivityReceived activityReceived) throws IOException {
+    // SpeechEvents: received a response from Bot
+    private void onEventActivityReceived(ActivityReceived activityReceived) {
         if (activityReceived.botConnectorActivity != null) {
             BotConnectorActivity botConnectorActivity = activityReceived.botConnectorActivity;
             Analytics.trackEvent("Activity received");
 
-            switch (botConnectorActivity.getType()) {
+            // an activity without type is handled as the default case, not as a NullPointerException
+            String type = botConnectorActivity.getType();
+            switch (type != null ? type : "") {
                 case "message":
                     // update Response widget
                     updateBotResponseWidget(botConnectorActivity.getText());
                     // update client apps
                     broadcastActivity(botConnectorActivity);
                     break;
-                case "dialogState":
-                    Log.i(TAG_FOREGROUND_SERVICE, "Activity with DialogState");
-                    break;
                 case "PlayLocalFile":
                     Log.i(TAG_FOREGROUND_SERVICE, "Activity with PlayLocalFile");
                     playMediaStream(botConnectorActivity.getFile());
                     break;
-                case "event":
-                    if (botConnectorActivity.getName().equals("OpenDefaultApp")) {
-                        Log.i(TAG_FOREGROUND_SERVICE, "OpenDefaultApp");
-                        openDefaultApp(botConnectorActivity);
-                    } else {
-                        // all other events are broadcast for other apps
-                        broadcastWidgetUpdate(botConnectorActivity);
-                    }
-                    break;
                 default:
                     // all other events are broadcast for other apps
                     broadcastWidgetUpdate(botConnectorActivity);
                     break;
             }
 
-            // make the bot automatically listen again
-            if(botConnectorActivity.getInputHint() != null){
-                Log.i(TAG_FOREGROUND_SERVICE, "InputHint: "+botConnectorActivity.getInputHint());
-                if(botConnectorActivity.getInputHint().equals(InputHints.EXPECTINGINPUT.toString())){
-                    shouldListenAgain = true;
-                }
+            // a typed request is not followed by listening, even if its replies are not spoken
+            if (!previousRequestWasTyped) updateShouldListenAgain(botConnectorActivity.getInputHint());
+        }
+    }
+
+    // make the bot automatically listen again
+    private void updateShouldListenAgain(String inputHint) {
+        // scripted turns do their own listening
+        if (scriptedTurnDriver != null) return;
+        if(inputHint != null){
+            Log.i(TAG_FOREGROUND_SERVICE, "InputHint: "+inputHint);
+            if(inputHint.equals(InputHints.EXPECTINGINPUT.toString())){
+                shouldListenAgain = true;
             }
         }
     }
@@ -510,17 +827,8 @@ public class SpeechService extends Service {
         }
     }
 
-    private void openDefaultApp(BotConnectorActivity botConnectorActivity) {
-        String intentStr = null;
-        if (botConnectorActivity.getValue() instanceof String) {
-            intentStr = (String) botConnectorActivity.getValue();
-        } else if (botConnectorActivity.getValue() instanceof Map) {
-            intentStr = gson.toJson(botConnectorActivity.getValue());
-        } else {
-            intentStr = ((ActivityValue) botConnectorActivity.getValue()).getUri();
-        }
-        if (intentStr != null) {
-            OpenDefaultApp event = gson.fromJson(intentStr, OpenDefaultApp.class);
+    private void openDefaultApp(OpenDefaultApp event) {
+        if (event != null) {
             if (event.mapsUri != null && !event.mapsUri.isEmpty()) {
                 final String gpscoords = event.mapsUri.replace("geo:", "");
 
@@ -626,10 +934,12 @@ public class SpeechService extends Service {
     }
 
     private void startListening() {
-        Toast.makeText(getApplicationContext(), "Listening", Toast.LENGTH_LONG).show();
         if (speechSdk == null) {
             initializeSpeechSdk(true); // assume true - for this to work the app must have been launched once for permission dialog
         }
+        // capture what the user says while connecting
+        speechSdk.startCapture();
+        Toast.makeText(getApplicationContext(), "Listening", Toast.LENGTH_LONG).show();
         speechSdk.connectAsync();
         speechSdk.listenOnceAsync();
         if (animationView == null) {
@@ -0,0 +1,87 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.benchmarks;
+
+import com.google.gson.Gson;
+import com.microsoft.bot.builder.solutions.directlinespeech.activity.ActivityFactory;
+import com.microsoft.bot.builder.solutions.directlinespeech.activity.SuggestedActionList;
+import com.microsoft.bot.builder.solutions.directlinespeech.json.ActivityJson;
+import com.microsoft.bot.builder.solutions.directlinespeech.routing.ActivityHeader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import client.model.BotConnectorActivity;
+import client.model.ChannelAccount;
+
+/**
+ * Decoding of the activities received and encoding of those sent, per activity.
+ * With the gc profiler, gc.alloc.rate.norm is the allocation per activity.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class ActivityCodecBenchmark {
+
+    // STATE
+    private Gson gson;
+    private ActivityFactory activityFactory;
+    private SuggestedActionList suggestedActions;
+    private String messageJson;// a weather reply: adaptive card and suggested actions
+    private BotConnectorActivity message;
+
+    @Setup
+    public void setup() throws IOException {
+        gson = ActivityJson.create();
+        ChannelAccount from = new ChannelAccount();
+        from.setId("va-user");
+        from.setName("User");
+        activityFactory = new ActivityFactory(from, "en-us");
+        suggestedActions = new SuggestedActionList();
+        messageJson = readResource("/message_activity.json");
+        message = gson.fromJson(messageJson, BotConnectorActivity.class);
+    }
+
+    /**
+     * What every received activity goes through before it is routed
+     */
+    @Benchmark
+    public ActivityHeader peekHeader() throws IOException {
+        return ActivityHeader.peek(messageJson);
+    }
+
+    @Benchmark
+    public BotConnectorActivity decodeMessage() {
+        return gson.fromJson(messageJson, BotConnectorActivity.class);
+    }
+
+    @Benchmark
+    public String encodeMessage() {
+        return gson.toJson(activityFactory.createMessage("what's the weather in Seattle"));
+    }
+
+    @Benchmark
+    public String encodeEvent() {
+        return gson.toJson(activityFactory.createEvent("VA.Location", null, "47.6062,-122.3321"));
+    }
+
+    @Benchmark
+    public boolean updateSuggestedActions() {
+        return suggestedActions.update(message);
+    }
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream input = ActivityCodecBenchmark.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) > 0) output.write(buffer, 0, read);
+            return output.toString("UTF-8");
+        }
+    }
+}
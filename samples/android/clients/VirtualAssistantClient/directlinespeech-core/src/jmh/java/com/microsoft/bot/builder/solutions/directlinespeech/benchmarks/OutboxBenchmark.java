@@ -0,0 +1,72 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.benchmarks;
+
+import com.microsoft.bot.builder.solutions.directlinespeech.outbox.ActivityOutbox;
+import com.microsoft.bot.builder.solutions.directlinespeech.outbox.OutboundScheduler;
+import com.microsoft.bot.builder.solutions.directlinespeech.outbox.OutboxEntry;
+import com.microsoft.bot.builder.solutions.directlinespeech.outbox.SendPriority;
+import com.microsoft.bot.builder.solutions.directlinespeech.outbox.TokenBucket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * An activity through the outbox: queued in the journal, taken by the scheduler, acknowledged.
+ * The journal is written to a temporary file, its I/O is part of the cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class OutboxBenchmark {
+
+    // CONSTANTS
+    private static final String ACTIVITY_JSON = "{\"type\":\"message\",\"id\":\"d9c1b54b-8fb5-4c1c-9a6c-5b9bd1f5f1a2\","
+            + "\"from\":{\"id\":\"va-user\",\"name\":\"User\"},\"text\":\"what's the weather in Seattle\"}";
+
+    // STATE
+    private File journalFile;
+    private ActivityOutbox outbox;
+    private OutboundScheduler scheduler;
+    private OutboundScheduler.Sender sender;
+    private TokenBucket tokenBucket;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        journalFile = File.createTempFile("outbox", ".journal");
+        outbox = new ActivityOutbox(journalFile, ActivityOutbox.DEFAULT_MAX_BYTES);
+        // not rate limited, only the scheduling is measured
+        scheduler = new OutboundScheduler(outbox, OutboundScheduler.DEFAULT_MAX_IN_FLIGHT, Integer.MAX_VALUE, Double.MAX_VALUE);
+        sender = entry -> scheduler.onSendCompleted(entry, true);
+        tokenBucket = new TokenBucket(Integer.MAX_VALUE, Double.MAX_VALUE, System.nanoTime());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        outbox.close();
+        journalFile.delete();
+    }
+
+    @Benchmark
+    public long enqueueAndDrain() {
+        outbox.enqueue(ACTIVITY_JSON, null, SendPriority.USER);
+        return scheduler.drain(sender);
+    }
+
+    @Benchmark
+    public OutboxEntry enqueueCoalesced() {
+        // replaces the previous location, which is never sent
+        return outbox.enqueue(ACTIVITY_JSON, "VA.Location", SendPriority.BACKGROUND);
+    }
+
+    @Benchmark
+    public boolean acquireToken() {
+        return tokenBucket.tryAcquire(System.nanoTime());
+    }
+}
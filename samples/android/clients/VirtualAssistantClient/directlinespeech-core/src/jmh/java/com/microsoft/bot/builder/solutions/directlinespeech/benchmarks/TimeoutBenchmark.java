@@ -0,0 +1,57 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.benchmarks;
+
+import com.microsoft.bot.builder.solutions.directlinespeech.correlation.ReplyCorrelator;
+import com.microsoft.bot.builder.solutions.directlinespeech.correlation.TimerWheel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of a request timeout that does not fire: scheduled when the request is sent, cancelled by its reply
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class TimeoutBenchmark {
+
+    // CONSTANTS
+    private static final int ACTIVITY_IDS = 1024;
+    private static final Runnable NO_OP = () -> { };
+
+    // STATE
+    private TimerWheel timerWheel;
+    private ReplyCorrelator replyCorrelator;
+    private String[] activityIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        timerWheel = new TimerWheel("TimeoutBenchmark");
+        replyCorrelator = new ReplyCorrelator(timerWheel);
+        activityIds = new String[ACTIVITY_IDS];
+        for (int i = 0; i < ACTIVITY_IDS; i++) activityIds[i] = "activity-" + i;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        return timerWheel.schedule(NO_OP, ReplyCorrelator.DEFAULT_TIMEOUT_MS).cancel();
+    }
+
+    @Benchmark
+    public long expectAndReply() {
+        String activityId = activityIds[next++ & (ACTIVITY_IDS - 1)];
+        long now = System.nanoTime();
+        replyCorrelator.expect(activityId, "message", now);
+        return replyCorrelator.onReply(activityId, now);
+    }
+}
@@ -229,7 +229,7 @@ public class BotConnectorActivity {
         return value;
     }
 
-    public void setValue(ActivityValue value) {
+    public void setValue(Object value) {
         this.value = value;
     }
 
@@ -0,0 +1,73 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.activity;
+
+import java.util.UUID;
+
+import client.model.Activity;
+import client.model.ActivityTypes;
+import client.model.ChannelAccount;
+
+/**
+ * Builds the activities sent to the bot. Each gets a new id, which the replies carry as replyToId.
+ */
+public class ActivityFactory {
+
+    // CONSTANTS
+    public static final String WELCOME_EVENT_NAME = "startConversation";
+
+    // STATE
+    private final ChannelAccount from;
+    private final String locale;
+
+    /**
+     * @param from the user, null if unknown; changes to it apply to the activities built afterwards
+     * @param locale of the events
+     */
+    public ActivityFactory(ChannelAccount from, String locale) {
+        this.from = from;
+        this.locale = locale;
+    }
+
+    /**
+     * A typed message
+     */
+    public Activity createMessage(String text) {
+        Activity activity = new Activity();
+        activity.setId(UUID.randomUUID().toString());
+        activity.text(text);
+        activity.type(ActivityTypes.MESSAGE);
+        if (from != null) activity.setFrom(from);
+        return activity;
+    }
+
+    /**
+     * Event Activity with inputs: name, channel data, and value
+     */
+    public Activity createEvent(String name, Object channelData, Object value) {
+        Activity activity = new Activity();
+        activity.setId(UUID.randomUUID().toString());
+        activity.setType(ActivityTypes.EVENT);
+        activity.setLocale(locale);
+        if (from != null) activity.setFrom(from);
+        activity.setChannelData(channelData);
+        activity.setName(name);
+        activity.setValue(value);
+        return activity;
+    }
+
+    /**
+     * The event the bot answers with its welcome card
+     */
+    public Activity createWelcomeRequest() {
+//        from: user object,
+//        name: 'startConversation',
+//        type: 'event'
+//        "value":""
+        Activity activity = new Activity();
+        activity.setId(UUID.randomUUID().toString());
+        activity.name(WELCOME_EVENT_NAME);
+        activity.type(ActivityTypes.EVENT);
+        if (from != null) activity.setFrom(from);
+        activity.setValue("");
+        return activity;
+    }
+}
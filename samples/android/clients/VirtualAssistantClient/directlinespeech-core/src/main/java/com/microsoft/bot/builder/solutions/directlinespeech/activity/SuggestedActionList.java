@@ -0,0 +1,52 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.activity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import client.model.BotConnectorActivity;
+import client.model.CardAction;
+
+/**
+ * The suggested actions offered to the user: those of the last activity that had some
+ */
+public class SuggestedActionList {
+
+    // STATE
+    private final ArrayList<CardAction> actions = new ArrayList<>();
+
+    /**
+     * @return true if the activity has suggested actions, which replace the current ones
+     */
+    public synchronized boolean update(BotConnectorActivity activity) {
+        List<CardAction> received = actionsOf(activity);
+        if (received == null) return false;
+        actions.clear();
+        actions.addAll(received);
+        return true;
+    }
+
+    /**
+     * Offer the suggested actions of an earlier activity (e.g. the cached welcome card) until a fresh activity has some
+     * @return false if there are actions already, which are kept
+     */
+    public synchronized boolean restore(BotConnectorActivity activity) {
+        if (!actions.isEmpty()) return false;
+        return update(activity);
+    }
+
+    /**
+     * @return a copy of the current actions
+     */
+    public synchronized ArrayList<CardAction> get() {
+        return new ArrayList<>(actions);
+    }
+
+    public synchronized void clear() {
+        actions.clear();
+    }
+
+    private static List<CardAction> actionsOf(BotConnectorActivity activity) {
+        if (activity == null || activity.getSuggestedActions() == null) return null;
+        return activity.getSuggestedActions().getActions();
+    }
+}
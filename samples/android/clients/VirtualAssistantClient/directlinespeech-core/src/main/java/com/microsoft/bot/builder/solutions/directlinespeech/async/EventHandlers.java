@@ -0,0 +1,33 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.async;
+
+import io.reactivex.functions.Consumer;
+
+/**
+ * Event handlers that survive their own failures.
+ * A Flowable cancels its subscription when the onNext handler throws, so a single bad event would silently stop
+ * every later event of the stream. A guarded handler reports the failure and keeps receiving.
+ */
+public final class EventHandlers {
+
+    private EventHandlers() {
+    }
+
+    /**
+     * @param handler handler of each event
+     * @param onError called with what the handler threw, or with the error of the stream
+     * @return a handler that never throws
+     */
+    public static <T> Consumer<T> guard(Consumer<? super T> handler, Consumer<? super Throwable> onError) {
+        return event -> {
+            try {
+                handler.accept(event);
+            } catch (Throwable throwable) {
+                try {
+                    onError.accept(throwable);
+                } catch (Throwable ignored) {
+                    // nothing left to report to
+                }
+            }
+        };
+    }
+}
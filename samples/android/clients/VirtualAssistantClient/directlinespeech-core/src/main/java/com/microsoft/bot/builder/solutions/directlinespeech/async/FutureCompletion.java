@@ -0,0 +1,152 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.async;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Maybe;
+import io.reactivex.MaybeEmitter;
+
+/**
+ * Turns the plain Futures returned by the Speech SDK into Rx Maybes without parking a thread per Future.
+ * Pending Futures are polled by a small fixed pool with a delay growing from 1 ms to 4 ms, so a quick operation
+ * (e.g. sending an activity) is seen complete within a few milliseconds. A Future still pending after 100 ms is a
+ * long operation (e.g. listening, keyword recognition): its delay keeps growing to 32 ms, so it costs about 30 polls
+ * a second. The number of threads stays the same however many operations are in flight.
+ * The Futures of the Speech SDK have no completion callback, polling is the only way to learn they are done.
+ *
+ * A Future that completes with null (e.g. Future&lt;Void&gt;) completes the Maybe without a value.
+ * Callbacks run on the completion pool; keep them short or observe on another scheduler.
+ */
+public final class FutureCompletion {
+
+    // CONSTANTS
+    private static final int POOL_SIZE = 2;
+    private static final long MIN_POLL_DELAY_MS = 1;
+    private static final long FAST_POLL_DELAY_MS = 4;// the latency added to a quick completion, at most
+    private static final long FAST_PHASE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_POLL_DELAY_MS = 32;// the latency added to the completion of a long operation, at most
+    public static final long NO_TIMEOUT = 0;
+
+    // STATE
+    private static final ScheduledExecutorService scheduler = createScheduler();
+
+    private FutureCompletion() {
+    }
+
+    /**
+     * @param future Future to wait for
+     * @return a Maybe that succeeds with the result, completes if the result is null, or fails with the cause of the failure
+     */
+    public static <T> Maybe<T> toMaybe(Future<T> future) {
+        return toMaybe(future, NO_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param future Future to wait for
+     * @param timeout time to wait before the Future is cancelled and the Maybe fails with a TimeoutException, or NO_TIMEOUT
+     * @param unit unit of timeout
+     * @return a Maybe that succeeds with the result, completes if the result is null, or fails with the cause of the failure.
+     * Disposing it cancels the Future.
+     */
+    public static <T> Maybe<T> toMaybe(Future<T> future, long timeout, TimeUnit unit) {
+        final long timeoutNanos = unit.toNanos(timeout);
+        return Maybe.create(emitter -> {
+            Poll<T> poll = new Poll<>(future, emitter, timeoutNanos);
+            emitter.setCancellable(poll::cancel);
+            poll.run();
+        });
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "FutureCompletion-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(POOL_SIZE, threadFactory);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static final class Poll<T> implements Runnable {
+
+        private final Future<T> future;
+        private final MaybeEmitter<T> emitter;
+        private final long startNanos = System.nanoTime();
+        private final long deadline;
+        private long delayMs = MIN_POLL_DELAY_MS;
+        private volatile ScheduledFuture<?> scheduled;
+
+        Poll(Future<T> future, MaybeEmitter<T> emitter, long timeoutNanos) {
+            this.future = future;
+            this.emitter = emitter;
+            this.deadline = timeoutNanos > 0 ? startNanos + timeoutNanos : 0;
+        }
+
+        @Override
+        public void run() {
+            if (emitter.isDisposed()) {
+                return;
+            }
+            if (future.isDone()) {
+                complete();
+                return;
+            }
+            final long now = System.nanoTime();
+            if (deadline != 0 && now - deadline >= 0) {
+                future.cancel(true);
+                emitter.tryOnError(new TimeoutException());
+                return;
+            }
+            try {
+                scheduled = scheduler.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+                long maxDelayMs = now - startNanos < FAST_PHASE_NANOS ? FAST_POLL_DELAY_MS : MAX_POLL_DELAY_MS;
+                delayMs = Math.min(delayMs * 2, maxDelayMs);
+            } catch (RejectedExecutionException e) {
+                emitter.tryOnError(e);
+            }
+        }
+
+        private void complete() {
+            final T result;
+            try {
+                result = future.get();
+            } catch (ExecutionException e) {
+                emitter.tryOnError(e.getCause() != null ? e.getCause() : e);
+                return;
+            } catch (CancellationException e) {
+                emitter.tryOnError(e);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.tryOnError(e);
+                return;
+            }
+            if (result == null) {
+                emitter.onComplete();
+            } else {
+                emitter.onSuccess(result);
+            }
+        }
+
+        void cancel() {
+            ScheduledFuture<?> pending = scheduled;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            if (!future.isDone()) {
+                future.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+/**
+ * A stream of 16 kHz, 16 bit, mono PCM audio to be played by the Synthesizer
+ */
+public interface AudioSource {
+
+    /**
+     * Read the next chunk of audio, blocking until some is available
+     * @param buffer buffer to fill from index 0
+     * @return number of bytes read, or 0 at the end of the stream
+     */
+    int read(byte[] buffer);
+
+    /**
+     * Release the stream. Called once, whether or not it was read to the end.
+     */
+    void close();
+}
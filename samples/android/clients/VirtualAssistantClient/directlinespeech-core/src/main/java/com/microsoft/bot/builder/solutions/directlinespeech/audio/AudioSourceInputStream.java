@@ -0,0 +1,62 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import java.io.InputStream;
+
+/**
+ * Reads an AudioSource as an InputStream, e.g. to parse compressed audio
+ */
+public class AudioSourceInputStream extends InputStream {
+
+    // CONSTANTS
+    private static final int BUFFER_SIZE = 4096;
+
+    // STATE
+    private final AudioSource source;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int length;
+    private boolean ended;
+
+    public AudioSourceInputStream(AudioSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read() {
+        if (!fill()) return -1;
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int count = Math.min(len, length - position);
+        System.arraycopy(buffer, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return length - position;
+    }
+
+    @Override
+    public void close() {
+        source.close();
+    }
+
+    private boolean fill() {
+        if (position < length) return true;
+        if (ended) return false;
+        int read = source.read(buffer);
+        if (read <= 0) {
+            ended = true;
+            return false;
+        }
+        position = 0;
+        length = read;
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+/**
+ * A prompt found in the disk tier of the TtsCache, read by the first read() (on the thread that plays it) rather than
+ * where the activity was received. If it cannot be read, e.g. it was evicted meanwhile, the service stream is played.
+ */
+public class DiskCachedAudioSource implements AudioSource {
+
+    // STATE
+    private final TtsCache cache;
+    private final String key;
+    private final AudioSource serviceSource;
+    private AudioSource source;// chosen by the first read
+    private volatile boolean isCached;
+
+    /**
+     * @param serviceSource the audio of the service, closed unread if the prompt is read from the cache
+     */
+    public DiskCachedAudioSource(TtsCache cache, String key, AudioSource serviceSource) {
+        this.cache = cache;
+        this.key = key;
+        this.serviceSource = serviceSource;
+    }
+
+    @Override
+    public int read(byte[] buffer) {
+        if (source == null) {
+            byte[] pcm = cache.get(key);
+            if (pcm != null) {
+                serviceSource.close();
+                source = new PcmAudioSource(pcm);
+                isCached = true;
+            } else {
+                source = serviceSource;
+            }
+        }
+        return source.read(buffer);
+    }
+
+    @Override
+    public void close() {
+        if (source != null) {
+            source.close();
+        } else {
+            serviceSource.close();
+        }
+    }
+
+    /**
+     * @return true if the prompt was read from the cache, false if the service stream is played or nothing was read yet
+     */
+    public boolean isCached() {
+        return isCached;
+    }
+}
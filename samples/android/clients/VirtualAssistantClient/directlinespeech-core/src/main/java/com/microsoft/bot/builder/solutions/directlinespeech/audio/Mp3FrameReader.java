@@ -0,0 +1,110 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits an MPEG audio layer III stream into frames. A leading ID3v2 tag and bytes between frames are skipped.
+ */
+public class Mp3FrameReader implements PacketReader {
+
+    // CONSTANTS
+    private static final int HEADER_SIZE = 4;
+    private static final int[] BITRATES_V1 = {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320};
+    private static final int[] BITRATES_V2 = {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160};
+    private static final int[] SAMPLE_RATES_V1 = {44100, 48000, 32000};
+
+    // STATE
+    private final InputStream in;
+    private final byte[] header = new byte[HEADER_SIZE];
+    private boolean started;
+
+    public Mp3FrameReader(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public byte[] nextPacket() throws IOException {
+        if (!started) {
+            started = true;
+            if (!readFully(header, 0, 3)) return null;
+            if (header[0] == 'I' && header[1] == 'D' && header[2] == '3') {
+                skipId3Tag();
+                if (!readFully(header, 0, HEADER_SIZE)) return null;
+            } else if (!readFully(header, 3, 1)) {
+                return null;
+            }
+        } else if (!readFully(header, 0, HEADER_SIZE)) {
+            return null;
+        }
+
+        int frameLength;
+        while ((frameLength = frameLength(header)) <= 0) {
+            // not a frame header, slide by one byte until in sync again
+            System.arraycopy(header, 1, header, 0, HEADER_SIZE - 1);
+            if (!readFully(header, HEADER_SIZE - 1, 1)) return null;
+        }
+
+        byte[] frame = new byte[frameLength];
+        System.arraycopy(header, 0, frame, 0, HEADER_SIZE);
+        if (!readFully(frame, HEADER_SIZE, frameLength - HEADER_SIZE)) return null;
+        return frame;
+    }
+
+    /**
+     * @return length of the frame including its header, or 0 if this is not a valid layer III frame header
+     */
+    static int frameLength(byte[] header) {
+        int b1 = header[1] & 0xFF;
+        int b2 = header[2] & 0xFF;
+        if ((header[0] & 0xFF) != 0xFF || (b1 & 0xE0) != 0xE0) return 0;// frame sync
+
+        int version = (b1 >> 3) & 0x03;// 0: MPEG 2.5, 1: reserved, 2: MPEG 2, 3: MPEG 1
+        int layer = (b1 >> 1) & 0x03;// 1: layer III
+        int bitrateIndex = (b2 >> 4) & 0x0F;
+        int sampleRateIndex = (b2 >> 2) & 0x03;
+        int padding = (b2 >> 1) & 0x01;
+        if (version == 1 || layer != 1 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) return 0;
+
+        boolean mpeg1 = version == 3;
+        int bitrate = (mpeg1 ? BITRATES_V1[bitrateIndex] : BITRATES_V2[bitrateIndex]) * 1000;
+        int sampleRate = SAMPLE_RATES_V1[sampleRateIndex];
+        if (version == 2) sampleRate /= 2;
+        if (version == 0) sampleRate /= 4;
+
+        return (mpeg1 ? 144 : 72) * bitrate / sampleRate + padding;
+    }
+
+    private void skipId3Tag() throws IOException {
+        byte[] rest = new byte[7];// version (2), flags (1), size (4)
+        if (!readFully(rest, 0, rest.length)) return;
+        int size = ((rest[3] & 0x7F) << 21) | ((rest[4] & 0x7F) << 14) | ((rest[5] & 0x7F) << 7) | (rest[6] & 0x7F);
+        if ((rest[2] & 0x10) != 0) size += 10;// footer
+        skipFully(size);
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new EOFException();
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * @return false at the end of the stream
+     */
+    private boolean readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = in.read(buffer, offset, length);
+            if (read < 0) return false;
+            offset += read;
+            length -= read;
+        }
+        return true;
+    }
+}
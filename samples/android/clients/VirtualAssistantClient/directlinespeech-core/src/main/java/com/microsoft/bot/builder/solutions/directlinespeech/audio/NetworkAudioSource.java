@@ -0,0 +1,61 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Audio of an activity as it arrives from the service, counting what was received.
+ * cancel() may be called from any thread to end a read that is waiting for the service.
+ */
+public class NetworkAudioSource implements AudioSource {
+
+    // STATE
+    private final AudioSource stream;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private long bytesRead;
+    private volatile long firstByteNanos;
+    private volatile boolean cancelled;
+
+    public NetworkAudioSource(AudioSource stream) {
+        this.stream = stream;
+    }
+
+    @Override
+    public int read(byte[] buffer) {
+        if (cancelled) return 0;
+        int read = stream.read(buffer);
+        if (cancelled) return 0;
+        if (read > 0) {
+            if (bytesRead == 0) firstByteNanos = System.nanoTime();
+            bytesRead += read;
+        }
+        return read;
+    }
+
+    /**
+     * @return System.nanoTime() when the first audio was received, 0 if none was
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * @return number of bytes received from the service so far
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Barge-in: end the stream now. A pending read returns, later reads return 0 (end of stream).
+     */
+    public void cancel() {
+        cancelled = true;
+        close();
+    }
+
+    @Override
+    public void close() {
+        // once, whether by the reader or by cancel()
+        if (closed.compareAndSet(false, true)) stream.close();
+    }
+}
@@ -0,0 +1,124 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Extracts the Opus packets of an Ogg Opus stream (RFC 7845).
+ * The identification header ("OpusHead") is kept for the decoder configuration and the comment
+ * header ("OpusTags") is skipped, so nextPacket() only returns audio packets.
+ */
+public class OggOpusPacketReader implements PacketReader {
+
+    // CONSTANTS
+    private static final int PAGE_HEADER_SIZE = 27;
+    private static final int MAX_SEGMENT_SIZE = 255;
+
+    // STATE
+    private final InputStream in;
+    private final byte[] pageHeader = new byte[PAGE_HEADER_SIZE];
+    private final byte[] segmentTable = new byte[MAX_SEGMENT_SIZE];
+    private final ArrayDeque<byte[]> packets = new ArrayDeque<>();
+    private final ByteArrayOutputStream partialPacket = new ByteArrayOutputStream();
+    private byte[] opusHead;
+    private boolean headersRead;
+
+    public OggOpusPacketReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the identification header, or null if the stream ended before it
+     */
+    public byte[] readOpusHead() throws IOException {
+        readHeaders();
+        return opusHead;
+    }
+
+    /**
+     * @return number of channels given by the identification header
+     */
+    public static int channelCount(byte[] opusHead) {
+        return opusHead[9] & 0xFF;
+    }
+
+    /**
+     * @return number of 48 kHz samples the decoder must discard at the start
+     */
+    public static int preSkip(byte[] opusHead) {
+        return (opusHead[10] & 0xFF) | ((opusHead[11] & 0xFF) << 8);
+    }
+
+    @Override
+    public byte[] nextPacket() throws IOException {
+        readHeaders();
+        return nextOggPacket();
+    }
+
+    private void readHeaders() throws IOException {
+        if (headersRead) return;
+        headersRead = true;
+        byte[] packet;
+        while ((packet = nextOggPacket()) != null) {
+            if (startsWith(packet, "OpusHead")) {
+                opusHead = packet;
+            } else if (!startsWith(packet, "OpusTags")) {
+                // first audio packet
+                packets.addFirst(packet);
+                return;
+            }
+        }
+    }
+
+    private byte[] nextOggPacket() throws IOException {
+        while (packets.isEmpty()) {
+            if (!readPage()) return null;
+        }
+        return packets.poll();
+    }
+
+    /**
+     * @return false at the end of the stream
+     */
+    private boolean readPage() throws IOException {
+        if (!readFully(pageHeader, 0, PAGE_HEADER_SIZE)) return false;
+        if (pageHeader[0] != 'O' || pageHeader[1] != 'g' || pageHeader[2] != 'g' || pageHeader[3] != 'S') {
+            throw new IOException("invalid Ogg page");
+        }
+        int segmentCount = pageHeader[26] & 0xFF;
+        if (!readFully(segmentTable, 0, segmentCount)) return false;
+
+        for (int i = 0; i < segmentCount; i++) {
+            int segmentSize = segmentTable[i] & 0xFF;
+            byte[] segment = new byte[segmentSize];
+            if (!readFully(segment, 0, segmentSize)) return false;
+            partialPacket.write(segment, 0, segmentSize);
+            if (segmentSize < MAX_SEGMENT_SIZE) {
+                // a packet ends with a segment shorter than 255 bytes, else it continues on the next page
+                packets.add(partialPacket.toByteArray());
+                partialPacket.reset();
+            }
+        }
+        return true;
+    }
+
+    private boolean readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = in.read(buffer, offset, length);
+            if (read < 0) return false;
+            offset += read;
+            length -= read;
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] packet, String magic) {
+        if (packet.length < magic.length()) return false;
+        for (int i = 0; i < magic.length(); i++) {
+            if (packet[i] != magic.charAt(i)) return false;
+        }
+        return true;
+    }
+}
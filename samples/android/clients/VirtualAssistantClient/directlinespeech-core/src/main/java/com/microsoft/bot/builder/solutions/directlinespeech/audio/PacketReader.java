@@ -0,0 +1,14 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import java.io.IOException;
+
+/**
+ * Splits a compressed audio stream into the packets (frames) a decoder takes one at a time
+ */
+public interface PacketReader {
+
+    /**
+     * @return the next packet, or null at the end of the stream
+     */
+    byte[] nextPacket() throws IOException;
+}
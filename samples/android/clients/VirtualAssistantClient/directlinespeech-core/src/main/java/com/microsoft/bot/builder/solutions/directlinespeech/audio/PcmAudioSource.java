@@ -0,0 +1,27 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+/**
+ * Audio that is already in memory, e.g. from the TtsCache
+ */
+public class PcmAudioSource implements AudioSource {
+
+    // STATE
+    private final byte[] pcm;
+    private int position;
+
+    public PcmAudioSource(byte[] pcm) {
+        this.pcm = pcm;
+    }
+
+    @Override
+    public int read(byte[] buffer) {
+        int count = Math.min(buffer.length, pcm.length - position);
+        System.arraycopy(pcm, position, buffer, 0, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() {
+    }
+}
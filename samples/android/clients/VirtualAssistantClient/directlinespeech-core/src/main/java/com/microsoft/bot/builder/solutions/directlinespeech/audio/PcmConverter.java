@@ -0,0 +1,94 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Converts decoded 16 bit PCM to mono little-endian PCM at the sample rate of the playback engine.
+ * Whole ratios (e.g. 48 kHz Opus output to 16 kHz) are averaged, other ratios are interpolated.
+ * State is kept between calls, so a stream can be converted in chunks of any size.
+ */
+public class PcmConverter {
+
+    // STATE
+    private final int targetSampleRate;
+    private int sourceSampleRate;
+    private int channelCount = 1;
+    private int decimation;// source frames per target frame when the ratio is whole, else 0
+    private double step;
+    private double phase;
+    private int previousSample;
+    private boolean hasPreviousSample;
+    private int accumulated;
+    private int accumulatedFrames;
+
+    public PcmConverter(int targetSampleRate) {
+        this.targetSampleRate = targetSampleRate;
+        setSourceFormat(targetSampleRate, 1);
+    }
+
+    public void setSourceFormat(int sampleRate, int channelCount) {
+        this.sourceSampleRate = sampleRate;
+        this.channelCount = Math.max(1, channelCount);
+        decimation = sampleRate % targetSampleRate == 0 ? sampleRate / targetSampleRate : 0;
+        step = (double) sampleRate / targetSampleRate;
+        phase = 0;
+        hasPreviousSample = false;
+        accumulated = 0;
+        accumulatedFrames = 0;
+    }
+
+    /**
+     * @param samples number of input samples (all channels)
+     * @return maximum number of bytes convert() can produce for them
+     */
+    public int maxOutputSize(int samples) {
+        int frames = samples / channelCount + 1;
+        return 2 * ((int) Math.ceil(frames * (double) targetSampleRate / sourceSampleRate) + 1);
+    }
+
+    /**
+     * @param input interleaved samples, consumed entirely
+     * @param output receives mono samples, must hold maxOutputSize(input.remaining()) bytes from offset
+     * @return number of bytes written
+     */
+    public int convert(ShortBuffer input, byte[] output, int offset) {
+        int position = offset;
+        while (input.remaining() >= channelCount) {
+            int sample = 0;
+            for (int channel = 0; channel < channelCount; channel++) {
+                sample += input.get();
+            }
+            sample /= channelCount;
+
+            if (decimation == 1) {
+                position = write(output, position, sample);
+            } else if (decimation > 1) {
+                accumulated += sample;
+                if (++accumulatedFrames == decimation) {
+                    position = write(output, position, accumulated / decimation);
+                    accumulated = 0;
+                    accumulatedFrames = 0;
+                }
+            } else {
+                if (!hasPreviousSample) {
+                    previousSample = sample;
+                    hasPreviousSample = true;
+                    continue;
+                }
+                while (phase < 1.0) {
+                    position = write(output, position, (int) (previousSample + (sample - previousSample) * phase));
+                    phase += step;
+                }
+                phase -= 1.0;
+                previousSample = sample;
+            }
+        }
+        return position - offset;
+    }
+
+    private static int write(byte[] output, int position, int sample) {
+        output[position] = (byte) sample;
+        output[position + 1] = (byte) (sample >> 8);
+        return position + 2;
+    }
+}
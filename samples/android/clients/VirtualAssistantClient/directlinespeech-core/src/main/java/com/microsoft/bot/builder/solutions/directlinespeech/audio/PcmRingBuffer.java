@@ -0,0 +1,92 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+/**
+ * Fixed-size buffer of the most recent audio, written by a capture thread and read by a consumer.
+ * When the consumer falls behind by more than the capacity, the oldest audio is dropped.
+ * Positions count bytes since the buffer was created; no memory is allocated after construction.
+ */
+public class PcmRingBuffer {
+
+    // STATE
+    private final byte[] buffer;
+    private long writePosition;
+    private long readPosition;
+
+    /**
+     * @param capacity bytes of audio kept
+     */
+    public PcmRingBuffer(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public synchronized void write(byte[] data, int offset, int length) {
+        if (length > buffer.length) {
+            offset += length - buffer.length;
+            length = buffer.length;
+        }
+        int index = (int) (writePosition % buffer.length);
+        int first = Math.min(length, buffer.length - index);
+        System.arraycopy(data, offset, buffer, index, first);
+        System.arraycopy(data, offset + first, buffer, 0, length - first);
+        writePosition += length;
+        if (writePosition - readPosition > buffer.length) {
+            // overrun, drop the oldest audio
+            readPosition = writePosition - buffer.length;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Read buffered audio, waiting for some if there is none
+     * @param timeoutMs maximum time to wait
+     * @return number of bytes read, 0 if none arrived in time
+     */
+    public synchronized int read(byte[] data, int offset, int length, long timeoutMs) throws InterruptedException {
+        if (available() == 0 && timeoutMs > 0) {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            long remaining = timeoutMs;
+            while (available() == 0 && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+        int count = (int) Math.min(length, available());
+        int index = (int) (readPosition % buffer.length);
+        int first = Math.min(count, buffer.length - index);
+        System.arraycopy(buffer, index, data, offset, first);
+        System.arraycopy(buffer, 0, data, offset + first, count - first);
+        readPosition += count;
+        return count;
+    }
+
+    /**
+     * @return bytes written but not read yet
+     */
+    public synchronized long available() {
+        return writePosition - readPosition;
+    }
+
+    /**
+     * Drop unread audio older than the given amount, e.g. the echo of the playback before an answer
+     * @param bytes unread bytes to keep
+     */
+    public synchronized void keepLast(int bytes) {
+        readPosition = Math.max(readPosition, writePosition - Math.max(0, bytes));
+    }
+
+    public synchronized void clear() {
+        readPosition = writePosition;
+    }
+
+    public synchronized long getWritePosition() {
+        return writePosition;
+    }
+
+    public synchronized long getReadPosition() {
+        return readPosition;
+    }
+}
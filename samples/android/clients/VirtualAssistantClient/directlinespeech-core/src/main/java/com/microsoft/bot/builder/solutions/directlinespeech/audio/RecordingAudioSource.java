@@ -0,0 +1,55 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Keeps a copy of the audio read from another source. The copy is handed to the listener
+ * when the source was read to the end, and dropped if it was closed early or grew too large.
+ */
+public class RecordingAudioSource implements AudioSource {
+
+    // INTERFACE
+    public interface OnRecordedListener {
+        void onRecorded(byte[] pcm);
+    }
+
+    // STATE
+    private final AudioSource source;
+    private final int maxSize;
+    private final OnRecordedListener listener;
+    private ByteArrayOutputStream recording = new ByteArrayOutputStream();
+    private boolean ended;
+
+    /**
+     * @param maxSize recordings larger than this are dropped
+     */
+    public RecordingAudioSource(AudioSource source, int maxSize, OnRecordedListener listener) {
+        this.source = source;
+        this.maxSize = maxSize;
+        this.listener = listener;
+    }
+
+    @Override
+    public int read(byte[] buffer) {
+        int read = source.read(buffer);
+        if (read <= 0) {
+            ended = true;
+        } else if (recording != null) {
+            if (recording.size() + read > maxSize) {
+                recording = null;
+            } else {
+                recording.write(buffer, 0, read);
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public void close() {
+        source.close();
+        if (ended && recording != null && recording.size() > 0) {
+            listener.onRecorded(recording.toByteArray());
+        }
+        recording = null;
+    }
+}
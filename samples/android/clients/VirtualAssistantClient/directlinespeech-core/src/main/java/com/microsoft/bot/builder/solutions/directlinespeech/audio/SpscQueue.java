@@ -0,0 +1,78 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer thread.
+ * offer() must only be called by the producer and poll()/peek() only by the consumer.
+ */
+public final class SpscQueue<E> {
+
+    // STATE
+    private final Object[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();// next index to poll, written by the consumer
+    private final AtomicLong tail = new AtomicLong();// next index to offer, written by the producer
+
+    /**
+     * @param capacity maximum number of elements, rounded up to a power of two
+     */
+    public SpscQueue(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        buffer = new Object[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return false if the queue is full
+     */
+    public boolean offer(E element) {
+        if (element == null) throw new NullPointerException();
+        final long t = tail.get();
+        if (t - head.get() == buffer.length) {
+            return false;
+        }
+        buffer[(int) t & mask] = element;
+        tail.lazySet(t + 1);// publishes the element
+        return true;
+    }
+
+    /**
+     * @return the oldest element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        final long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        final int index = (int) h & mask;
+        E element = (E) buffer[index];
+        buffer[index] = null;
+        head.lazySet(h + 1);// frees the slot for the producer
+        return element;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        return (E) buffer[(int) h & mask];
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
@@ -0,0 +1,284 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of the decoded audio of spoken prompts, so prompts the bot repeats verbatim are played locally.
+ * Entries are kept in memory and on disk, each tier within its own byte budget. Disk writes and the
+ * initial scan of the cache directory run on a background thread; get() reads from disk on the calling thread,
+ * getFromMemory() never does.
+ */
+public class TtsCache {
+
+    // CONSTANTS
+    private static final String FILE_EXTENSION = ".pcm";
+    private static final int KEY_VERSION = 1;// change when the cached audio format changes
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // STATE
+    private final File directory;
+    private final long memoryBudget;
+    private final long diskBudget;
+    private final LinkedHashMap<String, byte[]> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ExecutorService diskExecutor;
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long memorySize;
+    private long diskSize;
+
+    /**
+     * @param directory directory of the disk tier, created if needed
+     * @param memoryBudget bytes kept in memory, 0 to disable the memory tier
+     * @param diskBudget bytes kept on disk, 0 to disable the disk tier
+     */
+    public TtsCache(File directory, long memoryBudget, long diskBudget) {
+        this.directory = directory;
+        this.memoryBudget = Math.max(0, memoryBudget);
+        this.diskBudget = Math.max(0, diskBudget);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "TtsCache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        diskExecutor = executor;
+        if (this.diskBudget > 0) diskExecutor.execute(this::loadDiskEntries);
+    }
+
+    /**
+     * @param speak text of the activity
+     * @param voice voice configuration, e.g. custom voice deployment ids
+     * @param language recognition language
+     * @return the key of the prompt, or null if there is nothing to speak
+     */
+    public static String key(String speak, String voice, String language) {
+        if (speak == null || speak.isEmpty()) return null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(String.valueOf(KEY_VERSION).getBytes(UTF8));
+            for (String part : new String[]{voice, language, speak}) {
+                digest.update((byte) 0);
+                if (part != null) digest.update(part.getBytes(UTF8));
+            }
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0x0F, 16)).append(Character.forDigit(b & 0x0F, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return memoryBudget > 0 || diskBudget > 0;
+    }
+
+    /**
+     * @return largest entry that will be cached
+     */
+    public int getMaxEntrySize() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(memoryBudget, diskBudget) / 4);
+    }
+
+    /**
+     * @return the cached audio, or null on a miss. May read the disk tier.
+     */
+    public byte[] get(String key) {
+        byte[] pcm = readFromMemory(key);
+        if (pcm != null) {
+            memoryHits.incrementAndGet();
+            return pcm;
+        }
+
+        pcm = readFromDisk(key);
+        if (pcm != null) {
+            diskHits.incrementAndGet();
+            putInMemory(key, pcm);
+            return pcm;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return the audio if it is in the memory tier, else null: get() may still find it on disk, see isOnDisk().
+     * A key in neither tier counts as a miss.
+     */
+    public byte[] getFromMemory(String key) {
+        byte[] pcm = readFromMemory(key);
+        if (pcm != null) {
+            memoryHits.incrementAndGet();
+        } else if (!isOnDisk(key)) {
+            misses.incrementAndGet();
+        }
+        return pcm;
+    }
+
+    /**
+     * @return true if the audio is in the disk tier, as far as is known without reading the disk
+     */
+    public boolean isOnDisk(String key) {
+        if (diskBudget == 0) return false;
+        synchronized (diskEntries) {
+            return diskEntries.containsKey(key);
+        }
+    }
+
+    public void put(String key, byte[] pcm) {
+        if (pcm.length > getMaxEntrySize()) return;
+        putInMemory(key, pcm);
+        if (diskBudget > 0) diskExecutor.execute(() -> writeToDisk(key, pcm));
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        synchronized (memoryEntries) {
+            return "TtsCache{memoryHits=" + memoryHits + ", diskHits=" + diskHits + ", misses=" + misses
+                    + ", memoryBytes=" + memorySize + ", diskBytes=" + diskSize + "}";
+        }
+    }
+
+    private byte[] readFromMemory(String key) {
+        synchronized (memoryEntries) {
+            return memoryEntries.get(key);
+        }
+    }
+
+    private void putInMemory(String key, byte[] pcm) {
+        if (pcm.length > memoryBudget) return;
+        synchronized (memoryEntries) {
+            byte[] previous = memoryEntries.put(key, pcm);
+            if (previous != null) memorySize -= previous.length;
+            memorySize += pcm.length;
+
+            // evict least recently used entries
+            Iterator<Map.Entry<String, byte[]>> iterator = memoryEntries.entrySet().iterator();
+            while (memorySize > memoryBudget && iterator.hasNext()) {
+                memorySize -= iterator.next().getValue().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    private byte[] readFromDisk(String key) {
+        if (diskBudget == 0) return null;
+        File file = file(key);
+        long length = file.length();
+        if (length == 0 || length > Integer.MAX_VALUE) return null;
+
+        byte[] pcm = new byte[(int) length];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < pcm.length) {
+                int read = in.read(pcm, offset, pcm.length - offset);
+                if (read < 0) return null;
+                offset += read;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());// keeps the order after a restart
+        synchronized (diskEntries) {
+            diskEntries.get(key);// mark as recently used
+        }
+        return pcm;
+    }
+
+    private void writeToDisk(String key, byte[] pcm) {
+        if (pcm.length > diskBudget) return;
+        synchronized (diskEntries) {
+            if (diskEntries.containsKey(key)) return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) return;
+
+        File file = file(key);
+        File temporaryFile = new File(directory, key + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporaryFile)) {
+            out.write(pcm);
+        } catch (IOException e) {
+            temporaryFile.delete();
+            return;
+        }
+        if (!temporaryFile.renameTo(file)) {
+            temporaryFile.delete();
+            return;
+        }
+
+        synchronized (diskEntries) {
+            diskEntries.put(key, (long) pcm.length);
+            diskSize += pcm.length;
+            trimDisk();
+        }
+    }
+
+    // run on the disk thread
+    private void loadDiskEntries() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        // least recently used first
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+
+        synchronized (diskEntries) {
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.endsWith(FILE_EXTENSION)) {
+                    file.delete();// unfinished write
+                    continue;
+                }
+                long length = file.length();
+                diskEntries.put(name.substring(0, name.length() - FILE_EXTENSION.length()), length);
+                diskSize += length;
+            }
+            trimDisk();
+        }
+    }
+
+    // call with diskEntries locked
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> iterator = diskEntries.entrySet().iterator();
+        while (diskSize > diskBudget && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            file(entry.getKey()).delete();
+            diskSize -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    private File file(String key) {
+        return new File(directory, key + FILE_EXTENSION);
+    }
+}
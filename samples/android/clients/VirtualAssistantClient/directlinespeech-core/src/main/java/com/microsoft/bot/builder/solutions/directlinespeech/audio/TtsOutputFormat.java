@@ -0,0 +1,60 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+/**
+ * Audio format the speech service uses for the bot's speech.
+ * Compressed formats use less bandwidth and are decoded on the device.
+ */
+public enum TtsOutputFormat {
+
+    PCM("pcm", "raw-16khz-16bit-mono-pcm", null),
+    MP3("mp3", "audio-16khz-32kbitrate-mono-mp3", "audio/mpeg"),
+    OPUS("opus", "ogg-16khz-16bit-mono-opus", "audio/opus");
+
+    private final String configurationName;
+    private final String serviceName;
+    private final String mimeType;
+
+    TtsOutputFormat(String configurationName, String serviceName, String mimeType) {
+        this.configurationName = configurationName;
+        this.serviceName = serviceName;
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * @return name used in the Configuration
+     */
+    public String getConfigurationName() {
+        return configurationName;
+    }
+
+    /**
+     * @return name of the format for the speech service
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * @return MIME type of the decoder, or null if the audio is not compressed
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public boolean isCompressed() {
+        return mimeType != null;
+    }
+
+    /**
+     * @param configurationName e.g. "opus", case insensitive
+     * @return the format, PCM if the name is null or unknown
+     */
+    public static TtsOutputFormat fromConfigurationName(String configurationName) {
+        if (configurationName != null) {
+            for (TtsOutputFormat format : values()) {
+                if (format.configurationName.equalsIgnoreCase(configurationName)) return format;
+            }
+        }
+        return PCM;
+    }
+}
@@ -0,0 +1,167 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+/**
+ * Passes one utterance from captured audio to the recognizer, without the silence around it.
+ * Audio before speech starts is dropped except for a short lead-in, silence inside the utterance is held back
+ * until speech resumes, and once the detector finds the end of speech only a short tail of it is passed on.
+ * Buffers are allocated once; reading does not allocate.
+ */
+public class UtteranceGate {
+
+    // CONSTANTS
+    public static final int END_OF_UTTERANCE = -1;
+    private static final int LEADING_PAD_MS = 200;
+    private static final int TRAILING_PAD_MS = 200;
+
+    public interface OnEndOfUtteranceListener {
+        /**
+         * Called on the reading thread once the utterance ended
+         * @param speechDetected false if the initial silence timeout expired before any speech
+         */
+        void onEndOfUtterance(boolean speechDetected);
+    }
+
+    // STATE
+    private final PcmRingBuffer source;
+    private final VoiceActivityDetector detector;
+    private final int initialSilenceFrames;
+    private final int trailingPadBytes;
+    private final byte[] frame;
+    private final byte[] scratch;
+    private final PcmRingBuffer leading;
+    private final PcmRingBuffer held;
+    private final PcmRingBuffer output;
+    private OnEndOfUtteranceListener listener;
+    private int frameFill;
+    private int waitingFrames;
+    private boolean started;
+    private boolean ended;
+    private long bytesConsumed;
+    private long bytesPassed;
+
+    /**
+     * @param source captured audio
+     * @param detector voice activity detector for the audio format of the source
+     * @param initialSilenceMs time to wait for speech before the utterance ends without any
+     */
+    public UtteranceGate(PcmRingBuffer source, VoiceActivityDetector detector, int initialSilenceMs) {
+        this.source = source;
+        this.detector = detector;
+        int frameSize = detector.getFrameSize();
+        int bytesPerMs = detector.getSampleRate() * 2 / 1000;
+        this.initialSilenceFrames = Math.max(1, initialSilenceMs / VoiceActivityDetector.FRAME_MS);
+        this.trailingPadBytes = TRAILING_PAD_MS * bytesPerMs;
+        this.frame = new byte[frameSize];
+        this.scratch = new byte[frameSize];
+        this.leading = new PcmRingBuffer(LEADING_PAD_MS * bytesPerMs);
+        this.held = new PcmRingBuffer(detector.getEndSilenceMs() * bytesPerMs + frameSize);
+        this.output = new PcmRingBuffer(leading.capacity() + held.capacity() + frameSize);
+    }
+
+    public void setOnEndOfUtteranceListener(OnEndOfUtteranceListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Start a new utterance, from the next audio of the source
+     */
+    public void reset() {
+        detector.reset();
+        leading.clear();
+        held.clear();
+        output.clear();
+        frameFill = 0;
+        waitingFrames = 0;
+        started = false;
+        ended = false;
+        bytesConsumed = 0;
+        bytesPassed = 0;
+    }
+
+    /**
+     * Read audio of the utterance, waiting for speech if there is none yet
+     * @param timeoutMs maximum time to wait
+     * @return number of bytes read, 0 if none is ready in time, or END_OF_UTTERANCE
+     */
+    public int read(byte[] data, int offset, int length, long timeoutMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        while (output.available() == 0) {
+            if (ended) return END_OF_UTTERANCE;
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return 0;
+            int read = source.read(frame, frameFill, frame.length - frameFill, remaining);
+            frameFill += read;
+            if (frameFill < frame.length) continue;
+
+            frameFill = 0;
+            bytesConsumed += frame.length;
+            processFrame();
+        }
+        int read = output.read(data, offset, length, 0);
+        bytesPassed += read;
+        return read;
+    }
+
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * @return bytes of captured audio read from the source in this utterance
+     */
+    public long getBytesConsumed() {
+        return bytesConsumed;
+    }
+
+    /**
+     * @return bytes of the utterance read so far
+     */
+    public long getBytesPassed() {
+        return bytesPassed;
+    }
+
+    private void processFrame() {
+        int event = detector.process(frame, 0);
+
+        if (!started) {
+            leading.write(frame, 0, frame.length);
+            if (event == VoiceActivityDetector.EVENT_SPEECH_STARTED) {
+                started = true;
+                transfer(leading, output, leading.capacity());
+            } else if (++waitingFrames >= initialSilenceFrames) {
+                end(false);
+            }
+            return;
+        }
+
+        if (event == VoiceActivityDetector.EVENT_SPEECH_ENDED) {
+            transfer(held, output, trailingPadBytes);
+            held.clear();
+            end(true);
+        } else if (detector.isSpeechFrame()) {
+            transfer(held, output, held.capacity());
+            output.write(frame, 0, frame.length);
+        } else {
+            held.write(frame, 0, frame.length);
+        }
+    }
+
+    private void end(boolean speechDetected) {
+        ended = true;
+        if (listener != null) listener.onEndOfUtterance(speechDetected);
+    }
+
+    private void transfer(PcmRingBuffer from, PcmRingBuffer to, int maxBytes) {
+        try {
+            int remaining = maxBytes;
+            int read;
+            while (remaining > 0 && (read = from.read(scratch, 0, Math.min(scratch.length, remaining), 0)) > 0) {
+                to.write(scratch, 0, read);
+                remaining -= read;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+/**
+ * Energy and zero-crossing-rate voice activity detector for 16 bit mono PCM, used to find the end of an utterance
+ * locally instead of waiting for the silence timeout of the service.
+ * Frames are classified against an adaptive noise floor: a frame is speech when it is loud enough above the floor,
+ * or a little above the floor with the high zero-crossing rate of fricatives (s, f, sh).
+ * The floor starts at the level of the first frame, at most that of a quiet room: the first frame may already be
+ * speech. It follows quieter frames down quickly and louder ones up slowly; a steady noise classified as speech
+ * raises it too, more slowly still, until it is recognized as noise.
+ * Speech starts after a few consecutive speech frames and ends after a configurable time without speech.
+ * No memory is allocated while processing.
+ */
+public class VoiceActivityDetector {
+
+    // CONSTANTS
+    public static final int FRAME_MS = 20;
+    public static final int EVENT_NONE = 0;
+    public static final int EVENT_SPEECH_STARTED = 1;
+    public static final int EVENT_SPEECH_ENDED = 2;
+    private static final int SPEECH_START_FRAMES = 3;// 60 ms of speech before it counts as started
+    private static final double FRICATIVE_ZCR = 0.25;// zero crossings per sample
+    private static final double MIN_ENERGY_DB = -90;
+    private static final double MAX_INITIAL_NOISE_FLOOR_DB = -45;// a quiet room
+    private static final double FLOOR_FALL_RATE = 0.3;
+    private static final double FLOOR_RISE_RATE = 0.02;
+    private static final double FLOOR_SPEECH_RISE_RATE = 0.005;// a steady noise classified as speech
+
+    // STATE
+    private final int sampleRate;
+    private final int frameSize;
+    private final double thresholdDb;
+    private final int endSilenceMs;
+    private final int endSilenceFrames;
+    private double noiseFloorDb;
+    private boolean hasNoiseFloor;
+    private boolean inSpeech;
+    private boolean lastFrameIsSpeech;
+    private double lastEnergyDb;
+    private int speechFrames;
+    private int silenceFrames;
+
+    /**
+     * @param sampleRate sample rate of the audio
+     * @param thresholdDb energy above the noise floor that counts as speech
+     * @param endSilenceMs silence after speech that ends it
+     */
+    public VoiceActivityDetector(int sampleRate, double thresholdDb, int endSilenceMs) {
+        this.sampleRate = sampleRate;
+        this.frameSize = sampleRate * FRAME_MS / 1000 * 2;
+        this.thresholdDb = thresholdDb;
+        this.endSilenceMs = endSilenceMs;
+        this.endSilenceFrames = Math.max(1, endSilenceMs / FRAME_MS);
+        reset();
+    }
+
+    /**
+     * @return bytes of audio in a frame
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getEndSilenceMs() {
+        return endSilenceMs;
+    }
+
+    /**
+     * Start a new utterance. The noise floor is kept, the room rarely changes between utterances.
+     */
+    public void reset() {
+        inSpeech = false;
+        lastFrameIsSpeech = false;
+        speechFrames = 0;
+        silenceFrames = 0;
+    }
+
+    /**
+     * @param pcm audio, 16 bit little endian
+     * @param offset start of a frame of getFrameSize() bytes
+     * @return EVENT_SPEECH_STARTED, EVENT_SPEECH_ENDED or EVENT_NONE
+     */
+    public int process(byte[] pcm, int offset) {
+        final int samples = frameSize / 2;
+        long sumOfSquares = 0;
+        int crossings = 0;
+        int previous = 0;
+        for (int i = 0; i < samples; i++) {
+            int index = offset + i * 2;
+            int sample = (short) ((pcm[index] & 0xFF) | (pcm[index + 1] << 8));
+            sumOfSquares += (long) sample * sample;
+            if (i > 0 && (sample >= 0) != (previous >= 0)) crossings++;
+            previous = sample;
+        }
+        double meanSquare = (double) sumOfSquares / samples / (32768.0 * 32768.0);
+        double energyDb = meanSquare > 0 ? Math.max(MIN_ENERGY_DB, 10 * Math.log10(meanSquare)) : MIN_ENERGY_DB;
+        double zcr = (double) crossings / samples;
+        lastEnergyDb = energyDb;
+
+        if (!hasNoiseFloor) {
+            noiseFloorDb = Math.min(energyDb, MAX_INITIAL_NOISE_FLOOR_DB);
+            hasNoiseFloor = true;
+        }
+
+        double aboveFloor = energyDb - noiseFloorDb;
+        boolean isSpeech = aboveFloor > thresholdDb || (aboveFloor > thresholdDb / 2 && zcr > FRICATIVE_ZCR);
+        lastFrameIsSpeech = isSpeech;
+
+        // follow the noise floor down quickly and up slowly, so speech barely raises it
+        double rate = energyDb < noiseFloorDb ? FLOOR_FALL_RATE : isSpeech ? FLOOR_SPEECH_RISE_RATE : FLOOR_RISE_RATE;
+        noiseFloorDb += rate * (energyDb - noiseFloorDb);
+
+        if (!inSpeech) {
+            speechFrames = isSpeech ? speechFrames + 1 : 0;
+            if (speechFrames >= SPEECH_START_FRAMES) {
+                inSpeech = true;
+                silenceFrames = 0;
+                return EVENT_SPEECH_STARTED;
+            }
+            return EVENT_NONE;
+        }
+
+        silenceFrames = isSpeech ? 0 : silenceFrames + 1;
+        if (silenceFrames >= endSilenceFrames) {
+            inSpeech = false;
+            speechFrames = 0;
+            return EVENT_SPEECH_ENDED;
+        }
+        return EVENT_NONE;
+    }
+
+    public boolean isInSpeech() {
+        return inSpeech;
+    }
+
+    /**
+     * @return whether the last processed frame was classified as speech
+     */
+    public boolean isSpeechFrame() {
+        return lastFrameIsSpeech;
+    }
+
+    public double getLastEnergyDb() {
+        return lastEnergyDb;
+    }
+
+    public double getNoiseFloorDb() {
+        return noiseFloorDb;
+    }
+}
@@ -0,0 +1,118 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the samples of a WAV file that is in the format of the Speech SDK audio input streams: 16 kHz, 16 bit, mono PCM.
+ * Other formats are rejected rather than converted.
+ */
+public final class WavReader {
+
+    // CONSTANTS
+    public static final int SAMPLE_RATE = 16000;
+    public static final int BITS_PER_SAMPLE = 16;
+    public static final int CHANNELS = 1;
+    public static final int BYTES_PER_MS = SAMPLE_RATE / 1000 * BITS_PER_SAMPLE / 8 * CHANNELS;
+    private static final int FORMAT_PCM = 1;
+
+    private WavReader() {
+    }
+
+    /**
+     * @return the samples of the data chunk, little-endian
+     * @throws IOException if the file is not a WAV file or is not 16 kHz, 16 bit, mono PCM
+     */
+    public static byte[] readPcm(InputStream inputStream) throws IOException {
+        try {
+            return readChunks(new DataInputStream(inputStream));
+        } catch (EOFException e) {
+            throw new IOException("truncated WAV file", e);
+        }
+    }
+
+    private static byte[] readChunks(DataInputStream input) throws IOException {
+        if (!"RIFF".equals(readChunkId(input))) throw new IOException("not a RIFF file");
+        readInt(input);// size of the file
+        if (!"WAVE".equals(readChunkId(input))) throw new IOException("not a WAVE file");
+
+        boolean haveFormat = false;
+        while (true) {
+            String chunkId;
+            try {
+                chunkId = readChunkId(input);
+            } catch (EOFException e) {
+                throw new IOException("no data chunk", e);
+            }
+            long chunkSize = readInt(input) & 0xFFFFFFFFL;
+            if ("fmt ".equals(chunkId)) {
+                int format = readShort(input);
+                int channels = readShort(input);
+                int sampleRate = readInt(input);
+                readInt(input);// bytes per second
+                readShort(input);// block alignment
+                int bitsPerSample = readShort(input);
+                if (format != FORMAT_PCM || channels != CHANNELS || sampleRate != SAMPLE_RATE || bitsPerSample != BITS_PER_SAMPLE) {
+                    throw new IOException("unsupported format " + format + ", " + channels + " channels, " + sampleRate + " Hz, "
+                            + bitsPerSample + " bit: 16 kHz, 16 bit, mono PCM is expected");
+                }
+                skip(input, chunkSize - 16 + (chunkSize & 1));
+                haveFormat = true;
+            } else if ("data".equals(chunkId)) {
+                if (!haveFormat) throw new IOException("data chunk before the fmt chunk");
+                return readData(input, chunkSize);
+            } else {
+                // chunks are padded to an even size
+                skip(input, chunkSize + (chunkSize & 1));
+            }
+        }
+    }
+
+    // the size of the data chunk of a file written while recording can be wrong: read what is there
+    private static byte[] readData(DataInputStream input, long chunkSize) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream((int) Math.min(chunkSize, 1024 * 1024));
+        byte[] buffer = new byte[8192];
+        long remaining = chunkSize;
+        while (remaining > 0) {
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) break;
+            data.write(buffer, 0, read);
+            remaining -= read;
+        }
+        // whole samples only
+        byte[] pcm = data.toByteArray();
+        if (pcm.length % 2 == 0) return pcm;
+        byte[] samples = new byte[pcm.length - 1];
+        System.arraycopy(pcm, 0, samples, 0, samples.length);
+        return samples;
+    }
+
+    private static String readChunkId(DataInputStream input) throws IOException {
+        byte[] id = new byte[4];
+        input.readFully(id);
+        return new String(id, "US-ASCII");
+    }
+
+    private static int readInt(DataInputStream input) throws IOException {
+        return Integer.reverseBytes(input.readInt());
+    }
+
+    private static int readShort(DataInputStream input) throws IOException {
+        return Short.reverseBytes(input.readShort()) & 0xFFFF;
+    }
+
+    private static void skip(DataInputStream input, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = input.skip(remaining);
+            if (skipped <= 0) {
+                if (input.read() < 0) throw new EOFException();
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.cache;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.microsoft.bot.builder.solutions.directlinespeech.model.Configuration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The last welcome card of the bot, shown at startup while a fresh one is requested (stale-while-revalidate).
+ * Only the fields needed to render it are kept. The card is tied to a version computed from the configuration
+ * (bot, locale, user) and expires after its TTL; a card of another version or expired is never returned.
+ */
+public class WelcomeCardCache {
+
+    // CONSTANTS
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int FORMAT_VERSION = 1;
+    public static final long DEFAULT_TTL_MS = 24 * 60 * 60 * 1000;
+    private static final String[] RENDERED_FIELDS = {
+            "type", "text", "textFormat", "inputHint", "attachmentLayout", "attachments", "suggestedActions"};
+
+    // STATE
+    private final File file;
+    private final long ttlMs;
+
+    public WelcomeCardCache(File file, long ttlMs) {
+        this.file = file;
+        this.ttlMs = ttlMs > 0 ? ttlMs : DEFAULT_TTL_MS;
+    }
+
+    /**
+     * @return the version a welcome card received with this configuration is stored under
+     */
+    public static String versionOf(Configuration configuration) {
+        StringBuilder identity = new StringBuilder()
+                .append(configuration.speechRegion).append('\n')
+                .append(configuration.speechSubscriptionKey).append('\n')
+                .append(configuration.customCommandsAppId).append('\n')
+                .append(configuration.srLanguage).append('\n')
+                .append(configuration.userId).append('\n')
+                .append(configuration.userName);
+        try {
+            // the subscription key is not written in clear
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(identity.toString().getBytes(UTF8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) hex.append(String.format("%02x", digest[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(identity.toString().hashCode());
+        }
+    }
+
+    /**
+     * Replace the cached card
+     * @return false if the activity is not JSON or could not be written
+     */
+    public synchronized boolean store(String version, String activityJson, long nowMillis) {
+        JsonObject compact = new JsonObject();
+        try {
+            JsonElement activity = new JsonParser().parse(activityJson);
+            if (!activity.isJsonObject()) return false;
+            for (String field : RENDERED_FIELDS) {
+                JsonElement value = activity.getAsJsonObject().get(field);
+                if (value != null && !value.isJsonNull()) compact.add(field, value);
+            }
+        } catch (JsonParseException e) {
+            return false;
+        }
+
+        File temporary = new File(file.getPath() + ".tmp");
+        File directory = file.getParentFile();
+        if (directory != null) directory.mkdirs();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporary), UTF8)) {
+            writer.write(FORMAT_VERSION + " " + version + " " + nowMillis + "\n");
+            writer.write(compact.toString());
+        } catch (IOException e) {
+            temporary.delete();
+            return false;
+        }
+        return temporary.renameTo(file);
+    }
+
+    /**
+     * @return the cached activity as JSON, null if there is none for this version or it expired
+     */
+    public synchronized String load(String version, long nowMillis) {
+        if (!file.exists()) return null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8))) {
+            String[] header = reader.readLine().split(" ");
+            if (header.length != 3 || Integer.parseInt(header[0]) != FORMAT_VERSION || !header[1].equals(version)) {
+                return null;
+            }
+            long savedAt = Long.parseLong(header[2]);
+            if (nowMillis - savedAt > ttlMs || nowMillis < savedAt) {
+                file.delete();
+                return null;
+            }
+            return reader.readLine();
+        } catch (IOException | RuntimeException e) {
+            // unreadable, replaced by the next card
+            return null;
+        }
+    }
+
+    public synchronized void clear() {
+        file.delete();
+    }
+}
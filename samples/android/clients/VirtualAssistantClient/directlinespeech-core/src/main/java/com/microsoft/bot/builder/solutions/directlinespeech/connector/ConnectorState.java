@@ -0,0 +1,30 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.connector;
+
+/**
+ * Lifecycle of a DialogServiceConnector
+ */
+public enum ConnectorState {
+    IDLE,// created or disconnected, can connect
+    CONNECTING,
+    READY,// connected
+    DRAINING,// being replaced: finishing the current turn, then closed
+    CLOSED;// released, cannot be used again
+
+    /**
+     * @return true if the transition from this state is allowed
+     */
+    public boolean canMoveTo(ConnectorState next) {
+        switch (this) {
+            case IDLE:
+                return next == CONNECTING || next == DRAINING || next == CLOSED;
+            case CONNECTING:
+                return next == READY || next == IDLE || next == DRAINING || next == CLOSED;
+            case READY:
+                return next == IDLE || next == DRAINING || next == CLOSED;
+            case DRAINING:
+                return next == CLOSED;
+            default:
+                return false;
+        }
+    }
+}
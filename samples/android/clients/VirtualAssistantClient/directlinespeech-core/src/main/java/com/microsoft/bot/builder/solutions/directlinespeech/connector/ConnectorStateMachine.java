@@ -0,0 +1,56 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.connector;
+
+/**
+ * Current ConnectorState of a connector, changed only through the allowed transitions.
+ * Transitions are atomic, so concurrent callbacks (e.g. a connect completing while the connector is
+ * being replaced) cannot move it back to an earlier state.
+ */
+public class ConnectorStateMachine {
+
+    public interface OnStateChangedListener {
+        /**
+         * Called on the thread that made the transition
+         */
+        void onStateChanged(ConnectorState previous, ConnectorState current);
+    }
+
+    // STATE
+    private ConnectorState state = ConnectorState.IDLE;
+    private volatile OnStateChangedListener listener;
+
+    public synchronized ConnectorState getState() {
+        return state;
+    }
+
+    public synchronized boolean is(ConnectorState state) {
+        return this.state == state;
+    }
+
+    public void setOnStateChangedListener(OnStateChangedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return false, without changing the state, if the transition is not allowed from the current state
+     */
+    public boolean moveTo(ConnectorState next) {
+        return moveTo(null, next);
+    }
+
+    /**
+     * @param expected the transition only happens from this state, null for any state
+     * @return false, without changing the state, if the state is not the expected one or the transition is not allowed
+     */
+    public boolean moveTo(ConnectorState expected, ConnectorState next) {
+        ConnectorState previous;
+        synchronized (this) {
+            if (expected != null && state != expected) return false;
+            if (!state.canMoveTo(next)) return false;
+            previous = state;
+            state = next;
+        }
+        OnStateChangedListener listener = this.listener;
+        if (listener != null) listener.onStateChanged(previous, next);
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.connector;
+
+import java.util.Random;
+
+/**
+ * Delays between reconnection attempts: exponential backoff with "equal jitter", i.e. each delay is between
+ * half and all of the exponential value, so devices dropped by the same outage do not retry in lockstep
+ * and no attempt follows the previous one immediately.
+ */
+public class ReconnectPolicy {
+
+    // STATE
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Random random;
+    private int attempt;
+
+    /**
+     * @param baseDelayMs delay of the first attempt, before jitter
+     * @param maxDelayMs maximum delay, before jitter
+     */
+    public ReconnectPolicy(long baseDelayMs, long maxDelayMs, Random random) {
+        this.baseDelayMs = Math.max(1, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+        this.random = random;
+    }
+
+    /**
+     * @return the delay before the next attempt, counting the attempt
+     */
+    public synchronized long nextDelayMs() {
+        int exponent = Math.min(attempt, 30);
+        long delay = Math.min(maxDelayMs, baseDelayMs << exponent);
+        if (delay < 0) delay = maxDelayMs;// overflow
+        attempt++;
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * (delay - half));
+    }
+
+    /**
+     * @return attempts counted since the last reset
+     */
+    public synchronized int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * The connection works again: the next delay is the base delay
+     */
+    public synchronized void reset() {
+        attempt = 0;
+    }
+}
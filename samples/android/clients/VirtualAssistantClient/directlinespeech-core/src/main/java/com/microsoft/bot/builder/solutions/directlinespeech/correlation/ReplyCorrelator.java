@@ -0,0 +1,186 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.correlation;
+
+import com.microsoft.bot.builder.solutions.directlinespeech.metrics.LatencyHistogram;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches the replies of the bot to the requests waiting for them, each with its own timeout.
+ * A reply is matched through its replyToId to the request with that activity id; a reply without a known
+ * replyToId (e.g. to a spoken request, whose activity is created by the service) goes to the oldest request.
+ * Further replies to an answered request (the bot can send several) are recognized and do not match another.
+ *
+ * Timeouts adapt to the observed latency of each request type: once enough replies were seen, a request times
+ * out after 1.5 times the 99th percentile latency of its type, within the minimum and maximum timeouts.
+ */
+public class ReplyCorrelator {
+
+    // CONSTANTS
+    public static final long DEFAULT_TIMEOUT_MS = 15 * 1000;
+    public static final long DEFAULT_MIN_TIMEOUT_MS = 5 * 1000;
+    public static final long DEFAULT_MAX_TIMEOUT_MS = 30 * 1000;
+    private static final int MIN_SAMPLES = 20;// before adapting the timeout of a type
+    private static final int ANSWERED_IDS = 64;
+
+    public interface OnTimeoutListener {
+        /**
+         * Called on the thread of the TimerWheel
+         */
+        void onTimeout(String requestType, long timeoutMs);
+    }
+
+    private static final class Request {
+        final String activityId;
+        final String type;
+        final long sentAtNanos;
+        final long timeoutMs;
+        TimerWheel.Timeout timeout;
+
+        Request(String activityId, String type, long sentAtNanos, long timeoutMs) {
+            this.activityId = activityId;
+            this.type = type;
+            this.sentAtNanos = sentAtNanos;
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    // STATE
+    private final TimerWheel timerWheel;
+    private final long defaultTimeoutMs;
+    private final long minTimeoutMs;
+    private final long maxTimeoutMs;
+    private final LinkedHashMap<Object, Request> pending = new LinkedHashMap<>();// by activity id, or the request itself
+    private final Map<String, LatencyHistogram> latencies = new HashMap<>();
+    private final LinkedHashMap<String, Boolean> answeredIds = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > ANSWERED_IDS;
+        }
+    };
+    private volatile OnTimeoutListener listener;
+
+    public ReplyCorrelator(TimerWheel timerWheel) {
+        this(timerWheel, DEFAULT_TIMEOUT_MS, DEFAULT_MIN_TIMEOUT_MS, DEFAULT_MAX_TIMEOUT_MS);
+    }
+
+    /**
+     * @param defaultTimeoutMs timeout of a type without enough replies observed yet
+     */
+    public ReplyCorrelator(TimerWheel timerWheel, long defaultTimeoutMs, long minTimeoutMs, long maxTimeoutMs) {
+        this.timerWheel = timerWheel;
+        this.minTimeoutMs = minTimeoutMs;
+        this.maxTimeoutMs = Math.max(minTimeoutMs, maxTimeoutMs);
+        this.defaultTimeoutMs = Math.min(this.maxTimeoutMs, Math.max(minTimeoutMs, defaultTimeoutMs));
+    }
+
+    public void setOnTimeoutListener(OnTimeoutListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Wait for the reply to a request
+     * @param activityId id of the activity sent, null if unknown
+     * @param requestType e.g. "message" or "speech", timeouts and latencies are per type
+     * @return the timeout of the request
+     */
+    public long expect(String activityId, String requestType, long sentAtNanos) {
+        final Request request = new Request(activityId, requestType, sentAtNanos, getTimeoutMs(requestType));
+        synchronized (this) {
+            pending.put(activityId != null ? activityId : request, request);
+        }
+        request.timeout = timerWheel.schedule(() -> onTimeout(request), request.timeoutMs);
+        return request.timeoutMs;
+    }
+
+    /**
+     * A reply arrived
+     * @param replyToId replyToId of the activity, null if it has none
+     * @return latency of the request it answers in milliseconds, -1 if it answers no waiting request
+     */
+    public long onReply(String replyToId, long receivedAtNanos) {
+        Request request;
+        synchronized (this) {
+            request = replyToId != null ? pending.remove(replyToId) : null;
+            if (request == null) {
+                if (replyToId != null && answeredIds.containsKey(replyToId)) return -1;
+                Iterator<Request> iterator = pending.values().iterator();
+                if (!iterator.hasNext()) return -1;
+                request = iterator.next();
+                iterator.remove();
+            }
+            if (replyToId != null) answeredIds.put(replyToId, Boolean.TRUE);
+        }
+        if (request.timeout != null) request.timeout.cancel();
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(receivedAtNanos - request.sentAtNanos);
+        getLatencies(request.type).record(latencyMs);
+        return latencyMs;
+    }
+
+    public synchronized boolean isAwaiting() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Stop waiting for a request without timing out, e.g. when it could not be sent
+     * @return false if it was not waiting
+     */
+    public boolean cancel(String activityId) {
+        Request request;
+        synchronized (this) {
+            request = pending.remove(activityId);
+        }
+        if (request == null) return false;
+        if (request.timeout != null) request.timeout.cancel();
+        return true;
+    }
+
+    /**
+     * Stop waiting for all the requests, without timing out
+     */
+    public void cancelAll() {
+        Request[] requests;
+        synchronized (this) {
+            requests = pending.values().toArray(new Request[0]);
+            pending.clear();
+        }
+        for (Request request : requests) {
+            if (request.timeout != null) request.timeout.cancel();
+        }
+    }
+
+    /**
+     * @return the timeout a new request of the type gets
+     */
+    public long getTimeoutMs(String requestType) {
+        LatencyHistogram histogram = getLatencies(requestType);
+        if (histogram.getCount() < MIN_SAMPLES) return defaultTimeoutMs;
+        long adaptive = histogram.getPercentile(99) * 3 / 2;
+        return Math.min(maxTimeoutMs, Math.max(minTimeoutMs, adaptive));
+    }
+
+    /**
+     * @return latencies of the replies to requests of the type
+     */
+    public synchronized LatencyHistogram getLatencies(String requestType) {
+        LatencyHistogram histogram = latencies.get(requestType);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            latencies.put(requestType, histogram);
+        }
+        return histogram;
+    }
+
+    private void onTimeout(Request request) {
+        synchronized (this) {
+            Object key = request.activityId != null ? request.activityId : request;
+            if (pending.get(key) != request) return;// answered meanwhile
+            pending.remove(key);
+        }
+        OnTimeoutListener listener = this.listener;
+        if (listener != null) listener.onTimeout(request.type, request.timeoutMs);
+    }
+}
@@ -0,0 +1,151 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.correlation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel: scheduling and cancelling are O(1), whatever the number of pending timeouts, and
+ * all of them are served by one daemon thread that wakes once per tick, and sleeps while no timeout is pending.
+ * Timeouts fire within one tick of their delay.
+ * Tasks run on the wheel's thread and must be short.
+ */
+public class TimerWheel {
+
+    // CONSTANTS
+    public static final long DEFAULT_TICK_MS = 50;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    public interface Timeout {
+        /**
+         * @return false if the task already ran or was cancelled
+         */
+        boolean cancel();
+    }
+
+    private final class Entry implements Timeout {
+        final Runnable task;
+        long rounds;
+        boolean isDone;
+
+        Entry(Runnable task, long rounds) {
+            this.task = task;
+            this.rounds = rounds;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (TimerWheel.this) {
+                if (isDone) return false;
+                isDone = true;
+                pendingCount--;
+                return true;
+            }
+        }
+    }
+
+    // STATE
+    private final long tickMs;
+    private final List<List<Entry>> buckets;
+    private final String threadName;
+    private long tick;
+    private int pendingCount;
+    private Thread thread;
+    private boolean isStopped;
+
+    public TimerWheel(String threadName) {
+        this(DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE, threadName);
+    }
+
+    public TimerWheel(long tickMs, int wheelSize, String threadName) {
+        this.tickMs = Math.max(1, tickMs);
+        int size = Math.max(1, wheelSize);
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) buckets.add(new ArrayList<>());
+        this.threadName = threadName;
+    }
+
+    /**
+     * Run the task once, after the delay. The thread of the wheel starts with the first timeout.
+     */
+    public synchronized Timeout schedule(Runnable task, long delayMs) {
+        if (isStopped) throw new IllegalStateException("timer wheel stopped");
+        long ticks = Math.max(1, (delayMs + tickMs - 1) / tickMs);
+        long target = tick + ticks;
+        Entry entry = new Entry(task, (ticks - 1) / buckets.size());
+        buckets.get((int) (target % buckets.size())).add(entry);
+        pendingCount++;
+        notifyAll();
+        if (thread == null) {
+            thread = new Thread(this::run, threadName);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return entry;
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Stop the thread. Pending timeouts never fire.
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            isStopped = true;
+            thread = this.thread;
+            notifyAll();
+        }
+        if (thread != null) thread.interrupt();
+    }
+
+    private void run() {
+        long nextTickAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tickMs);
+        List<Entry> expired = new ArrayList<>();
+        while (true) {
+            try {
+                synchronized (this) {
+                    if (pendingCount == 0 && !isStopped) {
+                        // nothing can expire, the tick count may pause
+                        while (pendingCount == 0 && !isStopped) wait();
+                        nextTickAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tickMs);
+                    }
+                }
+                long sleepNanos = nextTickAt - System.nanoTime();
+                if (sleepNanos > 0) TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+            nextTickAt += TimeUnit.MILLISECONDS.toNanos(tickMs);
+            synchronized (this) {
+                if (isStopped) return;
+                tick++;
+                Iterator<Entry> iterator = buckets.get((int) (tick % buckets.size())).iterator();
+                while (iterator.hasNext()) {
+                    Entry entry = iterator.next();
+                    if (entry.isDone) {
+                        iterator.remove();
+                    } else if (entry.rounds > 0) {
+                        entry.rounds--;
+                    } else {
+                        iterator.remove();
+                        entry.isDone = true;
+                        pendingCount--;
+                        expired.add(entry);
+                    }
+                }
+            }
+            for (Entry entry : expired) {
+                try {
+                    entry.task.run();
+                } catch (RuntimeException e) {
+                    // a failing task must not stop the other timeouts
+                }
+            }
+            expired.clear();
+        }
+    }
+}
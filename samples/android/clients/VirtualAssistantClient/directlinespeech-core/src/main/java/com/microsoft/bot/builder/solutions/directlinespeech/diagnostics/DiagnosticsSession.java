@@ -0,0 +1,136 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.diagnostics;
+
+import com.microsoft.bot.builder.solutions.directlinespeech.logging.AsyncFileLogger;
+import com.microsoft.bot.builder.solutions.directlinespeech.logging.LogLevel;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * A bounded window of diagnostic capture: Speech SDK log, audio dumps and a transcript of the activities,
+ * all in one directory per session under diagnostics/. The session expires after its duration or once its
+ * files reach the byte budget, and only the most recent sessions are kept.
+ * Nothing is written for diagnostics unless a session is open.
+ */
+public class DiagnosticsSession {
+
+    // CONSTANTS
+    public static final String DIAGNOSTICSDIRECTORY = "diagnostics";
+    private static final String SPEECHSDKLOGFILENAME = "SpeechSdk.log";
+    private static final String TRANSCRIPTFILENAME = "transcript.log";
+    private static final String AUDIODUMPPREFIX = "pma";
+    private static final int TRANSCRIPT_SEGMENTS = 1;
+    public static final long DEFAULT_DURATION_MS = 10 * 60 * 1000;
+    public static final long DEFAULT_MAX_BYTES = 50 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SESSIONS = 3;
+
+    // STATE
+    private final File directory;
+    private final long startedAt;
+    private final long durationMs;
+    private final long maxBytes;
+    private final AsyncFileLogger transcript;
+    private volatile boolean isClosed;
+
+    /**
+     * @param rootDirectory directory holding the diagnostics directory
+     * @param durationMs how long to capture
+     * @param maxBytes budget for all the files of the session
+     * @param maxSessions sessions kept, including this one
+     */
+    public DiagnosticsSession(File rootDirectory, long durationMs, long maxBytes, int maxSessions) {
+        File sessions = new File(rootDirectory, DIAGNOSTICSDIRECTORY);
+        deleteOldSessions(sessions, Math.max(1, maxSessions) - 1);
+
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        this.directory = new File(sessions, name);
+        this.directory.mkdirs();
+        this.startedAt = System.currentTimeMillis();
+        this.durationMs = durationMs > 0 ? durationMs : DEFAULT_DURATION_MS;
+        this.maxBytes = maxBytes > 0 ? maxBytes : DEFAULT_MAX_BYTES;
+        this.transcript = new AsyncFileLogger(new File(directory, TRANSCRIPTFILENAME), this.maxBytes / 8, TRANSCRIPT_SEGMENTS);
+        this.transcript.setLevel(LogLevel.VERBOSE);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return path of the Speech SDK log (PropertyId.Speech_LogFilename)
+     */
+    public String getSpeechSdkLogPath() {
+        return new File(directory, SPEECHSDKLOGFILENAME).getAbsolutePath();
+    }
+
+    /**
+     * @return prefix of the Speech SDK audio dump files
+     */
+    public String getAudioDumpPrefix() {
+        return new File(directory, AUDIODUMPPREFIX).getAbsolutePath();
+    }
+
+    /**
+     * Add a line to the transcript, without blocking
+     * @param direction e.g. "received", "sent" or "recognized"
+     */
+    public void logTranscript(String direction, String text) {
+        if (!isClosed) transcript.log(LogLevel.INFO, direction, text);
+    }
+
+    /**
+     * @return true once the duration passed or the files reached the byte budget. Walks the directory, call it sparingly.
+     */
+    public boolean isExpired() {
+        return isClosed || getRemainingMs() == 0 || getBytesUsed() >= maxBytes;
+    }
+
+    public long getRemainingMs() {
+        return Math.max(0, startedAt + durationMs - System.currentTimeMillis());
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return size of the files of the session
+     */
+    public long getBytesUsed() {
+        long bytes = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) bytes += file.length();
+        }
+        return bytes;
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Stop the transcript. The Speech SDK stops writing once the connector created for the session is closed.
+     */
+    public void close() {
+        if (isClosed) return;
+        isClosed = true;
+        transcript.close();
+    }
+
+    private static void deleteOldSessions(File sessions, int keep) {
+        File[] directories = sessions.listFiles(File::isDirectory);
+        if (directories == null || directories.length <= keep) return;
+        Arrays.sort(directories);// named by start time
+        for (int i = 0; i < directories.length - keep; i++) {
+            File[] files = directories[i].listFiles();
+            if (files != null) {
+                for (File file : files) file.delete();
+            }
+            directories[i].delete();
+        }
+    }
+}
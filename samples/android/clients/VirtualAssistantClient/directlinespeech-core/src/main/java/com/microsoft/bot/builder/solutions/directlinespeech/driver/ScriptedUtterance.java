@@ -0,0 +1,108 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.driver;
+
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.WavReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Random;
+
+/**
+ * What the user says in a scripted turn: 16 kHz, 16 bit, mono PCM and, if known, what it should be recognized as
+ */
+public class ScriptedUtterance {
+
+    // CONSTANTS
+    private static final String TRANSCRIPT_EXTENSION = ".txt";
+    private static final int SYLLABLE_MS = 180;
+    private static final int PAUSE_MS = 60;
+    private static final double AMPLITUDE = 6000;
+
+    // STATE
+    private final String name;
+    private final byte[] pcm;
+    private final String transcript;// null if not known
+
+    public ScriptedUtterance(String name, byte[] pcm, String transcript) {
+        this.name = name;
+        this.pcm = pcm;
+        this.transcript = transcript;
+    }
+
+    /**
+     * @param wavFile 16 kHz, 16 bit, mono PCM; its transcript, if any, is the first line of the .txt file of the same name
+     */
+    public static ScriptedUtterance fromWavFile(File wavFile) throws IOException {
+        byte[] pcm;
+        try (InputStream input = new FileInputStream(wavFile)) {
+            pcm = WavReader.readPcm(input);
+        } catch (IOException e) {
+            throw new IOException(wavFile.getName() + ": " + e.getMessage(), e);
+        }
+        String baseName = wavFile.getName().replaceFirst("\\.[^.]*$", "");
+        File transcriptFile = new File(wavFile.getParentFile(), baseName + TRANSCRIPT_EXTENSION);
+        String transcript = null;
+        if (transcriptFile.isFile()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(transcriptFile), "UTF-8"))) {
+                transcript = reader.readLine();
+            }
+        }
+        return new ScriptedUtterance(baseName, pcm, transcript);
+    }
+
+    /**
+     * Speech-like audio, voiced syllables and short pauses, with no words in it: a real endpoint streams, endpoints
+     * and recognizes it (as nothing, or noise) like speech, which is what load is measured with.
+     * @param transcript what a FakeDialogTransport should recognize it as, may be null
+     * @param seed the same seed gives the same audio
+     */
+    public static ScriptedUtterance synthetic(String name, String transcript, long durationMs, long seed) {
+        Random random = new Random(seed);
+        int sampleCount = (int) (durationMs * WavReader.SAMPLE_RATE / 1000);
+        byte[] pcm = new byte[sampleCount * 2];
+        int syllableSamples = SYLLABLE_MS * WavReader.SAMPLE_RATE / 1000;
+        int pauseSamples = PAUSE_MS * WavReader.SAMPLE_RATE / 1000;
+        int index = 0;
+        while (index < sampleCount) {
+            // each syllable has its own pitch, as a voice does
+            double pitch = 110 + random.nextInt(110);
+            double phase = 0;
+            for (int i = 0; i < syllableSamples && index < sampleCount; i++, index++) {
+                double envelope = Math.sin(Math.PI * i / syllableSamples);
+                phase += 2 * Math.PI * pitch / WavReader.SAMPLE_RATE;
+                double voiced = Math.sin(phase) + 0.5 * Math.sin(2 * phase) + 0.25 * Math.sin(3 * phase);
+                double noise = random.nextGaussian() * 0.05;
+                writeSample(pcm, index, AMPLITUDE * envelope * (voiced + noise));
+            }
+            for (int i = 0; i < pauseSamples && index < sampleCount; i++, index++) {
+                writeSample(pcm, index, AMPLITUDE * random.nextGaussian() * 0.01);
+            }
+        }
+        return new ScriptedUtterance(name, pcm, transcript);
+    }
+
+    private static void writeSample(byte[] pcm, int index, double value) {
+        int sample = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+        pcm[index * 2] = (byte) sample;
+        pcm[index * 2 + 1] = (byte) (sample >> 8);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public byte[] getPcm() {
+        return pcm;
+    }
+
+    public String getTranscript() {
+        return transcript;
+    }
+
+    public long getDurationMs() {
+        return pcm.length / WavReader.BYTES_PER_MS;
+    }
+}
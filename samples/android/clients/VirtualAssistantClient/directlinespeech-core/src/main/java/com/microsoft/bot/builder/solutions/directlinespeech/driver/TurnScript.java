@@ -0,0 +1,74 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The utterances of scripted turns, said in order; the script starts over when there are more turns than utterances
+ */
+public class TurnScript {
+
+    // CONSTANTS
+    private static final String WAV_EXTENSION = ".wav";
+    private static final String[] SYNTHETIC_TRANSCRIPTS = {
+            "what's the weather like today",
+            "what's on my calendar",
+            "find a coffee shop nearby",
+            "set a timer for ten minutes",
+            "tell me a joke"
+    };
+    private static final long SYNTHETIC_MIN_DURATION_MS = 1200;
+    private static final long SYNTHETIC_MAX_DURATION_MS = 3000;
+
+    // STATE
+    private final List<ScriptedUtterance> utterances;
+
+    public TurnScript(List<ScriptedUtterance> utterances) {
+        if (utterances.isEmpty()) throw new IllegalArgumentException("a script needs at least one utterance");
+        this.utterances = Collections.unmodifiableList(new ArrayList<>(utterances));
+    }
+
+    /**
+     * @return the .wav files of the directory, in the order of their names
+     * @throws IOException if there is none, or one cannot be read
+     */
+    public static TurnScript fromDirectory(File directory) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.toLowerCase().endsWith(WAV_EXTENSION));
+        if (files == null || files.length == 0) throw new IOException("no " + WAV_EXTENSION + " file in " + directory);
+        Arrays.sort(files);
+        List<ScriptedUtterance> utterances = new ArrayList<>();
+        for (File file : files) utterances.add(ScriptedUtterance.fromWavFile(file));
+        return new TurnScript(utterances);
+    }
+
+    /**
+     * @param count of synthetic utterances of different durations
+     * @param seed the same seed gives the same script
+     */
+    public static TurnScript synthetic(int count, long seed) {
+        Random random = new Random(seed);
+        List<ScriptedUtterance> utterances = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, count); i++) {
+            long durationMs = SYNTHETIC_MIN_DURATION_MS + (long) (random.nextDouble() * (SYNTHETIC_MAX_DURATION_MS - SYNTHETIC_MIN_DURATION_MS));
+            String transcript = SYNTHETIC_TRANSCRIPTS[i % SYNTHETIC_TRANSCRIPTS.length];
+            utterances.add(ScriptedUtterance.synthetic("synthetic-" + (i + 1), transcript, durationMs, random.nextLong()));
+        }
+        return new TurnScript(utterances);
+    }
+
+    /**
+     * @param turn from 0, may be past the last utterance
+     */
+    public ScriptedUtterance getUtterance(int turn) {
+        return utterances.get(turn % utterances.size());
+    }
+
+    public List<ScriptedUtterance> getUtterances() {
+        return utterances;
+    }
+}
@@ -0,0 +1,23 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Entry point for the streaming activity codecs.
+ * The returned Gson uses the hand-written TypeAdapters in this package for the activity models
+ * instead of reflection, and falls back to the default (reflective) adapters for everything else.
+ */
+public final class ActivityJson {
+
+    private ActivityJson() {
+    }
+
+    public static Gson create() {
+        return builder().create();
+    }
+
+    public static GsonBuilder builder() {
+        return new GsonBuilder().registerTypeAdapterFactory(new ModelTypeAdapterFactory());
+    }
+}
@@ -0,0 +1,293 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import org.threeten.bp.OffsetDateTime;
+
+import java.io.IOException;
+
+import client.model.Activity;
+import client.model.ActivityImportance;
+import client.model.ActivityTypes;
+import client.model.Attachment;
+import client.model.AttachmentLayoutTypes;
+import client.model.ChannelAccount;
+import client.model.ConversationAccount;
+import client.model.ConversationReference;
+import client.model.DeliveryModes;
+import client.model.EndOfConversationCodes;
+import client.model.Entity;
+import client.model.InputHints;
+import client.model.MessageReaction;
+import client.model.SemanticAction;
+import client.model.SuggestedActions;
+import client.model.TextFormatTypes;
+import client.model.TextHighlight;
+
+/**
+ * Streaming codec for the outgoing activities built by SpeechSdk.
+ * Fields are written in declaration order to produce the same JSON as Gson's reflective adapter.
+ * Rarely used nested types (timestamps, reactions, conversation references, ...) are delegated to Gson.
+ */
+public class ActivityTypeAdapter extends TypeAdapter<Activity> {
+
+    // STATE
+    private final TypeAdapter<Object> objectAdapter;
+    private final TypeAdapter<ActivityTypes> typeAdapter;
+    private final TypeAdapter<OffsetDateTime> dateTimeAdapter;
+    private final TypeAdapter<ChannelAccount> channelAccountAdapter;
+    private final TypeAdapter<ConversationAccount> conversationAdapter;
+    private final TypeAdapter<TextFormatTypes> textFormatAdapter;
+    private final TypeAdapter<AttachmentLayoutTypes> attachmentLayoutAdapter;
+    private final TypeAdapter<MessageReaction> reactionAdapter;
+    private final TypeAdapter<InputHints> inputHintAdapter;
+    private final TypeAdapter<SuggestedActions> suggestedActionsAdapter;
+    private final TypeAdapter<Attachment> attachmentAdapter;
+    private final TypeAdapter<Entity> entityAdapter;
+    private final TypeAdapter<ConversationReference> conversationReferenceAdapter;
+    private final TypeAdapter<EndOfConversationCodes> codeAdapter;
+    private final TypeAdapter<ActivityImportance> importanceAdapter;
+    private final TypeAdapter<DeliveryModes> deliveryModeAdapter;
+    private final TypeAdapter<TextHighlight> textHighlightAdapter;
+    private final TypeAdapter<SemanticAction> semanticActionAdapter;
+
+    public ActivityTypeAdapter(Gson gson) {
+        objectAdapter = gson.getAdapter(Object.class);
+        typeAdapter = gson.getAdapter(ActivityTypes.class);
+        dateTimeAdapter = gson.getAdapter(OffsetDateTime.class);
+        channelAccountAdapter = gson.getAdapter(ChannelAccount.class);
+        conversationAdapter = gson.getAdapter(ConversationAccount.class);
+        textFormatAdapter = gson.getAdapter(TextFormatTypes.class);
+        attachmentLayoutAdapter = gson.getAdapter(AttachmentLayoutTypes.class);
+        reactionAdapter = gson.getAdapter(MessageReaction.class);
+        inputHintAdapter = gson.getAdapter(InputHints.class);
+        suggestedActionsAdapter = gson.getAdapter(SuggestedActions.class);
+        attachmentAdapter = gson.getAdapter(Attachment.class);
+        entityAdapter = gson.getAdapter(Entity.class);
+        conversationReferenceAdapter = gson.getAdapter(ConversationReference.class);
+        codeAdapter = gson.getAdapter(EndOfConversationCodes.class);
+        importanceAdapter = gson.getAdapter(ActivityImportance.class);
+        deliveryModeAdapter = gson.getAdapter(DeliveryModes.class);
+        textHighlightAdapter = gson.getAdapter(TextHighlight.class);
+        semanticActionAdapter = gson.getAdapter(SemanticAction.class);
+    }
+
+    @Override
+    public void write(JsonWriter out, Activity activity) throws IOException {
+        if (activity == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("type");
+        typeAdapter.write(out, activity.getType());
+        out.name("id").value(activity.getId());
+        out.name("timestamp");
+        dateTimeAdapter.write(out, activity.getTimestamp());
+        out.name("localTimestamp");
+        dateTimeAdapter.write(out, activity.getLocalTimestamp());
+        out.name("serviceUrl").value(activity.getServiceUrl());
+        out.name("channelId").value(activity.getChannelId());
+        out.name("from");
+        channelAccountAdapter.write(out, activity.getFrom());
+        out.name("conversation");
+        conversationAdapter.write(out, activity.getConversation());
+        out.name("recipient");
+        channelAccountAdapter.write(out, activity.getRecipient());
+        out.name("textFormat");
+        textFormatAdapter.write(out, activity.getTextFormat());
+        out.name("attachmentLayout");
+        attachmentLayoutAdapter.write(out, activity.getAttachmentLayout());
+        out.name("membersAdded");
+        JsonValues.writeList(out, activity.getMembersAdded(), channelAccountAdapter);
+        out.name("membersRemoved");
+        JsonValues.writeList(out, activity.getMembersRemoved(), channelAccountAdapter);
+        out.name("reactionsAdded");
+        JsonValues.writeList(out, activity.getReactionsAdded(), reactionAdapter);
+        out.name("reactionsRemoved");
+        JsonValues.writeList(out, activity.getReactionsRemoved(), reactionAdapter);
+        out.name("topicName").value(activity.getTopicName());
+        out.name("historyDisclosed").value(activity.isHistoryDisclosed());
+        out.name("locale").value(activity.getLocale());
+        out.name("text").value(activity.getText());
+        out.name("speak").value(activity.getSpeak());
+        out.name("inputHint");
+        inputHintAdapter.write(out, activity.getInputHint());
+        out.name("summary").value(activity.getSummary());
+        out.name("suggestedActions");
+        suggestedActionsAdapter.write(out, activity.getSuggestedActions());
+        out.name("attachments");
+        JsonValues.writeList(out, activity.getAttachments(), attachmentAdapter);
+        out.name("entities");
+        JsonValues.writeList(out, activity.getEntities(), entityAdapter);
+        out.name("channelData");
+        objectAdapter.write(out, activity.getChannelData());
+        out.name("action").value(activity.getAction());
+        out.name("replyToId").value(activity.getReplyToId());
+        out.name("label").value(activity.getLabel());
+        out.name("valueType").value(activity.getValueType());
+        out.name("value");
+        objectAdapter.write(out, activity.getValue());
+        out.name("name").value(activity.getName());
+        out.name("relatesTo");
+        conversationReferenceAdapter.write(out, activity.getRelatesTo());
+        out.name("code");
+        codeAdapter.write(out, activity.getCode());
+        out.name("expiration");
+        dateTimeAdapter.write(out, activity.getExpiration());
+        out.name("importance");
+        importanceAdapter.write(out, activity.getImportance());
+        out.name("deliveryMode");
+        deliveryModeAdapter.write(out, activity.getDeliveryMode());
+        out.name("listenFor");
+        JsonValues.writeStringList(out, activity.getListenFor());
+        out.name("textHighlights");
+        JsonValues.writeList(out, activity.getTextHighlights(), textHighlightAdapter);
+        out.name("semanticAction");
+        semanticActionAdapter.write(out, activity.getSemanticAction());
+        out.endObject();
+    }
+
+    @Override
+    public Activity read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Activity activity = new Activity();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type":
+                    activity.setType(typeAdapter.read(in));
+                    break;
+                case "id":
+                    activity.setId(JsonValues.readString(in));
+                    break;
+                case "timestamp":
+                    activity.setTimestamp(dateTimeAdapter.read(in));
+                    break;
+                case "localTimestamp":
+                    activity.setLocalTimestamp(dateTimeAdapter.read(in));
+                    break;
+                case "serviceUrl":
+                    activity.setServiceUrl(JsonValues.readString(in));
+                    break;
+                case "channelId":
+                    activity.setChannelId(JsonValues.readString(in));
+                    break;
+                case "from":
+                    activity.setFrom(channelAccountAdapter.read(in));
+                    break;
+                case "conversation":
+                    activity.setConversation(conversationAdapter.read(in));
+                    break;
+                case "recipient":
+                    activity.setRecipient(channelAccountAdapter.read(in));
+                    break;
+                case "textFormat":
+                    activity.setTextFormat(textFormatAdapter.read(in));
+                    break;
+                case "attachmentLayout":
+                    activity.setAttachmentLayout(attachmentLayoutAdapter.read(in));
+                    break;
+                case "membersAdded":
+                    activity.setMembersAdded(JsonValues.readList(in, channelAccountAdapter));
+                    break;
+                case "membersRemoved":
+                    activity.setMembersRemoved(JsonValues.readList(in, channelAccountAdapter));
+                    break;
+                case "reactionsAdded":
+                    activity.setReactionsAdded(JsonValues.readList(in, reactionAdapter));
+                    break;
+                case "reactionsRemoved":
+                    activity.setReactionsRemoved(JsonValues.readList(in, reactionAdapter));
+                    break;
+                case "topicName":
+                    activity.setTopicName(JsonValues.readString(in));
+                    break;
+                case "historyDisclosed":
+                    activity.setHistoryDisclosed(JsonValues.readBoolean(in));
+                    break;
+                case "locale":
+                    activity.setLocale(JsonValues.readString(in));
+                    break;
+                case "text":
+                    activity.setText(JsonValues.readString(in));
+                    break;
+                case "speak":
+                    activity.setSpeak(JsonValues.readString(in));
+                    break;
+                case "inputHint":
+                    activity.setInputHint(inputHintAdapter.read(in));
+                    break;
+                case "summary":
+                    activity.setSummary(JsonValues.readString(in));
+                    break;
+                case "suggestedActions":
+                    activity.setSuggestedActions(suggestedActionsAdapter.read(in));
+                    break;
+                case "attachments":
+                    activity.setAttachments(JsonValues.readList(in, attachmentAdapter));
+                    break;
+                case "entities":
+                    activity.setEntities(JsonValues.readList(in, entityAdapter));
+                    break;
+                case "channelData":
+                    activity.setChannelData(objectAdapter.read(in));
+                    break;
+                case "action":
+                    activity.setAction(JsonValues.readString(in));
+                    break;
+                case "replyToId":
+                    activity.setReplyToId(JsonValues.readString(in));
+                    break;
+                case "label":
+                    activity.setLabel(JsonValues.readString(in));
+                    break;
+                case "valueType":
+                    activity.setValueType(JsonValues.readString(in));
+                    break;
+                case "value":
+                    activity.setValue(objectAdapter.read(in));
+                    break;
+                case "name":
+                    activity.setName(JsonValues.readString(in));
+                    break;
+                case "relatesTo":
+                    activity.setRelatesTo(conversationReferenceAdapter.read(in));
+                    break;
+                case "code":
+                    activity.setCode(codeAdapter.read(in));
+                    break;
+                case "expiration":
+                    activity.setExpiration(dateTimeAdapter.read(in));
+                    break;
+                case "importance":
+                    activity.setImportance(importanceAdapter.read(in));
+                    break;
+                case "deliveryMode":
+                    activity.setDeliveryMode(deliveryModeAdapter.read(in));
+                    break;
+                case "listenFor":
+                    activity.setListenFor(JsonValues.readStringList(in));
+                    break;
+                case "textHighlights":
+                    activity.setTextHighlights(JsonValues.readList(in, textHighlightAdapter));
+                    break;
+                case "semanticAction":
+                    activity.setSemanticAction(semanticActionAdapter.read(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return activity;
+    }
+}
@@ -0,0 +1,74 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.Attachment;
+
+/**
+ * Streaming codec for Attachment
+ */
+public class AttachmentTypeAdapter extends TypeAdapter<Attachment> {
+
+    // STATE
+    private final TypeAdapter<Object> objectAdapter;
+
+    public AttachmentTypeAdapter(Gson gson) {
+        objectAdapter = gson.getAdapter(Object.class);
+    }
+
+    @Override
+    public void write(JsonWriter out, Attachment attachment) throws IOException {
+        if (attachment == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("contentType").value(attachment.getContentType());
+        out.name("contentUrl").value(attachment.getContentUrl());
+        out.name("content");
+        objectAdapter.write(out, attachment.getContent());
+        out.name("name").value(attachment.getName());
+        out.name("thumbnailUrl").value(attachment.getThumbnailUrl());
+        out.endObject();
+    }
+
+    @Override
+    public Attachment read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Attachment attachment = new Attachment();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "contentType":
+                    attachment.setContentType(JsonValues.readString(in));
+                    break;
+                case "contentUrl":
+                    attachment.setContentUrl(JsonValues.readString(in));
+                    break;
+                case "content":
+                    attachment.setContent(objectAdapter.read(in));
+                    break;
+                case "name":
+                    attachment.setName(JsonValues.readString(in));
+                    break;
+                case "thumbnailUrl":
+                    attachment.setThumbnailUrl(JsonValues.readString(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return attachment;
+    }
+}
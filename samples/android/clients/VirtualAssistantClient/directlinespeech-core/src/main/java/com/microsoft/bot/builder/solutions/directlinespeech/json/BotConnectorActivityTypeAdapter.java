@@ -0,0 +1,177 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.BotConnectorActivity;
+import client.model.ChannelData;
+import client.model.ConversationBot;
+import client.model.From;
+import client.model.Recipient;
+import client.model.SuggestedActions;
+
+/**
+ * Streaming codec for the activities received from the bot.
+ * Fields are written in declaration order to produce the same JSON as Gson's reflective adapter.
+ */
+public class BotConnectorActivityTypeAdapter extends TypeAdapter<BotConnectorActivity> {
+
+    // STATE
+    private final TypeAdapter<Object> objectAdapter;
+    private final TypeAdapter<ChannelData> channelDataAdapter;
+    private final TypeAdapter<ConversationBot> conversationAdapter;
+    private final TypeAdapter<From> fromAdapter;
+    private final TypeAdapter<Recipient> recipientAdapter;
+    private final TypeAdapter<SuggestedActions> suggestedActionsAdapter;
+
+    public BotConnectorActivityTypeAdapter(Gson gson) {
+        objectAdapter = gson.getAdapter(Object.class);
+        channelDataAdapter = gson.getAdapter(ChannelData.class);
+        conversationAdapter = gson.getAdapter(ConversationBot.class);
+        fromAdapter = gson.getAdapter(From.class);
+        recipientAdapter = gson.getAdapter(Recipient.class);
+        suggestedActionsAdapter = gson.getAdapter(SuggestedActions.class);
+    }
+
+    @Override
+    public void write(JsonWriter out, BotConnectorActivity activity) throws IOException {
+        if (activity == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("attachmentLayout").value(activity.getAttachmentLayout());
+        out.name("attachments");
+        JsonValues.writeList(out, activity.getAttachments(), objectAdapter);
+        out.name("channelData");
+        channelDataAdapter.write(out, activity.getChannelData());
+        out.name("channelId").value(activity.getChannelId());
+        out.name("conversation");
+        conversationAdapter.write(out, activity.getConversation());
+        out.name("code").value(activity.getCode());
+        out.name("entities");
+        JsonValues.writeList(out, activity.getEntities(), objectAdapter);
+        out.name("from");
+        fromAdapter.write(out, activity.getFrom());
+        out.name("id").value(activity.getId());
+        out.name("inputHint").value(activity.getInputHint());
+        out.name("locale").value(activity.getLocale());
+        out.name("name").value(activity.getName());
+        out.name("recipient");
+        recipientAdapter.write(out, activity.getRecipient());
+        out.name("replyToId").value(activity.getReplyToId());
+        out.name("serviceUrl").value(activity.getServiceUrl());
+        out.name("speak").value(activity.getSpeak());
+        out.name("text").value(activity.getText());
+        out.name("timestamp").value(activity.getTimestamp());
+        out.name("type").value(activity.getType());
+        out.name("File").value(activity.getFile());
+        out.name("value");
+        objectAdapter.write(out, activity.getValue());
+        out.name("Amount").value(activity.getAmount());
+        out.name("requestedState").value(activity.getRequestedState());
+        out.name("seat").value(activity.getSeat());
+        out.name("suggestedActions");
+        suggestedActionsAdapter.write(out, activity.getSuggestedActions());
+        out.endObject();
+    }
+
+    @Override
+    public BotConnectorActivity read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        BotConnectorActivity activity = new BotConnectorActivity();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "attachmentLayout":
+                    activity.setAttachmentLayout(JsonValues.readString(in));
+                    break;
+                case "attachments":
+                    activity.setAttachments(JsonValues.readList(in, objectAdapter));
+                    break;
+                case "channelData":
+                    activity.setChannelData(channelDataAdapter.read(in));
+                    break;
+                case "channelId":
+                    activity.setChannelId(JsonValues.readString(in));
+                    break;
+                case "conversation":
+                    activity.setConversation(conversationAdapter.read(in));
+                    break;
+                case "code":
+                    activity.setCode(JsonValues.readString(in));
+                    break;
+                case "entities":
+                    activity.setEntities(JsonValues.readList(in, objectAdapter));
+                    break;
+                case "from":
+                    activity.setFrom(fromAdapter.read(in));
+                    break;
+                case "id":
+                    activity.setId(JsonValues.readString(in));
+                    break;
+                case "inputHint":
+                    activity.setInputHint(JsonValues.readString(in));
+                    break;
+                case "locale":
+                    activity.setLocale(JsonValues.readString(in));
+                    break;
+                case "name":
+                    activity.setName(JsonValues.readString(in));
+                    break;
+                case "recipient":
+                    activity.setRecipient(recipientAdapter.read(in));
+                    break;
+                case "replyToId":
+                    activity.setReplyToId(JsonValues.readString(in));
+                    break;
+                case "serviceUrl":
+                    activity.setServiceUrl(JsonValues.readString(in));
+                    break;
+                case "speak":
+                    activity.setSpeak(JsonValues.readString(in));
+                    break;
+                case "text":
+                    activity.setText(JsonValues.readString(in));
+                    break;
+                case "timestamp":
+                    activity.setTimestamp(JsonValues.readString(in));
+                    break;
+                case "type":
+                    activity.setType(JsonValues.readString(in));
+                    break;
+                case "File":
+                    activity.setFile(JsonValues.readString(in));
+                    break;
+                case "value":
+                    activity.setValue(objectAdapter.read(in));
+                    break;
+                case "Amount":
+                    activity.setAmount(JsonValues.readString(in));
+                    break;
+                case "requestedState":
+                    activity.setRequestedState(JsonValues.readString(in));
+                    break;
+                case "seat":
+                    activity.setSeat(JsonValues.readString(in));
+                    break;
+                case "suggestedActions":
+                    activity.setSuggestedActions(suggestedActionsAdapter.read(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return activity;
+    }
+}
@@ -0,0 +1,82 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.ActionTypes;
+import client.model.CardAction;
+
+/**
+ * Streaming codec for CardAction (suggested actions and card buttons)
+ */
+public class CardActionTypeAdapter extends TypeAdapter<CardAction> {
+
+    // STATE
+    private final TypeAdapter<ActionTypes> typeAdapter;
+    private final TypeAdapter<Object> objectAdapter;
+
+    public CardActionTypeAdapter(Gson gson) {
+        typeAdapter = gson.getAdapter(ActionTypes.class);
+        objectAdapter = gson.getAdapter(Object.class);
+    }
+
+    @Override
+    public void write(JsonWriter out, CardAction action) throws IOException {
+        if (action == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("type");
+        typeAdapter.write(out, action.getType());
+        out.name("title").value(action.getTitle());
+        out.name("image").value(action.getImage());
+        out.name("text").value(action.getText());
+        out.name("displayText").value(action.getDisplayText());
+        out.name("value");
+        objectAdapter.write(out, action.getValue());
+        out.endObject();
+    }
+
+    @Override
+    public CardAction read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        CardAction action = new CardAction();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type":
+                    action.setType(typeAdapter.read(in));
+                    break;
+                case "title":
+                    action.setTitle(JsonValues.readString(in));
+                    break;
+                case "image":
+                    action.setImage(JsonValues.readString(in));
+                    break;
+                case "text":
+                    action.setText(JsonValues.readString(in));
+                    break;
+                case "displayText":
+                    action.setDisplayText(JsonValues.readString(in));
+                    break;
+                case "value":
+                    action.setValue(objectAdapter.read(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return action;
+    }
+}
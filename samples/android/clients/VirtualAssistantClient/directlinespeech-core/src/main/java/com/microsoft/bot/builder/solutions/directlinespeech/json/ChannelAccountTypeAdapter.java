@@ -0,0 +1,67 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.ChannelAccount;
+import client.model.RoleTypes;
+
+/**
+ * Streaming codec for ChannelAccount (the "from" of every outgoing activity)
+ */
+public class ChannelAccountTypeAdapter extends TypeAdapter<ChannelAccount> {
+
+    // STATE
+    private final TypeAdapter<RoleTypes> roleAdapter;
+
+    public ChannelAccountTypeAdapter(Gson gson) {
+        roleAdapter = gson.getAdapter(RoleTypes.class);
+    }
+
+    @Override
+    public void write(JsonWriter out, ChannelAccount account) throws IOException {
+        if (account == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(account.getId());
+        out.name("name").value(account.getName());
+        out.name("role");
+        roleAdapter.write(out, account.getRole());
+        out.endObject();
+    }
+
+    @Override
+    public ChannelAccount read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ChannelAccount account = new ChannelAccount();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    account.setId(JsonValues.readString(in));
+                    break;
+                case "name":
+                    account.setName(JsonValues.readString(in));
+                    break;
+                case "role":
+                    account.setRole(roleAdapter.read(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return account;
+    }
+}
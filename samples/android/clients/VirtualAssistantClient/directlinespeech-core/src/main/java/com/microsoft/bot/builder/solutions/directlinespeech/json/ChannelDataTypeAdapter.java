@@ -0,0 +1,56 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.ChannelData;
+import client.model.ConversationalAiData;
+
+/**
+ * Streaming codec for ChannelData
+ */
+public class ChannelDataTypeAdapter extends TypeAdapter<ChannelData> {
+
+    // STATE
+    private final TypeAdapter<ConversationalAiData> conversationalAiDataAdapter;
+
+    public ChannelDataTypeAdapter(Gson gson) {
+        conversationalAiDataAdapter = gson.getAdapter(ConversationalAiData.class);
+    }
+
+    @Override
+    public void write(JsonWriter out, ChannelData channelData) throws IOException {
+        if (channelData == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("conversationalAiData");
+        conversationalAiDataAdapter.write(out, channelData.getConversationalAiData());
+        out.endObject();
+    }
+
+    @Override
+    public ChannelData read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ChannelData channelData = new ChannelData();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("conversationalAiData")) {
+                channelData.setConversationalAiData(conversationalAiDataAdapter.read(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return channelData;
+    }
+}
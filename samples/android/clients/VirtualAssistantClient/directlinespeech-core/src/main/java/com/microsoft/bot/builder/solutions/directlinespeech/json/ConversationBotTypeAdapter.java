@@ -0,0 +1,53 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.ConversationBot;
+
+/**
+ * Streaming codec for ConversationBot
+ */
+public class ConversationBotTypeAdapter extends TypeAdapter<ConversationBot> {
+
+    @Override
+    public void write(JsonWriter out, ConversationBot conversation) throws IOException {
+        if (conversation == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(conversation.getId());
+        out.name("isGroup").value(conversation.getIsGroup());
+        out.endObject();
+    }
+
+    @Override
+    public ConversationBot read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ConversationBot conversation = new ConversationBot();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    conversation.setId(JsonValues.readString(in));
+                    break;
+                case "isGroup":
+                    conversation.setIsGroup(JsonValues.readBoolean(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return conversation;
+    }
+}
@@ -0,0 +1,56 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.ConversationalAiData;
+import client.model.RequestInfo;
+
+/**
+ * Streaming codec for ConversationalAiData
+ */
+public class ConversationalAiDataTypeAdapter extends TypeAdapter<ConversationalAiData> {
+
+    // STATE
+    private final TypeAdapter<RequestInfo> requestInfoAdapter;
+
+    public ConversationalAiDataTypeAdapter(Gson gson) {
+        requestInfoAdapter = gson.getAdapter(RequestInfo.class);
+    }
+
+    @Override
+    public void write(JsonWriter out, ConversationalAiData data) throws IOException {
+        if (data == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("requestInfo");
+        requestInfoAdapter.write(out, data.getRequestInfo());
+        out.endObject();
+    }
+
+    @Override
+    public ConversationalAiData read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ConversationalAiData data = new ConversationalAiData();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("requestInfo")) {
+                data.setRequestInfo(requestInfoAdapter.read(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return data;
+    }
+}
@@ -0,0 +1,46 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.From;
+
+/**
+ * Streaming codec for From
+ */
+public class FromTypeAdapter extends TypeAdapter<From> {
+
+    @Override
+    public void write(JsonWriter out, From value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(value.getId());
+        out.endObject();
+    }
+
+    @Override
+    public From read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        From value = new From();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("id")) {
+                value.setId(JsonValues.readString(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
@@ -0,0 +1,105 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Primitive read/write helpers shared by the TypeAdapters in this package.
+ * The read methods are as lenient as Gson's built-in adapters so that the decoded
+ * models are identical to the ones produced by reflection.
+ */
+final class JsonValues {
+
+    private JsonValues() {
+    }
+
+    static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    static Boolean readBoolean(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.STRING) {
+            return Boolean.parseBoolean(in.nextString());
+        }
+        return in.nextBoolean();
+    }
+
+    static Integer readInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    static <T> List<T> readList(JsonReader in, TypeAdapter<T> elementAdapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<T> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(elementAdapter.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    static List<String> readStringList(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<String> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(readString(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    static <T> void writeList(JsonWriter out, List<T> list, TypeAdapter<T> elementAdapter) throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (int i = 0, size = list.size(); i < size; i++) {
+            elementAdapter.write(out, list.get(i));
+        }
+        out.endArray();
+    }
+
+    static void writeStringList(JsonWriter out, List<String> list) throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (int i = 0, size = list.size(); i < size; i++) {
+            out.value(list.get(i));
+        }
+        out.endArray();
+    }
+}
@@ -0,0 +1,71 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+import client.model.Activity;
+import client.model.Attachment;
+import client.model.BotConnectorActivity;
+import client.model.CardAction;
+import client.model.ChannelAccount;
+import client.model.ChannelData;
+import client.model.ConversationBot;
+import client.model.ConversationalAiData;
+import client.model.From;
+import client.model.Recipient;
+import client.model.RequestInfo;
+import client.model.SuggestedActions;
+
+/**
+ * Maps the activity models to their streaming TypeAdapters.
+ * Types that are not listed here are left to Gson's reflective adapters.
+ */
+public class ModelTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        final Class<? super T> rawType = typeToken.getRawType();
+
+        if (rawType == BotConnectorActivity.class) {
+            return (TypeAdapter<T>) new BotConnectorActivityTypeAdapter(gson);
+        }
+        if (rawType == Activity.class) {
+            return (TypeAdapter<T>) new ActivityTypeAdapter(gson);
+        }
+        if (rawType == ChannelAccount.class) {
+            return (TypeAdapter<T>) new ChannelAccountTypeAdapter(gson);
+        }
+        if (rawType == CardAction.class) {
+            return (TypeAdapter<T>) new CardActionTypeAdapter(gson);
+        }
+        if (rawType == SuggestedActions.class) {
+            return (TypeAdapter<T>) new SuggestedActionsTypeAdapter(gson);
+        }
+        if (rawType == Attachment.class) {
+            return (TypeAdapter<T>) new AttachmentTypeAdapter(gson);
+        }
+        if (rawType == ChannelData.class) {
+            return (TypeAdapter<T>) new ChannelDataTypeAdapter(gson);
+        }
+        if (rawType == ConversationalAiData.class) {
+            return (TypeAdapter<T>) new ConversationalAiDataTypeAdapter(gson);
+        }
+        if (rawType == RequestInfo.class) {
+            return (TypeAdapter<T>) new RequestInfoTypeAdapter();
+        }
+        if (rawType == ConversationBot.class) {
+            return (TypeAdapter<T>) new ConversationBotTypeAdapter();
+        }
+        if (rawType == From.class) {
+            return (TypeAdapter<T>) new FromTypeAdapter();
+        }
+        if (rawType == Recipient.class) {
+            return (TypeAdapter<T>) new RecipientTypeAdapter();
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.Recipient;
+
+/**
+ * Streaming codec for Recipient
+ */
+public class RecipientTypeAdapter extends TypeAdapter<Recipient> {
+
+    @Override
+    public void write(JsonWriter out, Recipient value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(value.getId());
+        out.endObject();
+    }
+
+    @Override
+    public Recipient read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Recipient value = new Recipient();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("id")) {
+                value.setId(JsonValues.readString(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
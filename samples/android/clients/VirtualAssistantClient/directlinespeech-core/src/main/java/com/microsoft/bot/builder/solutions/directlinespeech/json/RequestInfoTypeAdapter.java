@@ -0,0 +1,57 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.RequestInfo;
+
+/**
+ * Streaming codec for RequestInfo
+ */
+public class RequestInfoTypeAdapter extends TypeAdapter<RequestInfo> {
+
+    @Override
+    public void write(JsonWriter out, RequestInfo requestInfo) throws IOException {
+        if (requestInfo == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("interactionId").value(requestInfo.getInteractionId());
+        out.name("requestType").value(requestInfo.getRequestType());
+        out.name("version").value(requestInfo.getVersion());
+        out.endObject();
+    }
+
+    @Override
+    public RequestInfo read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        RequestInfo requestInfo = new RequestInfo();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "interactionId":
+                    requestInfo.setInteractionId(JsonValues.readString(in));
+                    break;
+                case "requestType":
+                    requestInfo.setRequestType(JsonValues.readInteger(in));
+                    break;
+                case "version":
+                    requestInfo.setVersion(JsonValues.readString(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return requestInfo;
+    }
+}
@@ -0,0 +1,64 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import client.model.CardAction;
+import client.model.SuggestedActions;
+
+/**
+ * Streaming codec for SuggestedActions
+ */
+public class SuggestedActionsTypeAdapter extends TypeAdapter<SuggestedActions> {
+
+    // STATE
+    private final TypeAdapter<CardAction> cardActionAdapter;
+
+    public SuggestedActionsTypeAdapter(Gson gson) {
+        cardActionAdapter = gson.getAdapter(CardAction.class);
+    }
+
+    @Override
+    public void write(JsonWriter out, SuggestedActions suggestedActions) throws IOException {
+        if (suggestedActions == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("to");
+        JsonValues.writeStringList(out, suggestedActions.getTo());
+        out.name("actions");
+        JsonValues.writeList(out, suggestedActions.getActions(), cardActionAdapter);
+        out.endObject();
+    }
+
+    @Override
+    public SuggestedActions read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        SuggestedActions suggestedActions = new SuggestedActions();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "to":
+                    suggestedActions.setTo(JsonValues.readStringList(in));
+                    break;
+                case "actions":
+                    suggestedActions.setActions(JsonValues.readList(in, cardActionAdapter));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return suggestedActions;
+    }
+}
@@ -0,0 +1,269 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.logging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log file written by a background thread.
+ * Logging threads only put the line in a lock-free ring and return, they never wait for the disk: if the writer
+ * falls behind and the ring is full, the line is dropped and counted. The writer formats lines into a buffer
+ * and writes it in batches through a FileChannel. When the file reaches its maximum size it is compressed into
+ * numbered segments (app.log.1.gz is the most recent) and a new file is started.
+ */
+public class AsyncFileLogger implements Closeable {
+
+    // CONSTANTS
+    private static final int RING_CAPACITY = 4096;
+    private static final int BATCH_BYTES = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+    private static final String SEGMENT_EXTENSION = ".gz";
+
+    // STATE
+    private final File file;
+    private final long maxFileBytes;
+    private final int maxSegments;
+    private final LogRing ring = new LogRing(RING_CAPACITY);
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread writerThread;
+    private volatile LogLevel level = LogLevel.INFO;
+    private volatile boolean isRunning = true;
+    private volatile boolean isFlushRequested;
+
+    // writer thread only
+    private final ByteBuffer batch = ByteBuffer.allocate(BATCH_BYTES);
+    private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(256);
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+    private final Date date = new Date();
+    private FileOutputStream output;
+    private FileChannel channel;
+    private long reportedDropCount;
+
+    /**
+     * @param file log file, appended to
+     * @param maxFileBytes size at which the file is rotated
+     * @param maxSegments number of compressed old files kept, 0 to discard old files
+     */
+    public AsyncFileLogger(File file, long maxFileBytes, int maxSegments) {
+        this.file = file;
+        this.maxFileBytes = Math.max(BATCH_BYTES, maxFileBytes);
+        this.maxSegments = Math.max(0, maxSegments);
+        writerThread = new Thread(this::runWriter, "AsyncFileLogger");
+        writerThread.setDaemon(true);
+        writerThread.setPriority(Thread.MIN_PRIORITY);
+        writerThread.start();
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    public void setLevel(LogLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * Check before building an expensive message
+     */
+    public boolean isLoggable(LogLevel level) {
+        return level.compareTo(this.level) >= 0;
+    }
+
+    /**
+     * Queue a line for the file, without blocking
+     * @return false if the line was filtered out or dropped
+     */
+    public boolean log(LogLevel level, String tag, String message) {
+        if (!isLoggable(level) || !isRunning) return false;
+        if (!ring.offer(System.currentTimeMillis(), level, tag, message)) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        if (level == LogLevel.ERROR) LockSupport.unpark(writerThread);// errors are written right away
+        return true;
+    }
+
+    /**
+     * Ask the writer to write queued lines now, e.g. before a log file is shared. Does not wait.
+     */
+    public void flush() {
+        isFlushRequested = true;
+        LockSupport.unpark(writerThread);
+    }
+
+    /**
+     * @return lines dropped because the writer fell behind
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Write the queued lines and stop the writer, waiting for it a short while
+     */
+    @Override
+    public void close() {
+        isRunning = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        try {
+            while (true) {
+                boolean running = isRunning;// read before draining, so nothing queued before close() is missed
+                int count = drain();
+                if (count == 0 || isFlushRequested) {
+                    isFlushRequested = false;
+                    writeBatch();
+                    if (!running) break;
+                    if (count == 0) LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+        } finally {
+            closeChannel();
+        }
+    }
+
+    // moves queued lines into the batch, writing it out when full
+    private int drain() {
+        int count = 0;
+        int slot;
+        while ((slot = ring.peek()) >= 0) {
+            format(ring.getTimestamp(slot), ring.getLevel(slot), ring.getTag(slot), ring.getMessage(slot));
+            ring.release(slot);
+            append();
+            count++;
+        }
+        long dropped = droppedCount.get();
+        if (dropped != reportedDropCount) {
+            line.setLength(0);
+            line.append("--- ").append(dropped - reportedDropCount).append(" log lines dropped\n");
+            reportedDropCount = dropped;
+            append();
+        }
+        return count;
+    }
+
+    private void format(long timestamp, LogLevel level, String tag, String message) {
+        date.setTime(timestamp);
+        line.setLength(0);
+        line.append(dateFormat.format(date)).append(' ').append(level.getLetter()).append(' ');
+        if (tag != null) line.append(tag).append(": ");
+        line.append(message).append('\n');
+    }
+
+    private void append() {
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, batch, true);
+            if (result.isOverflow()) {
+                writeBatch();
+                continue;
+            }
+            if (encoder.flush(batch).isOverflow()) {
+                writeBatch();
+                encoder.flush(batch);
+            }
+            break;
+        }
+    }
+
+    private void writeBatch() {
+        if (batch.position() == 0) return;
+        batch.flip();
+        try {
+            if (channel == null) openChannel();
+            while (batch.hasRemaining()) channel.write(batch);
+            if (channel.size() >= maxFileBytes) rotate();
+        } catch (IOException e) {
+            closeChannel();// reopened with the next batch, this one is lost
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void openChannel() throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory()) directory.mkdirs();
+        output = new FileOutputStream(file, true);
+        channel = output.getChannel();
+    }
+
+    private void closeChannel() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                // nothing to log to
+            }
+        }
+        output = null;
+        channel = null;
+    }
+
+    private void rotate() {
+        closeChannel();
+        if (maxSegments == 0) {
+            file.delete();
+            return;
+        }
+
+        // shift the segments: app.log.1.gz becomes app.log.2.gz, the oldest is deleted
+        segment(maxSegments).delete();
+        for (int index = maxSegments - 1; index >= 1; index--) {
+            File segment = segment(index);
+            if (segment.exists()) segment.renameTo(segment(index + 1));
+        }
+
+        File rotated = new File(file.getPath() + ".rotating");
+        if (!file.renameTo(rotated)) return;
+        File compressed = segment(1);
+        try (InputStream in = new FileInputStream(rotated);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            compressed.delete();
+        }
+        rotated.delete();
+    }
+
+    private File segment(int index) {
+        return new File(file.getPath() + "." + index + SEGMENT_EXTENSION);
+    }
+}
@@ -0,0 +1,48 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.logging;
+
+/**
+ * Severity of a log line, from the most verbose to the most severe.
+ */
+public enum LogLevel {
+
+    VERBOSE("verbose", 'V'),
+    DEBUG("debug", 'D'),
+    INFO("info", 'I'),
+    WARN("warn", 'W'),
+    ERROR("error", 'E');
+
+    private final String configurationName;
+    private final char letter;
+
+    LogLevel(String configurationName, char letter) {
+        this.configurationName = configurationName;
+        this.letter = letter;
+    }
+
+    /**
+     * @return name used in the Configuration
+     */
+    public String getConfigurationName() {
+        return configurationName;
+    }
+
+    /**
+     * @return letter written in the log file, as in logcat
+     */
+    public char getLetter() {
+        return letter;
+    }
+
+    /**
+     * @param configurationName e.g. "debug", case insensitive
+     * @return the level, INFO if the name is null or unknown
+     */
+    public static LogLevel fromConfigurationName(String configurationName) {
+        if (configurationName != null) {
+            for (LogLevel level : values()) {
+                if (level.configurationName.equalsIgnoreCase(configurationName)) return level;
+            }
+        }
+        return INFO;
+    }
+}
@@ -0,0 +1,104 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of log lines for any number of logging threads and one writer thread.
+ * Lines are kept in preallocated slots, so logging only allocates the message itself; when the ring is full
+ * the line is refused instead of waiting for the writer.
+ */
+final class LogRing {
+
+    // STATE
+    private final int mask;
+    private final AtomicLongArray sequences;// per slot: ready to offer at position, or to poll at position + 1
+    private final long[] timestamps;
+    private final LogLevel[] levels;
+    private final String[] tags;
+    private final String[] messages;
+    private final AtomicLong tail = new AtomicLong();// next position to offer, shared by the producers
+    private long head;// next position to poll, writer thread only
+
+    /**
+     * @param capacity maximum number of lines, rounded up to a power of two
+     */
+    LogRing(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+        timestamps = new long[size];
+        levels = new LogLevel[size];
+        tags = new String[size];
+        messages = new String[size];
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return false if the ring is full
+     */
+    boolean offer(long timestamp, LogLevel level, String tag, String message) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    timestamps[index] = timestamp;
+                    levels[index] = level;
+                    tags[index] = tag;
+                    messages[index] = message;
+                    sequences.lazySet(index, position + 1);// publishes the line
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;// the slot still holds a line from the previous lap
+            } else {
+                position = tail.get();// another producer took the slot
+            }
+        }
+    }
+
+    /**
+     * Writer thread only
+     * @return the slot of the next line, or -1 if there is none. Read it with the getters, then call release().
+     */
+    int peek() {
+        int index = (int) head & mask;
+        return sequences.get(index) == head + 1 ? index : -1;
+    }
+
+    long getTimestamp(int slot) {
+        return timestamps[slot];
+    }
+
+    LogLevel getLevel(int slot) {
+        return levels[slot];
+    }
+
+    String getTag(int slot) {
+        return tags[slot];
+    }
+
+    String getMessage(int slot) {
+        return messages[slot];
+    }
+
+    /**
+     * Writer thread only: frees the slot returned by peek() for the producers
+     */
+    void release(int slot) {
+        tags[slot] = null;
+        messages[slot] = null;
+        levels[slot] = null;
+        sequences.lazySet(slot, head + mask + 1);
+        head++;
+    }
+}
@@ -0,0 +1,107 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.metrics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Histogram of latencies in milliseconds with log-linear buckets: exact below 16 ms, then 16 buckets per
+ * power of two, so percentiles are within about 6% of the recorded values up to a few minutes.
+ * Memory does not grow with the number of values.
+ */
+public class LatencyHistogram {
+
+    // CONSTANTS
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 18;// about 4 minutes, larger values go in the last bucket
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final double[] PERCENTILES = {50, 90, 95, 99};
+
+    // STATE
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public synchronized void record(long valueMs) {
+        long value = Math.max(0, valueMs);
+        counts[bucketIndex(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile e.g. 95 for the 95th percentile
+     * @return the highest value of the bucket holding the percentile, at most the maximum recorded value
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            seen += counts[index];
+            if (seen >= rank) return Math.min(max, bucketUpperBound(index));
+        }
+        return max;
+    }
+
+    /**
+     * @return count, mean, min, percentiles and max, e.g. to be written as JSON
+     */
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", getCount());
+        values.put("mean", Math.round(getMean()));
+        values.put("min", getMin());
+        for (double percentile : PERCENTILES) {
+            values.put("p" + (int) percentile, getPercentile(percentile));
+        }
+        values.put("max", getMax());
+        return values;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+        int subBucket = (int) (value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+}
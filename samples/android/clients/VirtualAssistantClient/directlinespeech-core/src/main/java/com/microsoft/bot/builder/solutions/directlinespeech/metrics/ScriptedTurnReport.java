@@ -0,0 +1,91 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.metrics;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Results of scripted turns: what each utterance was recognized as, how many activities the bot sent and how long
+ * after the end of the speech the recognition and the first activity came, with histograms of these latencies.
+ */
+public class ScriptedTurnReport {
+
+    // CONSTANTS
+    private static final int MAX_TURNS_KEPT = 1000;
+
+    // STATE
+    private final ArrayDeque<Map<String, Object>> turns = new ArrayDeque<>();
+    private final LatencyHistogram recognitionLatency = new LatencyHistogram();
+    private final LatencyHistogram firstActivityLatency = new LatencyHistogram();
+    private final LatencyHistogram activityCounts = new LatencyHistogram();// activities per turn, counts rather than milliseconds
+    private long turnCount;
+    private long timedOutCount;
+    private long unrecognizedCount;
+    private long mismatchCount;
+
+    /**
+     * @param expectedText the transcript of the utterance, null if not known
+     * @param recognizedText null if nothing was recognized
+     * @param recognitionMs from the end of the speech to the final recognition, -1 if none
+     * @param firstActivityMs from the end of the speech to the first activity of the bot, -1 if none
+     * @param timedOut true if no response arrived in time
+     */
+    public synchronized void record(String utterance, String expectedText, String recognizedText,
+                                    long recognitionMs, long firstActivityMs, int activityCount, boolean timedOut) {
+        turnCount++;
+        if (timedOut) timedOutCount++;
+        if (recognizedText == null || recognizedText.isEmpty()) unrecognizedCount++;
+        boolean matched = expectedText == null || normalize(expectedText).equals(normalize(recognizedText));
+        if (!matched) mismatchCount++;
+        if (recognitionMs >= 0) recognitionLatency.record(recognitionMs);
+        if (firstActivityMs >= 0) firstActivityLatency.record(firstActivityMs);
+        activityCounts.record(activityCount);
+
+        Map<String, Object> turn = new LinkedHashMap<>();
+        turn.put("turn", turnCount);
+        turn.put("utterance", utterance);
+        turn.put("expected", expectedText);
+        turn.put("recognized", recognizedText);
+        turn.put("matched", matched);
+        turn.put("recognitionMs", recognitionMs);
+        turn.put("firstActivityMs", firstActivityMs);
+        turn.put("activities", activityCount);
+        turn.put("timedOut", timedOut);
+        turns.addLast(turn);
+        if (turns.size() > MAX_TURNS_KEPT) turns.removeFirst();
+    }
+
+    public synchronized long getTurnCount() {
+        return turnCount;
+    }
+
+    /**
+     * @return the totals, latency percentiles in milliseconds and the recent turns, as JSON
+     */
+    public synchronized String toJson() {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("turns", turnCount);
+        root.put("timedOut", timedOutCount);
+        root.put("unrecognized", unrecognizedCount);
+        root.put("mismatched", mismatchCount);
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("recognition", recognitionLatency.toMap());
+        latency.put("firstActivity", firstActivityLatency.toMap());
+        root.put("latency", latency);
+        root.put("activities", activityCounts.toMap());
+        List<Map<String, Object>> recent = new ArrayList<>(turns);
+        root.put("recentTurns", recent);
+        return new Gson().toJson(root);
+    }
+
+    // case and punctuation differ between transcripts and recognitions, e.g. "What's the weather?"
+    private static String normalize(String text) {
+        if (text == null) return "";
+        return text.toLowerCase(Locale.US).replaceAll("[^\\p{L}\\p{N}' ]", "").replaceAll("\\s+", " ").trim();
+    }
+}
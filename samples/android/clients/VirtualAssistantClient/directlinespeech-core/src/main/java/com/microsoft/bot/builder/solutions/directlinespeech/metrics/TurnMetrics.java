@@ -0,0 +1,260 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.metrics;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeline of each turn of the conversation, from the microphone opening (or a typed message) to the end of
+ * the bot's speech, and latency histograms of its phases. Used to tell whether a slow turn was slow in
+ * capture, recognition, the bot, speech synthesis or playback.
+ *
+ * Marks are System.nanoTime() values; only the first of each kind counts in a turn, later ones are ignored
+ * (e.g. the partial results after the first one). A turn ends when its playback ends, when it times out or
+ * when the next turn starts.
+ *
+ * The start of the session is recorded too: how long connecting takes and how long until the welcome card arrives.
+ */
+public class TurnMetrics {
+
+    public enum Mark {
+        MIC_OPEN("micOpen"),
+        FIRST_PARTIAL("firstPartial"),
+        FINAL_RECOGNITION("finalRecognition"),
+        ACTIVITY_SENT("activitySent"),
+        FIRST_ACTIVITY("firstActivity"),
+        FIRST_TTS_BYTE("firstTtsByte"),
+        PLAYBACK_START("playbackStart"),
+        PLAYBACK_END("playbackEnd");
+
+        private final String metricName;
+
+        Mark(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    /**
+     * Phases of a turn, each measured between two marks
+     */
+    public enum Phase {
+        CAPTURE("capture", Mark.MIC_OPEN, Mark.FIRST_PARTIAL),
+        RECOGNITION("recognition", Mark.FIRST_PARTIAL, Mark.FINAL_RECOGNITION),
+        BOT("bot", null, Mark.FIRST_ACTIVITY),// from the end of the request, see requestMark()
+        SYNTHESIS("synthesis", Mark.FIRST_ACTIVITY, Mark.FIRST_TTS_BYTE),
+        PLAYBACK_START("playbackStart", Mark.FIRST_TTS_BYTE, Mark.PLAYBACK_START),
+        PLAYBACK("playback", Mark.PLAYBACK_START, Mark.PLAYBACK_END),
+        RESPONSE("response", null, Mark.PLAYBACK_START);// what the user perceives: end of the request to the bot speaking
+
+        private final String metricName;
+        private final Mark from;
+        private final Mark to;
+
+        Phase(String metricName, Mark from, Mark to) {
+            this.metricName = metricName;
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    // CONSTANTS
+    private static final int MAX_TURNS_KEPT = 200;
+
+    // STATE
+    private final Map<Phase, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final ArrayDeque<Turn> turns = new ArrayDeque<>();
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LatencyHistogram timeToWelcome = new LatencyHistogram();
+    private final LatencyHistogram continuousGap = new LatencyHistogram();
+    private final LatencyHistogram listenOnceGap = new LatencyHistogram();
+    private Turn currentTurn;
+    private long turnCount;
+    private long timedOutCount;
+
+    public TurnMetrics() {
+        for (Phase phase : Phase.values()) histograms.put(phase, new LatencyHistogram());
+    }
+
+    /**
+     * Start a turn, ending the current one
+     * @param typed true if the user typed the request instead of speaking
+     */
+    public synchronized void startTurn(boolean typed, long nanos) {
+        finishTurn(false);
+        currentTurn = new Turn(++turnCount, System.currentTimeMillis(), nanos, typed);
+    }
+
+    /**
+     * @return true if a turn is in progress
+     */
+    public synchronized boolean isInTurn() {
+        return currentTurn != null;
+    }
+
+    /**
+     * Record a point of the current turn, if there is one and the point is not recorded yet
+     */
+    public synchronized void mark(Mark mark, long nanos) {
+        if (currentTurn == null || nanos == 0) return;
+        long[] marks = currentTurn.marks;
+        if (marks[mark.ordinal()] == 0) marks[mark.ordinal()] = nanos;
+    }
+
+    /**
+     * End the current turn at the end of its playback. Ignored if the turn has not played anything yet,
+     * e.g. when the playback of the previous turn is interrupted by this one.
+     */
+    public synchronized void endTurnAfterPlayback(long nanos) {
+        if (currentTurn == null || currentTurn.marks[Mark.PLAYBACK_START.ordinal()] == 0) return;
+        mark(Mark.PLAYBACK_END, nanos);
+        finishTurn(false);
+    }
+
+    /**
+     * End the current turn, e.g. when no response arrived
+     * @param timedOut true if no response arrived in time
+     */
+    public synchronized void endTurn(boolean timedOut) {
+        finishTurn(timedOut);
+    }
+
+    /**
+     * @param latencyMs from the start of a connection to the connector being ready
+     */
+    public synchronized void recordConnect(long latencyMs) {
+        connectLatency.record(latencyMs);
+    }
+
+    /**
+     * @param latencyMs from the start of the session (connecting, or requesting the welcome card later)
+     *                  to the welcome card being received
+     */
+    public synchronized void recordTimeToWelcome(long latencyMs) {
+        timeToWelcome.record(latencyMs);
+    }
+
+    /**
+     * @param continuous true if the microphone stayed open between the turns, false if it was opened again
+     * @param gapMs from the end of the playback of a question of the bot to the first partial result of the answer,
+     *              i.e. how soon the user is heard
+     */
+    public synchronized void recordFollowUpGap(boolean continuous, long gapMs) {
+        (continuous ? continuousGap : listenOnceGap).record(gapMs);
+    }
+
+    public synchronized void reset() {
+        currentTurn = null;
+        turns.clear();
+        turnCount = 0;
+        timedOutCount = 0;
+        for (LatencyHistogram histogram : histograms.values()) histogram.reset();
+        connectLatency.reset();
+        timeToWelcome.reset();
+        continuousGap.reset();
+        listenOnceGap.reset();
+    }
+
+    /**
+     * @return count, mean, min, max and percentiles in milliseconds of each phase, of the session start
+     * and of the gaps before follow-up turns, as JSON
+     */
+    public synchronized String toJson() {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("turns", turnCount);
+        root.put("timedOut", timedOutCount);
+        Map<String, Object> phases = new LinkedHashMap<>();
+        for (Map.Entry<Phase, LatencyHistogram> entry : histograms.entrySet()) {
+            phases.put(entry.getKey().getMetricName(), entry.getValue().toMap());
+        }
+        root.put("phases", phases);
+        Map<String, Object> session = new LinkedHashMap<>();
+        session.put("connect", connectLatency.toMap());
+        session.put("timeToWelcome", timeToWelcome.toMap());
+        root.put("session", session);
+        Map<String, Object> followUpGap = new LinkedHashMap<>();
+        followUpGap.put("continuous", continuousGap.toMap());
+        followUpGap.put("listenOnce", listenOnceGap.toMap());
+        root.put("followUpGap", followUpGap);
+        return new Gson().toJson(root);
+    }
+
+    /**
+     * Write the recent turns, one per line, with each mark in milliseconds from the start of the turn (empty if missing)
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        Turn[] snapshot;
+        synchronized (this) {
+            snapshot = turns.toArray(new Turn[0]);
+        }
+        StringBuilder line = new StringBuilder("turn,startTime,typed,timedOut");
+        for (Mark mark : Mark.values()) line.append(',').append(mark.getMetricName());
+        writer.write(line.append('\n').toString());
+        for (Turn turn : snapshot) {
+            line.setLength(0);
+            line.append(turn.number).append(',').append(turn.startTimeMillis).append(',')
+                    .append(turn.typed).append(',').append(turn.timedOut);
+            for (Mark mark : Mark.values()) {
+                line.append(',');
+                long nanos = turn.marks[mark.ordinal()];
+                if (nanos != 0) line.append(TimeUnit.NANOSECONDS.toMillis(nanos - turn.startNanos));
+            }
+            writer.write(line.append('\n').toString());
+        }
+        writer.flush();
+    }
+
+    // call locked
+    private void finishTurn(boolean timedOut) {
+        Turn turn = currentTurn;
+        if (turn == null) return;
+        currentTurn = null;
+        turn.timedOut = timedOut;
+        if (timedOut) timedOutCount++;
+
+        for (Phase phase : Phase.values()) {
+            long from = phase.from != null ? turn.marks[phase.from.ordinal()] : requestMark(turn);
+            long to = turn.marks[phase.to.ordinal()];
+            if (from != 0 && to != 0 && to >= from) {
+                histograms.get(phase).record(TimeUnit.NANOSECONDS.toMillis(to - from));
+            }
+        }
+
+        turns.addLast(turn);
+        if (turns.size() > MAX_TURNS_KEPT) turns.removeFirst();
+    }
+
+    // end of the user's request: the final recognition when spoken, the send completion when typed
+    private static long requestMark(Turn turn) {
+        long recognized = turn.marks[Mark.FINAL_RECOGNITION.ordinal()];
+        return recognized != 0 ? recognized : turn.marks[Mark.ACTIVITY_SENT.ordinal()];
+    }
+
+    private static final class Turn {
+        final long number;
+        final long startTimeMillis;
+        final long startNanos;
+        final boolean typed;
+        final long[] marks = new long[Mark.values().length];
+        boolean timedOut;
+
+        Turn(long number, long startTimeMillis, long startNanos, boolean typed) {
+            this.number = number;
+            this.startTimeMillis = startTimeMillis;
+            this.startNanos = startNanos;
+            this.typed = typed;
+        }
+    }
+}
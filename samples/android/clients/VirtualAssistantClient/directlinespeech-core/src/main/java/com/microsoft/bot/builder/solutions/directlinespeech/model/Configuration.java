@@ -64,4 +64,44 @@ public class Configuration {
     @SerializedName("LinkedAccountEndpoint")
     @Expose
     public String linkedAccountEndpoint;
+
+    @SerializedName("TTSOutputFormat")
+    @Expose
+    public String ttsOutputFormat;// "pcm", "mp3" or "opus", see TtsOutputFormat
+
+    @SerializedName("TTSCacheMemoryBytes")
+    @Expose
+    public Long ttsCacheMemoryBytes;// 0 disables the memory tier of the TTS cache
+
+    @SerializedName("TTSCacheDiskBytes")
+    @Expose
+    public Long ttsCacheDiskBytes;// 0 disables the disk tier of the TTS cache
+
+    @SerializedName("VADEnabled")
+    @Expose
+    public Boolean vadEnabled;// detect the end of speech on the device instead of waiting for the service
+
+    @SerializedName("VADThresholdDb")
+    @Expose
+    public Integer vadThresholdDb;// energy above the noise floor that counts as speech
+
+    @SerializedName("VADEndSilenceMs")
+    @Expose
+    public Integer vadEndSilenceMs;// silence after speech that ends the utterance
+
+    @SerializedName("VADInitialSilenceMs")
+    @Expose
+    public Integer vadInitialSilenceMs;// time to wait for speech before giving up
+
+    @SerializedName("AppLogLevel")
+    @Expose
+    public String appLogLevel;// "verbose", "debug", "info", "warn" or "error", see LogLevel
+
+    @SerializedName("TypedTurnsTextOnly")
+    @Expose
+    public Boolean typedTurnsTextOnly;// the audio of the replies to typed messages is not played
+
+    @SerializedName("ContinuousConversation")
+    @Expose
+    public Boolean continuousConversation;// the microphone stays open while the bot asks a question
 }
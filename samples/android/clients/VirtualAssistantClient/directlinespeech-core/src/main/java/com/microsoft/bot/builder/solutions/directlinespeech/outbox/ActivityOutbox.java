@@ -0,0 +1,339 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.outbox;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Activities to send to the bot, kept until the connector acknowledges them so nothing typed or sent while
+ * disconnected is lost. Entries are taken by priority, then in the order they were queued; an entry with a coalesce key
+ * replaces a pending entry with the same key (e.g. only the latest location matters).
+ *
+ * The outbox is backed by an append-only journal: one line per queued activity ("+id priority key json") and one per
+ * removal ("-id"). The entries in memory change synchronously; the journal is written, in the same order, by a
+ * single background thread so callers (e.g. the main thread) never wait for the disk. An activity accepted just
+ * before the process died may not be journaled yet. The journal is rewritten with only the pending entries once it
+ * outgrows its budget (counted in UTF-8 bytes); if the pending entries alone exceed half the budget the oldest are
+ * dropped. Delivery is at least once: an activity acknowledged just before the process died can be sent again.
+ */
+public class ActivityOutbox {
+
+    // CONSTANTS
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char ADDED = '+';
+    private static final char REMOVED = '-';
+    private static final String NO_KEY = "_";
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+    public static final long DEFAULT_MAX_BYTES = 256 * 1024;
+
+    public interface OnDeliveryListener {
+        /**
+         * The connector acknowledged the entry
+         */
+        void onDelivered(OutboxEntry entry);
+
+        /**
+         * The entry was superseded by a newer one with the same key, or dropped to stay within the budget
+         */
+        void onDropped(OutboxEntry entry, boolean superseded);
+    }
+
+    // STATE
+    private final File journalFile;
+    private final long maxBytes;
+    private final LinkedHashMap<Long, OutboxEntry> pending = new LinkedHashMap<>();
+    private final ExecutorService journalWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ActivityOutbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long pendingBytes;// UTF-8 bytes of the pending JSON
+    private long journalBytes;// UTF-8 bytes of the journal, once the writes handed to the journalWriter are done
+    private long nextId = 1;
+    private Writer journal;// only used by the journalWriter
+    private volatile OnDeliveryListener listener;
+
+    /**
+     * Open the outbox, with the entries left pending in the journal
+     * @param maxBytes budget of the journal
+     */
+    public ActivityOutbox(File journalFile, long maxBytes) {
+        this.journalFile = journalFile;
+        this.maxBytes = maxBytes > 0 ? maxBytes : DEFAULT_MAX_BYTES;
+        File directory = journalFile.getParentFile();
+        if (directory != null) directory.mkdirs();
+        replay();
+        synchronized (this) {
+            compact();
+        }
+    }
+
+    public void setOnDeliveryListener(OnDeliveryListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param coalesceKey a pending entry with the same key is dropped, null to keep every entry
+     * @return the queued entry
+     */
+    public OutboxEntry enqueue(String json, String coalesceKey, SendPriority priority) {
+        return enqueue(json, coalesceKey, priority, null);
+    }
+
+    /**
+     * @param tag kept with the entry for whoever sends it, e.g. the reply to wait for; it is not journaled, an entry
+     *            replayed after a restart has none
+     */
+    public OutboxEntry enqueue(String json, String coalesceKey, SendPriority priority, Object tag) {
+        List<OutboxEntry> superseded = new ArrayList<>();
+        List<OutboxEntry> dropped = new ArrayList<>();
+        OutboxEntry entry;
+        synchronized (this) {
+            if (coalesceKey != null) {
+                for (OutboxEntry previous : pending.values()) {
+                    // one in flight cannot be recalled
+                    if (!previous.isInFlight && coalesceKey.equals(previous.getCoalesceKey())) superseded.add(previous);
+                }
+                for (OutboxEntry previous : superseded) remove(previous);
+            }
+            entry = new OutboxEntry(nextId++, coalesceKey, priority, json, tag);
+            add(entry);
+            append(addedRecord(entry));
+            trim(dropped);
+        }
+        OnDeliveryListener listener = this.listener;
+        if (listener != null) {
+            for (OutboxEntry previous : superseded) listener.onDropped(previous, true);
+            for (OutboxEntry previous : dropped) listener.onDropped(previous, false);
+        }
+        return entry;
+    }
+
+    /**
+     * @return the oldest entry of the highest priority that is not in flight, null if there is none.
+     * It stays in the outbox, in flight, until acknowledge() or release() is called.
+     */
+    public synchronized OutboxEntry takeNext() {
+        OutboxEntry next = null;
+        for (OutboxEntry entry : pending.values()) {
+            if (entry.isInFlight) continue;
+            if (next == null || entry.getPriority().ordinal() < next.getPriority().ordinal()) next = entry;
+            if (next.getPriority().ordinal() == 0) break;
+        }
+        if (next != null) next.isInFlight = true;
+        return next;
+    }
+
+    /**
+     * The connector accepted the entry, it is removed from the outbox
+     */
+    public void acknowledge(long id) {
+        OutboxEntry entry;
+        synchronized (this) {
+            entry = pending.get(id);
+            if (entry == null) return;
+            remove(entry);
+        }
+        OnDeliveryListener listener = this.listener;
+        if (listener != null) listener.onDelivered(entry);
+    }
+
+    /**
+     * Sending the entry failed, it is returned by the next takeReady()
+     */
+    public synchronized void release(long id) {
+        OutboxEntry entry = pending.get(id);
+        if (entry != null) entry.isInFlight = false;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Wait for the journal writes handed to the background thread, then close the journal.
+     * The entries stay in memory but changes are no longer journaled.
+     */
+    public void close() {
+        synchronized (this) {
+            execute(this::closeJournal);
+            journalWriter.shutdown();
+        }
+        try {
+            journalWriter.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void add(OutboxEntry entry) {
+        pending.put(entry.getId(), entry);
+        pendingBytes += utf8Length(entry.getJson());
+    }
+
+    private void remove(OutboxEntry entry) {
+        if (pending.remove(entry.getId()) == null) return;
+        pendingBytes -= utf8Length(entry.getJson());
+        append(REMOVED + String.valueOf(entry.getId()));
+    }
+
+    /*
+     * Keep the journal within its budget: compact, then drop the oldest entries that are not in flight
+     */
+    private void trim(List<OutboxEntry> dropped) {
+        if (journalBytes <= maxBytes) return;
+        Iterator<OutboxEntry> iterator = pending.values().iterator();
+        while (pendingBytes > maxBytes / 2 && iterator.hasNext()) {
+            OutboxEntry entry = iterator.next();
+            if (entry.isInFlight) continue;
+            iterator.remove();
+            pendingBytes -= utf8Length(entry.getJson());
+            dropped.add(entry);
+        }
+        compact();
+    }
+
+    private void append(final String record) {
+        journalBytes += utf8Length(record) + 1;
+        execute(() -> writeRecord(record));
+    }
+
+    /*
+     * Rewrite the journal with the pending entries only
+     */
+    private void compact() {
+        final List<String> records = new ArrayList<>(pending.size());
+        long bytes = 0;
+        for (OutboxEntry entry : pending.values()) {
+            String record = addedRecord(entry);
+            records.add(record);
+            bytes += utf8Length(record) + 1;
+        }
+        journalBytes = bytes;
+        execute(() -> rewriteJournal(records));
+    }
+
+    /*
+     * Called with the lock held, so the journal is written in the order the entries changed
+     */
+    private void execute(Runnable write) {
+        try {
+            journalWriter.execute(write);
+        } catch (RejectedExecutionException e) {
+            // closed, kept in memory only
+        }
+    }
+
+    // on the journalWriter
+    private void writeRecord(String record) {
+        try {
+            if (journal == null) {
+                journal = new OutputStreamWriter(new FileOutputStream(journalFile, true), UTF8);
+            }
+            journal.write(record);
+            journal.write('\n');
+            journal.flush();
+        } catch (IOException e) {
+            closeJournal();// kept in memory, reopened with the next record
+        }
+    }
+
+    // on the journalWriter
+    private void rewriteJournal(List<String> records) {
+        closeJournal();
+        File compacted = new File(journalFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(compacted), UTF8)) {
+            for (String record : records) {
+                writer.write(record);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            compacted.delete();
+            return;
+        }
+        if (!compacted.renameTo(journalFile)) compacted.delete();
+    }
+
+    private void replay() {
+        if (!journalFile.exists()) return;
+        Map<Long, OutboxEntry> entries = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), UTF8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    if (line.charAt(0) == ADDED) {
+                        int idEnd = line.indexOf(' ');
+                        int priorityEnd = line.indexOf(' ', idEnd + 1);
+                        int keyEnd = line.indexOf(' ', priorityEnd + 1);
+                        long id = Long.parseLong(line.substring(1, idEnd));
+                        SendPriority priority = SendPriority.fromJournalName(line.substring(idEnd + 1, priorityEnd));
+                        String key = line.substring(priorityEnd + 1, keyEnd);
+                        entries.put(id, new OutboxEntry(id, NO_KEY.equals(key) ? null : key, priority, line.substring(keyEnd + 1), null));
+                        nextId = Math.max(nextId, id + 1);
+                    } else if (line.charAt(0) == REMOVED) {
+                        entries.remove(Long.parseLong(line.substring(1)));
+                    }
+                } catch (RuntimeException e) {
+                    // a record torn by the process dying while it was written
+                }
+            }
+        } catch (IOException e) {
+            // start empty
+        }
+        synchronized (this) {
+            for (OutboxEntry entry : entries.values()) add(entry);
+        }
+    }
+
+    private static String addedRecord(OutboxEntry entry) {
+        String key = entry.getCoalesceKey() != null ? entry.getCoalesceKey() : NO_KEY;
+        return ADDED + String.valueOf(entry.getId()) + ' ' + entry.getPriority().name() + ' ' + key + ' ' + entry.getJson();
+    }
+
+    /*
+     * Number of bytes of the string encoded in UTF-8, without encoding it
+     */
+    static long utf8Length(String string) {
+        long length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;// an unpaired surrogate is encoded as '?', counting more is harmless
+            }
+        }
+        return length;
+    }
+
+    // on the journalWriter
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            // nothing else to do
+        }
+        journal = null;
+    }
+}
@@ -0,0 +1,165 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.outbox;
+
+import com.google.gson.Gson;
+import com.microsoft.bot.builder.solutions.directlinespeech.metrics.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the entries of an ActivityOutbox by priority, in order within a priority, with up to maxInFlight sends
+ * pipelined and a token bucket smoothing bursts so the service does not throttle. HANDSHAKE entries are sent
+ * at once, as one burst, without counting against these limits.
+ * A failed send is retried after a backoff that doubles with each failure, and nothing else is sent meanwhile, so the
+ * failed entry goes out again before the entries queued after it. Those already in flight when it failed can still
+ * arrive before it: delivery is at least once, in order except around a failed send.
+ * Reports the queue depth, the sends in flight and how long entries waited to be sent.
+ */
+public class OutboundScheduler {
+
+    // CONSTANTS
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final int DEFAULT_BURST = 4;
+    public static final double DEFAULT_SENDS_PER_SECOND = 2;
+    private static final long MIN_RETRY_BACKOFF_MS = 250;
+    private static final long MAX_RETRY_BACKOFF_MS = 30000;
+
+    public interface Sender {
+        /**
+         * Start sending the entry, then call onSendCompleted()
+         */
+        void send(OutboxEntry entry);
+    }
+
+    // STATE
+    private final ActivityOutbox outbox;
+    private final int maxInFlight;
+    private final TokenBucket tokenBucket;
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private int inFlight;
+    private long retryBackoffMs;// 0 if the last send did not fail
+    private long retryAtNanos;
+    private long sentCount;
+    private long failedCount;
+    private long throttledCount;
+
+    public OutboundScheduler(ActivityOutbox outbox) {
+        this(outbox, DEFAULT_MAX_IN_FLIGHT, DEFAULT_BURST, DEFAULT_SENDS_PER_SECOND);
+    }
+
+    /**
+     * @param burst sends allowed at once after a quiet period
+     * @param sendsPerSecond sustained rate
+     */
+    public OutboundScheduler(ActivityOutbox outbox, int maxInFlight, int burst, double sendsPerSecond) {
+        this.outbox = outbox;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.tokenBucket = new TokenBucket(burst, sendsPerSecond, System.nanoTime());
+    }
+
+    /**
+     * Send entries until maxInFlight are in flight, the outbox is empty or the rate limit is reached
+     * @return milliseconds after which to call drain() again because of the rate limit or a failed send, 0 if not needed
+     */
+    public synchronized long drain(Sender sender) {
+        while (true) {
+            long now = System.nanoTime();
+            OutboxEntry entry = outbox.takeNext();
+            if (entry == null) return 0;
+            if (entry.getPriority() != SendPriority.HANDSHAKE) {
+                if (retryBackoffMs > 0 && now < retryAtNanos) {
+                    outbox.release(entry.getId());
+                    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(retryAtNanos - now));
+                }
+                if (inFlight >= maxInFlight) {
+                    outbox.release(entry.getId());
+                    return 0;
+                }
+                long waitNanos = tokenBucket.nanosUntilAvailable(now);
+                if (waitNanos > 0) {
+                    outbox.release(entry.getId());
+                    throttledCount++;
+                    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+                }
+                tokenBucket.tryAcquire(now);
+            }
+            inFlight++;
+            queueWait.record(TimeUnit.NANOSECONDS.toMillis(now - entry.getQueuedAtNanos()));
+            sender.send(entry);
+        }
+    }
+
+    /**
+     * A send started by drain() completed. A failed entry is released to the outbox, and sent again by a later drain().
+     * @return milliseconds after which to call drain() again to retry a failed entry, 0 if it was delivered
+     */
+    public long onSendCompleted(OutboxEntry entry, boolean delivered) {
+        long retryMs = 0;
+        synchronized (this) {
+            inFlight--;
+            if (delivered) {
+                sentCount++;
+                retryBackoffMs = 0;
+            } else {
+                failedCount++;
+                long now = System.nanoTime();
+                // the sends that were in flight together fail together, they back off once
+                if (retryBackoffMs == 0 || now >= retryAtNanos) {
+                    retryBackoffMs = retryBackoffMs == 0 ? MIN_RETRY_BACKOFF_MS : Math.min(retryBackoffMs * 2, MAX_RETRY_BACKOFF_MS);
+                    retryAtNanos = now + TimeUnit.MILLISECONDS.toNanos(retryBackoffMs);
+                }
+                retryMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(retryAtNanos - now));
+            }
+        }
+        if (delivered) outbox.acknowledge(entry.getId());
+        else outbox.release(entry.getId());
+        return retryMs;
+    }
+
+    /**
+     * Retry at once, e.g. the connection the sends failed on was replaced
+     */
+    public synchronized void resetBackoff() {
+        retryBackoffMs = 0;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return entries in the outbox, including those in flight
+     */
+    public int getQueueDepth() {
+        return outbox.size();
+    }
+
+    /**
+     * @return milliseconds from queueing to sending
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * @return queue depth, sends in flight, counters and queue wait percentiles, as JSON
+     */
+    public synchronized String toJson() {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("queueDepth", outbox.size());
+        root.put("inFlight", inFlight);
+        root.put("sent", sentCount);
+        root.put("failed", failedCount);
+        root.put("throttled", throttledCount);
+        Map<String, Object> wait = new LinkedHashMap<>();
+        wait.put("count", queueWait.getCount());
+        wait.put("mean", Math.round(queueWait.getMean()));
+        wait.put("p50", queueWait.getPercentile(50));
+        wait.put("p95", queueWait.getPercentile(95));
+        wait.put("p99", queueWait.getPercentile(99));
+        wait.put("max", queueWait.getMax());
+        root.put("queueWait", wait);
+        return new Gson().toJson(root);
+    }
+}
@@ -0,0 +1,61 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.outbox;
+
+/**
+ * An activity waiting in the ActivityOutbox
+ */
+public class OutboxEntry {
+
+    // STATE
+    private final long id;
+    private final String coalesceKey;
+    private final SendPriority priority;
+    private final String json;
+    private final long queuedAtNanos;
+    private final Object tag;// not journaled
+    boolean isInFlight;
+
+    OutboxEntry(long id, String coalesceKey, SendPriority priority, String json, Object tag) {
+        this.id = id;
+        this.coalesceKey = coalesceKey;
+        this.priority = priority;
+        this.json = json;
+        this.tag = tag;
+        this.queuedAtNanos = System.nanoTime();
+    }
+
+    /**
+     * @return id in the outbox, increasing in the order the activities were queued
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return entries with the same key supersede each other, null if the activity is never superseded
+     */
+    public String getCoalesceKey() {
+        return coalesceKey;
+    }
+
+    public SendPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return System.nanoTime() when it was queued, or read from the journal
+     */
+    public long getQueuedAtNanos() {
+        return queuedAtNanos;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * @return what the sender queued with the entry, null if it was read from the journal
+     */
+    public Object getTag() {
+        return tag;
+    }
+}
@@ -0,0 +1,17 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.outbox;
+
+/**
+ * Order in which queued activities are sent: HANDSHAKE activities first, then USER, then BACKGROUND ones
+ */
+public enum SendPriority {
+    HANDSHAKE,// session start activities queued before the connection, sent in one burst once connected
+    USER,// a request of the user, e.g. a typed message
+    BACKGROUND;// e.g. location and time zone updates
+
+    public static SendPriority fromJournalName(String name) {
+        for (SendPriority priority : values()) {
+            if (priority.name().equals(name)) return priority;
+        }
+        return USER;
+    }
+}
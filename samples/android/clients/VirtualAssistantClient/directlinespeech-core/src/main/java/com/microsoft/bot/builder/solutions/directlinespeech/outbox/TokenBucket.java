@@ -0,0 +1,52 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.outbox;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter allowing bursts of up to capacity sends, refilled at a steady rate
+ */
+public class TokenBucket {
+
+    // STATE
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilledAtNanos;
+
+    /**
+     * @param capacity largest burst
+     * @param tokensPerSecond sustained rate
+     */
+    public TokenBucket(int capacity, double tokensPerSecond, long nowNanos) {
+        this.capacity = Math.max(1, capacity);
+        this.tokensPerNano = Math.max(0.001, tokensPerSecond) / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = this.capacity;
+        this.refilledAtNanos = nowNanos;
+    }
+
+    /**
+     * @return true if a token was taken, false if the bucket is empty
+     */
+    public synchronized boolean tryAcquire(long nowNanos) {
+        refill(nowNanos);
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * @return nanoseconds until a token is available, 0 if one is
+     */
+    public synchronized long nanosUntilAvailable(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) return 0;
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - refilledAtNanos;
+        if (elapsed <= 0) return;
+        tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+        refilledAtNanos = nowNanos;
+    }
+}
@@ -0,0 +1,97 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.routing;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * The few top-level fields of an activity that are needed to route it.
+ * They are read in a single forward pass over the raw JSON, without building the object graph.
+ */
+public class ActivityHeader {
+
+    // CONSTANTS
+    private static final int FIELD_COUNT = 5;
+
+    // STATE
+    private String type;
+    private String name;
+    private String inputHint;
+    private String replyToId;
+    private String speak;
+
+    public String getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getInputHint() {
+        return inputHint;
+    }
+
+    public String getReplyToId() {
+        return replyToId;
+    }
+
+    public String getSpeak() {
+        return speak;
+    }
+
+    /**
+     * Peek the header fields of an activity. Reading stops as soon as all of them were found.
+     * @param activityJson activity as JSON
+     * @return the header, or null if the JSON is not an object
+     */
+    public static ActivityHeader peek(String activityJson) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(activityJson));
+        reader.setLenient(true);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            return null;
+        }
+
+        ActivityHeader header = new ActivityHeader();
+        int found = 0;
+        reader.beginObject();
+        while (found < FIELD_COUNT && reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type":
+                    header.type = readString(reader);
+                    found++;
+                    break;
+                case "name":
+                    header.name = readString(reader);
+                    found++;
+                    break;
+                case "inputHint":
+                    header.inputHint = readString(reader);
+                    found++;
+                    break;
+                case "replyToId":
+                    header.replyToId = readString(reader);
+                    found++;
+                    break;
+                case "speak":
+                    header.speak = readString(reader);
+                    found++;
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        return header;
+    }
+
+    private static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.STRING) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+}
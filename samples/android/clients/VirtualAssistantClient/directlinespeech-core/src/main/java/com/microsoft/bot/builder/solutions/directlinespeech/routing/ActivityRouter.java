@@ -0,0 +1,130 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.routing;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dispatches received activities to the handler registered for their type (and optionally name).
+ * Routing only peeks the activity header, so activity types nobody handles are dropped without
+ * decoding the rest of the JSON.
+ *
+ * Lookup order: handler for "type" + "name", then handler for "type", then the default handler.
+ * Handlers are called on the thread that calls route().
+ */
+public class ActivityRouter {
+
+    // INTERFACE
+    public interface ActivityHandler {
+        void onActivity(RoutedActivity activity);
+    }
+
+    public interface PayloadHandler<T> {
+        void onActivity(RoutedActivity activity, T payload);
+    }
+
+    // CONSTANTS
+    private static final ActivityHandler IGNORE = activity -> {};
+
+    // STATE
+    private final Gson gson;
+    private final Map<String, ActivityHandler> handlers = new ConcurrentHashMap<>();
+    private volatile ActivityHandler defaultHandler = IGNORE;
+
+    public ActivityRouter(Gson gson) {
+        this.gson = gson;
+    }
+
+    public void register(String type, ActivityHandler handler) {
+        handlers.put(type, handler);
+    }
+
+    public void register(String type, String name, ActivityHandler handler) {
+        handlers.put(key(type, name), handler);
+    }
+
+    /**
+     * Register a handler that receives the activity "value" decoded into the given type
+     */
+    public <T> void register(String type, String name, Class<T> payloadType, PayloadHandler<T> handler) {
+        register(type, name, activity -> handler.onActivity(activity, activity.getValue(payloadType)));
+    }
+
+    public void unregister(String type) {
+        handlers.remove(type);
+    }
+
+    public void unregister(String type, String name) {
+        handlers.remove(key(type, name));
+    }
+
+    /**
+     * Drop activities of this type without decoding them
+     */
+    public void ignore(String type) {
+        handlers.put(type, IGNORE);
+    }
+
+    public void setDefaultHandler(ActivityHandler handler) {
+        defaultHandler = handler != null ? handler : IGNORE;
+    }
+
+    /**
+     * Route an activity to its handler
+     * @param activityJson activity as JSON
+     * @return the activity header, or null if the JSON could not be read
+     */
+    public ActivityHeader route(String activityJson) {
+        final ActivityHeader header;
+        try {
+            header = ActivityHeader.peek(activityJson);
+        } catch (IOException | IllegalStateException e) {
+            return null;
+        }
+        if (header == null) {
+            return null;
+        }
+        route(activityJson, header);
+        return header;
+    }
+
+    /**
+     * Route an activity whose header was already peeked
+     * @param activityJson activity as JSON
+     * @param header header of the activity
+     */
+    public void route(String activityJson, ActivityHeader header) {
+        route(activityJson, header, null);
+    }
+
+    /**
+     * Route an activity whose header was already peeked
+     * @param activityJson activity as JSON
+     * @param header header of the activity
+     * @param tag handed to the handler with the activity, see RoutedActivity.getTag()
+     */
+    public void route(String activityJson, ActivityHeader header, Object tag) {
+        ActivityHandler handler = null;
+        if (header.getType() != null) {
+            if (header.getName() != null) {
+                handler = handlers.get(key(header.getType(), header.getName()));
+            }
+            if (handler == null) {
+                handler = handlers.get(header.getType());
+            }
+        }
+        if (handler == null) {
+            handler = defaultHandler;
+        }
+
+        if (handler != IGNORE) {
+            handler.onActivity(new RoutedActivity(activityJson, header, gson, tag));
+        }
+    }
+
+    private static String key(String type, String name) {
+        return type + "/" + name;
+    }
+}
@@ -0,0 +1,104 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.routing;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import client.model.BotConnectorActivity;
+
+/**
+ * An activity handed to an ActivityHandler.
+ * Only the header is decoded up front; the full activity and the typed "value" payload are
+ * decoded the first time they are asked for and then reused. Handlers may read it from any thread.
+ */
+public class RoutedActivity {
+
+    // STATE
+    private final String json;
+    private final ActivityHeader header;
+    private final Gson gson;
+    private final Object tag;
+    private BotConnectorActivity activity;
+    private Class<?> valueType;
+    private Object value;
+
+    RoutedActivity(String json, ActivityHeader header, Gson gson, Object tag) {
+        this.json = json;
+        this.header = header;
+        this.gson = gson;
+        this.tag = tag;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public ActivityHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * @return what the caller of route() knew about the activity, e.g. that it is the welcome card, null if nothing
+     */
+    public Object getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the fully decoded activity, or null if the JSON could not be decoded
+     */
+    public synchronized BotConnectorActivity getActivity() {
+        if (activity == null) {
+            try {
+                activity = gson.fromJson(json, BotConnectorActivity.class);
+            } catch (JsonParseException e) {
+                return null;
+            }
+        }
+        return activity;
+    }
+
+    /**
+     * Decode the "value" of the activity into the given type.
+     * A value that is a string holding JSON (as sent by some skills) is decoded from that string.
+     * @param type payload type, e.g. OpenDefaultApp
+     * @return the payload, or null if there is no value or it could not be decoded
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getValue(Class<T> type) {
+        if (valueType != type) {
+            value = decodeValue(type);
+            valueType = type;
+        }
+        return (T) value;
+    }
+
+    private <T> T decodeValue(Class<T> type) {
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("value")) {
+                    reader.skipValue();
+                    continue;
+                }
+                JsonToken token = reader.peek();
+                if (token == JsonToken.NULL) {
+                    return null;
+                }
+                if (token == JsonToken.STRING && type != String.class) {
+                    return gson.fromJson(reader.nextString(), type);
+                }
+                return gson.getAdapter(type).read(reader);
+            }
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            return null;
+        }
+        return null;
+    }
+}
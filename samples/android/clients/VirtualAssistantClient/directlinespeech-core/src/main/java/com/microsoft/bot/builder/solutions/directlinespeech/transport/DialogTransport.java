@@ -0,0 +1,82 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.transport;
+
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.AudioSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Future;
+
+/**
+ * The connection to the dialog service: what SpeechSdk needs from the DialogServiceConnector of the Speech SDK,
+ * so it can run against another backend, e.g. the FakeDialogTransport when no Speech endpoint is available.
+ * Callbacks are made on a thread of the transport, like the events of the Speech SDK.
+ */
+public interface DialogTransport {
+
+    interface Listener {
+        /**
+         * Intermediate recognition
+         * @param isKeyword true while the keyword is being recognized, before the request that follows it
+         */
+        void onRecognizing(String text, boolean isKeyword);
+
+        /**
+         * Final recognition
+         * @param isKeyword true if the keyword was recognized, not a request
+         */
+        void onRecognized(String text, boolean isKeyword);
+
+        void onSessionStarted(String sessionId);
+
+        void onSessionStopped(String sessionId);
+
+        /**
+         * The connection failed or was closed
+         * @param errorCode CancellationErrorCode value of the Speech SDK, e.g. 1 for an authentication failure
+         *                  or 5 for a connection closed by the remote host
+         * @param reason CancellationReason value of the Speech SDK
+         */
+        void onCanceled(int errorCode, int reason, String errorDetails);
+
+        /**
+         * @param audio the speech of the activity in the TTS output format, null if it has none.
+         *              It must be closed, whether it is read or not.
+         */
+        void onActivityReceived(String activityJson, AudioSource audio);
+    }
+
+    void setListener(Listener listener);
+
+    Future<Void> connectAsync();
+
+    Future<Void> disconnectAsync();
+
+    /**
+     * Recognize one request from the audio input and send it to the bot
+     * @return completes once the recognition ended
+     */
+    Future<?> listenOnceAsync();
+
+    /**
+     * End the current recognition now, e.g. when the end of the utterance was detected locally
+     */
+    Future<Void> stopListeningAsync();
+
+    /**
+     * @return completes with the id of the activity once the service accepted it
+     */
+    Future<String> sendActivityAsync(String activityJson);
+
+    /**
+     * @param model the keyword model (.table file)
+     * @throws IOException if the model cannot be read
+     */
+    Future<Void> startKeywordRecognitionAsync(InputStream model, String keyword) throws IOException;
+
+    Future<Void> stopKeywordRecognitionAsync();
+
+    /**
+     * Release the transport. Called once, after disconnectAsync.
+     */
+    void close();
+}
@@ -0,0 +1,378 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.transport;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.PcmAudioSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process dialog service, to measure the client without a Speech endpoint: turn throughput, reply timeouts,
+ * reconnection. There is no network and no recognition; latencies, the recognized text, the replies of the bot
+ * and their audio are scripted. All the work runs on one thread and failures are drawn from a seeded Random,
+ * so a given sequence of calls always gives the same callbacks. Many transports can share an executor instead,
+ * e.g. to load test many sessions on a few threads; their callbacks are then not in a reproducible order.
+ *
+ * Failures can be injected: connections that fail, sends that fail, replies that never arrive,
+ * and the connection being closed by the service.
+ */
+public class FakeDialogTransport implements DialogTransport {
+
+    // CONSTANTS
+    public static final int ERROR_AUTHENTICATION_FAILURE = 1;// CancellationErrorCode values of the Speech SDK
+    public static final int ERROR_CONNECTION_FAILURE = 5;
+    private static final int REASON_ERROR = 1;// CancellationReason.Error
+    public static final long DEFAULT_CONNECT_LATENCY_MS = 200;
+    public static final long DEFAULT_SEND_LATENCY_MS = 20;
+    public static final long DEFAULT_REPLY_LATENCY_MS = 500;
+    public static final long DEFAULT_RECOGNITION_LATENCY_MS = 1000;
+
+    public interface Responder {
+        /**
+         * Called on the thread of the transport
+         * @param activityJson an activity sent to the bot, or the message activity of a spoken request
+         * @return the replies of the bot, as JSON, empty if it does not reply
+         */
+        List<String> reply(String activityJson);
+    }
+
+    // STATE
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Random random;
+    private volatile Listener listener;
+    private volatile Responder responder = FakeDialogTransport::echo;
+    private volatile long connectLatencyMs = DEFAULT_CONNECT_LATENCY_MS;
+    private volatile long sendLatencyMs = DEFAULT_SEND_LATENCY_MS;
+    private volatile long replyLatencyMs = DEFAULT_REPLY_LATENCY_MS;
+    private volatile long recognitionLatencyMs = DEFAULT_RECOGNITION_LATENCY_MS;
+    private volatile String recognizedText = "hello";
+    private volatile byte[] replyAudio;// attached to every message reply, null for none
+    private volatile double sendFailureRate;
+    private volatile double replyDropRate;
+    private volatile String keyword;// keyword recognition started
+    private volatile boolean isConnected;
+    private final AtomicInteger failingConnects = new AtomicInteger();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final AtomicInteger sentCount = new AtomicInteger();
+    private final AtomicInteger replyCount = new AtomicInteger();
+    private final AtomicInteger droppedReplyCount = new AtomicInteger();
+
+    /**
+     * @param seed of the injected failures
+     */
+    public FakeDialogTransport(long seed) {
+        this(seed, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "FakeDialogTransport");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * @param executor runs the work of the transport, shared with other transports; not shut down by close()
+     */
+    public FakeDialogTransport(long seed, ScheduledExecutorService executor) {
+        this(seed, executor, false);
+    }
+
+    private FakeDialogTransport(long seed, ScheduledExecutorService executor, boolean ownsExecutor) {
+        this.random = new Random(seed);
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Script the replies of the bot, by default a message echoing each message and a welcome message for startConversation
+     */
+    public void setResponder(Responder responder) {
+        this.responder = responder;
+    }
+
+    /**
+     * @param connectMs until a connection is established or fails
+     * @param sendMs until a sent activity is accepted or fails
+     * @param replyMs from a request being accepted to each of its replies
+     * @param recognitionMs from listening to the final recognition, the intermediate one comes halfway
+     */
+    public void setLatencies(long connectMs, long sendMs, long replyMs, long recognitionMs) {
+        connectLatencyMs = connectMs;
+        sendLatencyMs = sendMs;
+        replyLatencyMs = replyMs;
+        recognitionLatencyMs = recognitionMs;
+    }
+
+    /**
+     * @param text what every spoken request is recognized as
+     */
+    public void setRecognizedText(String text) {
+        recognizedText = text;
+    }
+
+    /**
+     * @param audio the speech of every message reply, in the TTS output format the client expects; null for none
+     */
+    public void setReplyAudio(byte[] audio) {
+        replyAudio = audio;
+    }
+
+    /**
+     * @param rate share of the sends that fail, from 0 to 1
+     */
+    public void setSendFailureRate(double rate) {
+        sendFailureRate = rate;
+    }
+
+    /**
+     * @param rate share of the replies that never arrive, from 0 to 1
+     */
+    public void setReplyDropRate(double rate) {
+        replyDropRate = rate;
+    }
+
+    /**
+     * Make the next connections fail
+     */
+    public void failConnects(int count) {
+        failingConnects.addAndGet(count);
+    }
+
+    /**
+     * The service closes the connection, e.g. ERROR_CONNECTION_FAILURE as when the network is lost
+     */
+    public void closeConnection(int errorCode, String errorDetails) {
+        executor.execute(() -> {
+            isConnected = false;
+            Listener listener = this.listener;
+            if (listener != null) listener.onCanceled(errorCode, REASON_ERROR, errorDetails);
+        });
+    }
+
+    /**
+     * The user says the keyword, followed by a request. Ignored unless keyword recognition was started.
+     */
+    public void speakKeyword() {
+        executor.execute(() -> {
+            String keyword = this.keyword;
+            Listener listener = this.listener;
+            if (keyword == null || listener == null) return;
+            listener.onRecognizing(keyword, true);
+            listener.onRecognized(keyword, true);
+            recognize();
+        });
+    }
+
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    /**
+     * @return activities accepted, spoken requests excluded
+     */
+    public int getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * @return replies delivered to the listener
+     */
+    public int getReplyCount() {
+        return replyCount.get();
+    }
+
+    /**
+     * @return replies dropped, see setReplyDropRate
+     */
+    public int getDroppedReplyCount() {
+        return droppedReplyCount.get();
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Future<Void> connectAsync() {
+        return executor.schedule(() -> {
+            if (takeFailingConnect()) {
+                throw new IOException("injected connection failure");
+            }
+            isConnected = true;
+            return null;
+        }, connectLatencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Future<Void> disconnectAsync() {
+        return executor.submit(() -> {
+            isConnected = false;
+            return null;
+        });
+    }
+
+    @Override
+    public Future<?> listenOnceAsync() {
+        return recognize();
+    }
+
+    /**
+     * The scripted recognition is not shortened
+     */
+    @Override
+    public Future<Void> stopListeningAsync() {
+        return executor.submit(() -> null);
+    }
+
+    @Override
+    public Future<String> sendActivityAsync(String activityJson) {
+        return executor.schedule(() -> {
+            if (!isConnected) throw new IOException("not connected");
+            if (random.nextDouble() < sendFailureRate) throw new IOException("injected send failure");
+            sentCount.incrementAndGet();
+            scheduleReplies(activityJson);
+            JsonElement id = parse(activityJson).get("id");
+            return id != null && !id.isJsonNull() ? id.getAsString() : null;
+        }, sendLatencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The model is not read, any keyword is accepted
+     */
+    @Override
+    public Future<Void> startKeywordRecognitionAsync(InputStream model, String keyword) throws IOException {
+        return executor.submit(() -> {
+            this.keyword = keyword;
+            return null;
+        });
+    }
+
+    @Override
+    public Future<Void> stopKeywordRecognitionAsync() {
+        return executor.submit(() -> {
+            keyword = null;
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        isConnected = false;
+        if (ownsExecutor) executor.shutdownNow();
+    }
+
+    private boolean takeFailingConnect() {
+        while (true) {
+            int count = failingConnects.get();
+            if (count == 0) return false;
+            if (failingConnects.compareAndSet(count, count - 1)) return true;
+        }
+    }
+
+    /*
+     * A spoken request: intermediate and final recognition, then the replies to the message of the service
+     * @return completes with the final recognition
+     */
+    private Future<String> recognize() {
+        final String sessionId = "fake-session-" + sessionCount.incrementAndGet();
+        final String text = recognizedText;
+        executor.execute(() -> {
+            Listener listener = this.listener;
+            if (listener != null) listener.onSessionStarted(sessionId);
+        });
+        executor.schedule(() -> {
+            Listener current = this.listener;
+            if (current != null) current.onRecognizing(text.split(" ")[0], false);
+        }, recognitionLatencyMs / 2, TimeUnit.MILLISECONDS);
+        return executor.schedule(() -> {
+            Listener current = this.listener;
+            if (current != null) {
+                current.onRecognized(text, false);
+                current.onSessionStopped(sessionId);
+            }
+            if (isConnected) {
+                // the service sends the request to the bot, under an id the client does not know
+                JsonObject request = new JsonObject();
+                request.addProperty("type", "message");
+                request.addProperty("id", sessionId);
+                request.addProperty("text", text);
+                scheduleReplies(request.toString());
+            }
+            return text;
+        }, recognitionLatencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleReplies(String requestJson) {
+        List<String> replies = responder.reply(requestJson);
+        if (replies == null) return;
+        for (final String reply : replies) {
+            if (random.nextDouble() < replyDropRate) {
+                droppedReplyCount.incrementAndGet();
+                continue;
+            }
+            executor.schedule(() -> deliver(reply), replyLatencyMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void deliver(String reply) {
+        // lost with the connection
+        if (!isConnected) return;
+        byte[] audio = replyAudio;
+        JsonElement type = parse(reply).get("type");
+        boolean isMessage = type != null && !type.isJsonNull() && "message".equals(type.getAsString());
+        PcmAudioSource source = audio != null && isMessage ? new PcmAudioSource(audio) : null;
+        Listener listener = this.listener;
+        if (listener == null) {
+            if (source != null) source.close();
+            return;
+        }
+        replyCount.incrementAndGet();
+        listener.onActivityReceived(reply, source);
+    }
+
+    /*
+     * The default bot: echoes messages, welcomes startConversation, ignores other events
+     */
+    private static List<String> echo(String activityJson) {
+        JsonObject activity = parse(activityJson);
+        JsonElement type = activity.get("type");
+        JsonElement name = activity.get("name");
+        JsonElement id = activity.get("id");
+        String text;
+        if (type != null && "message".equals(type.getAsString())) {
+            JsonElement received = activity.get("text");
+            text = "You said: " + (received != null && !received.isJsonNull() ? received.getAsString() : "");
+        } else if (name != null && "startConversation".equals(name.getAsString())) {
+            text = "Welcome";
+        } else {
+            return Collections.emptyList();
+        }
+        JsonObject reply = new JsonObject();
+        reply.addProperty("type", "message");
+        reply.addProperty("text", text);
+        reply.addProperty("speak", text);
+        reply.addProperty("inputHint", "acceptingInput");
+        if (id != null && !id.isJsonNull()) reply.addProperty("replyToId", id.getAsString());
+        return Collections.singletonList(reply.toString());
+    }
+
+    private static JsonObject parse(String activityJson) {
+        try {
+            JsonElement element = new JsonParser().parse(activityJson);
+            return element.isJsonObject() ? element.getAsJsonObject() : new JsonObject();
+        } catch (JsonParseException e) {
+            return new JsonObject();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.async;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.processors.PublishProcessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventHandlersTest {
+
+    @Test
+    public void aThrowingHandlerStillReceivesTheNextEvent() {
+        PublishProcessor<String> events = PublishProcessor.create();
+        final List<String> received = new ArrayList<>();
+        final List<Throwable> errors = new ArrayList<>();
+        Disposable subscription = events.subscribe(EventHandlers.guard(event -> {
+            received.add(event);
+            if (event.equals("bad")) throw new IllegalStateException(event);
+        }, errors::add), errors::add);
+
+        events.onNext("bad");
+        events.onNext("good");
+
+        assertEquals(2, received.size());
+        assertEquals("good", received.get(1));
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof IllegalStateException);
+        assertFalse(subscription.isDisposed());
+        assertTrue(events.hasSubscribers());
+    }
+
+    @Test
+    public void aThrowingErrorHandlerIsIgnored() {
+        PublishProcessor<String> events = PublishProcessor.create();
+        final List<String> received = new ArrayList<>();
+        events.subscribe(EventHandlers.guard(event -> {
+            received.add(event);
+            throw new IllegalStateException(event);
+        }, throwable -> {
+            throw new IllegalArgumentException();
+        }));
+
+        events.onNext("a");
+        events.onNext("b");
+
+        assertEquals(2, received.size());
+    }
+}
@@ -0,0 +1,118 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PcmRingBufferTest {
+
+    @Test
+    public void readsWhatWasWritten() throws InterruptedException {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        buffer.write(bytes(1, 2, 3), 0, 3);
+        assertEquals(3, buffer.available());
+
+        byte[] read = new byte[8];
+        assertEquals(3, buffer.read(read, 0, read.length, 0));
+        assertArrayEquals(bytes(1, 2, 3), slice(read, 3));
+        assertEquals(0, buffer.available());
+    }
+
+    @Test
+    public void wrapsAroundTheEndOfTheBuffer() throws InterruptedException {
+        PcmRingBuffer buffer = new PcmRingBuffer(4);
+        byte[] read = new byte[4];
+        buffer.write(bytes(1, 2, 3), 0, 3);
+        buffer.read(read, 0, 3, 0);
+
+        buffer.write(bytes(4, 5, 6), 0, 3);
+        assertEquals(3, buffer.read(read, 0, read.length, 0));
+        assertArrayEquals(bytes(4, 5, 6), slice(read, 3));
+    }
+
+    @Test
+    public void anOverrunDropsTheOldestAudio() throws InterruptedException {
+        PcmRingBuffer buffer = new PcmRingBuffer(4);
+        buffer.write(bytes(1, 2, 3), 0, 3);
+        buffer.write(bytes(4, 5, 6), 0, 3);
+        assertEquals(4, buffer.available());
+        assertEquals(2, buffer.getReadPosition());
+
+        byte[] read = new byte[4];
+        buffer.read(read, 0, read.length, 0);
+        assertArrayEquals(bytes(3, 4, 5, 6), read);
+    }
+
+    @Test
+    public void aWriteLargerThanTheBufferKeepsItsEnd() throws InterruptedException {
+        PcmRingBuffer buffer = new PcmRingBuffer(3);
+        buffer.write(bytes(1, 2, 3, 4, 5), 0, 5);
+
+        byte[] read = new byte[3];
+        assertEquals(3, buffer.read(read, 0, read.length, 0));
+        assertArrayEquals(bytes(3, 4, 5), read);
+    }
+
+    @Test
+    public void keepLastDropsOlderUnreadAudio() throws InterruptedException {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        buffer.write(bytes(1, 2, 3, 4, 5), 0, 5);
+        buffer.keepLast(2);
+        assertEquals(2, buffer.available());
+
+        byte[] read = new byte[8];
+        buffer.read(read, 0, read.length, 0);
+        assertArrayEquals(bytes(4, 5), slice(read, 2));
+
+        // what was read is not read again
+        buffer.keepLast(8);
+        assertEquals(0, buffer.available());
+    }
+
+    @Test
+    public void clearDropsAllUnreadAudio() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        buffer.write(bytes(1, 2, 3), 0, 3);
+        buffer.clear();
+        assertEquals(0, buffer.available());
+        assertEquals(buffer.getWritePosition(), buffer.getReadPosition());
+    }
+
+    @Test
+    public void readReturnsZeroWhenNothingArrivesInTime() throws InterruptedException {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        assertEquals(0, buffer.read(new byte[4], 0, 4, 20));
+    }
+
+    @Test
+    public void readWaitsForAWrite() throws InterruptedException {
+        final PcmRingBuffer buffer = new PcmRingBuffer(8);
+        Thread writer = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                return;
+            }
+            buffer.write(bytes(7, 8), 0, 2);
+        });
+        writer.start();
+
+        byte[] read = new byte[4];
+        assertEquals(2, buffer.read(read, 0, read.length, 5000));
+        assertArrayEquals(bytes(7, 8), slice(read, 2));
+        writer.join();
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) bytes[i] = (byte) values[i];
+        return bytes;
+    }
+
+    private static byte[] slice(byte[] bytes, int length) {
+        byte[] slice = new byte[length];
+        System.arraycopy(bytes, 0, slice, 0, length);
+        return slice;
+    }
+}
@@ -0,0 +1,130 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.correlation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReplyCorrelatorTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private TimerWheel timerWheel;
+
+    @Before
+    public void setUp() {
+        timerWheel = new TimerWheel(10, 64, "ReplyCorrelatorTest");
+    }
+
+    @After
+    public void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Test
+    public void matchesAReplyToItsRequestById() {
+        ReplyCorrelator correlator = new ReplyCorrelator(timerWheel);
+        correlator.expect("a", "message", 0);
+        correlator.expect("b", "message", 100 * MS);
+
+        assertEquals(150, correlator.onReply("b", 250 * MS));
+        assertTrue(correlator.isAwaiting());
+        assertEquals(300, correlator.onReply("a", 300 * MS));
+        assertFalse(correlator.isAwaiting());
+    }
+
+    @Test
+    public void aReplyWithoutAKnownIdAnswersTheOldestRequest() {
+        ReplyCorrelator correlator = new ReplyCorrelator(timerWheel);
+        correlator.expect(null, "speech", 0);
+        correlator.expect("b", "message", 100 * MS);
+
+        assertEquals(200, correlator.onReply(null, 200 * MS));
+        assertEquals(200, correlator.onReply("unknown", 300 * MS));
+        assertEquals(-1, correlator.onReply(null, 400 * MS));
+    }
+
+    @Test
+    public void furtherRepliesToAnAnsweredRequestMatchNothing() {
+        ReplyCorrelator correlator = new ReplyCorrelator(timerWheel);
+        correlator.expect("a", "message", 0);
+        correlator.expect("b", "message", 0);
+
+        assertEquals(10, correlator.onReply("a", 10 * MS));
+        assertEquals(-1, correlator.onReply("a", 20 * MS));
+        assertTrue(correlator.isAwaiting());
+    }
+
+    @Test
+    public void recordsTheLatenciesPerType() {
+        ReplyCorrelator correlator = new ReplyCorrelator(timerWheel);
+        correlator.expect("a", "message", 0);
+        correlator.onReply("a", 40 * MS);
+
+        assertEquals(1, correlator.getLatencies("message").getCount());
+        assertEquals(0, correlator.getLatencies("speech").getCount());
+    }
+
+    @Test
+    public void aRequestWithoutReplyTimesOut() throws InterruptedException {
+        ReplyCorrelator correlator = new ReplyCorrelator(timerWheel, 50, 50, 50);
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final String[] timedOutType = new String[1];
+        correlator.setOnTimeoutListener((requestType, timeoutMs) -> {
+            timedOutType[0] = requestType;
+            timedOut.countDown();
+        });
+
+        assertEquals(50, correlator.expect("a", "message", System.nanoTime()));
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+        assertEquals("message", timedOutType[0]);
+        assertFalse(correlator.isAwaiting());
+    }
+
+    @Test
+    public void answeredAndCancelledRequestsDoNotTimeOut() throws InterruptedException {
+        ReplyCorrelator correlator = new ReplyCorrelator(timerWheel, 50, 50, 50);
+        final AtomicInteger timeouts = new AtomicInteger();
+        correlator.setOnTimeoutListener((requestType, timeoutMs) -> timeouts.incrementAndGet());
+
+        correlator.expect("a", "message", System.nanoTime());
+        correlator.expect("b", "message", System.nanoTime());
+        correlator.expect("c", "message", System.nanoTime());
+        correlator.onReply("a", System.nanoTime());
+        assertTrue(correlator.cancel("b"));
+        assertFalse(correlator.cancel("b"));
+        correlator.cancelAll();
+
+        Thread.sleep(200);
+        assertEquals(0, timeouts.get());
+        assertEquals(0, timerWheel.getPendingCount());
+    }
+
+    @Test
+    public void theTimeoutAdaptsToTheObservedLatency() {
+        ReplyCorrelator correlator = new ReplyCorrelator(timerWheel, 15000, 1000, 30000);
+        assertEquals(15000, correlator.getTimeoutMs("message"));
+
+        for (int i = 0; i < 20; i++) {
+            String id = "id" + i;
+            correlator.expect(id, "message", 0);
+            correlator.onReply(id, 2000 * MS);
+        }
+        long timeoutMs = correlator.getTimeoutMs("message");
+        assertTrue("timeout " + timeoutMs, timeoutMs >= 3000 && timeoutMs < 15000);
+        // within the bounds
+        for (int i = 0; i < 20; i++) {
+            String id = "fast" + i;
+            correlator.expect(id, "speech", 0);
+            correlator.onReply(id, MS);
+        }
+        assertEquals(1000, correlator.getTimeoutMs("speech"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.json;
+
+import com.google.gson.Gson;
+import com.microsoft.bot.builder.solutions.directlinespeech.activity.ActivityFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+import client.model.Activity;
+import client.model.BotConnectorActivity;
+import client.model.CardAction;
+import client.model.ChannelAccount;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The hand-written TypeAdapters must read and write the same JSON as Gson's reflective adapters
+ */
+public class TypeAdaptersTest {
+
+    private Gson streaming;
+    private Gson reflective;
+    private ActivityFactory activityFactory;
+
+    @Before
+    public void setUp() {
+        streaming = ActivityJson.create();
+        reflective = new Gson();
+        ChannelAccount from = new ChannelAccount();
+        from.setId("va-user");
+        from.setName("User");
+        activityFactory = new ActivityFactory(from, "en-us");
+    }
+
+    @Test
+    public void decodesAMessageAsTheReflectiveAdapters() throws IOException {
+        String json = readResource("/message_activity.json");
+        BotConnectorActivity decoded = streaming.fromJson(json, BotConnectorActivity.class);
+
+        assertEquals(reflective.toJson(reflective.fromJson(json, BotConnectorActivity.class)), reflective.toJson(decoded));
+        assertEquals("message", decoded.getType());
+        assertEquals("d9c1b54b-8fb5-4c1c-9a6c-5b9bd1f5f1a2", decoded.getReplyToId());
+        assertEquals(1, decoded.getAttachments().size());
+        CardAction action = decoded.getSuggestedActions().getActions().get(0);
+        assertEquals("Tomorrow", action.getTitle());
+        assertEquals("What about tomorrow?", action.getValue());
+    }
+
+    @Test
+    public void skipsUnknownFields() {
+        String json = "{\"type\":\"event\",\"unknown\":{\"nested\":[1,2,{\"a\":null}]},\"name\":\"OpenDefaultApp\",\"more\":true}";
+        BotConnectorActivity decoded = streaming.fromJson(json, BotConnectorActivity.class);
+        assertEquals("event", decoded.getType());
+        assertEquals("OpenDefaultApp", decoded.getName());
+    }
+
+    @Test
+    public void decodesNullFieldsAsNull() {
+        String json = "{\"type\":\"message\",\"text\":null,\"from\":null,\"suggestedActions\":null,\"attachments\":null}";
+        BotConnectorActivity decoded = streaming.fromJson(json, BotConnectorActivity.class);
+        assertNull(decoded.getText());
+        assertNull(decoded.getFrom());
+        assertNull(decoded.getSuggestedActions());
+        assertNull(decoded.getAttachments());
+    }
+
+    @Test
+    public void encodesAMessageAsTheReflectiveAdapters() {
+        Activity message = activityFactory.createMessage("what's the weather in Seattle");
+        assertEquals(reflective.toJson(message), streaming.toJson(message));
+    }
+
+    @Test
+    public void encodesAnEventAsTheReflectiveAdapters() {
+        Activity event = activityFactory.createEvent("VA.Location", Collections.singletonMap("source", "gps"), "47.6062,-122.3321");
+        assertEquals(reflective.toJson(event), streaming.toJson(event));
+    }
+
+    @Test
+    public void anEncodedActivityDecodesToTheSameActivity() {
+        Activity message = activityFactory.createMessage("remind me to take an umbrella");
+        String json = streaming.toJson(message);
+        assertEquals(json, streaming.toJson(streaming.fromJson(json, Activity.class)));
+    }
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream input = TypeAdaptersTest.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) > 0) output.write(buffer, 0, read);
+            return output.toString("UTF-8");
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.logging;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogRingTest {
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new LogRing(1).capacity());
+        assertEquals(8, new LogRing(5).capacity());
+        assertEquals(16, new LogRing(16).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePositive() {
+        new LogRing(0);
+    }
+
+    @Test
+    public void linesArePolledInTheOrderTheyWereOffered() {
+        LogRing ring = new LogRing(4);
+        assertTrue(ring.offer(1, LogLevel.INFO, "tag", "first"));
+        assertTrue(ring.offer(2, LogLevel.WARN, "tag", "second"));
+
+        int slot = ring.peek();
+        assertEquals(1, ring.getTimestamp(slot));
+        assertEquals(LogLevel.INFO, ring.getLevel(slot));
+        assertEquals("tag", ring.getTag(slot));
+        assertEquals("first", ring.getMessage(slot));
+        ring.release(slot);
+
+        slot = ring.peek();
+        assertEquals("second", ring.getMessage(slot));
+        ring.release(slot);
+        assertEquals(-1, ring.peek());
+    }
+
+    @Test
+    public void releasedSlotsAreCleared() {
+        LogRing ring = new LogRing(1);
+        ring.offer(1, LogLevel.INFO, "tag", "line");
+        int slot = ring.peek();
+        ring.release(slot);
+        assertNull(ring.getMessage(slot));
+        assertNull(ring.getTag(slot));
+    }
+
+    @Test
+    public void aFullRingRefusesLinesUntilOneIsReleased() {
+        LogRing ring = new LogRing(2);
+        assertTrue(ring.offer(1, LogLevel.INFO, "tag", "a"));
+        assertTrue(ring.offer(2, LogLevel.INFO, "tag", "b"));
+        assertFalse(ring.offer(3, LogLevel.INFO, "tag", "c"));
+
+        ring.release(ring.peek());
+        assertTrue(ring.offer(4, LogLevel.INFO, "tag", "d"));
+        assertEquals("b", ring.getMessage(ring.peek()));
+    }
+
+    @Test
+    public void linesOfConcurrentProducersArePolledOnce() throws InterruptedException {
+        final int producers = 4;
+        final int linesPerProducer = 10000;
+        final LogRing ring = new LogRing(64);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < linesPerProducer; i++) {
+                    while (!ring.offer(i, LogLevel.DEBUG, "p", producer + ":" + i)) Thread.yield();
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+
+        Set<String> polled = new HashSet<>();
+        int[] lastByProducer = {-1, -1, -1, -1};
+        while (polled.size() < producers * linesPerProducer) {
+            int slot = ring.peek();
+            if (slot < 0) {
+                Thread.yield();
+                continue;
+            }
+            String message = ring.getMessage(slot);
+            assertTrue("polled twice: " + message, polled.add(message));
+            int producer = Integer.parseInt(message.substring(0, message.indexOf(':')));
+            int line = (int) ring.getTimestamp(slot);
+            // each producer's lines keep their order
+            assertTrue(line > lastByProducer[producer]);
+            lastByProducer[producer] = line;
+            ring.release(slot);
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(-1, ring.peek());
+    }
+}
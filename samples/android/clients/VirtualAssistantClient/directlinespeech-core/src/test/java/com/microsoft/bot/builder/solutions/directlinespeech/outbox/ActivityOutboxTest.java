@@ -0,0 +1,204 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.outbox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ActivityOutboxTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void takesByPriorityThenInOrder() {
+        ActivityOutbox outbox = open(0);
+        outbox.enqueue("{\"n\":1}", null, SendPriority.BACKGROUND);
+        outbox.enqueue("{\"n\":2}", null, SendPriority.USER);
+        outbox.enqueue("{\"n\":3}", null, SendPriority.HANDSHAKE);
+        outbox.enqueue("{\"n\":4}", null, SendPriority.USER);
+
+        assertEquals("{\"n\":3}", outbox.takeNext().getJson());
+        assertEquals("{\"n\":2}", outbox.takeNext().getJson());
+        assertEquals("{\"n\":4}", outbox.takeNext().getJson());
+        assertEquals("{\"n\":1}", outbox.takeNext().getJson());
+        assertNull(outbox.takeNext());
+        assertEquals(4, outbox.size());
+    }
+
+    @Test
+    public void aReleasedEntryIsTakenAgainFirst() {
+        ActivityOutbox outbox = open(0);
+        OutboxEntry first = outbox.enqueue("{\"n\":1}", null, SendPriority.USER);
+        outbox.enqueue("{\"n\":2}", null, SendPriority.USER);
+
+        assertSame(first, outbox.takeNext());
+        outbox.release(first.getId());
+        assertSame(first, outbox.takeNext());
+    }
+
+    @Test
+    public void anAcknowledgedEntryIsRemovedAndReported() {
+        ActivityOutbox outbox = open(0);
+        RecordingListener listener = new RecordingListener();
+        outbox.setOnDeliveryListener(listener);
+        OutboxEntry entry = outbox.enqueue("{\"n\":1}", null, SendPriority.USER);
+
+        outbox.acknowledge(outbox.takeNext().getId());
+        assertEquals(0, outbox.size());
+        assertEquals(1, listener.delivered.size());
+        assertSame(entry, listener.delivered.get(0));
+    }
+
+    @Test
+    public void anEntryWithTheSameKeySupersedesAPendingOne() {
+        ActivityOutbox outbox = open(0);
+        RecordingListener listener = new RecordingListener();
+        outbox.setOnDeliveryListener(listener);
+        OutboxEntry old = outbox.enqueue("{\"location\":1}", "location", SendPriority.BACKGROUND);
+        outbox.enqueue("{\"location\":2}", "location", SendPriority.BACKGROUND);
+
+        assertEquals(1, outbox.size());
+        assertEquals("{\"location\":2}", outbox.takeNext().getJson());
+        assertSame(old, listener.superseded.get(0));
+    }
+
+    @Test
+    public void anEntryInFlightIsNotSuperseded() {
+        ActivityOutbox outbox = open(0);
+        outbox.enqueue("{\"location\":1}", "location", SendPriority.BACKGROUND);
+        outbox.takeNext();
+        outbox.enqueue("{\"location\":2}", "location", SendPriority.BACKGROUND);
+        assertEquals(2, outbox.size());
+    }
+
+    @Test
+    public void replaysThePendingEntriesOfTheJournal() {
+        ActivityOutbox outbox = open(0);
+        outbox.enqueue("{\"n\":1}", null, SendPriority.USER, "tag");
+        OutboxEntry acknowledged = outbox.enqueue("{\"n\":2}", null, SendPriority.USER);
+        outbox.enqueue("{\"n\":3}", "key", SendPriority.BACKGROUND);
+        outbox.takeNext();
+        outbox.takeNext();
+        outbox.acknowledge(acknowledged.getId());
+        outbox.close();
+
+        ActivityOutbox replayed = open(0);
+        assertEquals(2, replayed.size());
+        OutboxEntry first = replayed.takeNext();
+        assertEquals("{\"n\":1}", first.getJson());
+        assertEquals(SendPriority.USER, first.getPriority());
+        // the tag is not journaled
+        assertNull(first.getTag());
+        OutboxEntry second = replayed.takeNext();
+        assertEquals("{\"n\":3}", second.getJson());
+        assertEquals("key", second.getCoalesceKey());
+        assertEquals(SendPriority.BACKGROUND, second.getPriority());
+
+        // ids keep increasing after a restart
+        assertTrue(replayed.enqueue("{\"n\":4}", null, SendPriority.USER).getId() > second.getId());
+    }
+
+    @Test
+    public void skipsARecordTornByACrash() throws IOException {
+        ActivityOutbox outbox = open(0);
+        outbox.enqueue("{\"n\":1}", null, SendPriority.USER);
+        outbox.close();
+        try (OutputStream output = new FileOutputStream(journal(), true)) {
+            output.write("+2 USE".getBytes("UTF-8"));
+        }
+
+        ActivityOutbox replayed = open(0);
+        assertEquals(1, replayed.size());
+        assertEquals("{\"n\":1}", replayed.takeNext().getJson());
+    }
+
+    @Test
+    public void compactsTheJournalAndDropsTheOldestEntriesOverBudget() {
+        long maxBytes = 1000;
+        ActivityOutbox outbox = open(maxBytes);
+        RecordingListener listener = new RecordingListener();
+        outbox.setOnDeliveryListener(listener);
+        String padding = new String(new char[80]).replace('\0', 'x');
+        OutboxEntry last = null;
+        for (int i = 0; i < 50; i++) {
+            last = outbox.enqueue("{\"n\":" + i + ",\"p\":\"" + padding + "\"}", null, SendPriority.USER);
+        }
+        // waits for the journal writes
+        outbox.close();
+
+        assertTrue(journal().length() <= maxBytes);
+        assertFalse(listener.dropped.isEmpty());
+        assertEquals(0, listener.superseded.size());
+        assertEquals(50, outbox.size() + listener.dropped.size());
+        // the oldest were dropped, the newest kept
+        assertEquals("{\"n\":0,\"p\":\"" + padding + "\"}", listener.dropped.get(0).getJson());
+
+        ActivityOutbox replayed = open(maxBytes);
+        assertEquals(outbox.size(), replayed.size());
+        OutboxEntry entry;
+        OutboxEntry newest = null;
+        while ((entry = replayed.takeNext()) != null) newest = entry;
+        assertEquals(last.getJson(), newest.getJson());
+    }
+
+    @Test
+    public void theBudgetCountsUtf8Bytes() {
+        long maxBytes = 1000;
+        ActivityOutbox outbox = open(maxBytes);
+        // 3 bytes per character in UTF-8
+        String padding = new String(new char[80]).replace('\0', '\u20ac');
+        for (int i = 0; i < 50; i++) {
+            outbox.enqueue("{\"n\":" + i + ",\"p\":\"" + padding + "\"}", null, SendPriority.USER);
+        }
+        outbox.close();
+
+        assertTrue(journal().length() <= maxBytes);
+        assertEquals(outbox.size(), open(maxBytes).size());
+    }
+
+    @Test
+    public void countsTheUtf8LengthOfAString() {
+        assertEquals(0, ActivityOutbox.utf8Length(""));
+        assertEquals(3, ActivityOutbox.utf8Length("abc"));
+        assertEquals(2, ActivityOutbox.utf8Length("\u00e9"));
+        assertEquals(3, ActivityOutbox.utf8Length("\u20ac"));
+        assertEquals(4, ActivityOutbox.utf8Length("\ud83d\ude00"));
+    }
+
+    private ActivityOutbox open(long maxBytes) {
+        return new ActivityOutbox(journal(), maxBytes);
+    }
+
+    private File journal() {
+        return new File(folder.getRoot(), "outbox.journal");
+    }
+
+    private static final class RecordingListener implements ActivityOutbox.OnDeliveryListener {
+        final List<OutboxEntry> delivered = new ArrayList<>();
+        final List<OutboxEntry> superseded = new ArrayList<>();
+        final List<OutboxEntry> dropped = new ArrayList<>();
+
+        @Override
+        public void onDelivered(OutboxEntry entry) {
+            delivered.add(entry);
+        }
+
+        @Override
+        public void onDropped(OutboxEntry entry, boolean superseded) {
+            (superseded ? this.superseded : dropped).add(entry);
+        }
+    }
+}
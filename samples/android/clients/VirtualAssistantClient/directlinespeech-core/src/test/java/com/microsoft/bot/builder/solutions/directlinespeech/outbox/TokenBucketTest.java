@@ -0,0 +1,58 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.outbox;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void allowsABurstOfCapacityThenRefuses() {
+        TokenBucket bucket = new TokenBucket(3, 1, 0);
+        assertTrue(bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+    }
+
+    @Test
+    public void refillsAtTheSustainedRate() {
+        TokenBucket bucket = new TokenBucket(1, 2, 0);
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(SECOND / 4));
+        assertTrue(bucket.tryAcquire(SECOND / 2));
+    }
+
+    @Test
+    public void doesNotRefillBeyondCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 10, 0);
+        long later = 60 * SECOND;
+        assertTrue(bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later));
+        assertFalse(bucket.tryAcquire(later));
+    }
+
+    @Test
+    public void tellsWhenTheNextTokenIsAvailable() {
+        TokenBucket bucket = new TokenBucket(1, 4, 0);
+        assertEquals(0, bucket.nanosUntilAvailable(0));
+        bucket.tryAcquire(0);
+        assertEquals(SECOND / 4, bucket.nanosUntilAvailable(0), 1000);
+        assertEquals(SECOND / 8, bucket.nanosUntilAvailable(SECOND / 8), 1000);
+        assertEquals(0, bucket.nanosUntilAvailable(SECOND / 4 + 1000));
+    }
+
+    @Test
+    public void ignoresAClockGoingBackwards() {
+        TokenBucket bucket = new TokenBucket(1, 1, SECOND);
+        assertTrue(bucket.tryAcquire(SECOND));
+        assertFalse(bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(2 * SECOND));
+    }
+}
@@ -92,6 +92,36 @@ public class ConfigurationManager {
         if (configuration.signedIn == null) {
             configuration.signedIn = false;
         }
+        if (configuration.ttsOutputFormat == null) {
+            configuration.ttsOutputFormat = defaultConfiguration.ttsOutputFormat;
+        }
+        if (configuration.ttsCacheMemoryBytes == null) {
+            configuration.ttsCacheMemoryBytes = defaultConfiguration.ttsCacheMemoryBytes;
+        }
+        if (configuration.ttsCacheDiskBytes == null) {
+            configuration.ttsCacheDiskBytes = defaultConfiguration.ttsCacheDiskBytes;
+        }
+        if (configuration.vadEnabled == null) {
+            configuration.vadEnabled = defaultConfiguration.vadEnabled;
+        }
+        if (configuration.vadThresholdDb == null) {
+            configuration.vadThresholdDb = defaultConfiguration.vadThresholdDb;
+        }
+        if (configuration.vadEndSilenceMs == null) {
+            configuration.vadEndSilenceMs = defaultConfiguration.vadEndSilenceMs;
+        }
+        if (configuration.vadInitialSilenceMs == null) {
+            configuration.vadInitialSilenceMs = defaultConfiguration.vadInitialSilenceMs;
+        }
+        if (configuration.appLogLevel == null) {
+            configuration.appLogLevel = defaultConfiguration.appLogLevel;
+        }
+        if (configuration.typedTurnsTextOnly == null) {
+            configuration.typedTurnsTextOnly = defaultConfiguration.typedTurnsTextOnly;
+        }
+        if (configuration.continuousConversation == null) {
+            configuration.continuousConversation = defaultConfiguration.continuousConversation;
+        }
 
         return configuration;
     }
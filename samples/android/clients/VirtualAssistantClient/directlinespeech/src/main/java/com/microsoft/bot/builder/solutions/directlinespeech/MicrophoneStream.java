@@ -3,21 +3,55 @@ package com.microsoft.bot.builder.solutions.directlinespeech;
 import android.media.AudioFormat;
 import android.media.AudioRecord;
 import android.media.MediaRecorder;
+import android.os.Process;
+import android.util.Log;
 
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.PcmRingBuffer;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.UtteranceGate;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.VoiceActivityDetector;
 import com.microsoft.cognitiveservices.speech.audio.AudioStreamFormat;
 import com.microsoft.cognitiveservices.speech.audio.PullAudioInputStreamCallback;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microphone audio for the DialogServiceConnector.
+ * Capture starts as soon as the user triggers listening (startCapture) and is kept in a ring buffer,
+ * so what is said while the connector connects is read by the Speech SDK once it starts listening.
+ * While nothing is captured, silence is returned: returning 0 would end the stream for the SDK.
+ *
+ * With endpointing enabled, a single utterance (beginUtterance) is read through an UtteranceGate: silence before
+ * and after speech is not sent, and the end of speech is reported as soon as it is detected locally.
+ *
+ * In a continuous conversation capture stays on between turns: the answer to a question of the bot is in the
+ * ring buffer from the end of its playback, whenever the Speech SDK starts reading it (see dropAudioBefore).
+ */
 public class MicrophoneStream extends PullAudioInputStreamCallback {
 
     // CONSTANTS
+    private static final String LOGTAG = "MicrophoneStream";
     private final static int SAMPLE_RATE = 16000;
+    private static final int BYTES_PER_SECOND = SAMPLE_RATE * 2;
+    private static final int BUFFER_SECONDS = 10;
+    private static final int CHUNK_MS = 20;
+    private static final long READ_TIMEOUT_MS = 200;
+    private static final long STOP_TIMEOUT_MS = 500;// the capture thread returns from read once the recorder stopped
 
     // STATE
     private final AudioStreamFormat format;
+    private final PcmRingBuffer ringBuffer;
     private AudioRecord recorder;
+    private volatile Thread captureThread;
+    private volatile boolean isCapturing;
+    private volatile UtteranceGate utteranceGate;
+    private volatile boolean isUtteranceActive;
+    private volatile int utteranceId;
+    private int gateUtteranceId;// read thread only
 
     public MicrophoneStream() {
         this.format = AudioStreamFormat.getWaveFormatPCM(SAMPLE_RATE, (short)16, (short)1);
+        this.ringBuffer = new PcmRingBuffer(BYTES_PER_SECOND * BUFFER_SECONDS);
         this.initMic();
     }
 
@@ -25,16 +59,141 @@ public class MicrophoneStream extends PullAudioInputStreamCallback {
         return this.format;
     }
 
+    public boolean isCapturing() {
+        return isCapturing;
+    }
+
+    /**
+     * Start capturing now (if not already). Unread audio of a previous capture is dropped: it can be minutes old.
+     * There is no pre-roll from before the trigger, the microphone is off until then.
+     * Audio captured while already capturing is kept, e.g. the answer of a continuous conversation.
+     */
+    public synchronized void startCapture() {
+        if (isCapturing || recorder == null) return;
+        ringBuffer.clear();
+
+        isCapturing = true;
+        recorder.startRecording();
+        captureThread = new Thread(this::capture, LOGTAG);
+        captureThread.start();
+    }
+
+    /**
+     * Detect the end of utterances locally and trim the silence around them
+     * @param thresholdDb energy above the noise floor that counts as speech
+     * @param endSilenceMs silence after speech that ends the utterance
+     * @param initialSilenceMs time to wait for speech before the utterance ends without any
+     * @param listener called on the Speech SDK audio thread when the end of an utterance is detected
+     */
+    public void enableEndpointing(double thresholdDb, int endSilenceMs, int initialSilenceMs, UtteranceGate.OnEndOfUtteranceListener listener) {
+        UtteranceGate gate = new UtteranceGate(ringBuffer, new VoiceActivityDetector(SAMPLE_RATE, thresholdDb, endSilenceMs), initialSilenceMs);
+        gate.setOnEndOfUtteranceListener(listener);
+        utteranceGate = gate;
+    }
+
+    public boolean isEndpointingEnabled() {
+        return utteranceGate != null;
+    }
+
+    /**
+     * Read the next utterance through the endpointing gate, until endUtterance. Keyword recognition reads
+     * the microphone continuously and must not be gated.
+     */
+    public void beginUtterance() {
+        if (utteranceGate == null) return;
+        utteranceId++;
+        isUtteranceActive = true;
+    }
+
+    public void endUtterance() {
+        isUtteranceActive = false;
+    }
+
+    /**
+     * @return bytes captured and bytes sent in the last gated utterance
+     */
+    public long[] getUtteranceBytes() {
+        UtteranceGate gate = utteranceGate;
+        return gate == null ? new long[]{0, 0} : new long[]{gate.getBytesConsumed(), gate.getBytesPassed()};
+    }
+
+    /**
+     * Drop unread audio captured before the given time, e.g. the echo of the bot's own voice
+     * @param nanos System.nanoTime() of the oldest audio to keep
+     */
+    public void dropAudioBefore(long nanos) {
+        long keptMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanos);
+        ringBuffer.keepLast((int) Math.min(ringBuffer.capacity(), Math.max(0, keptMs) * BYTES_PER_SECOND / 1000));
+    }
+
+    /**
+     * Stop capturing and wait for the capture thread to exit, so a new capture or close() cannot overlap with it.
+     * Audio already captured can still be read.
+     */
+    public synchronized void stopCapture() {
+        if (!isCapturing) return;
+        isCapturing = false;
+        Thread thread = captureThread;
+        captureThread = null;
+        try {
+            recorder.stop();// also unblocks the capture thread
+        } catch (IllegalStateException e) {
+            Log.e(LOGTAG, "stop exception", e);
+        }
+        if (thread != null) {
+            try {
+                thread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) Log.w(LOGTAG, "capture thread did not stop");
+        }
+    }
+
     @Override
     public int read(byte[] bytes) {
-        long ret = this.recorder.read(bytes, 0, bytes.length);
-        return (int)ret;
+        try {
+            UtteranceGate gate = utteranceGate;
+            if (gate != null && isUtteranceActive) {
+                int read = readUtterance(gate, bytes);
+                if (read > 0) return read;
+            } else if (isCapturing || ringBuffer.available() > 0) {
+                int read = ringBuffer.read(bytes, 0, bytes.length, READ_TIMEOUT_MS);
+                if (read > 0) return read;
+            }
+            // nothing captured, pace silence in real time
+            Thread.sleep(bytes.length * 1000L / BYTES_PER_SECOND);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Arrays.fill(bytes, (byte) 0);
+        return bytes.length;
+    }
+
+    // blocks while the gate drops silence, returns 0 once the utterance ended or capture stopped
+    private int readUtterance(UtteranceGate gate, byte[] bytes) throws InterruptedException {
+        int id = utteranceId;
+        if (gateUtteranceId != id) {
+            gate.reset();
+            gateUtteranceId = id;
+        }
+        while (isUtteranceActive && utteranceId == id) {
+            int read = gate.read(bytes, 0, bytes.length, READ_TIMEOUT_MS);
+            if (read > 0) return read;
+            if (read == UtteranceGate.END_OF_UTTERANCE) return 0;
+            if (!isCapturing && ringBuffer.available() == 0) return 0;
+        }
+        return 0;
     }
 
     @Override
-    public void close() {
-        this.recorder.release();
-        this.recorder = null;
+    public synchronized void close() {
+        // the capture thread has exited, it cannot be reading from the released recorder
+        stopCapture();
+        if (this.recorder != null) {
+            this.recorder.release();
+            this.recorder = null;
+        }
     }
 
     private void initMic() {
@@ -44,11 +203,26 @@ public class MicrophoneStream extends PullAudioInputStreamCallback {
                 .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
                 .setChannelMask(AudioFormat.CHANNEL_IN_MONO)
                 .build();
+        // created once and only started on demand, so capture starts without setup delay
         this.recorder = new AudioRecord.Builder()
                 .setAudioSource(MediaRecorder.AudioSource.VOICE_RECOGNITION)
                 .setAudioFormat(af)
                 .build();
+    }
 
-        this.recorder.startRecording();
+    private void capture() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        final Thread self = Thread.currentThread();
+        final AudioRecord record = recorder;
+        final byte[] chunk = new byte[BYTES_PER_SECOND * CHUNK_MS / 1000];
+        while (captureThread == self && record != null) {
+            int read = record.read(chunk, 0, chunk.length);
+            if (read > 0) {
+                ringBuffer.write(chunk, 0, read);
+            } else if (read < 0) {
+                Log.e(LOGTAG, "AudioRecord read error " + read);
+                break;
+            }
+        }
     }
 }
@@ -0,0 +1,100 @@
+package com.microsoft.bot.builder.solutions.directlinespeech;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Follows the default network, e.g. to reconnect as soon as the device moves from Wi-Fi to mobile data
+ * instead of finding out with the next failed request.
+ * Listener methods are called on a ConnectivityManager thread.
+ */
+public class NetworkMonitor {
+
+    // CONSTANTS
+    private static final String LOGTAG = "NetworkMonitor";
+
+    public interface OnNetworkChangedListener {
+        /**
+         * @param changed true if it replaces another network (a handover), false if there was no network
+         */
+        void onNetworkAvailable(boolean changed);
+
+        void onNetworkLost();
+    }
+
+    // STATE
+    private final ConnectivityManager connectivityManager;
+    private final OnNetworkChangedListener listener;
+    private ConnectivityManager.NetworkCallback callback;
+    private Network currentNetwork;
+
+    public NetworkMonitor(Context context, OnNetworkChangedListener listener) {
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (callback != null || connectivityManager == null) return;
+        currentNetwork = connectivityManager.getActiveNetwork();
+        callback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                update();
+            }
+
+            @Override
+            public void onLost(Network network) {
+                update();
+            }
+        };
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                connectivityManager.registerDefaultNetworkCallback(callback);
+            } else {
+                NetworkRequest request = new NetworkRequest.Builder()
+                        .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                        .build();
+                connectivityManager.registerNetworkCallback(request, callback);
+            }
+        } catch (RuntimeException e) {
+            // e.g. SecurityException without ACCESS_NETWORK_STATE
+            Log.e(LOGTAG, "cannot monitor the network", e);
+            callback = null;
+        }
+    }
+
+    public synchronized void stop() {
+        if (callback == null) return;
+        try {
+            connectivityManager.unregisterNetworkCallback(callback);
+        } catch (RuntimeException e) {
+            Log.e(LOGTAG, "unregister exception", e);
+        }
+        callback = null;
+    }
+
+    public synchronized boolean isNetworkAvailable() {
+        return callback == null || currentNetwork != null;// assume a network when it cannot be monitored
+    }
+
+    private void update() {
+        Network previous;
+        Network active;
+        synchronized (this) {
+            if (callback == null) return;
+            previous = currentNetwork;
+            active = connectivityManager.getActiveNetwork();
+            currentNetwork = active;
+        }
+        if (active == null) {
+            if (previous != null) listener.onNetworkLost();
+        } else if (!active.equals(previous)) {
+            listener.onNetworkAvailable(previous != null);
+        }
+    }
+}
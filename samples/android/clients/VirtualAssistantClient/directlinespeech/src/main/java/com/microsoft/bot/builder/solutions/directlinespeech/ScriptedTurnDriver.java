@@ -0,0 +1,286 @@
+package com.microsoft.bot.builder.solutions.directlinespeech;
+
+import android.util.Log;
+
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.WavReader;
+import com.microsoft.bot.builder.solutions.directlinespeech.driver.ScriptedUtterance;
+import com.microsoft.bot.builder.solutions.directlinespeech.driver.TurnScript;
+import com.microsoft.bot.builder.solutions.directlinespeech.metrics.ScriptedTurnReport;
+import com.microsoft.cognitiveservices.speech.audio.AudioInputStream;
+import com.microsoft.cognitiveservices.speech.audio.AudioStreamFormat;
+import com.microsoft.cognitiveservices.speech.audio.PushAudioInputStream;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import events.ActivityReceived;
+import events.Recognized;
+import events.RequestTimeout;
+import io.reactivex.disposables.CompositeDisposable;
+
+import static com.microsoft.bot.builder.solutions.directlinespeech.async.EventHandlers.guard;
+
+/**
+ * Runs scripted turns without anyone speaking: the utterances of a TurnScript are written in real time to a push
+ * audio stream, which the SpeechSdk reads instead of the microphone (see getAudioInput), one listenOnceAsync() per
+ * turn, at a fixed rate. Each turn records in a ScriptedTurnReport what was recognized, the activities received and
+ * the latencies from the end of the speech.
+ *
+ * The SpeechSdk can use any DialogTransport. A FakeDialogTransport does not recognize audio: onTurnStarting() is
+ * where it is told what the utterance says.
+ */
+public class ScriptedTurnDriver {
+
+    // CONSTANTS
+    private static final String LOGTAG = "ScriptedTurnDriver";
+    private static final int CHUNK_MS = 100;
+    private static final long TRAILING_SILENCE_MS = 1500;// lets the service find the end of the speech
+    private static final long QUIET_MS = 1500;// without activities, after which a turn that got a reply is over
+    private static final long TURN_TIMEOUT_MS = 20 * 1000;// from the end of the speech
+    private static final long CONNECT_TIMEOUT_MS = 30 * 1000;
+    private static final long CONNECT_CHECK_PERIOD_MS = 100;
+
+    public interface Listener {
+        /**
+         * Called on the thread of the driver before the utterance is written
+         */
+        void onTurnStarting(ScriptedUtterance utterance);
+
+        /**
+         * Called on the thread of the driver once a turn is recorded in the report
+         */
+        void onTurnCompleted(ScriptedTurnReport report);
+
+        /**
+         * Called on the thread of the driver when all the turns ran, the driver was stopped or the connection failed
+         */
+        void onCompleted(ScriptedTurnReport report);
+    }
+
+    // STATE
+    private final TurnScript script;
+    private final int turnCount;
+    private final long turnIntervalNanos;
+    private final PushAudioInputStream audioInput;
+    private final ScriptedTurnReport report = new ScriptedTurnReport();
+    private final CompositeDisposable subscriptions = new CompositeDisposable();
+    private volatile Listener listener;
+    private volatile SpeechSdk speechSdk;
+    private volatile boolean isStopped;
+    private Thread thread;
+    // the current turn, guarded by this
+    private boolean isInTurn;
+    private String recognizedText;
+    private long recognizedAtNanos;
+    private long firstActivityAtNanos;
+    private long lastActivityAtNanos;
+    private int activityCount;
+    private boolean timedOut;
+
+    /**
+     * @param turnCount turns to run, the script starts over if it has fewer utterances
+     * @param turnsPerMinute rate at which turns start; a turn that takes longer delays the next one
+     */
+    public ScriptedTurnDriver(TurnScript script, int turnCount, double turnsPerMinute) {
+        this.script = script;
+        this.turnCount = turnCount;
+        this.turnIntervalNanos = (long) (TimeUnit.MINUTES.toNanos(1) / Math.max(0.001, turnsPerMinute));
+        AudioStreamFormat format = AudioStreamFormat.getWaveFormatPCM(WavReader.SAMPLE_RATE, (short) WavReader.BITS_PER_SAMPLE, (short) WavReader.CHANNELS);
+        this.audioInput = AudioInputStream.createPushStream(format);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the audio input of the SpeechSdk that runs the turns, given to its initialize()
+     */
+    public PushAudioInputStream getAudioInput() {
+        return audioInput;
+    }
+
+    public ScriptedTurnReport getReport() {
+        return report;
+    }
+
+    /**
+     * Connect the SpeechSdk and run the turns on a thread of the driver
+     * @param speechSdk initialized with getAudioInput()
+     */
+    public synchronized void start(SpeechSdk speechSdk) {
+        if (thread != null) return;
+        this.speechSdk = speechSdk;
+        thread = new Thread(this::run, LOGTAG);
+        thread.start();
+    }
+
+    /**
+     * Stop after the current turn, without waiting for its replies
+     */
+    public synchronized void stop() {
+        isStopped = true;
+        if (thread != null) thread.interrupt();
+        notifyAll();
+    }
+
+    public boolean isRunning() {
+        Thread running = thread;
+        return running != null && running.isAlive();
+    }
+
+    private void run() {
+        // on the threads that publish the events, the turn is timed when they happen
+        SpeechEvents events = speechSdk.getEvents();
+        subscriptions.add(events.getRecognized().subscribe(guard(this::onEventRecognized, this::onEventError), this::onEventError));
+        subscriptions.add(events.getActivities().subscribe(guard(this::onEventActivityReceived, this::onEventError), this::onEventError));
+        subscriptions.add(events.getRequestTimeouts().subscribe(guard(this::onEventRequestTimeout, this::onEventError), this::onEventError));
+        try {
+            if (!awaitConnection()) {
+                Log.e(LOGTAG, "not connected after " + CONNECT_TIMEOUT_MS + " ms, no turn ran");
+                return;
+            }
+            Log.i(LOGTAG, "running " + turnCount + " turns, " + script.getUtterances().size() + " utterances");
+            long startedAtNanos = System.nanoTime();
+            for (int turn = 0; turn < turnCount && !isStopped; turn++) {
+                sleepUntil(startedAtNanos + turn * turnIntervalNanos);
+                runTurn(script.getUtterance(turn));
+                Listener current = listener;
+                if (current != null) current.onTurnCompleted(report);
+            }
+        } catch (InterruptedException e) {
+            Log.i(LOGTAG, "stopped after " + report.getTurnCount() + " turns");
+        } finally {
+            subscriptions.clear();
+            audioInput.close();
+            Listener current = listener;
+            if (current != null) current.onCompleted(report);
+        }
+    }
+
+    private boolean awaitConnection() throws InterruptedException {
+        speechSdk.connectAsync();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT_MS);
+        while (!speechSdk.isConnected()) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(CONNECT_CHECK_PERIOD_MS);
+        }
+        return true;
+    }
+
+    private void runTurn(ScriptedUtterance utterance) throws InterruptedException {
+        synchronized (this) {
+            isInTurn = true;
+            recognizedText = null;
+            recognizedAtNanos = 0;
+            firstActivityAtNanos = 0;
+            lastActivityAtNanos = 0;
+            activityCount = 0;
+            timedOut = false;
+        }
+        Listener current = listener;
+        if (current != null) current.onTurnStarting(utterance);
+
+        speechSdk.listenOnceAsync();
+        long speechEndedAtNanos = writeInRealTime(utterance.getPcm(), false);
+        // as a microphone would, until the service recognizes the end of the speech
+        writeInRealTime(new byte[(int) (TRAILING_SILENCE_MS * WavReader.BYTES_PER_MS)], true);
+        awaitEndOfTurn(speechEndedAtNanos);
+
+        synchronized (this) {
+            isInTurn = false;
+            long recognitionMs = msAfter(speechEndedAtNanos, recognizedAtNanos);
+            long firstActivityMs = msAfter(speechEndedAtNanos, firstActivityAtNanos);
+            report.record(utterance.getName(), utterance.getTranscript(), recognizedText,
+                    recognitionMs, firstActivityMs, activityCount, timedOut);
+            Log.i(LOGTAG, "turn " + report.getTurnCount() + " (" + utterance.getName() + "): \"" + recognizedText + "\" after "
+                    + recognitionMs + " ms, " + activityCount + " activities, first after " + firstActivityMs + " ms");
+        }
+    }
+
+    /*
+     * Write the audio in chunks, each when it would have been captured
+     * @param untilRecognized stop writing once the speech is recognized, e.g. for trailing silence
+     * @return System.nanoTime() when the last chunk was written
+     */
+    private long writeInRealTime(byte[] pcm, boolean untilRecognized) throws InterruptedException {
+        int chunkBytes = CHUNK_MS * WavReader.BYTES_PER_MS;
+        long startedAtNanos = System.nanoTime();
+        for (int offset = 0; offset < pcm.length; offset += chunkBytes) {
+            if (isStopped) throw new InterruptedException();
+            if (untilRecognized && isRecognized()) break;
+            // the push stream only takes whole arrays
+            audioInput.write(Arrays.copyOfRange(pcm, offset, Math.min(pcm.length, offset + chunkBytes)));
+            sleepUntil(startedAtNanos + TimeUnit.MILLISECONDS.toNanos((offset + chunkBytes) / WavReader.BYTES_PER_MS));
+        }
+        return System.nanoTime();
+    }
+
+    private synchronized boolean isRecognized() {
+        return recognizedAtNanos != 0;
+    }
+
+    /*
+     * Until the replies stop coming, no reply came in time or the request timed out
+     */
+    private synchronized void awaitEndOfTurn(long speechEndedAtNanos) throws InterruptedException {
+        long deadline = speechEndedAtNanos + TimeUnit.MILLISECONDS.toNanos(TURN_TIMEOUT_MS);
+        while (!isStopped && !timedOut) {
+            long now = System.nanoTime();
+            long waitUntil = deadline;
+            if (lastActivityAtNanos != 0) waitUntil = Math.min(deadline, lastActivityAtNanos + TimeUnit.MILLISECONDS.toNanos(QUIET_MS));
+            if (now >= waitUntil) {
+                if (firstActivityAtNanos == 0) timedOut = true;
+                return;
+            }
+            wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitUntil - now)));
+        }
+    }
+
+    // -1 if it did not happen, 0 if it happened before the end of the speech (a FakeDialogTransport does not wait for it)
+    private static long msAfter(long speechEndedAtNanos, long nanos) {
+        if (nanos == 0) return -1;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(nanos - speechEndedAtNanos));
+    }
+
+    private static void sleepUntil(long nanos) throws InterruptedException {
+        long remaining = nanos - System.nanoTime();
+        if (remaining > 0) TimeUnit.NANOSECONDS.sleep(remaining);
+    }
+
+    private void onEventError(Throwable throwable) {
+        Log.e(LOGTAG, "event handler failed", throwable);
+    }
+
+    // SpeechEvents: the speech of the current turn was recognized
+    private void onEventRecognized(Recognized event) {
+        synchronized (this) {
+            if (!isInTurn || recognizedAtNanos != 0) return;
+            recognizedAtNanos = System.nanoTime();
+            recognizedText = event.recognized_speech;
+            notifyAll();
+        }
+    }
+
+    // SpeechEvents: an activity of the bot, counted in the current turn
+    private void onEventActivityReceived(ActivityReceived event) {
+        if (event.isWelcomeCard) return;
+        synchronized (this) {
+            if (!isInTurn) return;
+            long now = System.nanoTime();
+            if (firstActivityAtNanos == 0) firstActivityAtNanos = now;
+            lastActivityAtNanos = now;
+            activityCount++;
+            notifyAll();
+        }
+    }
+
+    // SpeechEvents: the request of the current turn timed out
+    private void onEventRequestTimeout(RequestTimeout event) {
+        synchronized (this) {
+            if (!isInTurn) return;
+            timedOut = true;
+            notifyAll();
+        }
+    }
+}
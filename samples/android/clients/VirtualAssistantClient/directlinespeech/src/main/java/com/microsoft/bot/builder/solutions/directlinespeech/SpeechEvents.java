@@ -0,0 +1,166 @@
+package com.microsoft.bot.builder.solutions.directlinespeech;
+
+import events.ActivityReceived;
+import events.BotListening;
+import events.ConnectionEvent;
+import events.GpsLocationSent;
+import events.PlaybackEvent;
+import events.Recognized;
+import events.RecognizedIntermediateResult;
+import events.RequestTimeout;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+
+/**
+ * The events of the SpeechSdk and its Synthesizer as typed Flowables. Each subscriber chooses the Scheduler it
+ * observes on, e.g. AndroidSchedulers.mainThread() for views; without one, events are delivered on the thread that
+ * published them (a Speech SDK callback, the main thread or a thread of the Synthesizer).
+ *
+ * Intermediate recognition results are conflated: a subscriber slower than the partial results gets the latest one
+ * when it is ready, not each of them. The other events are buffered for slow subscribers, none is dropped.
+ *
+ * There is one instance per process, shared by the SpeechSdk instances: subscriptions outlive the SpeechSdk that
+ * replaces another one on a configuration change.
+ */
+public class SpeechEvents {
+
+    // CONSTANTS
+    private static final SpeechEvents DEFAULT = new SpeechEvents();
+
+    // STATE
+    private final FlowableProcessor<RecognizedIntermediateResult> intermediateResults = PublishProcessor.<RecognizedIntermediateResult>create().toSerialized();
+    private final FlowableProcessor<Recognized> recognized = PublishProcessor.<Recognized>create().toSerialized();
+    private final FlowableProcessor<BotListening> botListening = PublishProcessor.<BotListening>create().toSerialized();
+    private final FlowableProcessor<RequestTimeout> requestTimeouts = PublishProcessor.<RequestTimeout>create().toSerialized();
+    private final FlowableProcessor<ActivityReceived> activities = PublishProcessor.<ActivityReceived>create().toSerialized();
+    private final FlowableProcessor<ConnectionEvent> connectionEvents = PublishProcessor.<ConnectionEvent>create().toSerialized();
+    private final FlowableProcessor<PlaybackEvent> playbackEvents = PublishProcessor.<PlaybackEvent>create().toSerialized();
+    private final FlowableProcessor<GpsLocationSent> gpsLocationsSent = PublishProcessor.<GpsLocationSent>create().toSerialized();
+
+    SpeechEvents() {
+    }
+
+    public static SpeechEvents getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the partial results while the user speaks, conflated to the latest one
+     */
+    public Flowable<RecognizedIntermediateResult> getIntermediateResults() {
+        return intermediateResults.onBackpressureLatest();
+    }
+
+    public Flowable<RecognizedIntermediateResult> getIntermediateResults(Scheduler scheduler) {
+        // a prefetch of one: what waits for the subscriber is the latest result, not a queue of them
+        return getIntermediateResults().observeOn(scheduler, false, 1);
+    }
+
+    /**
+     * @return the final results of the spoken requests
+     */
+    public Flowable<Recognized> getRecognized() {
+        return recognized.onBackpressureBuffer();
+    }
+
+    public Flowable<Recognized> getRecognized(Scheduler scheduler) {
+        return getRecognized().observeOn(scheduler);
+    }
+
+    /**
+     * @return the keyword was recognized, the bot listens
+     */
+    public Flowable<BotListening> getBotListening() {
+        return botListening.onBackpressureBuffer();
+    }
+
+    public Flowable<BotListening> getBotListening(Scheduler scheduler) {
+        return getBotListening().observeOn(scheduler);
+    }
+
+    /**
+     * @return the requests that got no reply in time
+     */
+    public Flowable<RequestTimeout> getRequestTimeouts() {
+        return requestTimeouts.onBackpressureBuffer();
+    }
+
+    public Flowable<RequestTimeout> getRequestTimeouts(Scheduler scheduler) {
+        return getRequestTimeouts().observeOn(scheduler);
+    }
+
+    /**
+     * @return the activities of the bot, the welcome card included
+     */
+    public Flowable<ActivityReceived> getActivities() {
+        return activities.onBackpressureBuffer();
+    }
+
+    public Flowable<ActivityReceived> getActivities(Scheduler scheduler) {
+        return getActivities().observeOn(scheduler);
+    }
+
+    /**
+     * @return Connected, Disconnected and Reconnecting, in the order the connection changed
+     */
+    public Flowable<ConnectionEvent> getConnectionEvents() {
+        return connectionEvents.onBackpressureBuffer();
+    }
+
+    public Flowable<ConnectionEvent> getConnectionEvents(Scheduler scheduler) {
+        return getConnectionEvents().observeOn(scheduler);
+    }
+
+    /**
+     * @return SynthesizerStarted, UtterancePlayed and SynthesizerStopped, in the order they happened
+     */
+    public Flowable<PlaybackEvent> getPlaybackEvents() {
+        return playbackEvents.onBackpressureBuffer();
+    }
+
+    public Flowable<PlaybackEvent> getPlaybackEvents(Scheduler scheduler) {
+        return getPlaybackEvents().observeOn(scheduler);
+    }
+
+    public Flowable<GpsLocationSent> getGpsLocationsSent() {
+        return gpsLocationsSent.onBackpressureBuffer();
+    }
+
+    public Flowable<GpsLocationSent> getGpsLocationsSent(Scheduler scheduler) {
+        return getGpsLocationsSent().observeOn(scheduler);
+    }
+
+    void post(RecognizedIntermediateResult event) {
+        intermediateResults.onNext(event);
+    }
+
+    void post(Recognized event) {
+        recognized.onNext(event);
+    }
+
+    void post(BotListening event) {
+        botListening.onNext(event);
+    }
+
+    void post(RequestTimeout event) {
+        requestTimeouts.onNext(event);
+    }
+
+    void post(ActivityReceived event) {
+        activities.onNext(event);
+    }
+
+    void post(ConnectionEvent event) {
+        connectionEvents.onNext(event);
+    }
+
+    void post(PlaybackEvent event) {
+        playbackEvents.onNext(event);
+    }
+
+    void post(GpsLocationSent event) {
+        gpsLocationsSent.onNext(event);
+    }
+}
@@ -1,139 +1,291 @@
 package com.microsoft.bot.builder.solutions.directlinespeech;
 
+import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
 import com.google.gson.Gson;
+import com.microsoft.bot.builder.solutions.directlinespeech.activity.ActivityFactory;
+import com.microsoft.bot.builder.solutions.directlinespeech.activity.SuggestedActionList;
+import com.microsoft.bot.builder.solutions.directlinespeech.async.FutureCompletion;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.AudioSource;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.TtsCache;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.TtsOutputFormat;
+import com.microsoft.bot.builder.solutions.directlinespeech.cache.WelcomeCardCache;
+import com.microsoft.bot.builder.solutions.directlinespeech.connector.ConnectorState;
+import com.microsoft.bot.builder.solutions.directlinespeech.connector.ConnectorStateMachine;
+import com.microsoft.bot.builder.solutions.directlinespeech.connector.ReconnectPolicy;
+import com.microsoft.bot.builder.solutions.directlinespeech.correlation.ReplyCorrelator;
+import com.microsoft.bot.builder.solutions.directlinespeech.correlation.TimerWheel;
+import com.microsoft.bot.builder.solutions.directlinespeech.diagnostics.DiagnosticsSession;
+import com.microsoft.bot.builder.solutions.directlinespeech.json.ActivityJson;
+import com.microsoft.bot.builder.solutions.directlinespeech.logging.AsyncFileLogger;
+import com.microsoft.bot.builder.solutions.directlinespeech.logging.LogLevel;
+import com.microsoft.bot.builder.solutions.directlinespeech.metrics.TurnMetrics;
+import com.microsoft.bot.builder.solutions.directlinespeech.outbox.ActivityOutbox;
+import com.microsoft.bot.builder.solutions.directlinespeech.outbox.OutboundScheduler;
+import com.microsoft.bot.builder.solutions.directlinespeech.outbox.OutboxEntry;
+import com.microsoft.bot.builder.solutions.directlinespeech.outbox.SendPriority;
 import com.microsoft.bot.builder.solutions.directlinespeech.model.Configuration;
+import com.microsoft.bot.builder.solutions.directlinespeech.routing.ActivityHeader;
+import com.microsoft.bot.builder.solutions.directlinespeech.routing.ActivityRouter;
+import com.microsoft.bot.builder.solutions.directlinespeech.routing.RoutedActivity;
+import com.microsoft.bot.builder.solutions.directlinespeech.transport.DialogServiceConnectorTransport;
+import com.microsoft.bot.builder.solutions.directlinespeech.transport.DialogTransport;
 import com.microsoft.bot.builder.solutions.directlinespeech.utils.DateUtils;
-import com.microsoft.cognitiveservices.speech.KeywordRecognitionModel;
 import com.microsoft.cognitiveservices.speech.PropertyId;
 import com.microsoft.cognitiveservices.speech.ServicePropertyChannel;
-import com.microsoft.cognitiveservices.speech.SpeechRecognitionCanceledEventArgs;
-import com.microsoft.cognitiveservices.speech.SpeechRecognitionResult;
 import com.microsoft.cognitiveservices.speech.audio.AudioConfig;
-import com.microsoft.cognitiveservices.speech.audio.PullAudioOutputStream;
+import com.microsoft.cognitiveservices.speech.audio.PushAudioInputStream;
 import com.microsoft.cognitiveservices.speech.dialog.BotFrameworkConfig;
 import com.microsoft.cognitiveservices.speech.dialog.CustomCommandsConfig;
 import com.microsoft.cognitiveservices.speech.dialog.DialogServiceConfig;
-import com.microsoft.cognitiveservices.speech.dialog.DialogServiceConnector;
 
-import org.greenrobot.eventbus.EventBus;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
 import java.util.TimeZone;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.UUID;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import client.model.ActivityTypes;
 import client.model.CardAction;
 import client.model.ChannelAccount;
+import client.model.InputHints;
 import events.ActivityReceived;
 import events.BotListening;
 import events.Connected;
 import events.Disconnected;
 import events.GpsLocationSent;
+import events.Reconnecting;
 import events.Recognized;
 import events.RecognizedIntermediateResult;
 import events.RequestTimeout;
-
-import static com.microsoft.cognitiveservices.speech.ResultReason.RecognizedKeyword;
-import static com.microsoft.cognitiveservices.speech.ResultReason.RecognizingKeyword;
+import io.reactivex.disposables.Disposable;
 
 public class SpeechSdk {
 
     // CONSTANTS
     private static final String LOGTAG = "SpeechSdk";
-    public static final String SPEECHSDKLOGFILENAME = "SpeechSdk.log";
     public static final String APPLOGFILENAME = "app.log";
-    private final int RESPONSE_TIMEOUT_PERIOD_MS = 15 * 1000;
+    private static final String TTSCACHEDIRECTORY = "tts_cache";
+    private static final String OUTBOXFILENAME = "outbox.journal";
+    public static final String WELCOMECARDFILENAME = "welcome_card.json";
+    private static final long APP_LOG_MAX_BYTES = 1024 * 1024;
+    private static final int APP_LOG_MAX_SEGMENTS = 5;
+    private static final long TASK_TIMEOUT_MS = 30 * 1000;
+    private static final long DRAIN_CHECK_PERIOD_MS = 250;
+    private static final long DRAIN_TIMEOUT_MS = 20 * 1000;
+    private static final long RECONNECT_BASE_DELAY_MS = 500;
+    private static final long RECONNECT_MAX_DELAY_MS = 30 * 1000;
+    private static final String REQUEST_TYPE_MESSAGE = "message";
+    private static final String REQUEST_TYPE_SPEECH = "speech";
+    private static final int VAD_DEFAULT_THRESHOLD_DB = 12;
+    private static final int VAD_DEFAULT_END_SILENCE_MS = 700;
+    private static final int VAD_DEFAULT_INITIAL_SILENCE_MS = 5000;
+    private static final int TEXT_ONLY_IDS = 64;
+    private static final Object WELCOME_CARD_TAG = new Object();// routed with the fresh welcome card
 
     // STATE
     private MicrophoneStream microphoneStream;
-    private DialogServiceConnector botConnector;
+    private PushAudioInputStream audioInputStream;// scripted audio instead of the microphone, e.g. from a ScriptedTurnDriver
+    private DialogTransport botConnector;
     private Synthesizer synthesizer;
+    private final SpeechEvents events = SpeechEvents.getDefault();
     private Gson gson;
+    private ActivityRouter activityRouter;
     private ChannelAccount from_user;
-    private String localSpeechSdkLogPath;
+    private ActivityFactory activityFactory;
     private String localAppLogFilePath;
-    private String localLogDirectory;
-    private boolean isConnected;
+    private DiagnosticsSession diagnosticsSession;
+    private volatile TurnMetrics turnMetrics;
+    private final ConnectorStateMachine connectorState = new ConnectorStateMachine();
+    private final ReconnectPolicy reconnectPolicy = new ReconnectPolicy(RECONNECT_BASE_DELAY_MS, RECONNECT_MAX_DELAY_MS, new Random());
+    private volatile boolean wantsConnection;// connectAsync() was called and not disconnectAsync() since
+    private volatile boolean isHandshakeSent;// the session start activities went out with the first connection
+    private volatile long connectStartedAtNanos;
+    private volatile long sessionStartedAtNanos;// first connection, or the welcome card request if later
+    private volatile String welcomeActivityId;// the welcome card request waiting for its card
+    private WelcomeCardCache welcomeCardCache;
+    private NetworkMonitor networkMonitor;
+    private boolean haveRecordAudioPermission;
+    private ReplyCorrelator replyCorrelator;
+    private volatile boolean isListening;
+    private volatile boolean isKeywordListening;
+    private volatile boolean isConversationOpen;// the bot asked a question, the microphone stays open for the answer
+    private volatile long followUpPlaybackEndedAtNanos;// the follow-up listen waiting for its gap to be measured
+    private volatile boolean isFollowUpContinuous;
+    private volatile boolean isTextOnlyTurn;// the current turn was typed and its replies are not spoken
+    private final Set<String> textOnlyActivityIds = Collections.synchronizedSet(Collections.newSetFromMap(
+            new LinkedHashMap<String, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > TEXT_ONLY_IDS;
+                }
+            }));
     private byte[] audioBuffer;
     private Configuration configuration;
     private Handler handler;
-    private Runnable timeoutResponseRunnable;
-    private ArrayList<CardAction> suggestedActions;
+    private final Runnable reconnectRunnable = this::reconnect;
+    private final Runnable drainOutboxRunnable = this::drainOutbox;
+    private final SuggestedActionList suggestedActions = new SuggestedActionList();
     private String dateSentLocationEvent;
 
-    private File localSpeechSdkLogFile;
-    private File localAppLogFile;
-    private FileWriter streamWriter;
+    private static AsyncFileLogger appLogger;// shared by the instances, which all write to the same file
+    private static ActivityOutbox outbox;// shared by the instances: a replacement connector sends what is left
+    private static OutboundScheduler outboundScheduler;// paces the sends of the outbox
+    private static TimerWheel timerWheel;// response timeouts of all the instances
 
     public void initialize(Configuration configuration, boolean haveRecordAudioPermission, String localLogFileDirectory){
+        initialize(configuration, haveRecordAudioPermission, localLogFileDirectory, null);
+    }
+
+    /**
+     * @param diagnosticsSession if not null, the Speech SDK log, audio dumps and a transcript are written to the
+     *                           session until it is closed. Without a session nothing is written for diagnostics.
+     */
+    public void initialize(Configuration configuration, boolean haveRecordAudioPermission, String localLogFileDirectory, DiagnosticsSession diagnosticsSession){
+        initialize(configuration, haveRecordAudioPermission, localLogFileDirectory, diagnosticsSession, null);
+    }
+
+    /**
+     * @param transport the dialog service, e.g. a FakeDialogTransport; null for the Direct Line Speech service
+     */
+    public void initialize(Configuration configuration, boolean haveRecordAudioPermission, String localLogFileDirectory, DiagnosticsSession diagnosticsSession, DialogTransport transport){
+        initialize(configuration, haveRecordAudioPermission, localLogFileDirectory, diagnosticsSession, transport, null);
+    }
+
+    /**
+     * @param audioInputStream the audio of the spoken requests instead of the microphone, 16 kHz, 16 bit, mono PCM;
+     *                         null for the microphone
+     */
+    public void initialize(Configuration configuration, boolean haveRecordAudioPermission, String localLogFileDirectory, DiagnosticsSession diagnosticsSession, DialogTransport transport, PushAudioInputStream audioInputStream){
+        this.diagnosticsSession = diagnosticsSession;
+        this.audioInputStream = audioInputStream;
+        this.haveRecordAudioPermission = haveRecordAudioPermission;
         audioBuffer = new byte[1024 * 2];
-        suggestedActions = new ArrayList<>();
-        gson = new Gson();
+        gson = ActivityJson.create();
+        activityRouter = new ActivityRouter(gson);
+        activityRouter.setDefaultHandler(this::onActivityRouted);
+        activityRouter.ignore(ActivityTypes.DIALOGSTATE.toString());
         this.configuration = configuration;
-        synthesizer = new Synthesizer();
+        synthesizer = new Synthesizer(events);
+        synthesizer.setOutputFormat(TtsOutputFormat.fromConfigurationName(configuration.ttsOutputFormat));
+        TtsCache ttsCache = new TtsCache(new File(localLogFileDirectory, TTSCACHEDIRECTORY),
+                configuration.ttsCacheMemoryBytes != null ? configuration.ttsCacheMemoryBytes : 0,
+                configuration.ttsCacheDiskBytes != null ? configuration.ttsCacheDiskBytes : 0);
+        if (ttsCache.isEnabled()) synthesizer.setCache(ttsCache);
         //locale = Locale.getDefault().toString();
         from_user = new ChannelAccount();
         from_user.setName(configuration.userName);
         from_user.setId(configuration.userId);
-        this.localSpeechSdkLogPath = localLogFileDirectory + "/" + SPEECHSDKLOGFILENAME;
+        activityFactory = new ActivityFactory(from_user, configuration.srLanguage);
+        welcomeCardCache = new WelcomeCardCache(new File(localLogFileDirectory, WELCOMECARDFILENAME), WelcomeCardCache.DEFAULT_TTL_MS);
+        loadCachedSuggestedActions();
         this.localAppLogFilePath = localLogFileDirectory + "/" + APPLOGFILENAME;
-        this.localLogDirectory = localLogFileDirectory;
-        localSpeechSdkLogFile = new File(localSpeechSdkLogPath);
         intializeAppLogFile();
-        initializeSpeech(configuration, haveRecordAudioPermission);
+        intializeOutbox(localLogFileDirectory);
+        intializeReplyCorrelator();
+        initializeSpeech(configuration, haveRecordAudioPermission, transport);
         handler = new Handler(Looper.getMainLooper());
         if (configuration.currentTimezone != null) sendTimeZoneEvent(TimeZone.getTimeZone(configuration.currentTimezone));//only do this once per session
     }
 
     private void intializeAppLogFile() {
-        localAppLogFile = new File(localAppLogFilePath);
-        try {
-            streamWriter = new FileWriter(localAppLogFile);
-        }catch(IOException e)
-        {
-            Log.e(LOGTAG, e.getMessage());
+        synchronized (SpeechSdk.class) {
+            File localAppLogFile = new File(localAppLogFilePath);
+            if (appLogger == null || !appLogger.getFile().equals(localAppLogFile)) {
+                if (appLogger != null) appLogger.close();
+                appLogger = new AsyncFileLogger(localAppLogFile, APP_LOG_MAX_BYTES, APP_LOG_MAX_SEGMENTS);
+            }
+            appLogger.setLevel(LogLevel.fromConfigurationName(configuration.appLogLevel));
         }
     }
 
+    private void intializeOutbox(String localLogFileDirectory) {
+        synchronized (SpeechSdk.class) {
+            File journalFile = new File(localLogFileDirectory, OUTBOXFILENAME);
+            if (outbox == null) {
+                outbox = new ActivityOutbox(journalFile, ActivityOutbox.DEFAULT_MAX_BYTES);
+                if (outbox.size() > 0) LogInfo("outbox: " + outbox.size() + " activities left to send");
+                outboundScheduler = new OutboundScheduler(outbox);
+            }
+            // only logs: what is done once an entry is delivered is in its tag, for whichever instance sends it
+            outbox.setOnDeliveryListener(new ActivityOutbox.OnDeliveryListener() {
+                @Override
+                public void onDelivered(OutboxEntry entry) {
+                    LogDebug("outbox: activity " + entry.getId() + " delivered");
+                }
+
+                @Override
+                public void onDropped(OutboxEntry entry, boolean superseded) {
+                    LogInfo("outbox: activity " + entry.getId() + (superseded ? " superseded" : " dropped, the outbox is full"));
+                }
+            });
+        }
+    }
+
+    private void intializeReplyCorrelator() {
+        synchronized (SpeechSdk.class) {
+            if (timerWheel == null) timerWheel = new TimerWheel("ResponseTimeouts");
+        }
+        replyCorrelator = new ReplyCorrelator(timerWheel);
+        replyCorrelator.setOnTimeoutListener((requestType, timeoutMs) -> {
+            LogInfo("no response to a " + requestType + " request within " + timeoutMs + " ms");
+            // the user can make a new request
+            events.post(new RequestTimeout());
+        });
+    }
+
     private void LogException(String message){
         Log.e(LOGTAG, message);
-        LogToFile(message);
+        LogToFile(LogLevel.ERROR, message);
     }
 
     private void LogDebug(String message){
         Log.d(LOGTAG, message);
-        LogToFile(message);
+        LogToFile(LogLevel.DEBUG, message);
     }
 
     private void LogInfo(String message){
         Log.i(LOGTAG, message);
-        LogToFile(message);
+        LogToFile(LogLevel.INFO, message);
     }
 
-    private void LogToFile(String message){
-        if (localAppLogFile != null){
-            try {
-                streamWriter.write(message +"\n");
-                streamWriter.flush();
-            }catch(IOException e){
-                Log.e(LOGTAG, e.getMessage());
-            }
-        }
+    // never blocks: lines are written by the logger's own thread
+    private void LogToFile(LogLevel level, String message){
+        if (appLogger != null) appLogger.log(level, LOGTAG, message);
     }
 
-    private void logLongInfoMessage(String tag, String message){
+    // only written while a diagnostics session is open
+    private void logTranscript(String direction, String text){
+        DiagnosticsSession session = diagnosticsSession;
+        if (session != null) session.logTranscript(direction, text);
+    }
+
+    private boolean isDebugLoggable(){
+        return appLogger != null && appLogger.isLoggable(LogLevel.DEBUG);
+    }
+
+    /**
+     * Write queued log lines to the app log now, e.g. before it is shared
+     */
+    public void flushLog(){
+        if (appLogger != null) appLogger.flush();
+    }
+
+    private void logLongDebugMessage(String tag, String message){
         // Split by line, then ensure each line can fit into Log's maximum length.
         final int MAX_LOG_LENGTH = 4000;
         for (int i = 0, length = message.length(); i < length; i++) {
@@ -141,93 +293,181 @@ public class SpeechSdk {
             newline = newline != -1 ? newline : length;
             do {
                 int end = Math.min(newline, i + MAX_LOG_LENGTH);
-                Log.i(tag, message.substring(i, end));
+                Log.d(tag, message.substring(i, end));
                 i = end;
             } while (i < newline);
         }
     }
 
-    private void initializeSpeech(Configuration configuration, boolean haveRecordAudioPermission){
+    private void initializeSpeech(Configuration configuration, boolean haveRecordAudioPermission, DialogTransport transport){
         AudioConfig audioInput = null;
-        if (haveRecordAudioPermission) audioInput = AudioConfig.fromDefaultMicrophoneInput();//AudioConfig.fromStreamInput(createMicrophoneStream());
-
-        DialogServiceConfig dialogServiceConfig = createDialogServiceConfiguration();
+        if (audioInputStream != null) {
+            // no microphone: nothing is captured, and keyword recognition reads the stream too
+            audioInput = AudioConfig.fromStreamInput(audioInputStream);
+        } else if (haveRecordAudioPermission) {
+            audioInput = AudioConfig.fromStreamInput(createMicrophoneStream());
+            if (Boolean.TRUE.equals(configuration.vadEnabled)) {
+                microphoneStream.enableEndpointing(
+                        configuration.vadThresholdDb != null ? configuration.vadThresholdDb : VAD_DEFAULT_THRESHOLD_DB,
+                        configuration.vadEndSilenceMs != null ? configuration.vadEndSilenceMs : VAD_DEFAULT_END_SILENCE_MS,
+                        configuration.vadInitialSilenceMs != null ? configuration.vadInitialSilenceMs : VAD_DEFAULT_INITIAL_SILENCE_MS,
+                        this::onEndOfUtterance);
+            }
+        }
 
-        // Only needed for USB mic array. Ignored (i.e. safe) if usb audio is not used.
-        // Linear mic array config:
-        dialogServiceConfig.setProperty("DeviceGeometry", "Linear4");
-        dialogServiceConfig.setProperty("SelectedGeometry", "Linear4");
-        dialogServiceConfig.setProperty("CARBON-INTERNAL-PmaDumpAudioToFilePrefix", localLogDirectory +"/pma");
-        botConnector = new DialogServiceConnector(dialogServiceConfig, audioInput);
+        if (transport == null) {
+            DialogServiceConfig dialogServiceConfig = createDialogServiceConfiguration();
 
-        botConnector.recognizing.addEventListener((o, speechRecognitionResultEventArgs) -> {
-            final String recognizedSpeech = speechRecognitionResultEventArgs.getResult().getText();
+            // Only needed for USB mic array. Ignored (i.e. safe) if usb audio is not used.
+            // Linear mic array config:
+            dialogServiceConfig.setProperty("DeviceGeometry", "Linear4");
+            dialogServiceConfig.setProperty("SelectedGeometry", "Linear4");
+            if (diagnosticsSession != null) {
+                dialogServiceConfig.setProperty("CARBON-INTERNAL-PmaDumpAudioToFilePrefix", diagnosticsSession.getAudioDumpPrefix());
+            }
+            transport = new DialogServiceConnectorTransport(dialogServiceConfig, audioInput);
+        }
+        botConnector = transport;
 
-            if (speechRecognitionResultEventArgs.getResult().getReason().equals(RecognizingKeyword)) {
-                // show listening animation when keyword is recognized
-                EventBus.getDefault().post(new BotListening());
+        botConnector.setListener(new DialogTransport.Listener() {
+            @Override
+            public void onRecognizing(String text, boolean isKeyword) {
+                onRecognizingSpeech(text, isKeyword);
             }
 
-            LogInfo("Intermediate result received: " + recognizedSpeech);
+            @Override
+            public void onRecognized(String text, boolean isKeyword) {
+                onRecognizedSpeech(text, isKeyword);
+            }
 
-            // trigger callback to expose result in 3rd party app
-            EventBus.getDefault().post(new RecognizedIntermediateResult(recognizedSpeech));
-        });
+            @Override
+            public void onSessionStarted(String sessionId) {
+                LogInfo("got a session (" + sessionId + ") event: sessionStarted");
+                // the service accepted a turn, the connection works again
+                reconnectPolicy.reset();
+            }
 
-        botConnector.recognized.addEventListener((o, speechRecognitionResultEventArgs) -> {
-            final String recognizedSpeech = speechRecognitionResultEventArgs.getResult().getText();
-            LogInfo("Final result received: " + recognizedSpeech);
+            @Override
+            public void onSessionStopped(String sessionId) {
+                LogInfo("got a session (" + sessionId + ") event: sessionStopped");
+            }
 
-            if (!speechRecognitionResultEventArgs.getResult().getReason().equals(RecognizedKeyword)) {
-                // trigger callback to expose result in 3rd party app
-                EventBus.getDefault().post(new Recognized(recognizedSpeech));
+            @Override
+            public void onCanceled(int errorCode, int reason, String errorDetails) {
+                onConnectorCanceled(errorCode, reason, errorDetails);
             }
 
-            startResponseTimeoutTimer();
+            @Override
+            public void onActivityReceived(String activityJson, AudioSource audio) {
+                onActivityReceivedFromBot(activityJson, audio);
+            }
         });
+    }
 
-        botConnector.sessionStarted.addEventListener((o, sessionEventArgs) -> {
-            LogInfo("got a session (" + sessionEventArgs.getSessionId() + ") event: sessionStarted");
-        });
+    private void onRecognizingSpeech(String recognizedSpeech, boolean isKeyword){
+        if (isKeyword) {
+            // show listening animation when keyword is recognized
+            startTurn(false);
+            markTurn(TurnMetrics.Mark.MIC_OPEN);
+            events.post(new BotListening());
+        } else {
+            markTurn(TurnMetrics.Mark.FIRST_PARTIAL);
+            recordFollowUpGap();
+        }
 
-        botConnector.sessionStopped.addEventListener((o, sessionEventArgs) -> {
-            LogInfo("got a session (" + sessionEventArgs.getSessionId() + ") event: sessionStopped");
-        });
+        LogInfo("Intermediate result received: " + recognizedSpeech);
 
-        botConnector.canceled.addEventListener((Object o, SpeechRecognitionCanceledEventArgs canceledEventArgs) -> {
-            // cancel reponse timeout timer ASAP
-            cancelResponseTimeoutTimer();
+        // trigger callback to expose result in 3rd party app
+        events.post(new RecognizedIntermediateResult(recognizedSpeech));
+    }
 
-            final int errCode = canceledEventArgs.getErrorCode().getValue();
-            LogInfo("canceled with error code: "+ errCode +" ,also: "+ canceledEventArgs.getErrorDetails());
+    private void onRecognizedSpeech(String recognizedSpeech, boolean isKeyword){
+        LogInfo("Final result received: " + recognizedSpeech);
 
-            switch (errCode) {
-                case 5:// this is Connection was closed by the remote host. Error code: 1011. Error details: Unable to read data from the transport connection: Connection reset by peer
-                case 1:// this is the authentication error (401) when using wrong certificate
-                    isConnected = false;
-                    EventBus.getDefault().post(new Disconnected(canceledEventArgs.getReason().getValue(), canceledEventArgs.getErrorDetails(), errCode));
-                    break;
-            }
+        if (!isKeyword) {
+            markTurn(TurnMetrics.Mark.FINAL_RECOGNITION);
+            // trigger callback to expose result in 3rd party app
+            logTranscript("recognized", recognizedSpeech);
+            events.post(new Recognized(recognizedSpeech));
+            // the keyword is not a request, what follows it is
+            expectResponse(null, REQUEST_TYPE_SPEECH);
+        }
+    }
 
-        });
+    private void onConnectorCanceled(int errCode, int reason, String errorDetails){
+        // cancel reponse timeouts ASAP
+        replyCorrelator.cancelAll();
+
+        LogInfo("canceled with error code: "+ errCode +" ,also: "+ errorDetails);
+
+        switch (errCode) {
+            case 5:// this is Connection was closed by the remote host. Error code: 1011. Error details: Unable to read data from the transport connection: Connection reset by peer
+                connectorState.moveTo(ConnectorState.READY, ConnectorState.IDLE);
+                if (wantsConnection) {
+                    // transient, reconnect without resetting the conversation
+                    handler.post(this::scheduleReconnect);
+                } else {
+                    events.post(new Disconnected(reason, errorDetails, errCode));
+                }
+                break;
+            case 1:// this is the authentication error (401) when using wrong certificate
+                // retrying cannot help
+                wantsConnection = false;
+                connectorState.moveTo(ConnectorState.READY, ConnectorState.IDLE);
+                events.post(new Disconnected(reason, errorDetails, errCode));
+                break;
+        }
+    }
 
-        botConnector.activityReceived.addEventListener((o, activityEventArgs) -> {
-            final String json = activityEventArgs.getActivity();
-            logLongInfoMessage(LOGTAG, "received activity: " + json);
+    /*
+     * @param audio speech of the activity, null if it has none
+     */
+    private void onActivityReceivedFromBot(String json, AudioSource audio){
+        final long receivedAtNanos = System.nanoTime();
+        logTranscript("received", json);
+        if (isDebugLoggable()) {
+            // activities can be large, only logged at the DEBUG level
+            logLongDebugMessage(LOGTAG, "received activity: " + json);
+            LogToFile(LogLevel.DEBUG, "received activity: " + json);
+        }
+        final ActivityHeader header = peekActivityHeader(json);
+        final String replyToId = header != null ? header.getReplyToId() : null;
+        final boolean isTextOnlyReply = isTextOnlyReply(replyToId);
+
+        // a reply answers the request it is correlated with, e.g. not the request made after it
+        boolean isWelcomeCard = false;
+        if (audio != null || (header != null && ActivityTypes.MESSAGE.toString().equals(header.getType()))) {
+            isWelcomeCard = onWelcomeCardReceived(json, replyToId, receivedAtNanos);
+            if (!isWelcomeCard) {
+                long latencyMs = replyCorrelator.onReply(replyToId, receivedAtNanos);
+                if (latencyMs >= 0) LogInfo("response received after " + latencyMs + " ms");
+            }
+        }
 
-            if (activityEventArgs.hasAudio()) {
-                // cancel response timeout timer
-                // note: located here because a lot of activity events are received,
-                //       by putting it here, only one event (with speech) cancels the timer.
-                cancelResponseTimeoutTimer();
+        if (audio != null && isTextOnlyReply) {
+            // the service synthesized the reply, its audio is not played
+            LogInfo("Activity Has Audio, skipped for a text-only turn");
+            audio.close();
+        } else if (audio != null) {
+            LogInfo("Activity Has Audio");
+            String cacheKey = header != null ? TtsCache.key(header.getSpeak(), configuration.customVoiceDeploymentIds, configuration.srLanguage) : null;
+            synthesizer.playStream(audio, receivedAtNanos, cacheKey);
+        }
 
-                LogInfo("Activity Has Audio");
-                PullAudioOutputStream outputStream = activityEventArgs.getAudio();
-                synthesizer.playStream(outputStream);
+        if (header != null) {
+            if (!ActivityTypes.DIALOGSTATE.toString().equals(header.getType())) {
+                markTurn(TurnMetrics.Mark.FIRST_ACTIVITY, receivedAtNanos);
+                // nothing is played, the turn ends with its reply
+                if (isTextOnlyReply) endTurn();
             }
-
-            activityReceived(json);
-        });
+            if (ActivityTypes.MESSAGE.toString().equals(header.getType())) {
+                updateConversation(header.getInputHint(), audio != null && !isTextOnlyReply);
+            }
+            // the flag travels with the activity to onActivityRouted(), on this thread
+            activityRouter.route(json, header, isWelcomeCard ? WELCOME_CARD_TAG : null);
+        } else {
+            LogDebug("json error");
+        }
     }
 
     private DialogServiceConfig createDialogServiceConfiguration() {
@@ -250,10 +490,15 @@ public class SpeechSdk {
         if (!(configuration.customVoiceDeploymentIds == null || configuration.customVoiceDeploymentIds.isEmpty())) {
             dialogServiceConfig.setProperty(PropertyId.Conversation_Custom_Voice_Deployment_Ids, configuration.customVoiceDeploymentIds);
         }
+        TtsOutputFormat ttsOutputFormat = TtsOutputFormat.fromConfigurationName(configuration.ttsOutputFormat);
+        if (ttsOutputFormat.isCompressed()) {
+            // decoded by the Synthesizer
+            dialogServiceConfig.setProperty(PropertyId.SpeechServiceConnection_SynthOutputFormat, ttsOutputFormat.getServiceName());
+        }
         if (!(configuration.customSREndpointId == null || configuration.customSREndpointId.isEmpty())) {
             dialogServiceConfig.setServiceProperty("cid", configuration.customSREndpointId, ServicePropertyChannel.UriQueryParameter);
         }
-        if (configuration.speechSdkLogEnabled) dialogServiceConfig.setProperty(PropertyId.Speech_LogFilename, localSpeechSdkLogFile.getAbsolutePath());;
+        if (diagnosticsSession != null) dialogServiceConfig.setProperty(PropertyId.Speech_LogFilename, diagnosticsSession.getSpeechSdkLogPath());
 
         return dialogServiceConfig;
     }
@@ -265,19 +510,34 @@ public class SpeechSdk {
      * @see client.model.BotConnectorActivity
      */
     public void activityReceived(String activityJson){
+        ActivityHeader header = activityRouter.route(activityJson);
+        if (header == null) {
+            LogDebug("json error");
+        }
+    }
+
+    private ActivityHeader peekActivityHeader(String activityJson){
+        try {
+            return ActivityHeader.peek(activityJson);
+        } catch (IOException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Default route: decode the whole activity and expose it to the app
+     */
+    private void onActivityRouted(RoutedActivity routedActivity){
         // trigger callback to expose result in 3rd party app
 
-        client.model.BotConnectorActivity botConnectorActivity = gson.fromJson(activityJson, client.model.BotConnectorActivity.class);
+        client.model.BotConnectorActivity botConnectorActivity = routedActivity.getActivity();
+        boolean isWelcomeCard = routedActivity.getTag() == WELCOME_CARD_TAG;
 
         if (botConnectorActivity != null) {
 
-            if (botConnectorActivity.getSuggestedActions() != null && botConnectorActivity.getSuggestedActions().getActions() != null) {
-                List<CardAction> actionList = botConnectorActivity.getSuggestedActions().getActions();
-                suggestedActions.clear();
-                suggestedActions.addAll(actionList);
-            }
+            suggestedActions.update(botConnectorActivity);
 
-            EventBus.getDefault().post(new ActivityReceived(botConnectorActivity));
+            events.post(new ActivityReceived(botConnectorActivity, isWelcomeCard));
         } else {
             LogDebug("json error");
         }
@@ -293,38 +553,270 @@ public class SpeechSdk {
         return microphoneStream;
     }
 
+    /**
+     * Connect, unless the connector is already connecting or connected
+     */
     public void connectAsync(){
+        wantsConnection = true;
+        connectConnector();
+    }
+
+    private void connectConnector(){
+        if (!connectorState.moveTo(ConnectorState.IDLE, ConnectorState.CONNECTING)) {
+            LogDebug("connectAsync ignored, connector is " + connectorState.getState());
+            return;
+        }
+        connectStartedAtNanos = System.nanoTime();
+        if (sessionStartedAtNanos == 0) sessionStartedAtNanos = connectStartedAtNanos;
         Future<Void> task = botConnector.connectAsync();
-        setOnTaskCompletedListener(task, result -> {
-            // your code here
-            LogDebug("connectAsync");
-            isConnected = true;
-            EventBus.getDefault().post(new Connected());
+        FutureCompletion.toMaybe(task, TASK_TIMEOUT_MS, TimeUnit.MILLISECONDS).subscribe(
+                result -> onConnected(),
+                throwable -> {
+                    LogException("connectAsync failed: " + throwable);
+                    if (connectorState.moveTo(ConnectorState.CONNECTING, ConnectorState.IDLE)) {
+                        handler.post(this::scheduleReconnect);
+                    }
+                },
+                this::onConnected);
+    }
+
+    private void onConnected(){
+        LogDebug("connectAsync");
+        if (connectorState.moveTo(ConnectorState.CONNECTING, ConnectorState.READY)) {
+            long connectMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStartedAtNanos);
+            TurnMetrics metrics = turnMetrics;
+            if (metrics != null) metrics.recordConnect(connectMs);
+            LogInfo("connected in " + connectMs + " ms");
+            reconnectPolicy.reset();
+            outboundScheduler.resetBackoff();
+            events.post(new Connected());
+            // the handshake: what was queued for the session start goes out in one burst
+            drainOutbox();
+            isHandshakeSent = true;
+        }
+    }
+
+    /**
+     * Follow the default network of the device: reconnect as soon as it changes (e.g. Wi-Fi to mobile data)
+     * and hold the reconnection attempts while there is no network. Stopped by close().
+     */
+    public void monitorNetwork(Context context){
+        if (networkMonitor != null) return;
+        networkMonitor = new NetworkMonitor(context, new NetworkMonitor.OnNetworkChangedListener() {
+            @Override
+            public void onNetworkAvailable(boolean changed) {
+                handler.post(() -> onNetworkAvailable(changed));
+            }
+
+            @Override
+            public void onNetworkLost() {
+                handler.post(SpeechSdk.this::onNetworkLost);
+            }
         });
+        networkMonitor.start();
+    }
+
+    private void onNetworkAvailable(boolean changed){
+        LogInfo("network available, changed: " + changed);
+        if (!wantsConnection) return;
+        // the socket of a previous network is dead even if no error was reported yet: reconnect right away
+        if (changed || !connectorState.is(ConnectorState.READY)) {
+            reconnectPolicy.reset();
+            handler.removeCallbacks(reconnectRunnable);
+            reconnect();
+        }
+    }
+
+    private void onNetworkLost(){
+        LogInfo("network lost");
+        if (!wantsConnection) return;
+        handler.removeCallbacks(reconnectRunnable);
+        events.post(new Reconnecting(0, -1));
+    }
+
+    /*
+     * Called on the handler thread. Waits for a network if there is none, onNetworkAvailable() resumes.
+     */
+    private void scheduleReconnect(){
+        if (!wantsConnection || !connectorState.is(ConnectorState.IDLE)) return;
+        handler.removeCallbacks(reconnectRunnable);
+        if (networkMonitor != null && !networkMonitor.isNetworkAvailable()) {
+            LogInfo("waiting for a network to reconnect");
+            events.post(new Reconnecting(0, -1));
+            return;
+        }
+        long delayMs = reconnectPolicy.nextDelayMs();
+        int attempt = reconnectPolicy.getAttempt();
+        LogInfo("reconnect attempt " + attempt + " in " + delayMs + " ms");
+        events.post(new Reconnecting(attempt, delayMs));
+        handler.postDelayed(reconnectRunnable, delayMs);
+    }
+
+    /*
+     * Drop the transport of the connector, whatever its state, then connect again
+     */
+    private void reconnect(){
+        if (!wantsConnection) return;
+        connectorState.moveTo(ConnectorState.READY, ConnectorState.IDLE);
+        if (!connectorState.is(ConnectorState.IDLE)) return;// already connecting, draining or closed
+        if (reconnectPolicy.getAttempt() == 0) events.post(new Reconnecting(1, 0));
+        final Future<Void> task = botConnector.disconnectAsync();
+        FutureCompletion.toMaybe(task, TASK_TIMEOUT_MS, TimeUnit.MILLISECONDS).subscribe(
+                result -> connectConnector(),
+                throwable -> connectConnector(),
+                this::connectConnector);
+    }
+
+    private void stopReconnecting(){
+        wantsConnection = false;
+        if (handler != null) handler.removeCallbacks(reconnectRunnable);
+    }
+
+    /**
+     * Start capturing the microphone now, when the user asks to talk.
+     * What is said before the connector is connected and listening is buffered and sent once it listens.
+     * listenOnceAsync() calls this too; call it earlier if there is work to do before listening.
+     */
+    public void startCapture(){
+        if (microphoneStream != null) {
+            if (!microphoneStream.isCapturing()) {
+                // the microphone opens for a new spoken request
+                startTurn(false);
+                markTurn(TurnMetrics.Mark.MIC_OPEN);
+            }
+            microphoneStream.startCapture();
+        } else if (audioInputStream != null && !isListening) {
+            // each listen starts a spoken request in the scripted audio
+            startTurn(false);
+            markTurn(TurnMetrics.Mark.MIC_OPEN);
+        }
+    }
+
+    private void stopCaptureIfIdle(){
+        if (microphoneStream != null && !isListening && !isKeywordListening && !isConversationOpen) microphoneStream.stopCapture();
+    }
+
+    /*
+     * In a continuous conversation, a spoken question of the bot opens the microphone while it plays,
+     * any other reply ends the conversation
+     * @param isSpoken true if the reply is played, and its end of playback starts the follow-up listen
+     */
+    private void updateConversation(String inputHint, boolean isSpoken){
+        if (inputHint == null) return;
+        if (InputHints.EXPECTINGINPUT.toString().equals(inputHint)) {
+            if (!isSpoken || !Boolean.TRUE.equals(configuration.continuousConversation) || microphoneStream == null) return;
+            if (!isConversationOpen) LogInfo("conversation open, the microphone stays open for the answer");
+            isConversationOpen = true;
+            microphoneStream.startCapture();
+        } else {
+            endConversation();
+        }
+    }
+
+    /**
+     * Close the microphone kept open for the answer to the bot, e.g. when the playback of its question was stopped
+     */
+    public void endConversation(){
+        if (!isConversationOpen) return;
+        isConversationOpen = false;
+        LogInfo("conversation closed");
+        stopCaptureIfIdle();
+    }
+
+    /**
+     * Listen for the answer to a question of the bot, once it was played. In a continuous conversation the microphone
+     * is already open and what was said since the end of the playback is recognized; otherwise this is listenOnceAsync().
+     * @param playbackEndedAtNanos System.nanoTime() when the playback of the question ended
+     */
+    public void listenForFollowUpAsync(long playbackEndedAtNanos){
+        boolean continuous = isConversationOpen && microphoneStream != null && microphoneStream.isCapturing();
+        // reopened by the next question
+        isConversationOpen = false;
+        followUpPlaybackEndedAtNanos = playbackEndedAtNanos;
+        isFollowUpContinuous = continuous;
+        if (continuous) {
+            // the echo of the question is not part of the answer
+            microphoneStream.dropAudioBefore(playbackEndedAtNanos);
+            startTurn(false);
+            markTurn(TurnMetrics.Mark.MIC_OPEN, playbackEndedAtNanos);
+        }
+        listenOnceAsync();
+    }
+
+    /*
+     * From the end of the question to the first partial result of the answer, measured the same way whether the
+     * microphone stayed open or was opened again
+     */
+    private void recordFollowUpGap(){
+        long playbackEndedAt = followUpPlaybackEndedAtNanos;
+        if (playbackEndedAt == 0) return;
+        followUpPlaybackEndedAtNanos = 0;
+        long gapMs = Math.max(0, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - playbackEndedAt));
+        LogInfo("follow-up gap (" + (isFollowUpContinuous ? "continuous" : "listen once") + "): " + gapMs + " ms");
+        TurnMetrics metrics = turnMetrics;
+        if (metrics != null) metrics.recordFollowUpGap(isFollowUpContinuous, gapMs);
     }
 
     public void listenOnceAsync(){
         LogInfo("listenOnceAsync");
-        EventBus.getDefault().post(new BotListening());
-        final Future<SpeechRecognitionResult> task = botConnector.listenOnceAsync();
-        setOnTaskCompletedListener(task, result -> {
-            // your code here
+        startCapture();
+        isListening = true;
+        if (microphoneStream != null && !isKeywordListening) microphoneStream.beginUtterance();
+        events.post(new BotListening());
+        final Future<?> task = botConnector.listenOnceAsync();
+        FutureCompletion.toMaybe(task).subscribe(
+                result -> onListenOnceCompleted(),
+                throwable -> {
+                    LogException("listenOnceAsync failed: " + throwable);
+                    onListenOnceCompleted();
+                },
+                this::onListenOnceCompleted);
+    }
+
+    private void onListenOnceCompleted(){
+        // nothing was recognized, there is no gap to measure
+        followUpPlaybackEndedAtNanos = 0;
+        isListening = false;
+        if (microphoneStream != null) microphoneStream.endUtterance();
+        stopCaptureIfIdle();
+    }
+
+    /*
+     * Local endpointing found the end of the utterance (called on the audio thread of the Speech SDK).
+     * Stop listening now rather than waiting for the service to time out on the silence.
+     */
+    private void onEndOfUtterance(boolean speechDetected){
+        long[] bytes = microphoneStream.getUtteranceBytes();
+        LogInfo("end of utterance detected, speech: " + speechDetected + ", bytes captured: " + bytes[0] + ", sent: " + bytes[1]);
+        handler.post(() -> {
+            if (!isListening) return;
+            final Future<Void> task = botConnector.stopListeningAsync();
+            setOnTaskCompletedListener(task, TASK_TIMEOUT_MS, result -> {
+                LogDebug("stopListeningAsync done");
+            });
         });
     }
 
     public void startKeywordListeningAsync(InputStream inputStream, String keyword){
         LogInfo("startKeywordListeningAsync");
+        // keyword recognition reads the microphone continuously
+        isKeywordListening = true;
+        startCapture();
         try {
-            final Future<Void> task = botConnector.startKeywordRecognitionAsync(KeywordRecognitionModel.fromStream(inputStream,keyword,false ));
+            final Future<Void> task = botConnector.startKeywordRecognitionAsync(inputStream, keyword);
             setOnTaskCompletedListener(task, result -> {
                 LogInfo("startKeywordRecognition");
             });
         }
         catch (FileNotFoundException e){
             LogException("Keyword file not found " + e.getMessage());
+            isKeywordListening = false;
+            stopCaptureIfIdle();
         }
         catch (IOException e){
             LogException(e.getMessage());
+            isKeywordListening = false;
+            stopCaptureIfIdle();
         }
     }
 
@@ -333,42 +825,50 @@ public class SpeechSdk {
         setOnTaskCompletedListener(task, result -> {
             // your code here
             LogInfo("stopKeywordRecognition");
+            isKeywordListening = false;
+            stopCaptureIfIdle();
         });
     }
 
-    private void startResponseTimeoutTimer(){
-        LogInfo("startResponseTimeoutTimer");
-        if (timeoutResponseRunnable == null) {
-            timeoutResponseRunnable = () -> {
-                // reset state as if the previous request was received to let user make new request
-                EventBus.getDefault().post(new RequestTimeout());
-            };
-        }
-
-        handler.postDelayed(timeoutResponseRunnable, RESPONSE_TIMEOUT_PERIOD_MS);
+    /*
+     * Wait for the response to a request, with a timeout adapted to the latency of its type
+     * @param activityId id of the activity sent, null if the service created it
+     */
+    private void expectResponse(String activityId, String requestType){
+        long timeoutMs = replyCorrelator.expect(activityId, requestType, System.nanoTime());
+        LogInfo("expecting a response to a " + requestType + " request within " + timeoutMs + " ms");
     }
 
-    private void cancelResponseTimeoutTimer(){
-        LogInfo("cancelResponseTimeoutTimer");
-        if (timeoutResponseRunnable != null && handler != null){
-            handler.removeCallbacks(timeoutResponseRunnable);
-        }
+    public ReplyCorrelator getReplyCorrelator() {
+        return replyCorrelator;
     }
 
+    /**
+     * Send a typed message, text-only if the configuration says typed turns are (TypedTurnsTextOnly)
+     */
     public void sendActivityMessageAsync(CharSequence chars) {
-        LogInfo("sendActivityMessageAsync\n" + chars);
+        sendActivityMessageAsync(chars, Boolean.TRUE.equals(configuration.typedTurnsTextOnly));
+    }
+
+    /**
+     * Send a typed message
+     * @param textOnly true if the replies should not be spoken: their audio is not played. The service still
+     *                 synthesizes and streams it, only the bot can leave out the speak field of its replies.
+     */
+    public void sendActivityMessageAsync(CharSequence chars, boolean textOnly) {
+        LogInfo("sendActivityMessageAsync" + (textOnly ? " (text-only)" : "") + "\n" + chars);
         if (botConnector != null) {
+            startTurn(true);
 
-            final client.model.Activity activityTemplate = new client.model.Activity();
-            activityTemplate.text((String)chars);
-            activityTemplate.type(ActivityTypes.MESSAGE);
-            if (from_user != null) activityTemplate.setFrom(from_user);
+            final client.model.Activity activityTemplate = activityFactory.createMessage(chars.toString());
+            if (textOnly) {
+                textOnlyActivityIds.add(activityTemplate.getId());
+                isTextOnlyTurn = true;
+            }
 
-            final String activityJson = gson.toJson(activityTemplate);
-            final Future<String> task = botConnector.sendActivityAsync(activityJson);
-            setOnTaskCompletedListener(task, result -> {
+            sendThroughOutbox(activityTemplate, null, SendPriority.USER, REQUEST_TYPE_MESSAGE, result -> {
                 LogInfo("sendActivityAsync done");
-                startResponseTimeoutTimer();
+                markTurn(TurnMetrics.Mark.ACTIVITY_SENT);
             });
         }
     }
@@ -378,15 +878,13 @@ public class SpeechSdk {
      */
     public void sendLocationEvent(String latitude, String longitude) {
         String coordinates = latitude + "," + longitude;
-        client.model.Activity activityTemplate = createEventActivity("VA.Location", null, coordinates);
-        if (from_user != null) activityTemplate.setFrom(from_user);
+        client.model.Activity activityTemplate = activityFactory.createEvent("VA.Location", null, coordinates);
 
-        final String activityJson = gson.toJson(activityTemplate);
-        final Future<String> task = botConnector.sendActivityAsync(activityJson);
-        setOnTaskCompletedListener(task, result -> {
-            LogInfo("sendLocationEvent done: "+activityJson);
+        // only the latest location matters
+        sendThroughOutbox(activityTemplate, "VA.Location", sessionStartPriority(SendPriority.BACKGROUND), result -> {
+            LogInfo("sendLocationEvent done: " + coordinates);
             dateSentLocationEvent = DateUtils.getCurrentTime();
-            EventBus.getDefault().post(new GpsLocationSent(latitude, longitude));
+            events.post(new GpsLocationSent(latitude, longitude));
         });
     }
 
@@ -394,20 +892,253 @@ public class SpeechSdk {
      * Send the VA.TimeZone event to the bot
      */
     private void sendTimeZoneEvent(TimeZone tz) {
-        client.model.Activity activityTemplate = createEventActivity("VA.Timezone", null, tz.getDisplayName());
+        client.model.Activity activityTemplate = activityFactory.createEvent("VA.Timezone", null, tz.getDisplayName());
 
-        final String activityJson = gson.toJson(activityTemplate);
-        final Future<String> task = botConnector.sendActivityAsync(activityJson);
-        setOnTaskCompletedListener(task, result -> {
-            LogDebug("sendActivityAsync done: "+activityJson);
+        sendThroughOutbox(activityTemplate, "VA.Timezone", sessionStartPriority(SendPriority.BACKGROUND), result -> {
+            LogDebug("sendTimeZoneEvent done: " + tz.getID());
         });
     }
 
+    /*
+     * Queue the activity in the outbox and send it now if connected, otherwise once connected
+     * @param coalesceKey a queued activity with the same key is replaced, null to send every activity
+     * @param priority USER activities are sent before BACKGROUND ones
+     * @param onDelivered called once the connector accepted the activity
+     */
+    private void sendThroughOutbox(client.model.Activity activity, String coalesceKey, SendPriority priority, OnTaskCompletedListener<String> onDelivered) {
+        sendThroughOutbox(activity, coalesceKey, priority, null, onDelivered);
+    }
+
+    /*
+     * @param replyType the type of the reply waited for once the activity is sent, null if none is expected
+     */
+    private void sendThroughOutbox(client.model.Activity activity, String coalesceKey, SendPriority priority, String replyType, OnTaskCompletedListener<String> onDelivered) {
+        // replies carry it as replyToId
+        if (activity.getId() == null) activity.setId(UUID.randomUUID().toString());
+        final String activityJson = gson.toJson(activity);
+        logTranscript("sent", activityJson);
+        outbox.enqueue(activityJson, coalesceKey, priority, new OutboxTag(activity.getId(), replyType, onDelivered));
+        drainOutbox();
+    }
+
+    /*
+     * Send queued activities, as many as the scheduler allows now. Those that fail stay queued and are sent again
+     * after a backoff.
+     */
+    private void drainOutbox() {
+        if (!connectorState.is(ConnectorState.READY)) return;
+        // rate limited or backing off
+        drainOutboxLater(outboundScheduler.drain(this::sendOutboxEntry));
+    }
+
+    private void drainOutboxLater(long delayMs) {
+        if (delayMs <= 0) return;
+        handler.removeCallbacks(drainOutboxRunnable);
+        handler.postDelayed(drainOutboxRunnable, delayMs);
+    }
+
+    private void sendOutboxEntry(OutboxEntry entry) {
+        final OutboxTag tag = entry.getTag() instanceof OutboxTag ? (OutboxTag) entry.getTag() : null;
+        final boolean expectsReply = tag != null && tag.replyType != null;
+        // expected before sending: the reply can arrive before the completion of the send is seen
+        if (expectsReply) expectResponse(tag.activityId, tag.replyType);
+        final Future<String> task = botConnector.sendActivityAsync(entry.getJson());
+        FutureCompletion.toMaybe(task, TASK_TIMEOUT_MS, TimeUnit.MILLISECONDS).subscribe(
+                result -> onOutboxEntryDelivered(entry, result),
+                throwable -> {
+                    LogException("sending activity " + entry.getId() + " failed: " + throwable);
+                    // expected again when the entry is sent again
+                    if (expectsReply) replyCorrelator.cancel(tag.activityId);
+                    drainOutboxLater(outboundScheduler.onSendCompleted(entry, false));
+                },
+                () -> onOutboxEntryDelivered(entry, null));
+    }
+
+    private void onOutboxEntryDelivered(OutboxEntry entry, String result) {
+        outboundScheduler.onSendCompleted(entry, true);
+        OutboxTag tag = entry.getTag() instanceof OutboxTag ? (OutboxTag) entry.getTag() : null;
+        if (tag != null && tag.onDelivered != null) tag.onDelivered.onCompleted(result);
+        drainOutbox();// a send slot is free
+    }
+
+    /**
+     * @return the scheduler of the outgoing activities, e.g. for its metrics
+     */
+    public OutboundScheduler getOutboundScheduler() {
+        return outboundScheduler;
+    }
+
     public void disconnectAsync() {
-        cancelResponseTimeoutTimer();
-        isConnected = false;
+        stopReconnecting();
+        replyCorrelator.cancelAll();
+        connectorState.moveTo(ConnectorState.READY, ConnectorState.IDLE);
+        connectorState.moveTo(ConnectorState.CONNECTING, ConnectorState.IDLE);
         stopKeywordListening();
+        isListening = false;
+        isConversationOpen = false;
+        stopCaptureIfIdle();
+        synthesizer.release();
         final Future<Void> task = botConnector.disconnectAsync();
+        setOnTaskCompletedListener(task, TASK_TIMEOUT_MS, result -> {
+            LogDebug("disconnectAsync done");
+            flushLog();
+        });
+    }
+
+    /**
+     * @param turnMetrics records the timeline of each turn, or null
+     */
+    public void setTurnMetrics(TurnMetrics turnMetrics) {
+        this.turnMetrics = turnMetrics;
+    }
+
+    public TurnMetrics getTurnMetrics() {
+        return turnMetrics;
+    }
+
+    private void startTurn(boolean typed){
+        isTextOnlyTurn = false;
+        TurnMetrics metrics = turnMetrics;
+        if (metrics != null) metrics.startTurn(typed, System.nanoTime());
+    }
+
+    private void endTurn(){
+        TurnMetrics metrics = turnMetrics;
+        if (metrics != null) metrics.endTurn(false);
+    }
+
+    /*
+     * @return true if the reply is to a text-only message; a reply without replyToId belongs to the current turn
+     */
+    private boolean isTextOnlyReply(String replyToId){
+        if (replyToId == null) return isTextOnlyTurn;
+        return textOnlyActivityIds.contains(replyToId);
+    }
+
+    private void markTurn(TurnMetrics.Mark mark){
+        markTurn(mark, System.nanoTime());
+    }
+
+    private void markTurn(TurnMetrics.Mark mark, long nanos){
+        TurnMetrics metrics = turnMetrics;
+        if (metrics != null) metrics.mark(mark, nanos);
+    }
+
+    public boolean isConnected() {
+        return connectorState.is(ConnectorState.READY);
+    }
+
+    public ConnectorState getConnectorState() {
+        return connectorState.getState();
+    }
+
+    /**
+     * @param listener called on the thread of each transition, e.g. to swap in a replacement once it is READY
+     */
+    public void setOnConnectorStateChangedListener(ConnectorStateMachine.OnStateChangedListener listener) {
+        connectorState.setOnStateChangedListener(listener);
+    }
+
+    /**
+     * @return the scripted audio input, null if the microphone is used
+     */
+    public PushAudioInputStream getAudioInputStream() {
+        return audioInputStream;
+    }
+
+    public boolean haveRecordAudioPermission() {
+        return haveRecordAudioPermission;
+    }
+
+    /**
+     * @return true if the configuration differs in settings the connector, microphone or synthesizer are built with,
+     * false if applyConfiguration() is enough
+     */
+    public boolean requiresNewConnector(Configuration newConfiguration) {
+        return !Objects.equals(configuration.speechSubscriptionKey, newConfiguration.speechSubscriptionKey)
+                || !Objects.equals(configuration.speechRegion, newConfiguration.speechRegion)
+                || !Objects.equals(configuration.customCommandsAppId, newConfiguration.customCommandsAppId)
+                || !Objects.equals(configuration.userId, newConfiguration.userId)
+                || !Objects.equals(configuration.customVoiceDeploymentIds, newConfiguration.customVoiceDeploymentIds)
+                || !Objects.equals(configuration.customSREndpointId, newConfiguration.customSREndpointId)
+                || !Objects.equals(configuration.srLanguage, newConfiguration.srLanguage)
+                || !Objects.equals(configuration.ttsOutputFormat, newConfiguration.ttsOutputFormat)
+                || !Objects.equals(configuration.ttsCacheMemoryBytes, newConfiguration.ttsCacheMemoryBytes)
+                || !Objects.equals(configuration.ttsCacheDiskBytes, newConfiguration.ttsCacheDiskBytes)
+                || !Objects.equals(configuration.vadEnabled, newConfiguration.vadEnabled)
+                || !Objects.equals(configuration.vadThresholdDb, newConfiguration.vadThresholdDb)
+                || !Objects.equals(configuration.vadEndSilenceMs, newConfiguration.vadEndSilenceMs)
+                || !Objects.equals(configuration.vadInitialSilenceMs, newConfiguration.vadInitialSilenceMs);
+    }
+
+    /**
+     * Apply the settings that do not need a new connector, without touching the connection:
+     * the user name, the timezone (sent to the bot if it changed) and the log level.
+     * Keyword settings are applied by the caller with start/stopKeywordListening.
+     */
+    public void applyConfiguration(Configuration newConfiguration) {
+        Configuration previous = configuration;
+        configuration = newConfiguration;
+        from_user.setName(newConfiguration.userName);
+        if (appLogger != null) appLogger.setLevel(LogLevel.fromConfigurationName(newConfiguration.appLogLevel));
+        if (newConfiguration.currentTimezone != null && !newConfiguration.currentTimezone.equals(previous.currentTimezone)) {
+            sendTimeZoneEvent(TimeZone.getTimeZone(newConfiguration.currentTimezone));
+        }
+        LogInfo("configuration applied");
+    }
+
+    /**
+     * Let the current turn finish (listening, waiting for the response, speaking it), then disconnect and close
+     * the connector. Used when a replacement connector takes over. Gives up waiting after DRAIN_TIMEOUT_MS.
+     */
+    public void drainAndClose() {
+        if (!connectorState.moveTo(ConnectorState.DRAINING)) return;
+        LogInfo("draining connector");
+        stopReconnecting();
+        stopKeywordListening();
+        final long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                boolean busy = isListening || replyCorrelator.isAwaiting() || synthesizer.isPlaying();
+                if (busy && System.currentTimeMillis() < deadline) {
+                    handler.postDelayed(this, DRAIN_CHECK_PERIOD_MS);
+                } else {
+                    close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Disconnect and release the connector and microphone now. The instance cannot be used afterwards.
+     */
+    public void close() {
+        if (!connectorState.moveTo(ConnectorState.CLOSED)) return;
+        stopReconnecting();
+        if (networkMonitor != null) networkMonitor.stop();
+        handler.removeCallbacks(drainOutboxRunnable);
+        replyCorrelator.cancelAll();
+        isListening = false;
+        isKeywordListening = false;
+        isConversationOpen = false;
+        synthesizer.release();
+        final DialogTransport connector = botConnector;
+        final MicrophoneStream microphone = microphoneStream;
+        final Runnable release = () -> {
+            connector.close();
+            if (microphone != null) microphone.close();
+            LogDebug("connector closed");
+            flushLog();
+        };
+        // released whether or not the disconnection succeeds
+        final Future<Void> task = connector.disconnectAsync();
+        FutureCompletion.toMaybe(task, TASK_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .subscribe(result -> release.run(), throwable -> release.run(), release::run);
+    }
+
+    public DiagnosticsSession getDiagnosticsSession() {
+        return diagnosticsSession;
     }
 
     public String getDateSentLocationEvent() {
@@ -416,8 +1147,34 @@ public class SpeechSdk {
 
     public Synthesizer getSynthesizer() { return synthesizer; }
 
+    /**
+     * @return the recognition, activity, connection and playback events of this instance and of the others
+     */
+    public SpeechEvents getEvents() { return events; }
+
+    /**
+     * Register handlers here to receive specific activities (by type and name) before they are decoded.
+     * Activities without a registered handler are decoded and posted as ActivityReceived.
+     */
+    public ActivityRouter getActivityRouter() {
+        return activityRouter;
+    }
+
     public ArrayList<CardAction> getSuggestedActions() {
-        return suggestedActions;
+        return suggestedActions.get();
+    }
+
+    /*
+     * The suggested actions of the cached welcome card, shown until the fresh one arrives
+     */
+    private void loadCachedSuggestedActions() {
+        String json = welcomeCardCache.load(WelcomeCardCache.versionOf(configuration), System.currentTimeMillis());
+        if (json == null) return;
+        try {
+            suggestedActions.restore(gson.fromJson(json, client.model.BotConnectorActivity.class));
+        } catch (RuntimeException e) {
+            LogException("cached welcome card: " + e);
+        }
     }
 
     public void clearSuggestedActions() {
@@ -425,55 +1182,75 @@ public class SpeechSdk {
     }
 
     public void requestWelcomeCard() {
-//        from: user object,
-//        name: 'startConversation',
-//        type: 'event'
-//        "value":""
         if (botConnector != null) {
+            final client.model.Activity activityTemplate = activityFactory.createWelcomeRequest();
 
-            final client.model.Activity activityTemplate = new client.model.Activity();
-            activityTemplate.name("startConversation");
-            activityTemplate.type(ActivityTypes.EVENT);
-            if (from_user != null) activityTemplate.setFrom(from_user);
-            activityTemplate.setValue("");
-
-            final String activityJson = gson.toJson(activityTemplate);
-            final Future<String> task = botConnector.sendActivityAsync(activityJson);
-            setOnTaskCompletedListener(task, result -> {
-                LogDebug("requestWelcomeCard done: "+activityJson);
+            welcomeActivityId = activityTemplate.getId();
+            if (isHandshakeSent) sessionStartedAtNanos = System.nanoTime();// requested after connecting
+            sendThroughOutbox(activityTemplate, ActivityFactory.WELCOME_EVENT_NAME, sessionStartPriority(SendPriority.USER), result -> {
+                LogDebug("requestWelcomeCard done");
             });
         }
     }
 
     /*
-     * Create Event Activity with inputs: name, channel data, and value
+     * @return true if the reply is the welcome card: it replies to the welcome card request, or it is the first reply
+     * while no other request is waiting (the service may assign its own activity ids)
      */
-    private client.model.Activity createEventActivity(String eventname, Object channelData, Object value) {
-        client.model.Activity activity = new client.model.Activity();
-        activity.setType(ActivityTypes.EVENT);
-        activity.setLocale(configuration.srLanguage);
-        if (from_user != null) activity.setFrom(from_user);
-        activity.setChannelData(channelData);
-        activity.setName(eventname);
-        activity.setValue(value);
+    private boolean onWelcomeCardReceived(String json, String replyToId, long receivedAtNanos) {
+        String welcomeId = welcomeActivityId;
+        if (welcomeId == null) return false;
+        if (!welcomeId.equals(replyToId) && replyCorrelator.isAwaiting()) return false;
+        welcomeActivityId = null;
+        // shown at the next startup until the fresh one arrives
+        welcomeCardCache.store(WelcomeCardCache.versionOf(configuration), json, System.currentTimeMillis());
+        long timeToWelcomeMs = TimeUnit.NANOSECONDS.toMillis(receivedAtNanos - sessionStartedAtNanos);
+        TurnMetrics metrics = turnMetrics;
+        if (metrics != null) metrics.recordTimeToWelcome(timeToWelcomeMs);
+        LogInfo("welcome card received " + timeToWelcomeMs + " ms after the session start");
+        return true;
+    }
 
-        return activity;
+    /*
+     * Session start activities queued before the first connection are part of the handshake
+     */
+    private SendPriority sessionStartPriority(SendPriority priority) {
+        return isHandshakeSent ? priority : SendPriority.HANDSHAKE;
     }
 
-    private <T> void setOnTaskCompletedListener(Future<T> task, OnTaskCompletedListener<T> listener) {
-        s_executorService.submit(() -> {
-            T result = task.get();
-            listener.onCompleted(result);
-            return null;
-        });
+    private <T> Disposable setOnTaskCompletedListener(Future<T> task, OnTaskCompletedListener<T> listener) {
+        return setOnTaskCompletedListener(task, FutureCompletion.NO_TIMEOUT, listener);
+    }
+
+    /*
+     * Call the listener once the task completes, without blocking a thread while it is pending.
+     * Failures and timeouts are logged and the listener is not called.
+     */
+    private <T> Disposable setOnTaskCompletedListener(Future<T> task, long timeoutMs, OnTaskCompletedListener<T> listener) {
+        return FutureCompletion.toMaybe(task, timeoutMs, TimeUnit.MILLISECONDS)
+                .subscribe(
+                        listener::onCompleted,
+                        throwable -> LogException("task failed: " + throwable),
+                        () -> listener.onCompleted(null));
     }
 
     private interface OnTaskCompletedListener<T> {
         void onCompleted(T taskResult);
     }
 
-    private static ExecutorService s_executorService;
-    static {
-        s_executorService = Executors.newCachedThreadPool();
+    /*
+     * Kept with an outbox entry in the outbox shared by the instances: an entry queued by one instance can be sent
+     * by its replacement, which waits for the reply and calls onDelivered
+     */
+    private static final class OutboxTag {
+        final String activityId;
+        final String replyType;// null if no reply is waited for
+        final OnTaskCompletedListener<String> onDelivered;// null if nothing is done once delivered
+
+        OutboxTag(String activityId, String replyType, OnTaskCompletedListener<String> onDelivered) {
+            this.activityId = activityId;
+            this.replyType = replyType;
+            this.onDelivered = onDelivered;
+        }
     }
 }
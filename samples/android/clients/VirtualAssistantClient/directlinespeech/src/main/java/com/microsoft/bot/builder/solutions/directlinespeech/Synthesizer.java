@@ -35,204 +35,477 @@ package com.microsoft.bot.builder.solutions.directlinespeech;
 import android.media.AudioAttributes;
 import android.media.AudioFormat;
 import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Process;
 import android.util.Log;
 
-import com.microsoft.cognitiveservices.speech.audio.PullAudioInputStream;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.AudioSource;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.DiskCachedAudioSource;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.MediaCodecAudioSource;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.NetworkAudioSource;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.PcmAudioSource;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.PullStreamAudioSource;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.RecordingAudioSource;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.SpscQueue;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.TtsCache;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.TtsOutputFormat;
 import com.microsoft.cognitiveservices.speech.audio.PullAudioOutputStream;
 
-import org.greenrobot.eventbus.EventBus;
-
-import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
+
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
+import events.SynthesizerStarted;
 import events.SynthesizerStopped;
+import events.UtterancePlayed;
 
+/**
+ * Plays the audio of received activities, one after the other.
+ *
+ * A single long-lived audio thread owns one AudioTrack that is kept between utterances (low-latency mode
+ * on API 26+). Streams are handed to it through a lock-free queue: playStream() must be called from one
+ * thread at a time (the Speech SDK event thread). stopSound() cancels everything queued or playing at once,
+ * including a read waiting for the service. After release(), the next audio thread waits for the previous one to
+ * exit before it touches the queue or a track, so there is never more than one running.
+ * Compressed audio (see setOutputFormat) is decoded on the audio thread while it is received.
+ * Prompts found in the TtsCache (see setCache) are played locally and their service stream is skipped; those on disk
+ * are read by the audio thread, not by the thread that calls playStream().
+ */
 public class Synthesizer {
 
     static final String logTag = "Synthesizer";
 
-    private AudioTrack audioTrack;
     final int SAMPLE_RATE = 16000;
     static final int channelConfiguration = AudioFormat.CHANNEL_OUT_MONO;
     static final int audioEncoding = AudioFormat.ENCODING_PCM_16BIT;
-    private AtomicBoolean isPlaying = new AtomicBoolean(false);
-    private int playBufSize;
-    private LinkedList<PullAudioOutputStream> streamList ;
+    private static final int BYTES_PER_FRAME = 2;
+    private static final int QUEUE_CAPACITY = 32;
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
 
-    private Lock streamListLock = new ReentrantLock();
+    private final SpscQueue<Utterance> queue = new SpscQueue<>(QUEUE_CAPACITY);
+    private final AtomicBoolean isPlaying = new AtomicBoolean(false);
+    private final AtomicInteger generation = new AtomicInteger();// incremented to cancel what is queued or playing
+    private final Object lifecycleLock = new Object();
+    private final SpeechEvents events;
+    private volatile Thread audioThread;
+    private Thread exitingThread;// released, possibly still running, guarded by lifecycleLock
+    private volatile Utterance playing;// read by the audio thread right now
+    private volatile AudioTrack audioTrack;
+    private volatile long lastFirstAudioLatencyMs = -1;
+    private volatile TtsOutputFormat outputFormat = TtsOutputFormat.PCM;
+    private volatile TtsCache cache;
+    private int playBufSize;
+    private long framesWritten;// since the track was last stopped or flushed
 
+    /**
+     * @param events where the playback events are published
+     */
+    public Synthesizer(SpeechEvents events) {
+        this.events = events;
+        playBufSize = AudioTrack.getMinBufferSize(SAMPLE_RATE, channelConfiguration, audioEncoding);
+    }
 
     public boolean isPlaying() {
         return isPlaying.get();
     }
 
-    public void stopPlaying()
-    {
-        isPlaying.set(false);
+    /**
+     * @return time from the last played activity being received to its first sample being played, or -1
+     */
+    public long getLastFirstAudioLatencyMs() {
+        return lastFirstAudioLatencyMs;
     }
-    public void playStream(PipedOutputStream out, final Runnable callback)
-    {
-        try {
-            playBufSize = AudioTrack.getMinBufferSize(SAMPLE_RATE, channelConfiguration, audioEncoding);
-            PipedInputStream in = new PipedInputStream(out, playBufSize);
-
-            AudioAttributes attrs = new AudioAttributes.Builder().
-                    setContentType(AudioAttributes.CONTENT_TYPE_SPEECH).
-                    setUsage(AudioAttributes.USAGE_MEDIA).build();
-
-            AudioFormat fmt = new AudioFormat.Builder().
-                    setChannelMask(AudioFormat.CHANNEL_OUT_MONO).
-                    setEncoding(AudioFormat.ENCODING_PCM_16BIT).
-                    setSampleRate(SAMPLE_RATE).build();
-            audioTrack = new AudioTrack(attrs, fmt, playBufSize, AudioTrack.MODE_STREAM, 0);
-            new Thread() {
-                byte[] buffer = new byte[playBufSize];
-
-                public void run() {
-                    audioTrack.play();
-                    isPlaying.set(true);
-                    long readSize = -1;
-
-                    while (isPlaying.get()) {
-                        try {
-                            if(streamList.peekFirst() != null){
-                                PullAudioOutputStream stream = streamList.getFirst();
-                                while(readSize != 0){
-                                    readSize = stream.read(buffer);
-                                    audioTrack.write(buffer, 0, (int)readSize);
-                                }
-                                streamList.removeFirst();
-                            }
-                            else{
-                                Thread.sleep(50);
-                            }
-
-                            //readSize = in.read(buffer);
-                        } catch (Exception e) {
-                            Log.e(logTag, "read exception", e);
-                            break;
-                        }
-                        //audioTrack.write(buffer, 0, readSize);
-                    }
-                    audioTrack.stop();
-                    audioTrack.release();
-                    try {
-                        in.close();
-                        callback.run();
-                    } catch (Exception e) {
-                        Log.e(logTag, "close exception", e);
-                    }
-                }
-            }.start();
+
+    /**
+     * @param outputFormat format of the streams given to playStream(), as requested from the service
+     */
+    public void setOutputFormat(TtsOutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    public TtsOutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * @param cache cache of spoken prompts, or null to always play the service stream
+     */
+    public void setCache(TtsCache cache) {
+        this.cache = cache;
+    }
+
+    public TtsCache getCache() {
+        return cache;
+    }
+
+    public void stopPlaying() {
+        stopSound();
+    }
+
+    public void playStream(PullAudioOutputStream stream) {
+        playStream(stream, System.nanoTime());
+    }
+
+    /**
+     * @param receivedAtNanos System.nanoTime() when the activity carrying the stream was received
+     */
+    public void playStream(PullAudioOutputStream stream, long receivedAtNanos) {
+        playStream(stream, receivedAtNanos, null);
+    }
+
+    /**
+     * @param receivedAtNanos System.nanoTime() when the activity carrying the stream was received
+     * @param cacheKey key of the prompt in the cache (see TtsCache.key), or null if it should not be cached
+     */
+    public void playStream(PullAudioOutputStream stream, long receivedAtNanos, String cacheKey) {
+        playStream(new PullStreamAudioSource(stream), receivedAtNanos, cacheKey);
+    }
+
+    /**
+     * @param stream audio of the activity, in the output format, as it arrives from the service
+     * @param receivedAtNanos System.nanoTime() when the activity carrying the stream was received
+     * @param cacheKey key of the prompt in the cache (see TtsCache.key), or null if it should not be cached
+     */
+    public void playStream(AudioSource stream, long receivedAtNanos, String cacheKey) {
+        final TtsCache cache = cacheKey != null ? this.cache : null;
+        if (cache != null) {
+            byte[] pcm = cache.getFromMemory(cacheKey);
+            if (pcm != null) {
+                // skip the service stream
+                stream.close();
+                enqueue(new Utterance(new PcmAudioSource(pcm), null, TtsOutputFormat.PCM, true, receivedAtNanos, generation.get()));
+                return;
+            }
         }
-        catch (IOException e)
-        {
-            Log.e(logTag, "init exception", e);
+
+        final TtsOutputFormat format = outputFormat;
+        NetworkAudioSource networkSource = new NetworkAudioSource(stream);
+        AudioSource source = networkSource;
+        if (format.isCompressed()) {
+            final MediaCodecAudioSource decoder = new MediaCodecAudioSource(networkSource, format, SAMPLE_RATE);
+            source = decoder;
+            if (cache != null) {
+                source = new RecordingAudioSource(decoder, cache.getMaxEntrySize(), pcm -> {
+                    if (!decoder.hasFailed()) cache.put(cacheKey, pcm);
+                });
+            }
+        } else if (cache != null) {
+            source = new RecordingAudioSource(networkSource, cache.getMaxEntrySize(), pcm -> cache.put(cacheKey, pcm));
         }
+        if (cache != null && cache.isOnDisk(cacheKey)) {
+            source = new DiskCachedAudioSource(cache, cacheKey, source);
+        }
+        enqueue(new Utterance(source, networkSource, format, false, receivedAtNanos, generation.get()));
+    }
+
+    /**
+     * Queue audio to be played after what is already queued
+     * @param receivedAtNanos System.nanoTime() when the activity carrying the audio was received
+     */
+    public void play(AudioSource source, long receivedAtNanos) {
+        enqueue(new Utterance(source, null, TtsOutputFormat.PCM, false, receivedAtNanos, generation.get()));
     }
 
-    //stop playing audio data
-    // if use STREAM mode, will wait for the end of the last write buffer data will stop.
-    // if you stop immediately, call the pause() method and then call the flush() method to discard the data that has not yet been played
+    private void enqueue(Utterance utterance) {
+        if (!queue.offer(utterance)) {
+            Log.w(logTag, "playback queue full, dropping audio");
+            utterance.source.close();
+            return;
+        }
+        isPlaying.set(true);
+        LockSupport.unpark(startAudioThread());
+    }
+
+    /**
+     * Barge-in: silence the audio immediately and drop everything queued
+     */
     public void stopSound() {
+        generation.incrementAndGet();
+        Utterance utterance = playing;
+        if (utterance != null && utterance.networkSource != null) {
+            // unblocks a read waiting for the service, the audio thread closes the rest of the source
+            utterance.networkSource.cancel();
+        }
+        AudioTrack track = audioTrack;
         try {
-            if (audioTrack != null && audioTrack.getState() == AudioTrack.STATE_INITIALIZED) {
-                audioTrack.pause();
-                audioTrack.flush();
-
+            if (track != null && track.getState() == AudioTrack.STATE_INITIALIZED) {
+                // also unblocks a pending write on the audio thread
+                track.pause();
+                track.flush();
             }
         } catch (Exception e) {
             Log.e(logTag, "StopSound", e);
         }
+        Thread thread = audioThread;
+        if (thread != null) LockSupport.unpark(thread);
     }
 
-    public Synthesizer() {
-        this.streamList = new LinkedList<PullAudioOutputStream>();
+    /**
+     * Stop the audio thread and release the AudioTrack, without waiting for them. Playing again restarts them.
+     */
+    public void release() {
+        stopSound();
+        Thread thread;
+        synchronized (lifecycleLock) {
+            thread = audioThread;
+            audioThread = null;
+            if (thread != null) exitingThread = thread;
+        }
+        if (thread != null) LockSupport.unpark(thread);
     }
 
-    public void playStream(PullAudioOutputStream stream){
-        if(!isPlaying.get()){
-            safeAddToStreamList(stream);
-            startPlaying();
-        }
-        else {
-            safeAddToStreamList(stream);
+    private Thread startAudioThread() {
+        synchronized (lifecycleLock) {
+            if (audioThread == null) {
+                final Thread previous = exitingThread;
+                exitingThread = null;
+                audioThread = new Thread(() -> runAudioThread(previous), logTag);
+                audioThread.start();
+            }
+            return audioThread;
         }
     }
 
-    private void safeAddToStreamList(PullAudioOutputStream stream){
-        this.streamListLock.lock();
+    /**
+     * @param previous audio thread released before this one started, or null
+     */
+    private void runAudioThread(Thread previous) {
+        if (previous != null) {
+            // the queue has a single consumer and the track state a single owner: take over once it has exited
+            try {
+                previous.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        final Thread self = Thread.currentThread();
+        final byte[] buffer = new byte[Math.max(playBufSize / 2, BYTES_PER_FRAME)];
+        AudioTrack track = null;
+        boolean active = false;
+
         try {
-            this.streamList.add(stream);
+            while (audioThread == self) {
+                Utterance utterance = queue.poll();
+                if (utterance == null) {
+                    if (active) {
+                        active = false;
+                        onQueueDrained(track);
+                    }
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                if (utterance.generation != generation.get()) {
+                    // cancelled before it started
+                    utterance.source.close();
+                    continue;
+                }
+
+                if (track == null) {
+                    track = createAudioTrack();
+                    audioTrack = track;
+                    framesWritten = 0;
+                }
+                active = true;
+                isPlaying.set(true);
+                playing = utterance;
+                boolean trackOk;
+                try {
+                    trackOk = playUtterance(track, utterance, buffer);
+                } finally {
+                    playing = null;
+                }
+                if (!trackOk) {
+                    // the track is unusable (e.g. the audio server restarted), create a new one for the next utterance
+                    releaseAudioTrack(track);
+                    track = null;
+                }
+            }
+        } catch (Exception e) {
+            Log.e(logTag, "audio thread exception", e);
         } finally {
-            this.streamListLock.unlock();
+            if (track != null) releaseAudioTrack(track);
+            synchronized (lifecycleLock) {
+                if (audioThread == self) audioThread = null;
+                if (audioThread == null) {
+                    // no other audio thread can start while the lock is held, close what was cancelled by release()
+                    Utterance utterance;
+                    while ((utterance = queue.peek()) != null && utterance.generation != generation.get()) {
+                        queue.poll().source.close();
+                    }
+                }
+            }
+            if (active) {
+                isPlaying.set(false);
+                events.post(new SynthesizerStopped());
+            }
         }
     }
 
-    private void startPlaying(){
-            isPlaying.set(true);
-            playBufSize = AudioTrack.getMinBufferSize(SAMPLE_RATE, channelConfiguration, audioEncoding);
-
-            AudioAttributes attrs = new AudioAttributes.Builder().
-                    setContentType(AudioAttributes.CONTENT_TYPE_SPEECH).
-                    setUsage(AudioAttributes.USAGE_MEDIA).build();
-
-            AudioFormat fmt = new AudioFormat.Builder().
-                    setChannelMask(AudioFormat.CHANNEL_OUT_MONO).
-                    setEncoding(AudioFormat.ENCODING_PCM_16BIT).
-                    setSampleRate(SAMPLE_RATE).build();
-            audioTrack = new AudioTrack(attrs, fmt, playBufSize, AudioTrack.MODE_STREAM, 0);
-            new Thread() {
-                byte[] buffer = new byte[playBufSize];
-
-                public void run() {
-                    audioTrack.play();
-                    isPlaying.set(true);
-
-                    while (streamList.size() > 0) {
-                        try {
-                            if(streamList.peekFirst() != null){
-                                PullAudioOutputStream stream = streamList.getFirst();
-                                long readSize = -1;
-                                while(readSize != 0){
-                                    readSize = stream.read(buffer);
-                                    audioTrack.write(buffer, 0, (int)readSize);
-                                }
-
-                                streamListLock.lock();
-                                try{
-                                    streamList.removeFirst();
-                                }
-                                finally {
-                                    streamListLock.unlock();
-                                }
-                            }
-
-                            //readSize = in.read(buffer);
-                        } catch (Exception e) {
-                            Log.e(logTag, "read exception", e);
-                            break;
-                        }
-                        //audioTrack.write(buffer, 0, readSize);
+    /**
+     * @return false if the AudioTrack failed
+     */
+    private boolean playUtterance(AudioTrack track, Utterance utterance, byte[] buffer) {
+        final long startFrame = framesWritten;
+        long framesPlayed = 0;
+        boolean started = false;
+        boolean trackOk = true;
+
+        try {
+            if (track.getPlayState() != AudioTrack.PLAYSTATE_PLAYING) {
+                track.play();
+            }
+
+            readLoop:
+            while (utterance.generation == generation.get()) {
+                int readSize = utterance.source.read(buffer);
+                if (readSize <= 0) {
+                    break;
+                }
+                int offset = 0;
+                while (offset < readSize) {
+                    if (utterance.generation != generation.get()) {
+                        break readLoop;
+                    }
+                    int written = track.write(buffer, offset, readSize - offset);
+                    if (written < 0) {
+                        Log.e(logTag, "AudioTrack write error " + written);
+                        trackOk = false;
+                        break readLoop;
                     }
-                    audioTrack.stop();
-                    audioTrack.release();
-                    isPlaying.set(false);
-                    // trigger event that playback is stopped
-                    EventBus.getDefault().post(new SynthesizerStopped());
+                    offset += written;
+                    framesWritten += written / BYTES_PER_FRAME;
                 }
-            }.start();
+                if (!started && playbackHeadPosition(track) > startFrame) {
+                    started = true;
+                    onFirstAudio(utterance, System.nanoTime());
+                }
+            }
+
+            if (!started && framesWritten > startFrame && utterance.generation == generation.get()) {
+                // short utterance that is still waiting in the track buffer, estimate when it will start
+                long framesAhead = Math.max(0, startFrame - playbackHeadPosition(track));
+                onFirstAudio(utterance, System.nanoTime() + framesAhead * 1000000000L / SAMPLE_RATE);
+            }
+        } catch (Exception e) {
+            Log.e(logTag, "read exception", e);
+        } finally {
+            framesPlayed = framesWritten - startFrame;
+            utterance.source.close();
+        }
+        onUtterancePlayed(utterance, framesPlayed);
+
+        if (utterance.generation != generation.get()) {
+            // barge-in
+            try {
+                track.pause();
+                track.flush();
+            } catch (IllegalStateException e) {
+                trackOk = false;
+            }
+            framesWritten = 0;
+        }
+        return trackOk;
+    }
+
+    private void onQueueDrained(AudioTrack track) {
+        if (track != null) {
+            try {
+                // plays what is left in the buffer, then goes idle
+                track.stop();
+            } catch (IllegalStateException e) {
+                Log.e(logTag, "stop exception", e);
+            }
+            framesWritten = 0;
+        }
+        isPlaying.set(false);
+        if (!queue.isEmpty()) {
+            // audio was queued meanwhile, keep playing
+            isPlaying.set(true);
+            return;
+        }
+        // trigger event that playback is stopped
+        events.post(new SynthesizerStopped());
+    }
+
+    private void onFirstAudio(Utterance utterance, long firstAudioNanos) {
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(firstAudioNanos - utterance.receivedAtNanos);
+        utterance.firstAudioLatencyMs = latencyMs;
+        lastFirstAudioLatencyMs = latencyMs;
+        long firstByteNanos = utterance.networkSource != null ? utterance.networkSource.getFirstByteNanos() : 0;
+        events.post(new SynthesizerStarted(latencyMs, firstAudioNanos, firstByteNanos));
     }
 
+    private void onUtterancePlayed(Utterance utterance, long framesPlayed) {
+        long bytesReceived = utterance.networkSource != null ? utterance.networkSource.getBytesRead() : 0;
+        long durationMs = framesPlayed * 1000 / SAMPLE_RATE;
+        events.post(new UtterancePlayed(
+                utterance.format.getConfigurationName(), utterance.isCached(), bytesReceived, durationMs, utterance.firstAudioLatencyMs));
+    }
+
+    private AudioTrack createAudioTrack() {
+        AudioAttributes attrs = new AudioAttributes.Builder().
+                setContentType(AudioAttributes.CONTENT_TYPE_SPEECH).
+                setUsage(AudioAttributes.USAGE_MEDIA).build();
+
+        AudioFormat fmt = new AudioFormat.Builder().
+                setChannelMask(channelConfiguration).
+                setEncoding(audioEncoding).
+                setSampleRate(SAMPLE_RATE).build();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return new AudioTrack.Builder()
+                    .setAudioAttributes(attrs)
+                    .setAudioFormat(fmt)
+                    .setBufferSizeInBytes(playBufSize)
+                    .setTransferMode(AudioTrack.MODE_STREAM)
+                    .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                    .build();
+        }
+        return new AudioTrack(attrs, fmt, playBufSize, AudioTrack.MODE_STREAM, 0);
+    }
 
+    private void releaseAudioTrack(AudioTrack track) {
+        if (audioTrack == track) audioTrack = null;
+        try {
+            if (track.getState() == AudioTrack.STATE_INITIALIZED) {
+                track.pause();
+                track.flush();
+            }
+        } catch (IllegalStateException e) {
+            Log.e(logTag, "release exception", e);
+        }
+        track.release();
+    }
+
+    private static long playbackHeadPosition(AudioTrack track) {
+        // unsigned 32 bit frame count
+        return track.getPlaybackHeadPosition() & 0xFFFFFFFFL;
+    }
+
+    private static final class Utterance {
+        final AudioSource source;
+        final NetworkAudioSource networkSource;// null if the audio does not come from the service
+        final TtsOutputFormat format;
+        final boolean cached;
+        final long receivedAtNanos;
+        final int generation;
+        long firstAudioLatencyMs = -1;
+
+        Utterance(AudioSource source, NetworkAudioSource networkSource, TtsOutputFormat format, boolean cached, long receivedAtNanos, int generation) {
+            this.source = source;
+            this.networkSource = networkSource;
+            this.format = format;
+            this.cached = cached;
+            this.receivedAtNanos = receivedAtNanos;
+            this.generation = generation;
+        }
+
+        boolean isCached() {
+            return cached || (source instanceof DiskCachedAudioSource && ((DiskCachedAudioSource) source).isCached());
+        }
+    }
 }
@@ -0,0 +1,184 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes compressed speech (MP3 or Ogg Opus) with MediaCodec while it is being received.
+ * Each read() feeds the decoder the packets it can take and returns the PCM it has produced so far,
+ * so playback starts after the first packets instead of after the whole stream.
+ * The decoder is created on the first read(), on the audio thread.
+ */
+public class MediaCodecAudioSource implements AudioSource {
+
+    // CONSTANTS
+    private static final String LOGTAG = "MediaCodecAudioSource";
+    private static final long DEQUEUE_TIMEOUT_US = 5000;
+    private static final long PACKET_DURATION_US = 20000;// nominal, only used for presentation timestamps
+    private static final long OPUS_SEEK_PREROLL_NS = 80000000;
+    private static final int OPUS_SAMPLE_RATE = 48000;
+
+    // STATE
+    private final AudioSource compressedSource;
+    private final TtsOutputFormat format;
+    private final int sampleRate;
+    private final PcmConverter converter;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    private PacketReader packetReader;
+    private MediaCodec codec;
+    private byte[] pending = new byte[0];
+    private int pendingPosition;
+    private int pendingLength;
+    private long presentationTimeUs;
+    private boolean inputEnded;
+    private boolean outputEnded;
+    private boolean failed;
+
+    /**
+     * @param compressedSource stream in the given format
+     * @param sampleRate sample rate to convert the decoded audio to
+     */
+    public MediaCodecAudioSource(AudioSource compressedSource, TtsOutputFormat format, int sampleRate) {
+        this.compressedSource = compressedSource;
+        this.format = format;
+        this.sampleRate = sampleRate;
+        this.converter = new PcmConverter(sampleRate);
+    }
+
+    @Override
+    public int read(byte[] buffer) {
+        try {
+            while (pendingLength == 0) {
+                if (outputEnded) return 0;
+                if (codec == null && !startCodec()) {
+                    outputEnded = true;
+                    failed = true;
+                    return 0;
+                }
+                if (!inputEnded) queueInput();
+                dequeueOutput();
+            }
+        } catch (IOException | IllegalStateException e) {
+            Log.e(LOGTAG, "decode exception", e);
+            outputEnded = true;
+            failed = true;
+            return 0;
+        }
+
+        int count = Math.min(buffer.length, pendingLength);
+        System.arraycopy(pending, pendingPosition, buffer, 0, count);
+        pendingPosition += count;
+        pendingLength -= count;
+        return count;
+    }
+
+    /**
+     * @return true if the stream ended because it could not be decoded
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        if (codec != null) {
+            try {
+                codec.stop();
+            } catch (IllegalStateException e) {
+                Log.e(LOGTAG, "stop exception", e);
+            }
+            codec.release();
+            codec = null;
+        }
+        compressedSource.close();
+    }
+
+    /**
+     * @return false if the stream or the decoder could not be set up
+     */
+    private boolean startCodec() throws IOException {
+        AudioSourceInputStream inputStream = new AudioSourceInputStream(compressedSource);
+        MediaFormat mediaFormat;
+
+        if (format == TtsOutputFormat.OPUS) {
+            OggOpusPacketReader opusReader = new OggOpusPacketReader(inputStream);
+            byte[] opusHead = opusReader.readOpusHead();
+            if (opusHead == null) {
+                Log.e(LOGTAG, "missing OpusHead");
+                return false;
+            }
+            mediaFormat = MediaFormat.createAudioFormat(format.getMimeType(), OPUS_SAMPLE_RATE, OggOpusPacketReader.channelCount(opusHead));
+            long preSkipNs = OggOpusPacketReader.preSkip(opusHead) * 1000000000L / OPUS_SAMPLE_RATE;
+            mediaFormat.setByteBuffer("csd-0", ByteBuffer.wrap(opusHead));
+            mediaFormat.setByteBuffer("csd-1", nativeOrderLong(preSkipNs));
+            mediaFormat.setByteBuffer("csd-2", nativeOrderLong(OPUS_SEEK_PREROLL_NS));
+            packetReader = opusReader;
+        } else {
+            mediaFormat = MediaFormat.createAudioFormat(format.getMimeType(), sampleRate, 1);
+            packetReader = new Mp3FrameReader(inputStream);
+        }
+
+        codec = MediaCodec.createDecoderByType(format.getMimeType());
+        codec.configure(mediaFormat, null, null, 0);
+        codec.start();
+        return true;
+    }
+
+    private void queueInput() throws IOException {
+        int index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+        if (index < 0) return;
+
+        // blocks until the next packet is received
+        byte[] packet = packetReader.nextPacket();
+        if (packet == null) {
+            codec.queueInputBuffer(index, 0, 0, presentationTimeUs, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            inputEnded = true;
+            return;
+        }
+        ByteBuffer inputBuffer = codec.getInputBuffer(index);
+        int size = Math.min(packet.length, inputBuffer.capacity());
+        inputBuffer.clear();
+        inputBuffer.put(packet, 0, size);
+        codec.queueInputBuffer(index, 0, size, presentationTimeUs, 0);
+        presentationTimeUs += PACKET_DURATION_US;
+    }
+
+    private void dequeueOutput() {
+        int index = codec.dequeueOutputBuffer(bufferInfo, DEQUEUE_TIMEOUT_US);
+        if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            MediaFormat outputFormat = codec.getOutputFormat();
+            converter.setSourceFormat(
+                    outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                    outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+            return;
+        }
+        if (index < 0) return;
+
+        if (bufferInfo.size > 0) {
+            ByteBuffer outputBuffer = codec.getOutputBuffer(index);
+            outputBuffer.position(bufferInfo.offset);
+            outputBuffer.limit(bufferInfo.offset + bufferInfo.size);
+            int samples = bufferInfo.size / 2;
+            int maxSize = converter.maxOutputSize(samples);
+            if (pending.length < maxSize) pending = new byte[maxSize];
+            pendingPosition = 0;
+            pendingLength = converter.convert(outputBuffer.order(ByteOrder.nativeOrder()).asShortBuffer(), pending, 0);
+        }
+        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+            outputEnded = true;
+        }
+        codec.releaseOutputBuffer(index, false);
+    }
+
+    private static ByteBuffer nativeOrderLong(long value) {
+        ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+        buffer.putLong(value);
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,26 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.audio;
+
+import com.microsoft.cognitiveservices.speech.audio.PullAudioOutputStream;
+
+/**
+ * Audio of an activity, as streamed by the Speech SDK
+ */
+public class PullStreamAudioSource implements AudioSource {
+
+    // STATE
+    private final PullAudioOutputStream stream;
+
+    public PullStreamAudioSource(PullAudioOutputStream stream) {
+        this.stream = stream;
+    }
+
+    @Override
+    public int read(byte[] buffer) {
+        return (int) stream.read(buffer);
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
@@ -0,0 +1,117 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.transport;
+
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.PullStreamAudioSource;
+import com.microsoft.cognitiveservices.speech.KeywordRecognitionModel;
+import com.microsoft.cognitiveservices.speech.audio.AudioConfig;
+import com.microsoft.cognitiveservices.speech.dialog.DialogServiceConfig;
+import com.microsoft.cognitiveservices.speech.dialog.DialogServiceConnector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Future;
+
+import static com.microsoft.cognitiveservices.speech.ResultReason.RecognizedKeyword;
+import static com.microsoft.cognitiveservices.speech.ResultReason.RecognizingKeyword;
+
+/**
+ * The Direct Line Speech service, through the DialogServiceConnector of the Speech SDK
+ */
+public class DialogServiceConnectorTransport implements DialogTransport {
+
+    // STATE
+    private final DialogServiceConnector connector;
+    private volatile Listener listener;
+
+    /**
+     * @param audioInput the microphone, null if the app cannot record audio
+     */
+    public DialogServiceConnectorTransport(DialogServiceConfig dialogServiceConfig, AudioConfig audioInput) {
+        connector = new DialogServiceConnector(dialogServiceConfig, audioInput);
+
+        connector.recognizing.addEventListener((o, eventArgs) -> {
+            Listener listener = this.listener;
+            if (listener != null) {
+                listener.onRecognizing(eventArgs.getResult().getText(), eventArgs.getResult().getReason().equals(RecognizingKeyword));
+            }
+        });
+
+        connector.recognized.addEventListener((o, eventArgs) -> {
+            Listener listener = this.listener;
+            if (listener != null) {
+                listener.onRecognized(eventArgs.getResult().getText(), eventArgs.getResult().getReason().equals(RecognizedKeyword));
+            }
+        });
+
+        connector.sessionStarted.addEventListener((o, eventArgs) -> {
+            Listener listener = this.listener;
+            if (listener != null) listener.onSessionStarted(eventArgs.getSessionId());
+        });
+
+        connector.sessionStopped.addEventListener((o, eventArgs) -> {
+            Listener listener = this.listener;
+            if (listener != null) listener.onSessionStopped(eventArgs.getSessionId());
+        });
+
+        connector.canceled.addEventListener((o, eventArgs) -> {
+            Listener listener = this.listener;
+            if (listener != null) {
+                listener.onCanceled(eventArgs.getErrorCode().getValue(), eventArgs.getReason().getValue(), eventArgs.getErrorDetails());
+            }
+        });
+
+        connector.activityReceived.addEventListener((o, eventArgs) -> {
+            PullStreamAudioSource audio = eventArgs.hasAudio() ? new PullStreamAudioSource(eventArgs.getAudio()) : null;
+            Listener listener = this.listener;
+            if (listener != null) {
+                listener.onActivityReceived(eventArgs.getActivity(), audio);
+            } else if (audio != null) {
+                audio.close();
+            }
+        });
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Future<Void> connectAsync() {
+        return connector.connectAsync();
+    }
+
+    @Override
+    public Future<Void> disconnectAsync() {
+        return connector.disconnectAsync();
+    }
+
+    @Override
+    public Future<?> listenOnceAsync() {
+        return connector.listenOnceAsync();
+    }
+
+    @Override
+    public Future<Void> stopListeningAsync() {
+        return connector.stopListeningAsync();
+    }
+
+    @Override
+    public Future<String> sendActivityAsync(String activityJson) {
+        return connector.sendActivityAsync(activityJson);
+    }
+
+    @Override
+    public Future<Void> startKeywordRecognitionAsync(InputStream model, String keyword) throws IOException {
+        return connector.startKeywordRecognitionAsync(KeywordRecognitionModel.fromStream(model, keyword, false));
+    }
+
+    @Override
+    public Future<Void> stopKeywordRecognitionAsync() {
+        return connector.stopKeywordRecognitionAsync();
+    }
+
+    @Override
+    public void close() {
+        connector.close();
+    }
+}
@@ -7,8 +7,15 @@ public class ActivityReceived {
 
     public ActivityReceived(BotConnectorActivity botConnectorActivity) {
 
+        this(botConnectorActivity, false);
+    }
+
+    public ActivityReceived(BotConnectorActivity botConnectorActivity, boolean isWelcomeCard) {
+
         this.botConnectorActivity = botConnectorActivity;
+        this.isWelcomeCard = isWelcomeCard;
     }
 
     public BotConnectorActivity botConnectorActivity;
+    public boolean isWelcomeCard;// the fresh welcome card, replacing the cached one shown at startup
 }
@@ -1,6 +1,6 @@
 package events;
 
-public class Connected {
+public class Connected implements ConnectionEvent {
 
     public Connected() {
     }
@@ -0,0 +1,7 @@
+package events;
+
+/**
+ * A change of the connection to the service: Connected, Disconnected or Reconnecting
+ */
+public interface ConnectionEvent {
+}
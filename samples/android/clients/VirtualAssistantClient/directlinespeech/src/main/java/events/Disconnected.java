@@ -1,6 +1,6 @@
 package events;
 
-public class Disconnected {
+public class Disconnected implements ConnectionEvent {
 
     public int cancellationReason;
     public String errorDetails;
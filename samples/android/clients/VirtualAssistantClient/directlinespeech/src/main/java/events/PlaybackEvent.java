@@ -0,0 +1,7 @@
+package events;
+
+/**
+ * A change of the playback of the Synthesizer: SynthesizerStarted, UtterancePlayed or SynthesizerStopped
+ */
+public interface PlaybackEvent {
+}
@@ -0,0 +1,12 @@
+package events;
+
+public class Reconnecting implements ConnectionEvent {
+
+    public int attempt;// 1 for the first attempt, 0 while waiting for a network
+    public long delayMs;// time before the attempt, -1 while waiting for a network
+
+    public Reconnecting(int attempt, long delayMs) {
+        this.attempt = attempt;
+        this.delayMs = delayMs;
+    }
+}
@@ -0,0 +1,14 @@
+package events;
+
+public class SynthesizerStarted implements PlaybackEvent {
+
+    public long firstAudioLatencyMs;// from the activity being received to its first sample being played
+    public long startedAtNanos;// System.nanoTime() of the first sample being played
+    public long firstByteAtNanos;// System.nanoTime() of the first audio byte received from the service, 0 if not streamed
+
+    public SynthesizerStarted(long firstAudioLatencyMs, long startedAtNanos, long firstByteAtNanos) {
+        this.firstAudioLatencyMs = firstAudioLatencyMs;
+        this.startedAtNanos = startedAtNanos;
+        this.firstByteAtNanos = firstByteAtNanos;
+    }
+}
@@ -1,7 +1,10 @@
 package events;
 
-public class SynthesizerStopped {
+public class SynthesizerStopped implements PlaybackEvent {
+
+    public long stoppedAtNanos;// System.nanoTime() when playback stopped
 
     public SynthesizerStopped() {
+        this.stoppedAtNanos = System.nanoTime();
     }
 }
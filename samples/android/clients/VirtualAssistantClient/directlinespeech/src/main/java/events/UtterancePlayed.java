@@ -0,0 +1,18 @@
+package events;
+
+public class UtterancePlayed implements PlaybackEvent {
+
+    public String outputFormat;// see TtsOutputFormat
+    public boolean cached;// played from the TtsCache
+    public long bytesReceived;// audio received from the service, 0 if it was not streamed
+    public long durationMs;// audio played
+    public long firstAudioLatencyMs;// from the activity being received to its first sample being played, -1 if nothing was played
+
+    public UtterancePlayed(String outputFormat, boolean cached, long bytesReceived, long durationMs, long firstAudioLatencyMs) {
+        this.outputFormat = outputFormat;
+        this.cached = cached;
+        this.bytesReceived = bytesReceived;
+        this.durationMs = durationMs;
+        this.firstAudioLatencyMs = firstAudioLatencyMs;
+    }
+}
@@ -0,0 +1,185 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.loadgen;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.microsoft.bot.builder.solutions.directlinespeech.transport.DialogTransport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A stand-in bot over HTTP, e.g. StandInBot or a test endpoint of the bot: each activity is POSTed as JSON and the
+ * response is the JSON array of the replies, delivered to the listener once the send completed. There is no
+ * recognition and no speech; connecting only checks that the bot answers.
+ *
+ * The requests block a thread of the I/O executor, which bounds how many are in flight; the replies are delivered on
+ * the executor shared by the sessions.
+ */
+public class HttpBotTransport implements DialogTransport {
+
+    // CONSTANTS
+    private static final int ERROR_CONNECTION_FAILURE = 5;// CancellationErrorCode of the Speech SDK
+    private static final int REASON_ERROR = 1;
+
+    // STATE
+    private final URL url;
+    private final ExecutorService ioExecutor;
+    private final Executor executor;
+    private final int timeoutMs;
+    private volatile Listener listener;
+    private volatile boolean isConnected;
+
+    /**
+     * @param ioExecutor runs the blocking requests
+     * @param executor delivers the replies
+     */
+    public HttpBotTransport(URL url, ExecutorService ioExecutor, Executor executor, int timeoutMs) {
+        this.url = url;
+        this.ioExecutor = ioExecutor;
+        this.executor = executor;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Future<Void> connectAsync() {
+        return ioExecutor.submit(() -> {
+            HttpURLConnection connection = open("GET");
+            try {
+                int status = connection.getResponseCode();
+                if (status >= 500) throw new IOException("HTTP " + status);
+            } finally {
+                connection.disconnect();
+            }
+            isConnected = true;
+            return null;
+        });
+    }
+
+    @Override
+    public Future<Void> disconnectAsync() {
+        isConnected = false;
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public Future<?> listenOnceAsync() {
+        return failed("the stand-in bot has no speech recognition");
+    }
+
+    @Override
+    public Future<Void> stopListeningAsync() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public Future<String> sendActivityAsync(String activityJson) {
+        return ioExecutor.submit(() -> {
+            if (!isConnected) throw new IOException("not connected");
+            String replies;
+            try {
+                replies = post(activityJson);
+            } catch (IOException e) {
+                // as the service would, the connection is reported lost
+                isConnected = false;
+                Listener current = listener;
+                if (current != null) current.onCanceled(ERROR_CONNECTION_FAILURE, REASON_ERROR, e.getMessage());
+                throw e;
+            }
+            // after the send completes, as the replies of the service come
+            executor.execute(() -> deliver(replies));
+            JsonElement id = new JsonParser().parse(activityJson).getAsJsonObject().get("id");
+            return id != null && !id.isJsonNull() ? id.getAsString() : null;
+        });
+    }
+
+    @Override
+    public Future<Void> startKeywordRecognitionAsync(InputStream model, String keyword) {
+        return failed("the stand-in bot has no keyword recognition");
+    }
+
+    @Override
+    public Future<Void> stopKeywordRecognitionAsync() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void close() {
+        isConnected = false;
+    }
+
+    private String post(String json) throws IOException {
+        HttpURLConnection connection = open("POST");
+        try {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(json.getBytes("UTF-8"));
+            }
+            int status = connection.getResponseCode();
+            if (status < 200 || status >= 300) throw new IOException("HTTP " + status);
+            if (status == HttpURLConnection.HTTP_NO_CONTENT) return null;
+            try (InputStream input = connection.getInputStream()) {
+                return readAll(input);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open(String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeoutMs);
+        connection.setReadTimeout(timeoutMs);
+        return connection;
+    }
+
+    private void deliver(String replies) {
+        if (replies == null || replies.trim().isEmpty()) return;
+        JsonArray activities;
+        try {
+            JsonElement element = new JsonParser().parse(replies);
+            if (!element.isJsonArray()) return;
+            activities = element.getAsJsonArray();
+        } catch (JsonParseException e) {
+            return;
+        }
+        for (JsonElement activity : activities) {
+            Listener current = listener;
+            if (current == null || !isConnected) return;
+            current.onActivityReceived(activity.toString(), null);
+        }
+    }
+
+    /*
+     * As the Speech SDK fails a task: in its future, not when it is started
+     */
+    private static <T> Future<T> failed(String message) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new UnsupportedOperationException(message));
+        return future;
+    }
+
+    private static String readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) > 0) output.write(buffer, 0, read);
+        return output.toString("UTF-8");
+    }
+}
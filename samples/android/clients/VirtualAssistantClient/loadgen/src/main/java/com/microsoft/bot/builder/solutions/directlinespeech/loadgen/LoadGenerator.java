@@ -0,0 +1,113 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.loadgen;
+
+import com.google.gson.Gson;
+import com.microsoft.bot.builder.solutions.directlinespeech.correlation.TimerWheel;
+import com.microsoft.bot.builder.solutions.directlinespeech.json.ActivityJson;
+import com.microsoft.bot.builder.solutions.directlinespeech.transport.DialogTransport;
+import com.microsoft.bot.builder.solutions.directlinespeech.transport.FakeDialogTransport;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs N conversations at once against the in-process FakeDialogTransport or a stand-in bot over HTTP, to find
+ * how many simultaneous conversations the bot and the client library sustain. Each LoadSession has its own user
+ * and sends text turns and events; the report gives throughput, error rate and latency percentiles as JSON on stdout.
+ *
+ * The sessions share a fixed number of threads (--threads), plus the two of FutureCompletion and the one of the
+ * TimerWheel of the reply timeouts, however many sessions there are. Against a stand-in bot over HTTP, the blocking
+ * requests run on a separate pool (--io-threads) so a slow bot does not hold the threads of the sessions.
+ */
+public class LoadGenerator {
+
+    // CONSTANTS
+    private static final long CONNECT_GRACE_MS = 5 * 1000;// beyond the timeouts, before giving up on the sessions
+
+    // STATE
+    private final LoadOptions options;
+
+    public LoadGenerator(LoadOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options.servePort > 0) {
+            StandInBot.serve(options.servePort);
+            return;
+        }
+        LoadReport report = new LoadGenerator(options).run();
+        System.out.println(report.toJson());
+        System.exit(report.getErrorRate() < 1 ? 0 : 1);
+    }
+
+    /**
+     * Run the sessions until they all sent their turns and got the replies, or timed out
+     */
+    public LoadReport run() throws InterruptedException, MalformedURLException {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(options.threads, runnable -> {
+            Thread thread = new Thread(runnable, "LoadGenerator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        TimerWheel timerWheel = new TimerWheel("LoadTimeouts");
+        Gson gson = ActivityJson.create();
+        LoadReport report = new LoadReport();
+        CountDownLatch done = new CountDownLatch(options.sessions);
+        URL botUrl = options.isFakeBot() ? null : new URL(options.bot);
+        final AtomicInteger ioThreadCount = new AtomicInteger();
+        ExecutorService ioExecutor = botUrl == null ? null : Executors.newFixedThreadPool(options.ioThreads, runnable -> {
+            Thread thread = new Thread(runnable, "LoadGenerator-io-" + ioThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        System.err.println("load test: " + options.sessions + " sessions of " + options.turns + " turns on "
+                + options.threads + " threads, bot: " + options.bot);
+        report.start(options.sessions);
+        for (int number = 0; number < options.sessions; number++) {
+            DialogTransport transport = botUrl != null
+                    ? new HttpBotTransport(botUrl, ioExecutor, executor, (int) options.timeoutMs)
+                    : createFakeTransport(number, executor);
+            LoadSession session = new LoadSession(number, transport, options, executor, timerWheel, gson, report, done);
+            session.start(options.rampUpMs * number / options.sessions);
+        }
+
+        // every turn ends within a think time and a timeout of its message
+        long maxDurationMs = options.rampUpMs + CONNECT_GRACE_MS
+                + (options.turns + 1) * (options.thinkTimeMs + options.timeoutMs * 2);
+        if (!done.await(maxDurationMs, TimeUnit.MILLISECONDS)) {
+            System.err.println(done.getCount() + " sessions did not finish within " + maxDurationMs + " ms");
+        }
+        report.finish();
+        timerWheel.stop();
+        executor.shutdownNow();
+        if (ioExecutor != null) ioExecutor.shutdownNow();
+        return report;
+    }
+
+    private FakeDialogTransport createFakeTransport(int number, ScheduledThreadPoolExecutor executor) {
+        FakeDialogTransport transport = new FakeDialogTransport(options.seed + number, executor);
+        transport.setLatencies(FakeDialogTransport.DEFAULT_CONNECT_LATENCY_MS, FakeDialogTransport.DEFAULT_SEND_LATENCY_MS,
+                options.replyLatencyMs, FakeDialogTransport.DEFAULT_RECOGNITION_LATENCY_MS);
+        transport.setSendFailureRate(options.sendFailureRate);
+        transport.setReplyDropRate(options.replyDropRate);
+        return transport;
+    }
+}
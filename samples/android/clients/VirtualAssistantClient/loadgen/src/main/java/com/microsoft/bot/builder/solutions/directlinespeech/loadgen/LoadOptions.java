@@ -0,0 +1,89 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.loadgen;
+
+/**
+ * Command line options of the LoadGenerator, e.g. --sessions 200 --threads 8 --bot http://localhost:3978/loadtest
+ */
+public class LoadOptions {
+
+    // CONSTANTS
+    public static final String BOT_FAKE = "fake";
+    public static final String USAGE = "options:\n"
+            + "  --sessions N            concurrent conversations, each with its own user id (default 10)\n"
+            + "  --threads N             threads shared by the sessions (default 4)\n"
+            + "  --io-threads N          for the blocking HTTP requests to a stand-in bot (default 16)\n"
+            + "  --turns N               messages sent by each session (default 20)\n"
+            + "  --events-per-turn N     events sent before each message (default 1)\n"
+            + "  --think-time-ms N       from a reply to the next message of a session (default 1000)\n"
+            + "  --ramp-up-ms N          over which the sessions start (default 1000)\n"
+            + "  --timeout-ms N          to connect, send, or get a reply (default 15000)\n"
+            + "  --bot fake|URL          the in-process FakeDialogTransport, or a stand-in bot over HTTP (default fake)\n"
+            + "  --seed N                of the fake's injected failures and latencies (default 1)\n"
+            + "  --send-failure-rate R   of the fake, from 0 to 1 (default 0)\n"
+            + "  --reply-drop-rate R     of the fake, from 0 to 1 (default 0)\n"
+            + "  --reply-latency-ms N    of the fake (default 500)\n"
+            + "  --serve PORT            run the stand-in bot instead, on http://localhost:PORT" + StandInBot.PATH;
+
+    // STATE
+    int sessions = 10;
+    int threads = 4;
+    int ioThreads = 16;
+    int turns = 20;
+    int eventsPerTurn = 1;
+    long thinkTimeMs = 1000;
+    long rampUpMs = 1000;
+    long timeoutMs = 15 * 1000;
+    String bot = BOT_FAKE;
+    long seed = 1;
+    double sendFailureRate;
+    double replyDropRate;
+    long replyLatencyMs = 500;
+    int servePort;// 0 to generate load
+
+    /**
+     * @throws IllegalArgumentException if an option is unknown or its value is missing or invalid
+     */
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("missing value of " + name);
+            String value = args[++i];
+            try {
+                switch (name) {
+                    case "--sessions": options.sessions = positive(name, Integer.parseInt(value)); break;
+                    case "--threads": options.threads = positive(name, Integer.parseInt(value)); break;
+                    case "--io-threads": options.ioThreads = positive(name, Integer.parseInt(value)); break;
+                    case "--turns": options.turns = Integer.parseInt(value); break;
+                    case "--events-per-turn": options.eventsPerTurn = Integer.parseInt(value); break;
+                    case "--think-time-ms": options.thinkTimeMs = Long.parseLong(value); break;
+                    case "--ramp-up-ms": options.rampUpMs = Long.parseLong(value); break;
+                    case "--timeout-ms": options.timeoutMs = positive(name, Long.parseLong(value)); break;
+                    case "--bot": options.bot = value; break;
+                    case "--seed": options.seed = Long.parseLong(value); break;
+                    case "--send-failure-rate": options.sendFailureRate = Double.parseDouble(value); break;
+                    case "--reply-drop-rate": options.replyDropRate = Double.parseDouble(value); break;
+                    case "--reply-latency-ms": options.replyLatencyMs = Long.parseLong(value); break;
+                    case "--serve": options.servePort = positive(name, Integer.parseInt(value)); break;
+                    default: throw new IllegalArgumentException("unknown option " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid value of " + name + ": " + value);
+            }
+        }
+        return options;
+    }
+
+    private static int positive(String name, int value) {
+        if (value <= 0) throw new IllegalArgumentException(name + " must be positive");
+        return value;
+    }
+
+    private static long positive(String name, long value) {
+        if (value <= 0) throw new IllegalArgumentException(name + " must be positive");
+        return value;
+    }
+
+    public boolean isFakeBot() {
+        return BOT_FAKE.equals(bot);
+    }
+}
@@ -0,0 +1,134 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.loadgen;
+
+import com.google.gson.GsonBuilder;
+import com.microsoft.bot.builder.solutions.directlinespeech.metrics.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the sessions of a load test did: throughput, error rate and latency percentiles, shared by all the sessions
+ */
+public class LoadReport {
+
+    // STATE
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();// until the transport accepted an activity
+    private final LatencyHistogram welcomeLatency = new LatencyHistogram();// from sending to the first reply
+    private final LatencyHistogram messageLatency = new LatencyHistogram();
+    private long startedAtNanos;
+    private long endedAtNanos;
+    private int sessionCount;
+    private int connectedCount;
+    private int connectFailureCount;
+    private int connectionLostCount;
+    private long turnCount;
+    private long answeredCount;
+    private long timedOutCount;
+    private long sentCount;
+    private long sendFailureCount;
+    private long receivedCount;
+
+    public synchronized void start(int sessionCount) {
+        this.sessionCount = sessionCount;
+        startedAtNanos = System.nanoTime();
+    }
+
+    public synchronized void finish() {
+        if (endedAtNanos == 0) endedAtNanos = System.nanoTime();
+    }
+
+    public synchronized void recordConnect(long latencyMs) {
+        connectedCount++;
+        connectLatency.record(latencyMs);
+    }
+
+    public synchronized void recordConnectFailure() {
+        connectFailureCount++;
+    }
+
+    /**
+     * The connection was closed by the service during the session
+     */
+    public synchronized void recordConnectionLost() {
+        connectionLostCount++;
+    }
+
+    public synchronized void recordTurnStarted() {
+        turnCount++;
+    }
+
+    /**
+     * @param latencyMs from sending the message of a turn to its first reply
+     */
+    public synchronized void recordAnswered(long latencyMs) {
+        answeredCount++;
+        messageLatency.record(latencyMs);
+    }
+
+    public synchronized void recordWelcome(long latencyMs) {
+        welcomeLatency.record(latencyMs);
+    }
+
+    public synchronized void recordTimeout() {
+        timedOutCount++;
+    }
+
+    public synchronized void recordSent(long latencyMs) {
+        sentCount++;
+        sendLatency.record(latencyMs);
+    }
+
+    public synchronized void recordSendFailure() {
+        sendFailureCount++;
+    }
+
+    public synchronized void recordReceived() {
+        receivedCount++;
+    }
+
+    /**
+     * @return the turns that got no reply, the message of which could not be sent or timed out, as a share of the turns
+     */
+    public synchronized double getErrorRate() {
+        return turnCount == 0 ? 0 : (double) (turnCount - answeredCount) / turnCount;
+    }
+
+    /**
+     * @return the totals, rates and latency percentiles in milliseconds, as JSON
+     */
+    public synchronized String toJson() {
+        long end = endedAtNanos != 0 ? endedAtNanos : System.nanoTime();
+        double seconds = Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - startedAtNanos)) / 1000.0;
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("durationMs", Math.round(seconds * 1000));
+        Map<String, Object> sessions = new LinkedHashMap<>();
+        sessions.put("started", sessionCount);
+        sessions.put("connected", connectedCount);
+        sessions.put("connectFailures", connectFailureCount);
+        sessions.put("connectionsLost", connectionLostCount);
+        root.put("sessions", sessions);
+        Map<String, Object> turns = new LinkedHashMap<>();
+        turns.put("started", turnCount);
+        turns.put("answered", answeredCount);
+        turns.put("timedOut", timedOutCount);
+        turns.put("errorRate", getErrorRate());
+        turns.put("answeredPerSecond", answeredCount / seconds);
+        root.put("turns", turns);
+        Map<String, Object> activities = new LinkedHashMap<>();
+        activities.put("sent", sentCount);
+        activities.put("sendFailures", sendFailureCount);
+        activities.put("received", receivedCount);
+        activities.put("sentPerSecond", sentCount / seconds);
+        activities.put("receivedPerSecond", receivedCount / seconds);
+        root.put("activities", activities);
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("connect", connectLatency.toMap());
+        latency.put("send", sendLatency.toMap());
+        latency.put("welcome", welcomeLatency.toMap());
+        latency.put("message", messageLatency.toMap());
+        root.put("latency", latency);
+        return new GsonBuilder().setPrettyPrinting().create().toJson(root);
+    }
+}
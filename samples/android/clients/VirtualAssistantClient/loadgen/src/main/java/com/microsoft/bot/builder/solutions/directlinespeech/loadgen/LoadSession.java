@@ -0,0 +1,231 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.loadgen;
+
+import com.google.gson.Gson;
+import com.microsoft.bot.builder.solutions.directlinespeech.activity.ActivityFactory;
+import com.microsoft.bot.builder.solutions.directlinespeech.async.FutureCompletion;
+import com.microsoft.bot.builder.solutions.directlinespeech.audio.AudioSource;
+import com.microsoft.bot.builder.solutions.directlinespeech.correlation.ReplyCorrelator;
+import com.microsoft.bot.builder.solutions.directlinespeech.correlation.TimerWheel;
+import com.microsoft.bot.builder.solutions.directlinespeech.routing.ActivityHeader;
+import com.microsoft.bot.builder.solutions.directlinespeech.transport.DialogTransport;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import client.model.Activity;
+import client.model.ChannelAccount;
+
+/**
+ * One conversation of a load test, as SpeechSdk holds it: its own user and transport, activities built by an
+ * ActivityFactory and replies matched by a ReplyCorrelator. It connects, asks for the welcome card, then sends
+ * its turns one after the other: the events of the turn, then a message; the next turn starts a think time after
+ * the message got its reply, timed out or could not be sent.
+ *
+ * Nothing blocks a thread: the Futures of the transport complete through FutureCompletion, and the turns are
+ * scheduled on the executor shared by the sessions.
+ */
+public class LoadSession implements DialogTransport.Listener {
+
+    // CONSTANTS
+    private static final String REQUEST_TYPE_MESSAGE = "message";
+    private static final String REQUEST_TYPE_WELCOME = "welcome";
+    private static final String USER_ID_PREFIX = "loadgen-user-";
+
+    // STATE
+    private final int number;
+    private final DialogTransport transport;
+    private final LoadOptions options;
+    private final ScheduledExecutorService executor;
+    private final LoadReport report;
+    private final CountDownLatch done;
+    private final Gson gson;
+    private final ActivityFactory activityFactory;
+    private final ReplyCorrelator replyCorrelator;
+    private int turn;// guarded by this
+    private String pendingMessageId;// the message of the current turn, until it is answered
+    private String welcomeActivityId;
+    private boolean isFinished;
+
+    /**
+     * @param number of the session, from 0: its user is loadgen-user-number
+     * @param done counted down once the session finished
+     */
+    public LoadSession(int number, DialogTransport transport, LoadOptions options, ScheduledExecutorService executor,
+                       TimerWheel timerWheel, Gson gson, LoadReport report, CountDownLatch done) {
+        this.number = number;
+        this.transport = transport;
+        this.options = options;
+        this.executor = executor;
+        this.gson = gson;
+        this.report = report;
+        this.done = done;
+        ChannelAccount from = new ChannelAccount();
+        from.setId(USER_ID_PREFIX + number);
+        from.setName("Load test user " + number);
+        activityFactory = new ActivityFactory(from, "en-us");
+        // a fixed timeout: adapting it to the latencies would hide how slow the bot becomes under load
+        replyCorrelator = new ReplyCorrelator(timerWheel, options.timeoutMs, options.timeoutMs, options.timeoutMs);
+        replyCorrelator.setOnTimeoutListener(this::onTimeout);
+        transport.setListener(this);
+    }
+
+    /**
+     * @param delayMs before connecting, to ramp up
+     */
+    public void start(long delayMs) {
+        executor.schedule(this::connect, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void connect() {
+        final long startedAtNanos = System.nanoTime();
+        FutureCompletion.toMaybe(transport.connectAsync(), options.timeoutMs, TimeUnit.MILLISECONDS).subscribe(
+                result -> onConnected(startedAtNanos),
+                throwable -> {
+                    report.recordConnectFailure();
+                    finish();
+                },
+                () -> onConnected(startedAtNanos));
+    }
+
+    private void onConnected(long startedAtNanos) {
+        report.recordConnect(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos));
+        Activity welcomeRequest = activityFactory.createWelcomeRequest();
+        synchronized (this) {
+            welcomeActivityId = welcomeRequest.getId();
+        }
+        send(welcomeRequest, REQUEST_TYPE_WELCOME);
+        scheduleNextTurn();
+    }
+
+    private void scheduleNextTurn() {
+        executor.schedule(this::startTurn, options.thinkTimeMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void startTurn() {
+        Activity message;
+        synchronized (this) {
+            if (isFinished) return;
+            if (turn == options.turns) {
+                finish();
+                return;
+            }
+            turn++;
+            message = activityFactory.createMessage("load test turn " + turn + " of session " + number);
+            pendingMessageId = message.getId();
+        }
+        report.recordTurnStarted();
+        for (int i = 0; i < options.eventsPerTurn; i++) {
+            send(activityFactory.createEvent("VA.Location", null, "47.6062,-122.3321"), null);
+        }
+        send(message, REQUEST_TYPE_MESSAGE);
+    }
+
+    /*
+     * @param requestType the type of the reply waited for, null if no reply is expected
+     */
+    private void send(Activity activity, String requestType) {
+        final String activityId = activity.getId();
+        final long sentAtNanos = System.nanoTime();
+        // expected before sending: a reply can arrive before the send completes
+        if (requestType != null) replyCorrelator.expect(activityId, requestType, sentAtNanos);
+        FutureCompletion.toMaybe(transport.sendActivityAsync(gson.toJson(activity)), options.timeoutMs, TimeUnit.MILLISECONDS).subscribe(
+                result -> report.recordSent(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentAtNanos)),
+                throwable -> onSendFailed(activityId, requestType),
+                () -> report.recordSent(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentAtNanos)));
+    }
+
+    private void onSendFailed(String activityId, String requestType) {
+        report.recordSendFailure();
+        if (requestType == null || !replyCorrelator.cancel(activityId)) return;
+        if (REQUEST_TYPE_MESSAGE.equals(requestType)) endTurn(activityId);
+    }
+
+    // called on the thread of the TimerWheel
+    private void onTimeout(String requestType, long timeoutMs) {
+        if (!REQUEST_TYPE_MESSAGE.equals(requestType)) return;
+        report.recordTimeout();
+        // a session has one message waiting at a time
+        String activityId;
+        synchronized (this) {
+            activityId = pendingMessageId;
+        }
+        if (activityId != null) endTurn(activityId);
+    }
+
+    private void endTurn(String activityId) {
+        synchronized (this) {
+            if (!activityId.equals(pendingMessageId)) return;// already ended
+            pendingMessageId = null;
+        }
+        scheduleNextTurn();
+    }
+
+    private void finish() {
+        synchronized (this) {
+            if (isFinished) return;
+            isFinished = true;
+        }
+        replyCorrelator.cancelAll();
+        FutureCompletion.toMaybe(transport.disconnectAsync(), options.timeoutMs, TimeUnit.MILLISECONDS)
+                .doFinally(() -> {
+                    transport.close();
+                    done.countDown();
+                })
+                .subscribe(result -> { }, throwable -> { });
+    }
+
+    @Override
+    public void onActivityReceived(String activityJson, AudioSource audio) {
+        long receivedAtNanos = System.nanoTime();
+        // load is measured on the activities, not on playing their speech
+        if (audio != null) audio.close();
+        report.recordReceived();
+        String replyToId = null;
+        try {
+            ActivityHeader header = ActivityHeader.peek(activityJson);
+            if (header != null) replyToId = header.getReplyToId();
+        } catch (IOException | IllegalStateException e) {
+            // not an activity, counted as received only
+            return;
+        }
+        long latencyMs = replyCorrelator.onReply(replyToId, receivedAtNanos);
+        if (latencyMs < 0) return;// a further reply, or one after the timeout
+        boolean isWelcome;
+        String messageId;
+        synchronized (this) {
+            isWelcome = replyToId != null && replyToId.equals(welcomeActivityId);
+            messageId = pendingMessageId;
+        }
+        if (isWelcome) {
+            report.recordWelcome(latencyMs);
+        } else {
+            // without a known replyToId the reply answers the oldest request, the message of the turn
+            report.recordAnswered(latencyMs);
+            if (messageId != null) endTurn(messageId);
+        }
+    }
+
+    @Override
+    public void onCanceled(int errorCode, int reason, String errorDetails) {
+        report.recordConnectionLost();
+        finish();
+    }
+
+    @Override
+    public void onRecognizing(String text, boolean isKeyword) {
+    }
+
+    @Override
+    public void onRecognized(String text, boolean isKeyword) {
+    }
+
+    @Override
+    public void onSessionStarted(String sessionId) {
+    }
+
+    @Override
+    public void onSessionStopped(String sessionId) {
+    }
+}
@@ -0,0 +1,101 @@
+package com.microsoft.bot.builder.solutions.directlinespeech.loadgen;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+
+/**
+ * A bot for HttpBotTransport on localhost, to load test the client side over real sockets without a Bot Framework
+ * bot: it echoes messages, welcomes startConversation and ignores other events, like the FakeDialogTransport.
+ */
+public class StandInBot {
+
+    // CONSTANTS
+    public static final String PATH = "/api/loadtest";
+    private static final int THREADS = 16;
+
+    private StandInBot() {
+    }
+
+    /**
+     * Serve until the process is stopped
+     */
+    public static void serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext(PATH, StandInBot::handle);
+        server.setExecutor(Executors.newFixedThreadPool(THREADS));
+        server.start();
+        System.err.println("stand-in bot on http://localhost:" + port + PATH);
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] response = new byte[0];
+            if ("POST".equals(exchange.getRequestMethod())) {
+                response = reply(readAll(exchange.getRequestBody())).toString().getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            }
+            exchange.sendResponseHeaders(200, response.length > 0 ? response.length : -1);
+            if (response.length > 0) {
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(response);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static JsonArray reply(String activityJson) {
+        JsonArray replies = new JsonArray();
+        JsonObject activity;
+        try {
+            JsonElement element = new JsonParser().parse(activityJson);
+            if (!element.isJsonObject()) return replies;
+            activity = element.getAsJsonObject();
+        } catch (JsonParseException e) {
+            return replies;
+        }
+        String type = getString(activity, "type");
+        String text;
+        if ("message".equals(type)) {
+            text = "You said: " + (getString(activity, "text") != null ? getString(activity, "text") : "");
+        } else if ("startConversation".equals(getString(activity, "name"))) {
+            text = "Welcome";
+        } else {
+            return replies;
+        }
+        JsonObject reply = new JsonObject();
+        reply.addProperty("type", "message");
+        reply.addProperty("text", text);
+        reply.addProperty("inputHint", "acceptingInput");
+        String id = getString(activity, "id");
+        if (id != null) reply.addProperty("replyToId", id);
+        replies.add(reply);
+        return replies;
+    }
+
+    private static String getString(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    private static String readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) > 0) output.write(buffer, 0, read);
+        return output.toString("UTF-8");
+    }
+}